@@ -0,0 +1,90 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compression throughput next to the decompression throughput of the same frame, the compression ratio of each level
+ * is printed on setup. The input is 4 MB, so MB/s is 4 times the score.
+ * <p>
+ * The input mixes short runs of words with noise of a skewed distribution, so that every block has both
+ * sequences and Huffman coded literals.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CompressBenchmark {
+    private static final int INPUT_SIZE = 4 * 1024 * 1024;
+
+    @Param({"1", "3", "5", "7", "8", "12"})
+    public int level;
+
+    private final ZstdDecompressor decompressor = new ZstdDecompressor();
+    private ZstdCompressor compressor;
+
+    private byte[] input;
+    private byte[] compressed;
+    private int compressedSize;
+    private byte[] output;
+
+    @Setup
+    public void setUp() {
+        final byte[] words = "lorem ipsum dolor sit amet consectetur adipiscing elit sed do eiusmod tempor ".getBytes();
+        final byte[] noise = FrameBuilder.random(1, INPUT_SIZE);
+        input = new byte[INPUT_SIZE];
+        int position = 0;
+        for (int i = 0; position < INPUT_SIZE; i++) {
+            if ((noise[i] & 0x30) == 0) {
+                input[position++] = (byte) (noise[i] & 0x7);
+                continue;
+            }
+            final int start = (noise[i] & 0xFF) % 60;
+            final int length = Math.min(Math.min(3 + (noise[i] & 0xF), words.length - start), INPUT_SIZE - position);
+            System.arraycopy(words, start, input, position, length);
+            position += length;
+        }
+
+        compressor = new ZstdCompressor(level);
+        compressed = new byte[ZstdCompressor.maxCompressedLength(INPUT_SIZE)];
+        compressedSize = compressor.compress(input, 0, input.length, compressed, 0, compressed.length);
+        System.out.printf("level %d: %d -> %d bytes, ratio %.3f%n", level, INPUT_SIZE, compressedSize, (double) INPUT_SIZE / compressedSize);
+        output = new byte[INPUT_SIZE];
+    }
+
+    @Benchmark
+    public int compress() {
+        return compressor.compress(input, 0, input.length, compressed, 0, compressed.length);
+    }
+
+    @Benchmark
+    public int decompress() {
+        return decompressor.decompress(compressed, 0, compressedSize, output, 0, output.length);
+    }
+}
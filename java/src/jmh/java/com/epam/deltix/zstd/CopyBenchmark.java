@@ -0,0 +1,89 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_LONG;
+
+/**
+ * Sequence execution kernels: every invocation fills 1 MB of output with literal runs or matches of {@code length} bytes,
+ * so MB/s is the score. Matches with an {@code offset} below 8 take the overlapping copy path.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CopyBenchmark {
+    private static final int HISTORY_SIZE = 64 * 1024;
+    private static final int OUTPUT_SIZE = HISTORY_SIZE + 1024 * 1024;
+    private static final int LITERALS_SIZE = 128 * 1024;
+
+    @Param({"8", "32", "256"})
+    public int length;
+
+    private ByteBuffer output;
+    private ByteBuffer literals;
+    private int fastOutputLimit;
+
+    @State(Scope.Thread)
+    public static class Match {
+        @Param({"1", "4", "16", "1024"})
+        public int offset;
+    }
+
+    @Setup
+    public void setUp() {
+        output = ByteBuffer.wrap(FrameBuilder.random(1, OUTPUT_SIZE + SIZE_OF_LONG)).order(ByteOrder.LITTLE_ENDIAN);
+        literals = ByteBuffer.wrap(FrameBuilder.random(2, LITERALS_SIZE + length + SIZE_OF_LONG)).order(ByteOrder.LITTLE_ENDIAN);
+        fastOutputLimit = output.capacity() - SIZE_OF_LONG;
+    }
+
+    @Benchmark
+    public int copyLiterals() {
+        int output = HISTORY_SIZE;
+        int literalsInput = 0;
+        while (output < OUTPUT_SIZE) {
+            output = ZstdFrameDecompressor.copyLiterals(this.output, literals, output, literalsInput, output + length);
+            literalsInput = (literalsInput + length) & (LITERALS_SIZE - 1);
+        }
+        return output;
+    }
+
+    @Benchmark
+    public int copyMatch(final Match match) {
+        int output = HISTORY_SIZE;
+        while (output < OUTPUT_SIZE) {
+            ZstdFrameDecompressor.copyMatch(this.output, fastOutputLimit, output, match.offset, output + length, output - match.offset);
+            output += length;
+        }
+        return output;
+    }
+}
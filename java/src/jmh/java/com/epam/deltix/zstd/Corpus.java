@@ -0,0 +1,126 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Reproducible synthetic inputs of different kinds, the same seed gives the same bytes on every run.
+ */
+public enum Corpus {
+    /**
+     * Words of a small vocabulary with a skewed distribution, mostly Huffman coded literals and short matches.
+     */
+    TEXT {
+        @Override
+        byte[] generate(final int size) {
+            final String[] words = ("the of and to in is that it was for on are as with his they at be this from have or by " +
+                    "one had not but what all were when we there can an your which their said if do will each about how up " +
+                    "out them then she many some so these would other into has more her two like him see time could no make " +
+                    "than first been its who now people my made over did down only way find use may water long little very " +
+                    "after words called just where most know get through back much before go good new write our used me man " +
+                    "too any day same right look think also around another came come work three word must because does part").split(" ");
+            final Random random = new Random(1);
+            final StringBuilder text = new StringBuilder(size + 64);
+            while (text.length() < size) {
+                final int sentenceLength = 4 + random.nextInt(16);
+                for (int i = 0; i < sentenceLength; i++) {
+                    // squaring the uniform value favours the first words
+                    final double uniform = random.nextDouble();
+                    final String word = words[(int) (uniform * uniform * words.length)];
+                    if (i == 0) {
+                        text.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+                    } else {
+                        text.append(' ').append(word);
+                    }
+                }
+                text.append(random.nextInt(8) == 0 ? ".\n" : ". ");
+            }
+            return truncate(text.toString().getBytes(StandardCharsets.US_ASCII), size);
+        }
+    },
+
+    /**
+     * Application log lines: long repeated prefixes with increasing timestamps and varying numbers.
+     */
+    LOGS {
+        @Override
+        byte[] generate(final int size) {
+            final String[] levels = {"INFO", "INFO", "INFO", "DEBUG", "DEBUG", "WARN", "ERROR"};
+            final String[] messages = {
+                    "Processed request id=%d in %d ms",
+                    "Cache miss for key=user:%d, loaded in %d ms",
+                    "Sending heartbeat to node-%d, sequence %d",
+                    "Connection pool stats: active=%d idle=%d",
+                    "Order %d filled at price %d"};
+            final Random random = new Random(2);
+            final StringBuilder log = new StringBuilder(size + 256);
+            long time = 1_700_000_000_000L;
+            while (log.length() < size) {
+                time += random.nextInt(50);
+                final long millis = time % 1000;
+                final long seconds = time / 1000 % 60;
+                final long minutes = time / 60_000 % 60;
+                final long hours = time / 3_600_000 % 24;
+                log.append(String.format("2026-10-16 %02d:%02d:%02d.%03d %-5s [worker-%d] com.epam.deltix.service.RequestHandler - ",
+                        hours, minutes, seconds, millis, levels[random.nextInt(levels.length)], random.nextInt(16)));
+                log.append(String.format(messages[random.nextInt(messages.length)], random.nextInt(1_000_000), random.nextInt(300)));
+                log.append('\n');
+            }
+            return truncate(log.toString().getBytes(StandardCharsets.US_ASCII), size);
+        }
+    },
+
+    /**
+     * Little-endian records of a timestamp, a price random walk and a volume, typical market data.
+     */
+    TIME_SERIES {
+        @Override
+        byte[] generate(final int size) {
+            final Random random = new Random(3);
+            final ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+            long timestamp = 1_700_000_000_000_000L;
+            double price = 100;
+            while (buffer.remaining() >= 20) {
+                timestamp += 1000 + random.nextInt(1000);
+                price += (random.nextInt(5) - 2) * 0.01;
+                buffer.putLong(timestamp);
+                buffer.putDouble(price);
+                buffer.putInt(100 * (1 + random.nextInt(20)));
+            }
+            return buffer.array();
+        }
+    },
+
+    /**
+     * Uniformly random bytes, stored in raw blocks.
+     */
+    INCOMPRESSIBLE {
+        @Override
+        byte[] generate(final int size) {
+            return FrameBuilder.random(4, size);
+        }
+    };
+
+    abstract byte[] generate(int size);
+
+    private static byte[] truncate(final byte[] data, final int size) {
+        final byte[] result = new byte[size];
+        System.arraycopy(data, 0, result, 0, size);
+        return result;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end decoding throughput of {@link ZstdDecompressor#decompress(byte[], int, int, byte[], int, int)}
+ * for each {@link Corpus}. The content is 4 MB, so MB/s is 4 times the score.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CorpusBenchmark {
+    private static final int CONTENT_SIZE = 4 * 1024 * 1024;
+
+    @Param({"TEXT", "LOGS", "TIME_SERIES", "INCOMPRESSIBLE"})
+    public Corpus corpus;
+
+    @Param({"3"})
+    public int level;
+
+    private final ZstdDecompressor decompressor = new ZstdDecompressor();
+
+    private byte[] compressed;
+    private int compressedSize;
+    private byte[] output;
+
+    @Setup
+    public void setUp() {
+        final byte[] content = corpus.generate(CONTENT_SIZE);
+        compressed = new byte[ZstdCompressor.maxCompressedLength(CONTENT_SIZE)];
+        compressedSize = new ZstdCompressor(level).compress(content, 0, content.length, compressed, 0, compressed.length);
+        System.out.printf("%s: %d -> %d bytes, ratio %.3f%n", corpus, CONTENT_SIZE, compressedSize, (double) CONTENT_SIZE / compressedSize);
+        output = new byte[CONTENT_SIZE];
+    }
+
+    @Benchmark
+    public int decompress() {
+        return decompressor.decompress(compressed, 0, compressedSize, output, 0, output.length);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding throughput for frames of different window sizes.
+ * <p>
+ * {@link #alphabet} decodes a small-window frame with Huffman literals and FSE coded sequences.
+ * {@link #matches} decodes frames of match blocks with offsets spread over the window: with {@code windowLog=10}
+ * every sequence fits into one refill of the bit container, with {@code windowLog=24} offsets take up to 22 bits.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DecompressBenchmark {
+    private static final int MATCH_BLOCKS = 4096;
+
+    @Param({"10", "24"})
+    public int windowLog;
+
+    private final ZstdDecompressor decompressor = new ZstdDecompressor();
+
+    private byte[] alphabetInput;
+    private byte[] alphabetOutput;
+
+    private byte[] matchesInput;
+    private byte[] matchesOutput;
+
+    @Setup
+    public void setUp() {
+        alphabetInput = FrameBuilder.ALPHABET_FRAME;
+        alphabetOutput = new byte[FrameBuilder.alphabet().length];
+
+        // history of the whole window, but not more than 4 MB, so that both frames stay in the same cache level range
+        final int historySize = 1 << Math.min(windowLog, 22);
+        final FrameBuilder frame = new FrameBuilder(windowLog, false, true);
+        for (int offset = 0; offset < historySize; offset += 128 * 1024) {
+            frame.raw(FrameBuilder.random(offset, Math.min(128 * 1024, historySize - offset)));
+        }
+        for (int i = 0; i < MATCH_BLOCKS; i++) {
+            frame.match(1 + (int) (i * 2654435761L % historySize), 131 + i % 896);
+        }
+        matchesInput = frame.build();
+        matchesOutput = new byte[frame.content().length];
+    }
+
+    @Benchmark
+    public int alphabet() {
+        return decompressor.decompress(alphabetInput, 0, alphabetInput.length, alphabetOutput, 0, alphabetOutput.length);
+    }
+
+    @Benchmark
+    public int matches() {
+        return decompressor.decompress(matchesInput, 0, matchesInput.length, matchesOutput, 0, matchesOutput.length);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_LONG;
+
+/**
+ * Entropy decoding kernels in isolation, on inputs produced by the compressor.
+ * <p>
+ * {@link #huffman} decodes 128 KB of {@link Corpus#TEXT} literals, the largest literals section of a block.
+ * {@link #weights} decodes the FSE compressed Huffman weights of the same section and
+ * {@link #fseTable} reads a literals length table description of the maximum accuracy.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class EntropyBenchmark {
+    private static final int LITERALS_SIZE = 128 * 1024;
+    private static final int LITERALS_LENGTH_MAX_SYMBOL = 35;
+    private static final int LITERALS_LENGTH_TABLE_LOG = 9;
+
+    private final Huffman huffman = new Huffman();
+    private final BitStream.Initializer initializer = new BitStream.Initializer();
+    private final BitStream.Loader loader = new BitStream.Loader();
+    private final FiniteStateEntropy finiteStateEntropy = new FiniteStateEntropy(6);
+    private final FseTableReader fseTableReader = new FseTableReader();
+    private final FiniteStateEntropy.Table table = new FiniteStateEntropy.Table(LITERALS_LENGTH_TABLE_LOG);
+
+    private ByteBuffer literals;
+    private int streamsAddress;
+    private int streamsLimit;
+    private ByteBuffer output;
+
+    private int weightsSize;
+    private final ByteBuffer weights = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+
+    private ByteBuffer fseTableDescription;
+    private int fseTableDescriptionSize;
+
+    @Setup
+    public void setUp() {
+        final byte[] content = Corpus.TEXT.generate(LITERALS_SIZE);
+        final int[] counts = new int[256];
+        Histogram.count(content, content.length, counts);
+        final HuffmanCompressor compressor = new HuffmanCompressor();
+        compressor.initialize(counts, Histogram.findMaxSymbol(counts, 255));
+
+        literals = ByteBuffer.allocate(LITERALS_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        final int tableSize = compressor.writeTable(literals, 0, LITERALS_SIZE);
+        final int streamsSize = compressor.compress4Streams(literals, tableSize, LITERALS_SIZE - tableSize, content, 0, content.length);
+        weightsSize = literals.get(0) & 0xFF;
+        if (tableSize == 0 || streamsSize == 0 || weightsSize >= 128) {
+            throw new IllegalStateException("Expected FSE compressed weights and 4 Huffman streams");
+        }
+        streamsAddress = tableSize;
+        streamsLimit = tableSize + streamsSize;
+        output = ByteBuffer.allocate(LITERALS_SIZE + SIZE_OF_LONG).order(ByteOrder.LITTLE_ENDIAN);
+
+        huffman.readTable(literals, 0, tableSize);
+        huffman.decode4Streams(literals, streamsAddress, streamsLimit, output, 0, LITERALS_SIZE, initializer, loader);
+        for (int i = 0; i < LITERALS_SIZE; i++) {
+            if (output.get(i) != content[i]) {
+                throw new IllegalStateException("Literals do not round trip at " + i);
+            }
+        }
+
+        final int[] lengthCounts = new int[LITERALS_LENGTH_MAX_SYMBOL + 1];
+        int total = 0;
+        for (int symbol = 0; symbol <= LITERALS_LENGTH_MAX_SYMBOL; symbol++) {
+            lengthCounts[symbol] = 1 + (4096 >> (symbol / 2));
+            total += lengthCounts[symbol];
+        }
+        final short[] normalizedCounts = new short[LITERALS_LENGTH_MAX_SYMBOL + 1];
+        FiniteStateEntropy.normalizeCounts(normalizedCounts, LITERALS_LENGTH_TABLE_LOG, lengthCounts, total, LITERALS_LENGTH_MAX_SYMBOL);
+        fseTableDescription = ByteBuffer.allocate(512).order(ByteOrder.LITTLE_ENDIAN);
+        fseTableDescriptionSize = FiniteStateEntropy.writeNormalizedCounts(fseTableDescription, 0, normalizedCounts, LITERALS_LENGTH_MAX_SYMBOL, LITERALS_LENGTH_TABLE_LOG);
+    }
+
+    @Benchmark
+    public ByteBuffer huffman() {
+        huffman.decode4Streams(literals, streamsAddress, streamsLimit, output, 0, LITERALS_SIZE, initializer, loader);
+        return output;
+    }
+
+    @Benchmark
+    public int weights() {
+        return finiteStateEntropy.decompress(literals, 1, 1 + weightsSize, weights);
+    }
+
+    @Benchmark
+    public int fseTable() {
+        return fseTableReader.readFseTable(table, fseTableDescription, 0, fseTableDescription.limit(), LITERALS_LENGTH_MAX_SYMBOL, LITERALS_LENGTH_TABLE_LOG);
+    }
+}
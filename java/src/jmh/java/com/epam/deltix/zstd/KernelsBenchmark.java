@@ -0,0 +1,83 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the {@link Kernels} alone on 1 MB: {@link #hash} runs the XxHash64 rounds, {@link #copy} copies runs of
+ * {@code length} bytes as literals and long matches are copied, so MB/s is the score. Needs Java 17+.
+ * <p>
+ * The decoder uses the scalar kernels unless told otherwise, compare the whole decoder with
+ * {@code -PjmhArgs="CorpusBenchmark -jvmArgsAppend --add-modules=jdk.incubator.vector -jvmArgsAppend -Dcom.epam.deltix.zstd.kernels=vector"}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class KernelsBenchmark {
+    private static final int SIZE = 1024 * 1024;
+
+    @Param({"scalar", "vector"})
+    public String kernels;
+
+    @Param({"16", "64", "256", "4096"})
+    public int length;
+
+    private Kernels implementation;
+    private ByteBuffer input;
+    private ByteBuffer output;
+
+    @Setup
+    public void setUp() {
+        implementation = Kernels.create(kernels);
+        System.out.println(kernels + ": " + implementation.getClass().getSimpleName());
+        input = ZstdFrameDecompressor.ByteBufferWrap(FrameBuilder.random(1, SIZE));
+        output = ZstdFrameDecompressor.ByteBufferWrap(new byte[SIZE]);
+    }
+
+    @Benchmark
+    public long hash() {
+        return implementation.xxHashBody(0, input, 0, SIZE);
+    }
+
+    @Benchmark
+    public ByteBuffer copy() {
+        final Kernels implementation = this.implementation;
+        for (int index = 0; index < SIZE; index += length) {
+            // the rest of a run is copied long by long, as the decoder does
+            int copied = implementation.copy(input, index, output, index, length);
+            while (copied < length) {
+                Memory.MEMORY.putLong(output, index + copied, Memory.MEMORY.getLong(input, index + copied));
+                copied += 8;
+            }
+        }
+        return output;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the {@link Memory} implementations alone: {@link #read} sums the longs of 1 MB, {@link #copy} copies 1 MB
+ * long by long, so MB/s is the score.
+ * <p>
+ * The kernels use the implementation picked at startup, compare them with
+ * {@code -PjmhArgs="Benchmark -jvmArgsAppend -Dcom.epam.deltix.zstd.memory=buffer"} and {@code =unsafe}, {@code =varhandle}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MemoryBenchmark {
+    private static final int SIZE = 1024 * 1024;
+
+    @Param({"buffer", "unsafe", "varhandle"})
+    public String memory;
+
+    @Param({"false", "true"})
+    public boolean direct;
+
+    private Memory access;
+    private ByteBuffer input;
+    private ByteBuffer output;
+
+    @Setup
+    public void setUp() {
+        access = Memory.create(memory);
+        System.out.println(memory + ": " + access.getClass().getSimpleName());
+        input = allocate(SIZE);
+        input.put(FrameBuilder.random(1, SIZE)).clear();
+        output = allocate(SIZE);
+    }
+
+    private ByteBuffer allocate(final int size) {
+        return (direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size)).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Benchmark
+    public long read() {
+        final Memory access = this.access;
+        long sum = 0;
+        for (int index = 0; index < SIZE; index += 8) {
+            sum += access.getLong(input, index);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public ByteBuffer copy() {
+        final Memory access = this.access;
+        for (int index = 0; index < SIZE; index += 8) {
+            access.putLong(output, index, access.getLong(input, index));
+        }
+        return output;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scaling of multi-frame compression with the parallelism of the pool, the input is 64 MB of 1 MB chunks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ParallelCompressBenchmark {
+    private static final int INPUT_SIZE = 64 * 1024 * 1024;
+    private static final int CHUNK_SIZE = 1024 * 1024;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private ForkJoinPool pool;
+    private ZstdParallelCompressor compressor;
+
+    private byte[] input;
+    private byte[] output;
+
+    @Setup
+    public void setUp() {
+        input = FrameBuilder.random(1, INPUT_SIZE);
+        for (int i = 0; i < INPUT_SIZE; i++) {
+            input[i] = (byte) ((input[i] & 7) + (i / 1000 & 0x30));
+        }
+
+        pool = new ForkJoinPool(threads);
+        compressor = new ZstdParallelCompressor(pool, ZstdCompressor.DEFAULT_COMPRESSION_LEVEL, CHUNK_SIZE);
+        output = new byte[compressor.maxCompressedLength(INPUT_SIZE)];
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public int compress() throws InterruptedException {
+        return compressor.compress(input, 0, input.length, output, 0, output.length);
+    }
+}
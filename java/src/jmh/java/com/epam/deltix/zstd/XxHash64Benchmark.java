@@ -0,0 +1,73 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checksum throughput: {@link #hash} hashes the data in one call, {@link #streaming} feeds it in blocks of 128 KB
+ * as the decoder does with {@link ChecksumPolicy#VERIFY}, from a heap or a direct buffer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class XxHash64Benchmark {
+    private static final int BLOCK_SIZE = 128 * 1024;
+
+    @Param({"16", "1024", "4194304"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean direct;
+
+    private final XxHash64 hash = new XxHash64();
+    private ByteBuffer data;
+
+    @Setup
+    public void setUp() {
+        data = (direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size)).order(ByteOrder.LITTLE_ENDIAN);
+        data.put(FrameBuilder.random(1, size)).clear();
+    }
+
+    @Benchmark
+    public long hash() {
+        return XxHash64.hash(0, data, 0, size);
+    }
+
+    @Benchmark
+    public long streaming() {
+        hash.reset();
+        for (int offset = 0; offset < size; offset += BLOCK_SIZE) {
+            hash.update(data, offset, Math.min(BLOCK_SIZE, size - offset));
+        }
+        return hash.hash();
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.nio.ByteBuffer;
+
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_LONG;
+
+/**
+ * Writes the bit streams read by {@link BitStream}: bits are accumulated from the lowest ones and flushed
+ * as little-endian longs, so the last written bits are the first read.
+ * <p>
+ * A stream that does not fit stops at its limit and {@link #close()} reports 0 instead of failing,
+ * so that the caller can fall back to another encoding.
+ */
+class BitOutputStream {
+    private static final long[] BIT_MASK = new long[64];
+
+    static {
+        for (int i = 0; i < BIT_MASK.length; i++) {
+            BIT_MASK[i] = (1L << i) - 1;
+        }
+    }
+
+    private final ByteBuffer outputBase;
+    private final int outputAddress;
+    private final int outputLimit;
+
+    private long container;
+    private int bitCount;
+    private int currentAddress;
+
+    BitOutputStream(final ByteBuffer outputBase, final int outputAddress, final int outputSize) {
+        this.outputBase = outputBase;
+        this.outputAddress = outputAddress;
+        this.outputLimit = outputAddress + outputSize - SIZE_OF_LONG;
+        this.currentAddress = outputAddress;
+    }
+
+    /**
+     * Adds the lowest {@code numberOfBits} (< 64) of {@code value}, at most 56 bits may be pending between flushes.
+     */
+    void addBits(final long value, final int numberOfBits) {
+        container |= (value & BIT_MASK[numberOfBits]) << bitCount;
+        bitCount += numberOfBits;
+    }
+
+    /**
+     * Same as {@link #addBits}, but {@code value} must not have bits above {@code numberOfBits}.
+     */
+    void addBitsFast(final long value, final int numberOfBits) {
+        container |= value << bitCount;
+        bitCount += numberOfBits;
+    }
+
+    void flush() {
+        final int bytes = bitCount >>> 3;
+        if (currentAddress <= outputLimit) {
+            outputBase.putLong(currentAddress, container);
+        }
+        currentAddress = Math.min(currentAddress + bytes, outputLimit + 1);
+        bitCount &= 7;
+        container >>>= bytes * 8;
+    }
+
+    /**
+     * Writes the end mark and the pending bits.
+     *
+     * @return size of the stream, or 0 if it does not fit
+     */
+    int close() {
+        addBitsFast(1, 1);
+        flush();
+
+        if (currentAddress > outputLimit) {
+            return 0;
+        }
+        return currentAddress - outputAddress + (bitCount > 0 ? 1 : 0);
+    }
+}
@@ -15,6 +15,7 @@ package com.epam.deltix.zstd;
 
 import java.nio.ByteBuffer;
 
+import static com.epam.deltix.zstd.Memory.MEMORY;
 import static com.epam.deltix.zstd.Util.highestBit;
 import static com.epam.deltix.zstd.Util.verify;
 import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_LONG;
@@ -71,18 +72,18 @@ class BitStream {
         return ((bitContainer << bitsConsumed) >>> (64 - numberOfBits));
     }
 
+    /**
+     * Reusable: each {@link #initialize(ByteBuffer, int, int)} starts reading another stream.
+     */
     static class Initializer {
-        private final ByteBuffer inputBase;
-        private final int startAddress;
-        private final int endAddress;
+        private ByteBuffer inputBase;
+        private int startAddress;
+        private int endAddress;
         private long bits;
         private int currentAddress;
         private int bitsConsumed;
 
-        public Initializer(final ByteBuffer inputBase, final int startAddress, final int endAddress) {
-            this.inputBase = inputBase;
-            this.startAddress = startAddress;
-            this.endAddress = endAddress;
+        public Initializer() {
         }
 
         public long getBits() {
@@ -97,7 +98,14 @@ class BitStream {
             return bitsConsumed;
         }
 
-        public void initialize() {
+        public void initialize(final ByteBuffer inputBase, final int startAddress, final int endAddress) {
+            this.inputBase = inputBase;
+            this.startAddress = startAddress;
+            this.endAddress = endAddress;
+            initialize();
+        }
+
+        private void initialize() {
             verify(endAddress - startAddress >= 1, startAddress, "Bitstream is empty");
 
             final int lastByte = inputBase.get(endAddress - 1) & 0xFF;
@@ -108,7 +116,7 @@ class BitStream {
             final int inputSize = (int) (endAddress - startAddress);
             if (inputSize >= SIZE_OF_LONG) {  /* normal case */
                 currentAddress = endAddress - SIZE_OF_LONG;
-                bits = inputBase.getLong(currentAddress);
+                bits = MEMORY.getLong(inputBase, currentAddress);
             } else {
                 currentAddress = startAddress;
                 bits = readTail(inputBase, startAddress, inputSize);
@@ -118,20 +126,27 @@ class BitStream {
         }
     }
 
+    /**
+     * Reusable: {@link #reset} moves it to another stream position.
+     */
     static final class Loader {
-        private final ByteBuffer inputBase;
-        private final int startAddress;
+        private ByteBuffer inputBase;
+        private int startAddress;
         private long bits;
         private int currentAddress;
         private int bitsConsumed;
         private boolean overflow;
 
-        public Loader(final ByteBuffer inputBase, final int startAddress, final int currentAddress, final long bits, final int bitsConsumed) {
+        public Loader() {
+        }
+
+        public void reset(final ByteBuffer inputBase, final int startAddress, final int currentAddress, final long bits, final int bitsConsumed) {
             this.inputBase = inputBase;
             this.startAddress = startAddress;
             this.bits = bits;
             this.currentAddress = currentAddress;
             this.bitsConsumed = bitsConsumed;
+            this.overflow = false;
         }
 
         public long getBits() {
@@ -162,19 +177,19 @@ class BitStream {
             if (currentAddress >= startAddress + SIZE_OF_LONG) {
                 if (bytes > 0) {
                     currentAddress -= bytes;
-                    bits = inputBase.getLong(currentAddress);
+                    bits = MEMORY.getLong(inputBase, currentAddress);
                 }
                 bitsConsumed &= 0b111;
             } else if (currentAddress - bytes < startAddress) {
                 bytes = (int) (currentAddress - startAddress);
                 currentAddress = startAddress;
                 bitsConsumed -= bytes * SIZE_OF_LONG;
-                bits = inputBase.getLong(startAddress);
+                bits = MEMORY.getLong(inputBase, startAddress);
                 return true;
             } else {
                 currentAddress -= bytes;
                 bitsConsumed -= bytes * SIZE_OF_LONG;
-                bits = inputBase.getLong(currentAddress);
+                bits = MEMORY.getLong(inputBase, currentAddress);
             }
 
             return false;
@@ -0,0 +1,63 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.util.Arrays;
+
+/**
+ * Match finder tables of a frame. Positions are stored relative to the start of the frame input,
+ * so position 0 also stands for an empty entry and is never matched.
+ */
+class BlockCompressionState {
+    final int[] hashTable;
+    final int[] chainTable;
+
+    int baseAddress;
+
+    // positions at or below this one are out of the window
+    int windowBaseOffset;
+
+    // the first position not yet added to the hash chains
+    int nextToUpdate;
+
+    BlockCompressionState(final CompressionParameters parameters) {
+        hashTable = new int[1 << parameters.getHashLog()];
+        chainTable = new int[parameters.getStrategy().usesChainTable() ? 1 << parameters.getChainLog() : 0];
+    }
+
+    /**
+     * @return whether the tables are large enough for {@code parameters}
+     */
+    boolean fits(final CompressionParameters parameters) {
+        return hashTable.length >= 1 << parameters.getHashLog() &&
+                (!parameters.getStrategy().usesChainTable() || chainTable.length >= 1 << parameters.getChainLog());
+    }
+
+    void reset(final int baseAddress, final CompressionParameters parameters) {
+        Arrays.fill(hashTable, 0, 1 << parameters.getHashLog(), 0);
+        if (parameters.getStrategy().usesChainTable()) {
+            Arrays.fill(chainTable, 0, 1 << parameters.getChainLog(), 0);
+        }
+        this.baseAddress = baseAddress;
+        windowBaseOffset = 0;
+        nextToUpdate = 0;
+    }
+
+    /**
+     * Moves the window start so that any position before {@code blockLimit} is at most {@code windowSize} away from it.
+     */
+    void enforceMaxDistance(final int blockLimit, final int windowSize) {
+        windowBaseOffset = Math.max(windowBaseOffset, blockLimit - baseAddress - windowSize);
+    }
+}
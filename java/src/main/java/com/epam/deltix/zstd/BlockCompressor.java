@@ -0,0 +1,30 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Match finder of a compression strategy: splits a block into sequences.
+ */
+interface BlockCompressor {
+    /**
+     * Stores the sequences of {@code [inputAddress, inputAddress + inputSize)} in {@code output}, the matches may refer to
+     * the preceding input of the frame down to the window start of {@code state}.
+     *
+     * @return number of trailing literals, which are not followed by a match
+     */
+    int compressBlock(ByteBuffer inputBase, int inputAddress, int inputSize, SequenceStore output,
+                      BlockCompressionState state, RepeatedOffsets offsets, CompressionParameters parameters);
+}
@@ -0,0 +1,64 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the range {@code [address, limit)} of a buffer without changing its position.
+ */
+class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer base;
+    private int address;
+    private final int limit;
+
+    ByteBufferInputStream(final ByteBuffer base, final int address, final int limit) {
+        this.base = base;
+        this.address = address;
+        this.limit = limit;
+    }
+
+    @Override
+    public int read() {
+        return address < limit ? base.get(address++) & 0xFF : -1;
+    }
+
+    @Override
+    public int read(final byte[] buffer, final int offset, final int length) {
+        if (length == 0) {
+            return 0;
+        }
+        if (address == limit) {
+            return -1;
+        }
+
+        final int size = Math.min(length, limit - address);
+        Util.copyMemory(base, address, ZstdFrameDecompressor.ByteBufferWrap(buffer), offset, size);
+        address += size;
+        return size;
+    }
+
+    @Override
+    public long skip(final long length) {
+        final int size = (int) Math.max(0, Math.min(length, limit - address));
+        address += size;
+        return size;
+    }
+
+    @Override
+    public int available() {
+        return limit - address;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fallback {@link Memory}: the absolute accessors of the buffers, which must be little-endian.
+ */
+final class ByteBufferMemory extends Memory {
+    @Override
+    short getShort(final ByteBuffer buffer, final int index) {
+        return buffer.getShort(index);
+    }
+
+    @Override
+    int getInt(final ByteBuffer buffer, final int index) {
+        return buffer.getInt(index);
+    }
+
+    @Override
+    long getLong(final ByteBuffer buffer, final int index) {
+        return buffer.getLong(index);
+    }
+
+    @Override
+    void putShort(final ByteBuffer buffer, final int index, final short value) {
+        buffer.putShort(index, value);
+    }
+
+    @Override
+    void putInt(final ByteBuffer buffer, final int index, final int value) {
+        buffer.putInt(index, value);
+    }
+
+    @Override
+    void putLong(final ByteBuffer buffer, final int index, final long value) {
+        buffer.putLong(index, value);
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+/**
+ * What the decoder does with the content checksums of frames.
+ */
+public enum ChecksumPolicy {
+    /**
+     * Hashes every block right after it is decoded, while it is still in the cache, and fails on a mismatch.
+     */
+    VERIFY,
+
+    /**
+     * Ignores the checksums, for trusted input.
+     */
+    SKIP,
+
+    /**
+     * Records the checksums together with the decoded ranges, so that another thread can verify them later,
+     * see {@link ZstdDecompressor#takeDeferredChecksums}.
+     */
+    DEFERRED
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import static com.epam.deltix.zstd.Util.highestBit;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.MIN_WINDOW_LOG;
+
+/**
+ * Match finder parameters of a compression level, the rows of the reference implementation for large inputs
+ * scaled down to the input size, so that small inputs get small windows and tables.
+ */
+class CompressionParameters {
+    private static final int MIN_HASH_LOG = 6;
+
+    static final int MIN_COMPRESSION_LEVEL = 1;
+    static final int MAX_COMPRESSION_LEVEL = 12;
+
+    // window log, chain log, hash log, search log, min match, target length, strategy;
+    // levels 1 to 12 of the reference table for inputs over 256 KB, as of v1.5
+    private static final CompressionParameters[] LEVELS = {
+            null,
+            new CompressionParameters(19, 13, 14, 1, 7, 0, Strategy.FAST),
+            new CompressionParameters(20, 15, 16, 1, 6, 0, Strategy.FAST),
+            new CompressionParameters(21, 16, 17, 1, 5, 0, Strategy.DFAST),
+            new CompressionParameters(21, 18, 18, 1, 5, 0, Strategy.DFAST),
+            new CompressionParameters(21, 18, 19, 3, 5, 2, Strategy.GREEDY),
+            new CompressionParameters(21, 18, 19, 3, 5, 4, Strategy.LAZY),
+            new CompressionParameters(21, 19, 20, 4, 5, 8, Strategy.LAZY),
+            new CompressionParameters(21, 19, 20, 4, 5, 16, Strategy.LAZY2),
+            new CompressionParameters(22, 20, 21, 4, 5, 16, Strategy.LAZY2),
+            new CompressionParameters(22, 21, 22, 5, 5, 16, Strategy.LAZY2),
+            new CompressionParameters(22, 21, 22, 6, 5, 16, Strategy.LAZY2),
+            new CompressionParameters(22, 22, 23, 6, 5, 32, Strategy.LAZY2)};
+
+    enum Strategy {
+        // the reference heuristics depend on the strategy number: fast is 1, double fast is 2 and so on
+        FAST(new FastBlockCompressor(), 1, false),
+        DFAST(new DoubleFastBlockCompressor(), 2, true),
+        GREEDY(new LazyBlockCompressor(0), 3, true),
+        LAZY(new LazyBlockCompressor(1), 4, true),
+        LAZY2(new LazyBlockCompressor(2), 5, true);
+
+        private final BlockCompressor compressor;
+        private final int id;
+        private final boolean usesChainTable;
+
+        Strategy(final BlockCompressor compressor, final int id, final boolean usesChainTable) {
+            this.compressor = compressor;
+            this.id = id;
+            this.usesChainTable = usesChainTable;
+        }
+
+        BlockCompressor getCompressor() {
+            return compressor;
+        }
+
+        boolean usesChainTable() {
+            return usesChainTable;
+        }
+
+        /**
+         * @return how many sequences per predefined table cell make a table description worth writing, in eighths
+         */
+        int getDefaultTableFactor() {
+            return 10 - id;
+        }
+    }
+
+    private final int windowLog;
+    private final int chainLog;
+    private final int hashLog;
+    private final int searchLog;
+    private final int searchLength;
+    private final int targetLength;
+    private final Strategy strategy;
+
+    private CompressionParameters(final int windowLog, final int chainLog, final int hashLog, final int searchLog,
+                                  final int searchLength, final int targetLength, final Strategy strategy) {
+        this.windowLog = windowLog;
+        this.chainLog = chainLog;
+        this.hashLog = hashLog;
+        this.searchLog = searchLog;
+        this.searchLength = searchLength;
+        this.targetLength = targetLength;
+        this.strategy = strategy;
+    }
+
+    /**
+     * @param inputSize size of the input, or -1 if unknown
+     */
+    static CompressionParameters compute(final int compressionLevel, final long inputSize) {
+        final CompressionParameters level = LEVELS[compressionLevel];
+
+        int windowLog = level.windowLog;
+        if (inputSize >= 0 && inputSize < 1L << windowLog) {
+            final int inputSizeLog = inputSize < 1 << MIN_HASH_LOG ? MIN_HASH_LOG : highestBit((int) inputSize - 1) + 1;
+            windowLog = Math.max(inputSizeLog, MIN_WINDOW_LOG);
+        }
+
+        final int hashLog = Math.min(level.hashLog, windowLog + 1);
+        final int chainLog = Math.min(level.chainLog, windowLog);
+
+        return new CompressionParameters(windowLog, chainLog, hashLog, level.searchLog, level.searchLength, level.targetLength, level.strategy);
+    }
+
+    int getWindowLog() {
+        return windowLog;
+    }
+
+    int getChainLog() {
+        return chainLog;
+    }
+
+    int getHashLog() {
+        return hashLog;
+    }
+
+    int getSearchLog() {
+        return searchLog;
+    }
+
+    int getSearchLength() {
+        return searchLength;
+    }
+
+    int getTargetLength() {
+        return targetLength;
+    }
+
+    Strategy getStrategy() {
+        return strategy;
+    }
+}
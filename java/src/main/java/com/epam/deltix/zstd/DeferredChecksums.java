@@ -0,0 +1,69 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Content checksums of frames decoded with {@link ChecksumPolicy#DEFERRED}, together with the decoded ranges.
+ * The decoded data must stay unchanged until {@link #verify} returns. May be verified by any thread.
+ */
+public final class DeferredChecksums {
+    private ByteBuffer[] outputBases = new ByteBuffer[4];
+    private int[] outputAddresses = new int[4];
+    private int[] outputSizes = new int[4];
+    private int[] checksums = new int[4];
+    private int frameCount;
+
+    DeferredChecksums() {
+    }
+
+    void add(final ByteBuffer outputBase, final int outputAddress, final int outputSize, final int checksum) {
+        if (frameCount == checksums.length) {
+            final int capacity = frameCount * 2;
+            outputBases = Arrays.copyOf(outputBases, capacity);
+            outputAddresses = Arrays.copyOf(outputAddresses, capacity);
+            outputSizes = Arrays.copyOf(outputSizes, capacity);
+            checksums = Arrays.copyOf(checksums, capacity);
+        }
+        outputBases[frameCount] = outputBase;
+        outputAddresses[frameCount] = outputAddress;
+        outputSizes[frameCount] = outputSize;
+        checksums[frameCount] = checksum;
+        frameCount++;
+    }
+
+    /**
+     * @return number of frames with a checksum
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Hashes the decoded data of every frame.
+     *
+     * @throws RuntimeException if a checksum does not match, {@code offset} in the message is the start of the frame content
+     */
+    public void verify() {
+        for (int i = 0; i < frameCount; i++) {
+            final int actual = (int) XxHash64.hash(0, outputBases[i], outputAddresses[i], outputSizes[i]);
+            if (actual != checksums[i]) {
+                throw new RuntimeException(String.format("Bad checksum. Expected: %s, actual: %s: offset=%d",
+                        Integer.toHexString(checksums[i]), Integer.toHexString(actual), outputAddresses[i]));
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.nio.ByteBuffer;
+
+import static com.epam.deltix.zstd.MatchFinder.SEARCH_STRENGTH;
+import static com.epam.deltix.zstd.MatchFinder.count;
+import static com.epam.deltix.zstd.MatchFinder.hash;
+import static com.epam.deltix.zstd.MatchFinder.hashLength;
+import static com.epam.deltix.zstd.SequenceStore.REPEAT_OFFSET_1;
+import static com.epam.deltix.zstd.SequenceStore.REPEAT_OFFSET_BIAS;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_INT;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_LONG;
+
+/**
+ * The "double fast" strategy: the hash table indexes 8-byte prefixes and the chain table indexes short prefixes,
+ * a long match is preferred, a short one is extended by a long match at the next position if there is one.
+ */
+class DoubleFastBlockCompressor implements BlockCompressor {
+    private static final int LONG_HASH_LENGTH = 8;
+
+    @Override
+    public int compressBlock(final ByteBuffer inputBase, final int inputAddress, final int inputSize, final SequenceStore output,
+                             final BlockCompressionState state, final RepeatedOffsets offsets, final CompressionParameters parameters) {
+        final int hashLength = hashLength(parameters.getSearchLength());
+        final int longHashLog = parameters.getHashLog();
+        final int shortHashLog = parameters.getChainLog();
+        final int[] longHashTable = state.hashTable;
+        final int[] shortHashTable = state.chainTable;
+
+        final int baseAddress = state.baseAddress;
+        final int lowestIndex = state.windowBaseOffset;
+        final int prefixStart = baseAddress + lowestIndex;
+
+        final int inputEnd = inputAddress + inputSize;
+        // hashing reads a long
+        final int inputLimit = inputEnd - SIZE_OF_LONG;
+
+        int input = inputAddress;
+        int anchor = input;
+
+        int offset1 = offsets.getOffset0();
+        int offset2 = offsets.getOffset1();
+
+        // the first byte of the window has no history to match
+        if (input == prefixStart) {
+            input++;
+        }
+
+        while (input < inputLimit) {
+            int matchLength;
+            int offset;
+
+            final int longHash = hash(inputBase, input, longHashLog, LONG_HASH_LENGTH);
+            final int shortHash = hash(inputBase, input, shortHashLog, hashLength);
+            final int current = input - baseAddress;
+            final int longMatchIndex = longHashTable[longHash];
+            final int shortMatchIndex = shortHashTable[shortHash];
+            longHashTable[longHash] = current;
+            shortHashTable[shortHash] = current;
+
+            if (input + 1 - offset1 >= prefixStart && inputBase.getInt(input + 1 - offset1) == inputBase.getInt(input + 1)) {
+                // repeated offset after one literal
+                matchLength = count(inputBase, input + 1 + SIZE_OF_INT, inputEnd, input + 1 + SIZE_OF_INT - offset1) + SIZE_OF_INT;
+                input++;
+                output.storeSequence(inputBase, anchor, input - anchor, REPEAT_OFFSET_1, matchLength);
+            } else {
+                int matchAddress;
+                if (longMatchIndex > lowestIndex && inputBase.getLong(baseAddress + longMatchIndex) == inputBase.getLong(input)) {
+                    matchAddress = baseAddress + longMatchIndex;
+                    matchLength = count(inputBase, input + SIZE_OF_LONG, inputEnd, matchAddress + SIZE_OF_LONG) + SIZE_OF_LONG;
+                } else if (shortMatchIndex > lowestIndex && inputBase.getInt(baseAddress + shortMatchIndex) == inputBase.getInt(input)) {
+                    // a long match at the next position beats the short one
+                    final int nextLongHash = hash(inputBase, input + 1, longHashLog, LONG_HASH_LENGTH);
+                    final int nextLongMatchIndex = longHashTable[nextLongHash];
+                    longHashTable[nextLongHash] = current + 1;
+
+                    if (nextLongMatchIndex > lowestIndex && inputBase.getLong(baseAddress + nextLongMatchIndex) == inputBase.getLong(input + 1)) {
+                        input++;
+                        matchAddress = baseAddress + nextLongMatchIndex;
+                        matchLength = count(inputBase, input + SIZE_OF_LONG, inputEnd, matchAddress + SIZE_OF_LONG) + SIZE_OF_LONG;
+                    } else {
+                        matchAddress = baseAddress + shortMatchIndex;
+                        matchLength = count(inputBase, input + SIZE_OF_INT, inputEnd, matchAddress + SIZE_OF_INT) + SIZE_OF_INT;
+                    }
+                } else {
+                    input += ((input - anchor) >> SEARCH_STRENGTH) + 1;
+                    continue;
+                }
+
+                offset = input - matchAddress;
+
+                // extend the match backwards over the pending literals
+                while (input > anchor && matchAddress > prefixStart && inputBase.get(input - 1) == inputBase.get(matchAddress - 1)) {
+                    input--;
+                    matchAddress--;
+                    matchLength++;
+                }
+
+                offset2 = offset1;
+                offset1 = offset;
+
+                output.storeSequence(inputBase, anchor, input - anchor, offset + REPEAT_OFFSET_BIAS, matchLength);
+            }
+
+            input += matchLength;
+            anchor = input;
+
+            if (input <= inputLimit) {
+                // fill the tables with positions inside the match
+                final int index = current + 2;
+                longHashTable[hash(inputBase, baseAddress + index, longHashLog, LONG_HASH_LENGTH)] = index;
+                longHashTable[hash(inputBase, input - 2, longHashLog, LONG_HASH_LENGTH)] = input - 2 - baseAddress;
+                shortHashTable[hash(inputBase, baseAddress + index, shortHashLog, hashLength)] = index;
+                shortHashTable[hash(inputBase, input - 1, shortHashLog, hashLength)] = input - 1 - baseAddress;
+
+                // the second repeated offset right after the match, which swaps the two
+                while (input <= inputLimit && input - offset2 >= prefixStart && inputBase.getInt(input) == inputBase.getInt(input - offset2)) {
+                    final int repeatLength = count(inputBase, input + SIZE_OF_INT, inputEnd, input + SIZE_OF_INT - offset2) + SIZE_OF_INT;
+
+                    final int temp = offset2;
+                    offset2 = offset1;
+                    offset1 = temp;
+
+                    shortHashTable[hash(inputBase, input, shortHashLog, hashLength)] = input - baseAddress;
+                    longHashTable[hash(inputBase, input, longHashLog, LONG_HASH_LENGTH)] = input - baseAddress;
+                    output.storeSequence(inputBase, anchor, 0, REPEAT_OFFSET_1, repeatLength);
+
+                    input += repeatLength;
+                    anchor = input;
+                }
+            }
+        }
+
+        offsets.saveOffsets(offset1, offset2);
+
+        return inputEnd - anchor;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.nio.ByteBuffer;
+
+import static com.epam.deltix.zstd.MatchFinder.SEARCH_STRENGTH;
+import static com.epam.deltix.zstd.MatchFinder.count;
+import static com.epam.deltix.zstd.MatchFinder.hash;
+import static com.epam.deltix.zstd.MatchFinder.hashLength;
+import static com.epam.deltix.zstd.SequenceStore.REPEAT_OFFSET_1;
+import static com.epam.deltix.zstd.SequenceStore.REPEAT_OFFSET_BIAS;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_INT;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_LONG;
+
+/**
+ * The "fast" strategy: a single hash table of the last position of each hashed prefix, one candidate per position.
+ */
+class FastBlockCompressor implements BlockCompressor {
+    @Override
+    public int compressBlock(final ByteBuffer inputBase, final int inputAddress, final int inputSize, final SequenceStore output,
+                             final BlockCompressionState state, final RepeatedOffsets offsets, final CompressionParameters parameters) {
+        final int hashLength = hashLength(parameters.getSearchLength());
+        final int hashLog = parameters.getHashLog();
+        final int[] hashTable = state.hashTable;
+
+        final int baseAddress = state.baseAddress;
+        final int lowestIndex = state.windowBaseOffset;
+        final int prefixStart = baseAddress + lowestIndex;
+
+        final int inputEnd = inputAddress + inputSize;
+        // hashing reads a long
+        final int inputLimit = inputEnd - SIZE_OF_LONG;
+
+        int input = inputAddress;
+        int anchor = input;
+
+        int offset1 = offsets.getOffset0();
+        int offset2 = offsets.getOffset1();
+
+        // the first byte of the window has no history to match
+        if (input == prefixStart) {
+            input++;
+        }
+
+        while (input < inputLimit) {
+            int matchLength;
+
+            final int hash = hash(inputBase, input, hashLog, hashLength);
+            final int current = input - baseAddress;
+            final int matchIndex = hashTable[hash];
+            int matchAddress = baseAddress + matchIndex;
+            hashTable[hash] = current;
+
+            if (input + 1 - offset1 >= prefixStart && inputBase.getInt(input + 1 - offset1) == inputBase.getInt(input + 1)) {
+                // repeated offset after one literal
+                matchLength = count(inputBase, input + 1 + SIZE_OF_INT, inputEnd, input + 1 + SIZE_OF_INT - offset1) + SIZE_OF_INT;
+                input++;
+                output.storeSequence(inputBase, anchor, input - anchor, REPEAT_OFFSET_1, matchLength);
+            } else {
+                if (matchIndex <= lowestIndex || inputBase.getInt(matchAddress) != inputBase.getInt(input)) {
+                    input += ((input - anchor) >> SEARCH_STRENGTH) + 1;
+                    continue;
+                }
+
+                matchLength = count(inputBase, input + SIZE_OF_INT, inputEnd, matchAddress + SIZE_OF_INT) + SIZE_OF_INT;
+                final int offset = input - matchAddress;
+
+                // extend the match backwards over the pending literals
+                while (input > anchor && matchAddress > prefixStart && inputBase.get(input - 1) == inputBase.get(matchAddress - 1)) {
+                    input--;
+                    matchAddress--;
+                    matchLength++;
+                }
+
+                offset2 = offset1;
+                offset1 = offset;
+
+                output.storeSequence(inputBase, anchor, input - anchor, offset + REPEAT_OFFSET_BIAS, matchLength);
+            }
+
+            input += matchLength;
+            anchor = input;
+
+            if (input <= inputLimit) {
+                // fill the table with positions inside the match
+                hashTable[hash(inputBase, baseAddress + current + 2, hashLog, hashLength)] = current + 2;
+                hashTable[hash(inputBase, input - 2, hashLog, hashLength)] = input - 2 - baseAddress;
+
+                // the second repeated offset right after the match, which swaps the two
+                while (input <= inputLimit && input - offset2 >= prefixStart && inputBase.getInt(input) == inputBase.getInt(input - offset2)) {
+                    final int repeatLength = count(inputBase, input + SIZE_OF_INT, inputEnd, input + SIZE_OF_INT - offset2) + SIZE_OF_INT;
+
+                    final int temp = offset2;
+                    offset2 = offset1;
+                    offset1 = temp;
+
+                    hashTable[hash(inputBase, input, hashLog, hashLength)] = input - baseAddress;
+                    output.storeSequence(inputBase, anchor, 0, REPEAT_OFFSET_1, repeatLength);
+
+                    input += repeatLength;
+                    anchor = input;
+                }
+            }
+        }
+
+        offsets.saveOffsets(offset1, offset2);
+
+        return inputEnd - anchor;
+    }
+}
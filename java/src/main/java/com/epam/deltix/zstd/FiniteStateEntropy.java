@@ -17,33 +17,48 @@ import java.nio.ByteBuffer;
 
 import static com.epam.deltix.zstd.BitStream.peekBits;
 import static com.epam.deltix.zstd.FseTableReader.FSE_MAX_SYMBOL_VALUE;
+import static com.epam.deltix.zstd.FseTableReader.FSE_MIN_TABLE_LOG;
+import static com.epam.deltix.zstd.Util.highestBit;
 import static com.epam.deltix.zstd.Util.verify;
-import static com.epam.deltix.zstd.ZstdFrameDecompressor.ByteBufferWrap;
 import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_INT;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_SHORT;
 
 class FiniteStateEntropy {
     private static final int MAX_TABLE_LOG = 12;
 
+    private static final int UNASSIGNED = -2;
+    private static final int[] REST_TO_BEAT = {0, 473195, 504333, 520860, 550000, 700000, 750000, 830000};
+
     private final FiniteStateEntropy.Table table;
     private final FseTableReader reader = new FseTableReader();
+    private final BitStream.Initializer initializer = new BitStream.Initializer();
+    private final BitStream.Loader loader = new BitStream.Loader();
 
     public FiniteStateEntropy(final int maxLog) {
         table = new FiniteStateEntropy.Table(maxLog);
     }
 
-    public int decompress(final ByteBuffer inputBase, final int inputAddress, final int inputLimit, final byte[] weights) {
+    /**
+     * @return approximate number of bytes taken by the tables of an instance created with {@code maxLog}
+     */
+    static int memorySize(final int maxLog) {
+        return Table.memorySize(maxLog) + FseTableReader.MEMORY_SIZE;
+    }
+
+    /**
+     * @param outputBase little-endian buffer for the decoded symbols, filled from index 0 up to its capacity at most
+     */
+    public int decompress(final ByteBuffer inputBase, final int inputAddress, final int inputLimit, final ByteBuffer outputBase) {
         int input = inputAddress;
         input += reader.readFseTable(table, inputBase, input, inputLimit, FSE_MAX_SYMBOL_VALUE, MAX_TABLE_LOG);
 
-        final ByteBuffer outputBase = ByteBufferWrap(weights);
         final int outputAddress = 0;
-        final long outputLimit = outputAddress + weights.length;
+        final long outputLimit = outputAddress + outputBase.capacity();
 
         int output = outputAddress;
 
         // initialize bit stream
-        final BitStream.Initializer initializer = new BitStream.Initializer(inputBase, input, inputLimit);
-        initializer.initialize();
+        initializer.initialize(inputBase, input, inputLimit);
         int bitsConsumed = initializer.getBitsConsumed();
         int currentAddress = initializer.getCurrentAddress();
         long bits = initializer.getBits();
@@ -52,7 +67,7 @@ class FiniteStateEntropy {
         int state1 = (int) peekBits(bitsConsumed, bits, table.log2Size);
         bitsConsumed += table.log2Size;
 
-        BitStream.Loader loader = new BitStream.Loader(inputBase, input, currentAddress, bits, bitsConsumed);
+        loader.reset(inputBase, input, currentAddress, bits, bitsConsumed);
         loader.load();
         bits = loader.getBits();
         bitsConsumed = loader.getBitsConsumed();
@@ -62,7 +77,7 @@ class FiniteStateEntropy {
         int state2 = (int) peekBits(bitsConsumed, bits, table.log2Size);
         bitsConsumed += table.log2Size;
 
-        loader = new BitStream.Loader(inputBase, input, currentAddress, bits, bitsConsumed);
+        loader.reset(inputBase, input, currentAddress, bits, bitsConsumed);
         loader.load();
         bits = loader.getBits();
         bitsConsumed = loader.getBitsConsumed();
@@ -98,7 +113,7 @@ class FiniteStateEntropy {
 
             output += SIZE_OF_INT;
 
-            loader = new BitStream.Loader(inputBase, input, currentAddress, bits, bitsConsumed);
+            loader.reset(inputBase, input, currentAddress, bits, bitsConsumed);
             final boolean done = loader.load();
             bitsConsumed = loader.getBitsConsumed();
             bits = loader.getBits();
@@ -115,7 +130,7 @@ class FiniteStateEntropy {
             state1 = (int) (newStates[state1] + peekBits(bitsConsumed, bits, numberOfBits));
             bitsConsumed += numberOfBits;
 
-            loader = new BitStream.Loader(inputBase, input, currentAddress, bits, bitsConsumed);
+            loader.reset(inputBase, input, currentAddress, bits, bitsConsumed);
             loader.load();
             bitsConsumed = loader.getBitsConsumed();
             bits = loader.getBits();
@@ -132,7 +147,7 @@ class FiniteStateEntropy {
             state2 = (int) (newStates[state2] + peekBits(bitsConsumed, bits, numberOfBits1));
             bitsConsumed += numberOfBits1;
 
-            loader = new BitStream.Loader(inputBase, input, currentAddress, bits, bitsConsumed);
+            loader.reset(inputBase, input, currentAddress, bits, bitsConsumed);
             loader.load();
             bitsConsumed = loader.getBitsConsumed();
             bits = loader.getBits();
@@ -147,6 +162,278 @@ class FiniteStateEntropy {
         return (int) (output - outputAddress);
     }
 
+    /**
+     * Encodes {@code input} with two interleaved states, the way {@link #decompress} reads them.
+     *
+     * @return size of the bit stream, or 0 if it does not fit
+     */
+    static int compress(final ByteBuffer outputBase, final int outputAddress, final int outputSize,
+                        final byte[] input, final int inputSize, final FseCompressionTable table) {
+        if (inputSize <= 2) {
+            return 0;
+        }
+
+        final BitOutputStream stream = new BitOutputStream(outputBase, outputAddress, outputSize);
+
+        int index = inputSize;
+        int state1;
+        int state2;
+        if ((inputSize & 1) != 0) {
+            state1 = table.begin(input[--index]);
+            state2 = table.begin(input[--index]);
+            state1 = table.encode(stream, state1, input[--index]);
+            stream.flush();
+        } else {
+            state2 = table.begin(input[--index]);
+            state1 = table.begin(input[--index]);
+        }
+
+        // join to mod 4
+        if (((inputSize - 2) & 2) != 0) {
+            state2 = table.encode(stream, state2, input[--index]);
+            state1 = table.encode(stream, state1, input[--index]);
+            stream.flush();
+        }
+
+        // 4 symbols of at most 12 bits per flush
+        while (index > 0) {
+            state2 = table.encode(stream, state2, input[--index]);
+            state1 = table.encode(stream, state1, input[--index]);
+            state2 = table.encode(stream, state2, input[--index]);
+            state1 = table.encode(stream, state1, input[--index]);
+            stream.flush();
+        }
+
+        table.finish(stream, state2);
+        table.finish(stream, state1);
+
+        return stream.close();
+    }
+
+    /**
+     * @return table log that is accurate enough for {@code inputSize} symbols, but still represents all of them
+     */
+    static int optimalTableLog(final int maxTableLog, final int inputSize, final int maxSymbol) {
+        int tableLog = Math.min(maxTableLog, highestBit(inputSize - 1) - 2);
+        tableLog = Math.max(tableLog, minTableLog(inputSize, maxSymbol));
+        tableLog = Math.max(tableLog, FSE_MIN_TABLE_LOG);
+        return Math.min(tableLog, MAX_TABLE_LOG);
+    }
+
+    private static int minTableLog(final int inputSize, final int maxSymbol) {
+        final int minBitsSource = highestBit(inputSize - 1) + 1;
+        final int minBitsSymbols = highestBit(maxSymbol) + 2;
+        return Math.min(minBitsSource, minBitsSymbols);
+    }
+
+    /**
+     * Scales {@code counts} to the sum of {@code 1 << tableLog}. Symbols that are too rare get the "less than 1" count of -1.
+     * At least two symbols must be present.
+     */
+    static void normalizeCounts(final short[] normalizedCounts, final int tableLog, final int[] counts, final int total, final int maxSymbol) {
+        final int scale = 62 - tableLog;
+        final long step = (1L << 62) / total;
+        final long vStep = 1L << (scale - 20);
+        final int lowThreshold = total >>> tableLog;
+
+        int stillToDistribute = 1 << tableLog;
+        int largest = 0;
+        short largestProbability = 0;
+        for (int symbol = 0; symbol <= maxSymbol; symbol++) {
+            if (counts[symbol] == 0) {
+                normalizedCounts[symbol] = 0;
+            } else if (counts[symbol] <= lowThreshold) {
+                normalizedCounts[symbol] = -1;
+                stillToDistribute--;
+            } else {
+                short probability = (short) ((counts[symbol] * step) >>> scale);
+                if (probability < 8) {
+                    final long restToBeat = vStep * REST_TO_BEAT[probability];
+                    final long delta = counts[symbol] * step - (((long) probability) << scale);
+                    if (delta > restToBeat) {
+                        probability++;
+                    }
+                }
+                if (probability > largestProbability) {
+                    largestProbability = probability;
+                    largest = symbol;
+                }
+                normalizedCounts[symbol] = probability;
+                stillToDistribute -= probability;
+            }
+        }
+
+        if (-stillToDistribute >= (normalizedCounts[largest] >>> 1)) {
+            // the largest symbol cannot absorb the rounding errors
+            normalizeCountsSlow(normalizedCounts, tableLog, counts, total, maxSymbol);
+        } else {
+            normalizedCounts[largest] += (short) stillToDistribute;
+        }
+    }
+
+    private static void normalizeCountsSlow(final short[] normalizedCounts, final int tableLog, final int[] counts, int total, final int maxSymbol) {
+        int distributed = 0;
+
+        final int lowThreshold = total >>> tableLog;
+        int lowOne = (total * 3) >>> (tableLog + 1);
+
+        for (int symbol = 0; symbol <= maxSymbol; symbol++) {
+            if (counts[symbol] == 0) {
+                normalizedCounts[symbol] = 0;
+            } else if (counts[symbol] <= lowThreshold) {
+                normalizedCounts[symbol] = -1;
+                distributed++;
+                total -= counts[symbol];
+            } else if (counts[symbol] <= lowOne) {
+                normalizedCounts[symbol] = 1;
+                distributed++;
+                total -= counts[symbol];
+            } else {
+                normalizedCounts[symbol] = UNASSIGNED;
+            }
+        }
+
+        final int normalizationFactor = 1 << tableLog;
+        int toDistribute = normalizationFactor - distributed;
+
+        if ((total / toDistribute) > lowOne) {
+            // risk of rounding to zero
+            lowOne = (total * 3) / (toDistribute * 2);
+            for (int symbol = 0; symbol <= maxSymbol; symbol++) {
+                if (normalizedCounts[symbol] == UNASSIGNED && counts[symbol] <= lowOne) {
+                    normalizedCounts[symbol] = 1;
+                    distributed++;
+                    total -= counts[symbol];
+                }
+            }
+            toDistribute = normalizationFactor - distributed;
+        }
+
+        if (distributed == maxSymbol + 1) {
+            // all symbols are rare, give the rest to the most frequent one
+            int maxSymbolIndex = 0;
+            int maxCount = 0;
+            for (int symbol = 0; symbol <= maxSymbol; symbol++) {
+                if (counts[symbol] > maxCount) {
+                    maxSymbolIndex = symbol;
+                    maxCount = counts[symbol];
+                }
+            }
+            normalizedCounts[maxSymbolIndex] += (short) toDistribute;
+            return;
+        }
+
+        if (total == 0) {
+            // all symbols got a count of 1 or less, spread the rest over them
+            for (int symbol = 0; toDistribute > 0; symbol = (symbol + 1) % (maxSymbol + 1)) {
+                if (normalizedCounts[symbol] > 0) {
+                    toDistribute--;
+                    normalizedCounts[symbol]++;
+                }
+            }
+            return;
+        }
+
+        final int vStepLog = 62 - tableLog;
+        final long mid = (1L << (vStepLog - 1)) - 1;
+        final long rStep = (((1L << vStepLog) * toDistribute) + mid) / total;
+        long tmpTotal = mid;
+        for (int symbol = 0; symbol <= maxSymbol; symbol++) {
+            if (normalizedCounts[symbol] == UNASSIGNED) {
+                final long end = tmpTotal + counts[symbol] * rStep;
+                final int start = (int) (tmpTotal >>> vStepLog);
+                normalizedCounts[symbol] = (short) ((int) (end >>> vStepLog) - start);
+                tmpTotal = end;
+            }
+        }
+    }
+
+    /**
+     * Writes the table description read by {@link FseTableReader#readFseTable}.
+     *
+     * @return size of the description
+     */
+    static int writeNormalizedCounts(final ByteBuffer outputBase, final int outputAddress, final short[] normalizedCounts, final int maxSymbol, final int tableLog) {
+        int output = outputAddress;
+
+        final int tableSize = 1 << tableLog;
+
+        int bitStream = tableLog - FSE_MIN_TABLE_LOG;
+        int bitCount = 4;
+
+        int remaining = tableSize + 1; // +1 for extra accuracy
+        int threshold = tableSize;
+        int tableBitCount = tableLog + 1;
+
+        int symbol = 0;
+        boolean previousIsZero = false;
+        while (remaining > 1) {
+            if (previousIsZero) {
+                // a zero count is followed by 2-bit repeat flags of further zeros: 3 means 3 zeros and another flag
+                int start = symbol;
+                while (normalizedCounts[symbol] == 0) {
+                    symbol++;
+                }
+
+                // 8 flags of 3 at once
+                while (symbol >= start + 24) {
+                    start += 24;
+                    bitStream |= 0xFFFF << bitCount;
+                    outputBase.putShort(output, (short) bitStream);
+                    output += SIZE_OF_SHORT;
+                    bitStream >>>= Short.SIZE;
+                }
+
+                while (symbol >= start + 3) {
+                    start += 3;
+                    bitStream |= 0b11 << bitCount;
+                    bitCount += 2;
+                }
+
+                bitStream |= (symbol - start) << bitCount;
+                bitCount += 2;
+
+                if (bitCount > 16) {
+                    outputBase.putShort(output, (short) bitStream);
+                    output += SIZE_OF_SHORT;
+                    bitStream >>>= Short.SIZE;
+                    bitCount -= Short.SIZE;
+                }
+            }
+
+            int count = normalizedCounts[symbol++];
+            final int max = (2 * threshold - 1) - remaining;
+            remaining -= Math.abs(count);
+            count++; // +1 for extra accuracy
+            if (count >= threshold) {
+                count += max;
+            }
+            bitStream |= count << bitCount;
+            bitCount += tableBitCount;
+            if (count < max) {
+                bitCount--;
+            }
+            previousIsZero = count == 1;
+
+            while (remaining < threshold) {
+                tableBitCount--;
+                threshold >>>= 1;
+            }
+
+            if (bitCount > 16) {
+                outputBase.putShort(output, (short) bitStream);
+                output += SIZE_OF_SHORT;
+                bitStream >>>= Short.SIZE;
+                bitCount -= Short.SIZE;
+            }
+        }
+
+        outputBase.putShort(output, (short) bitStream);
+        output += (bitCount + 7) / 8;
+
+        return output - outputAddress;
+    }
+
     public static final class Table {
         int log2Size;
         final int[] newState;
@@ -171,5 +458,20 @@ class FiniteStateEntropy {
             this.symbol = symbol;
             this.numberOfBits = numberOfBits;
         }
+
+        boolean fits(final int log2Size) {
+            return symbol.length >= 1 << log2Size;
+        }
+
+        int memorySize() {
+            return symbol.length * (SIZE_OF_INT + 2);
+        }
+
+        /**
+         * @return approximate number of bytes taken by the arrays of a table created with {@code log2Size}
+         */
+        static int memorySize(final int log2Size) {
+            return (1 << log2Size) * (SIZE_OF_INT + 2);
+        }
     }
 }
@@ -14,17 +14,25 @@
 package com.epam.deltix.zstd;
 
 class FrameHeader {
-    final long headerSize;
-    final int windowSize;
-    final long contentSize;
-    final long dictionaryId;
-    final boolean hasChecksum;
+    long headerSize;
+    long windowSize;
+    long contentSize;
+    long dictionaryId;
+    boolean hasChecksum;
 
-    public FrameHeader(final long headerSize, final int windowSize, final long contentSize, final long dictionaryId, final boolean hasChecksum) {
+    public FrameHeader() {
+    }
+
+    public FrameHeader(final long headerSize, final long windowSize, final long contentSize, final long dictionaryId, final boolean hasChecksum) {
+        set(headerSize, windowSize, contentSize, dictionaryId, hasChecksum);
+    }
+
+    FrameHeader set(final long headerSize, final long windowSize, final long contentSize, final long dictionaryId, final boolean hasChecksum) {
         this.headerSize = headerSize;
         this.windowSize = windowSize;
         this.contentSize = contentSize;
         this.dictionaryId = dictionaryId;
         this.hasChecksum = hasChecksum;
+        return this;
     }
 }
@@ -0,0 +1,126 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import static com.epam.deltix.zstd.Util.highestBit;
+
+/**
+ * FSE encoding table: the mirror of {@link FiniteStateEntropy.Table}, built from the same normalized counts
+ * with the same symbol spread, so that the decoder walks the states back in reverse order.
+ */
+class FseCompressionTable {
+    private final short[] nextState;
+    private final int[] deltaNumberOfBits;
+    private final int[] deltaFindState;
+
+    // workspace
+    private final byte[] spread;
+    private final int[] cumulative;
+
+    private int log2Size;
+
+    FseCompressionTable(final int maxTableLog, final int maxSymbol) {
+        nextState = new short[1 << maxTableLog];
+        deltaNumberOfBits = new int[maxSymbol + 1];
+        deltaFindState = new int[maxSymbol + 1];
+        spread = new byte[1 << maxTableLog];
+        cumulative = new int[maxSymbol + 2];
+    }
+
+    void initialize(final short[] normalizedCounts, final int maxSymbol, final int tableLog) {
+        final int tableSize = 1 << tableLog;
+        int highThreshold = tableSize - 1;
+
+        // low probability symbols go to the end of the table
+        cumulative[0] = 0;
+        for (int symbol = 0; symbol <= maxSymbol; symbol++) {
+            if (normalizedCounts[symbol] == -1) {
+                cumulative[symbol + 1] = cumulative[symbol] + 1;
+                spread[highThreshold--] = (byte) symbol;
+            } else {
+                cumulative[symbol + 1] = cumulative[symbol] + normalizedCounts[symbol];
+            }
+        }
+
+        // spread symbols as FseTableReader does
+        final int tableMask = tableSize - 1;
+        final int step = (tableSize >>> 1) + (tableSize >>> 3) + 3;
+        int position = 0;
+        for (int symbol = 0; symbol <= maxSymbol; symbol++) {
+            for (int i = 0; i < normalizedCounts[symbol]; i++) {
+                spread[position] = (byte) symbol;
+                do {
+                    position = (position + step) & tableMask;
+                }
+                while (position > highThreshold);
+            }
+        }
+
+        for (int i = 0; i < tableSize; i++) {
+            final int symbol = spread[i] & 0xFF;
+            nextState[cumulative[symbol]++] = (short) (tableSize + i);
+        }
+
+        int total = 0;
+        for (int symbol = 0; symbol <= maxSymbol; symbol++) {
+            final int count = normalizedCounts[symbol];
+            if (count == 0) {
+                deltaNumberOfBits[symbol] = ((tableLog + 1) << 16) - tableSize;
+            } else if (count == -1 || count == 1) {
+                deltaNumberOfBits[symbol] = (tableLog << 16) - tableSize;
+                deltaFindState[symbol] = total - 1;
+                total++;
+            } else {
+                final int maxBitsOut = tableLog - highestBit(count - 1);
+                final int minStatePlus = count << maxBitsOut;
+                deltaNumberOfBits[symbol] = (maxBitsOut << 16) - minStatePlus;
+                deltaFindState[symbol] = total - count;
+                total += count;
+            }
+        }
+
+        log2Size = tableLog;
+    }
+
+    /**
+     * Table of one symbol which takes no bits, for the RLE mode.
+     */
+    void initializeRle(final int symbol) {
+        log2Size = 0;
+        nextState[0] = 0;
+        nextState[1] = 0;
+        deltaFindState[symbol] = 0;
+        deltaNumberOfBits[symbol] = 0;
+    }
+
+    /**
+     * @return initial state for the last symbol of the stream, which the decoder reads first
+     */
+    int begin(final int symbol) {
+        final int outputBits = (deltaNumberOfBits[symbol] + (1 << 15)) >>> 16;
+        final int base = ((outputBits << 16) - deltaNumberOfBits[symbol]) >>> outputBits;
+        return nextState[base + deltaFindState[symbol]];
+    }
+
+    int encode(final BitOutputStream stream, final int state, final int symbol) {
+        final int outputBits = (state + deltaNumberOfBits[symbol]) >>> 16;
+        stream.addBits(state, outputBits);
+        return nextState[(state >>> outputBits) + deltaFindState[symbol]];
+    }
+
+    void finish(final BitOutputStream stream, final int state) {
+        stream.addBits(state, log2Size);
+        stream.flush();
+    }
+}
@@ -17,14 +17,17 @@ import java.nio.ByteBuffer;
 
 import static com.epam.deltix.zstd.Util.highestBit;
 import static com.epam.deltix.zstd.Util.verify;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_SHORT;
 
 class FseTableReader {
-    private static final int FSE_MIN_TABLE_LOG = 5;
+    static final int FSE_MIN_TABLE_LOG = 5;
 
     public static final int FSE_MAX_SYMBOL_VALUE = 255;
     private final short[] nextSymbol = new short[FSE_MAX_SYMBOL_VALUE + 1];
     private final short[] normalizedCounters = new short[FSE_MAX_SYMBOL_VALUE + 1];
 
+    static final int MEMORY_SIZE = 2 * (FSE_MAX_SYMBOL_VALUE + 1) * SIZE_OF_SHORT;
+
     public int readFseTable(final FiniteStateEntropy.Table table, final ByteBuffer inputBase, final int inputAddress, final int inputLimit, int maxSymbol, final int maxTableLog) {
         // read table headers
         int input = inputAddress;
@@ -166,6 +169,16 @@ class FseTableReader {
         return (int) (input - inputAddress);
     }
 
+    /**
+     * @return log of the table described at {@code inputAddress}, which {@link #readFseTable} verifies, at most {@code maxTableLog}
+     */
+    static int peekTableLog(final ByteBuffer inputBase, final int inputAddress, final int inputLimit, final int maxTableLog) {
+        if (inputAddress >= inputLimit) {
+            return maxTableLog;
+        }
+        return Math.min((inputBase.get(inputAddress) & 0xF) + FSE_MIN_TABLE_LOG, maxTableLog);
+    }
+
     public static void buildRleTable(final FiniteStateEntropy.Table table, final byte value) {
         table.log2Size = 0;
         table.symbol[0] = value;
@@ -0,0 +1,45 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.util.Arrays;
+
+class Histogram {
+    private Histogram() {
+    }
+
+    static void count(final byte[] input, final int inputSize, final int[] counts) {
+        Arrays.fill(counts, 0);
+        for (int i = 0; i < inputSize; i++) {
+            counts[input[i] & 0xFF]++;
+        }
+    }
+
+    static int findMaxSymbol(final int[] counts, int maxSymbol) {
+        while (counts[maxSymbol] == 0) {
+            maxSymbol--;
+        }
+        return maxSymbol;
+    }
+
+    static int findLargestCount(final int[] counts, final int maxSymbol) {
+        int max = 0;
+        for (int i = 0; i <= maxSymbol; i++) {
+            if (counts[i] > max) {
+                max = counts[i];
+            }
+        }
+        return max;
+    }
+}
@@ -18,14 +18,20 @@ import java.util.Arrays;
 
 import static com.epam.deltix.zstd.BitStream.isEndOfStream;
 import static com.epam.deltix.zstd.BitStream.peekBitsFast;
+import static com.epam.deltix.zstd.Memory.MEMORY;
 import static com.epam.deltix.zstd.Util.isPowerOf2;
 import static com.epam.deltix.zstd.Util.verify;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.ByteBufferWrap;
 import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_INT;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_LONG;
 import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_SHORT;
 
 class Huffman {
     private static final int MAX_SYMBOL = 255;
     private static final int MAX_TABLE_LOG = 12;
+    private static final int MAX_WEIGHTS_TABLE_LOG = 6;
+
+    private static final int STATS_MEMORY_SIZE = (MAX_SYMBOL + 1) + (MAX_TABLE_LOG + 1) * SIZE_OF_INT;
 
     // stats
     private final byte[] weights = new byte[MAX_SYMBOL + 1];
@@ -33,15 +39,25 @@ class Huffman {
 
     // table
     private int tableLog = -1;
-    private final byte[] symbols = new byte[1 << MAX_TABLE_LOG];
-    private final byte[] numbersOfBits = new byte[1 << MAX_TABLE_LOG];
+    // grown with the table log, most tables are smaller than the maximum
+    private byte[] symbols = new byte[0];
+    private byte[] numbersOfBits = new byte[0];
 
-    private final FiniteStateEntropy finiteStateEntropy = new FiniteStateEntropy(6);
+    // only needed for compressed weights
+    private FiniteStateEntropy finiteStateEntropy;
+    private final ByteBuffer weightsBase = ByteBufferWrap(weights);
 
     public boolean isLoaded() {
         return tableLog != -1;
     }
 
+    /**
+     * @return approximate number of bytes taken by the tables, which grow with the logs of the tables read
+     */
+    int memorySize() {
+        return STATS_MEMORY_SIZE + 2 * symbols.length + (finiteStateEntropy != null ? FiniteStateEntropy.memorySize(MAX_WEIGHTS_TABLE_LOG) : 0);
+    }
+
     public int readTable(final ByteBuffer inputBase, final int inputAddress, final int size) {
         Arrays.fill(ranks, 0);
         int input = inputAddress;
@@ -66,7 +82,10 @@ class Huffman {
         } else {
             verify(inputSize + 1 <= size, input, "Not enough input bytes");
 
-            outputSize = finiteStateEntropy.decompress(inputBase, input, input + inputSize, weights);
+            if (finiteStateEntropy == null) {
+                finiteStateEntropy = new FiniteStateEntropy(MAX_WEIGHTS_TABLE_LOG);
+            }
+            outputSize = finiteStateEntropy.decompress(inputBase, input, input + inputSize, weightsBase);
         }
 
         int totalWeight = 0;
@@ -76,8 +95,13 @@ class Huffman {
         }
         verify(totalWeight != 0, input, "Input is corrupted");
 
-        tableLog = Util.highestBit(totalWeight) + 1;
+        final int tableLog = Util.highestBit(totalWeight) + 1;
         verify(tableLog <= MAX_TABLE_LOG, input, "Input is corrupted");
+        if (symbols.length < 1 << tableLog) {
+            symbols = new byte[1 << tableLog];
+            numbersOfBits = new byte[1 << tableLog];
+        }
+        this.tableLog = tableLog;
 
         final int total = 1 << tableLog;
         final int rest = total - totalWeight;
@@ -116,10 +140,14 @@ class Huffman {
         return inputSize + 1;
     }
 
+    /**
+     * Decodes with the table read last. The bit stream state lives in the caller's {@code initializer} and
+     * {@code loader}, so that the table of a dictionary may be shared by contexts decoding on different threads.
+     */
     public void decodeSingleStream(final ByteBuffer inputBase, final int inputAddress, final int inputLimit,
-                                   final ByteBuffer outputBase, final int outputAddress, final int outputLimit) {
-        final BitStream.Initializer initializer = new BitStream.Initializer(inputBase, inputAddress, inputLimit);
-        initializer.initialize();
+                                   final ByteBuffer outputBase, final int outputAddress, final int outputLimit,
+                                   final BitStream.Initializer initializer, final BitStream.Loader loader) {
+        initializer.initialize(inputBase, inputAddress, inputLimit);
 
         long bits = initializer.getBits();
         int bitsConsumed = initializer.getBitsConsumed();
@@ -133,7 +161,7 @@ class Huffman {
         int output = outputAddress;
         final long fastOutputLimit = outputLimit - 4;
         while (output < fastOutputLimit) {
-            final BitStream.Loader loader = new BitStream.Loader(inputBase, inputAddress, currentAddress, bits, bitsConsumed);
+            loader.reset(inputBase, inputAddress, currentAddress, bits, bitsConsumed);
             final boolean done = loader.load();
             bits = loader.getBits();
             bitsConsumed = loader.getBitsConsumed();
@@ -149,11 +177,15 @@ class Huffman {
             output += SIZE_OF_INT;
         }
 
-        decodeTail(inputBase, inputAddress, currentAddress, bitsConsumed, bits, outputBase, output, outputLimit);
+        decodeTail(inputBase, inputAddress, currentAddress, bitsConsumed, bits, outputBase, output, outputLimit, loader);
     }
 
+    /**
+     * Same as {@link #decodeSingleStream}, for the 4 streams of a jump table.
+     */
     public void decode4Streams(final ByteBuffer inputBase, final int inputAddress, final int inputLimit,
-                               final ByteBuffer outputBase, final int outputAddress, final int outputLimit) {
+                               final ByteBuffer outputBase, final int outputAddress, final int outputLimit,
+                               final BitStream.Initializer initializer, final BitStream.Loader loader) {
         verify(inputLimit - inputAddress >= 10, inputAddress, "Input is corrupted"); // jump table + 1 byte per stream
 
         final int start1 = inputAddress + 3 * SIZE_OF_SHORT; // for the shorts we read below
@@ -161,26 +193,22 @@ class Huffman {
         final int start3 = start2 + (inputBase.getShort(inputAddress + 2) & 0xFFFF);
         final int start4 = start3 + (inputBase.getShort(inputAddress + 4) & 0xFFFF);
 
-        BitStream.Initializer initializer = new BitStream.Initializer(inputBase, start1, start2);
-        initializer.initialize();
+        initializer.initialize(inputBase, start1, start2);
         int stream1bitsConsumed = initializer.getBitsConsumed();
         int stream1currentAddress = initializer.getCurrentAddress();
         long stream1bits = initializer.getBits();
 
-        initializer = new BitStream.Initializer(inputBase, start2, start3);
-        initializer.initialize();
+        initializer.initialize(inputBase, start2, start3);
         int stream2bitsConsumed = initializer.getBitsConsumed();
         int stream2currentAddress = initializer.getCurrentAddress();
         long stream2bits = initializer.getBits();
 
-        initializer = new BitStream.Initializer(inputBase, start3, start4);
-        initializer.initialize();
+        initializer.initialize(inputBase, start3, start4);
         int stream3bitsConsumed = initializer.getBitsConsumed();
         int stream3currentAddress = initializer.getCurrentAddress();
         long stream3bits = initializer.getBits();
 
-        initializer = new BitStream.Initializer(inputBase, start4, inputLimit);
-        initializer.initialize();
+        initializer.initialize(inputBase, start4, inputLimit);
         int stream4bitsConsumed = initializer.getBitsConsumed();
         int stream4currentAddress = initializer.getCurrentAddress();
         long stream4bits = initializer.getBits();
@@ -227,63 +255,88 @@ class Huffman {
             output3 += SIZE_OF_INT;
             output4 += SIZE_OF_INT;
 
-            BitStream.Loader loader = new BitStream.Loader(inputBase, start1, stream1currentAddress, stream1bits, stream1bitsConsumed);
-            boolean done = loader.load();
-            stream1bitsConsumed = loader.getBitsConsumed();
-            stream1bits = loader.getBits();
-            stream1currentAddress = loader.getCurrentAddress();
-
-            if (done) {
-                break;
+            // at most 4 * 12 bits were consumed per stream, so there is no overflow to check for
+            if (stream1currentAddress >= start1 + SIZE_OF_LONG) {
+                // common case: far enough from the start of the stream to refill without bounds handling
+                stream1currentAddress -= stream1bitsConsumed >>> 3;
+                stream1bits = MEMORY.getLong(inputBase, stream1currentAddress);
+                stream1bitsConsumed &= 0b111;
+            } else {
+                loader.reset(inputBase, start1, stream1currentAddress, stream1bits, stream1bitsConsumed);
+                final boolean done = loader.load();
+                stream1bitsConsumed = loader.getBitsConsumed();
+                stream1bits = loader.getBits();
+                stream1currentAddress = loader.getCurrentAddress();
+                if (done) {
+                    break;
+                }
             }
 
-            loader = new BitStream.Loader(inputBase, start2, stream2currentAddress, stream2bits, stream2bitsConsumed);
-            done = loader.load();
-            stream2bitsConsumed = loader.getBitsConsumed();
-            stream2bits = loader.getBits();
-            stream2currentAddress = loader.getCurrentAddress();
-
-            if (done) {
-                break;
+            if (stream2currentAddress >= start2 + SIZE_OF_LONG) {
+                stream2currentAddress -= stream2bitsConsumed >>> 3;
+                stream2bits = MEMORY.getLong(inputBase, stream2currentAddress);
+                stream2bitsConsumed &= 0b111;
+            } else {
+                loader.reset(inputBase, start2, stream2currentAddress, stream2bits, stream2bitsConsumed);
+                final boolean done = loader.load();
+                stream2bitsConsumed = loader.getBitsConsumed();
+                stream2bits = loader.getBits();
+                stream2currentAddress = loader.getCurrentAddress();
+                if (done) {
+                    break;
+                }
             }
 
-            loader = new BitStream.Loader(inputBase, start3, stream3currentAddress, stream3bits, stream3bitsConsumed);
-            done = loader.load();
-            stream3bitsConsumed = loader.getBitsConsumed();
-            stream3bits = loader.getBits();
-            stream3currentAddress = loader.getCurrentAddress();
-            if (done) {
-                break;
+            if (stream3currentAddress >= start3 + SIZE_OF_LONG) {
+                stream3currentAddress -= stream3bitsConsumed >>> 3;
+                stream3bits = MEMORY.getLong(inputBase, stream3currentAddress);
+                stream3bitsConsumed &= 0b111;
+            } else {
+                loader.reset(inputBase, start3, stream3currentAddress, stream3bits, stream3bitsConsumed);
+                final boolean done = loader.load();
+                stream3bitsConsumed = loader.getBitsConsumed();
+                stream3bits = loader.getBits();
+                stream3currentAddress = loader.getCurrentAddress();
+                if (done) {
+                    break;
+                }
             }
 
-            loader = new BitStream.Loader(inputBase, start4, stream4currentAddress, stream4bits, stream4bitsConsumed);
-            done = loader.load();
-            stream4bitsConsumed = loader.getBitsConsumed();
-            stream4bits = loader.getBits();
-            stream4currentAddress = loader.getCurrentAddress();
-            if (done) {
-                break;
+            if (stream4currentAddress >= start4 + SIZE_OF_LONG) {
+                stream4currentAddress -= stream4bitsConsumed >>> 3;
+                stream4bits = MEMORY.getLong(inputBase, stream4currentAddress);
+                stream4bitsConsumed &= 0b111;
+            } else {
+                loader.reset(inputBase, start4, stream4currentAddress, stream4bits, stream4bitsConsumed);
+                final boolean done = loader.load();
+                stream4bitsConsumed = loader.getBitsConsumed();
+                stream4bits = loader.getBits();
+                stream4currentAddress = loader.getCurrentAddress();
+                if (done) {
+                    break;
+                }
             }
         }
 
         verify(output1 <= outputStart2 && output2 <= outputStart3 && output3 <= outputStart4, inputAddress, "Input is corrupted");
 
         /// finish streams one by one
-        decodeTail(inputBase, start1, stream1currentAddress, stream1bitsConsumed, stream1bits, outputBase, output1, outputStart2);
-        decodeTail(inputBase, start2, stream2currentAddress, stream2bitsConsumed, stream2bits, outputBase, output2, outputStart3);
-        decodeTail(inputBase, start3, stream3currentAddress, stream3bitsConsumed, stream3bits, outputBase, output3, outputStart4);
-        decodeTail(inputBase, start4, stream4currentAddress, stream4bitsConsumed, stream4bits, outputBase, output4, outputLimit);
+        decodeTail(inputBase, start1, stream1currentAddress, stream1bitsConsumed, stream1bits, outputBase, output1, outputStart2, loader);
+        decodeTail(inputBase, start2, stream2currentAddress, stream2bitsConsumed, stream2bits, outputBase, output2, outputStart3, loader);
+        decodeTail(inputBase, start3, stream3currentAddress, stream3bitsConsumed, stream3bits, outputBase, output3, outputStart4, loader);
+        decodeTail(inputBase, start4, stream4currentAddress, stream4bitsConsumed, stream4bits, outputBase, output4, outputLimit, loader);
     }
 
     private void decodeTail(final ByteBuffer inputBase, final int startAddress, int currentAddress,
-                            int bitsConsumed, long bits, final ByteBuffer outputBase, int outputAddress, final int outputLimit) {
+                            int bitsConsumed, long bits, final ByteBuffer outputBase, int outputAddress, final int outputLimit,
+                            final BitStream.Loader loader) {
         final int tableLog = this.tableLog;
         final byte[] numbersOfBits = this.numbersOfBits;
         final byte[] symbols = this.symbols;
 
         // closer to the end
         while (outputAddress < outputLimit) {
-            final BitStream.Loader loader = new BitStream.Loader(inputBase, startAddress, currentAddress, bits, bitsConsumed);
+            loader.reset(inputBase, startAddress, currentAddress, bits, bitsConsumed);
             final boolean done = loader.load();
             bitsConsumed = loader.getBitsConsumed();
             bits = loader.getBits();
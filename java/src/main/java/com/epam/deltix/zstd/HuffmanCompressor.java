@@ -0,0 +1,285 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_SHORT;
+
+/**
+ * Encodes literals with a length-limited Huffman code, the counterpart of {@link Huffman}.
+ * <p>
+ * Codes are assigned the way {@link Huffman#readTable} fills the decoding table: the longest codes first,
+ * symbols of the same length in ascending order.
+ */
+class HuffmanCompressor {
+    private static final int MAX_SYMBOL = 255;
+    private static final int MAX_TABLE_LOG = 11;
+    private static final int MAX_WEIGHT_TABLE_LOG = 6;
+    private static final int MAX_DIRECT_WEIGHTS = 128;
+
+    // the direct representation of 128 weights, the compressed one is accepted only if it is smaller
+    private static final int MAX_DESCRIPTION_SIZE = 1 + MAX_DIRECT_WEIGHTS / 2;
+
+    private static final int JUMP_TABLE_SIZE = 3 * SIZE_OF_SHORT;
+
+    // table
+    private int maxSymbol;
+    private int tableLog;
+    private final int[] codes = new int[MAX_SYMBOL + 1];
+    private final byte[] numbersOfBits = new byte[MAX_SYMBOL + 1];
+
+    // tree building workspace: leaves sorted by count, then the internal nodes in the order of creation
+    private final long[] sortedLeaves = new long[MAX_SYMBOL + 1];
+    private final int[] nodeCounts = new int[2 * (MAX_SYMBOL + 1)];
+    private final int[] nodeDepths = new int[2 * (MAX_SYMBOL + 1)];
+    private final int[] rankStarts = new int[MAX_TABLE_LOG + 1];
+
+    // table description workspace
+    private final byte[] weights = new byte[MAX_SYMBOL + 1];
+    private final int[] weightCounts = new int[MAX_SYMBOL + 1];
+    private final short[] normalizedWeightCounts = new short[MAX_TABLE_LOG + 2];
+    private final FseCompressionTable weightTable = new FseCompressionTable(MAX_WEIGHT_TABLE_LOG, MAX_TABLE_LOG + 1);
+
+    /**
+     * Builds the code for symbols {@code [0, maxSymbol]}, at least two of which must have non-zero counts.
+     */
+    void initialize(final int[] counts, final int maxSymbol) {
+        this.maxSymbol = maxSymbol;
+
+        int leafCount = 0;
+        for (int symbol = 0; symbol <= maxSymbol; symbol++) {
+            numbersOfBits[symbol] = 0;
+            if (counts[symbol] > 0) {
+                sortedLeaves[leafCount++] = ((long) counts[symbol] << 8) | symbol;
+            }
+        }
+        Arrays.sort(sortedLeaves, 0, leafCount);
+
+        for (int i = 0; i < leafCount; i++) {
+            nodeCounts[i] = (int) (sortedLeaves[i] >>> 8);
+        }
+
+        // internal nodes are created in ascending order of counts, so the two queues stay sorted
+        final int root = 2 * leafCount - 2;
+        int leaf = 0;
+        int node = leafCount;
+        for (int next = leafCount; next <= root; next++) {
+            final int first = (leaf < leafCount && (node == next || nodeCounts[leaf] <= nodeCounts[node])) ? leaf++ : node++;
+            final int second = (leaf < leafCount && (node == next || nodeCounts[leaf] <= nodeCounts[node])) ? leaf++ : node++;
+            nodeCounts[next] = nodeCounts[first] + nodeCounts[second];
+            nodeDepths[first] = next;
+            nodeDepths[second] = next;
+        }
+
+        // parents follow their children, so the parent links are replaced by depths from the root down
+        nodeDepths[root] = 0;
+        int maxDepth = 0;
+        for (int i = root - 1; i >= 0; i--) {
+            nodeDepths[i] = nodeDepths[nodeDepths[i]] + 1;
+            maxDepth = Math.max(maxDepth, nodeDepths[i]);
+        }
+
+        if (maxDepth > MAX_TABLE_LOG) {
+            limitDepths(leafCount);
+            maxDepth = MAX_TABLE_LOG;
+        }
+        tableLog = maxDepth;
+
+        // assign codes per length, the longest codes start the decoding table
+        Arrays.fill(rankStarts, 0);
+        for (int i = 0; i < leafCount; i++) {
+            rankStarts[nodeDepths[i]]++;
+        }
+        int start = 0;
+        for (int bits = tableLog; bits > 0; bits--) {
+            final int count = rankStarts[bits];
+            rankStarts[bits] = start;
+            start += count << (tableLog - bits);
+        }
+
+        for (int i = 0; i < leafCount; i++) {
+            numbersOfBits[(int) sortedLeaves[i] & 0xFF] = (byte) nodeDepths[i];
+        }
+        for (int symbol = 0; symbol <= maxSymbol; symbol++) {
+            final int bits = numbersOfBits[symbol];
+            if (bits > 0) {
+                codes[symbol] = rankStarts[bits] >>> (tableLog - bits);
+                rankStarts[bits] += 1 << (tableLog - bits);
+            }
+        }
+    }
+
+    /**
+     * Cuts the leaves deeper than {@link #MAX_TABLE_LOG} and restores the Kraft sum of a complete code:
+     * first the rarest of the deepest leaves above the limit go down, then the spare room is given to the frequent ones.
+     */
+    private void limitDepths(final int leafCount) {
+        final int capacity = 1 << MAX_TABLE_LOG;
+
+        int kraft = 0;
+        for (int i = 0; i < leafCount; i++) {
+            nodeDepths[i] = Math.min(nodeDepths[i], MAX_TABLE_LOG);
+            kraft += 1 << (MAX_TABLE_LOG - nodeDepths[i]);
+        }
+
+        while (kraft > capacity) {
+            int candidate = -1;
+            for (int i = 0; i < leafCount; i++) {
+                if (nodeDepths[i] < MAX_TABLE_LOG && (candidate == -1 || nodeDepths[i] > nodeDepths[candidate])) {
+                    candidate = i;
+                }
+            }
+            kraft -= 1 << (MAX_TABLE_LOG - nodeDepths[candidate] - 1);
+            nodeDepths[candidate]++;
+        }
+
+        // the deficit is a multiple of the weight of the deepest leaf, so this always ends with a complete code
+        while (kraft < capacity) {
+            for (int i = leafCount - 1; i >= 0 && kraft < capacity; i--) {
+                final int gain = 1 << (MAX_TABLE_LOG - nodeDepths[i]);
+                if (nodeDepths[i] > 1 && kraft + gain <= capacity) {
+                    kraft += gain;
+                    nodeDepths[i]--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the weights of all symbols but the last one, which the decoder infers.
+     *
+     * @return size of the table description, or 0 if it cannot be represented or does not fit
+     */
+    int writeTable(final ByteBuffer outputBase, final int outputAddress, final int outputSize) {
+        if (outputSize < MAX_DESCRIPTION_SIZE) {
+            return 0;
+        }
+
+        final int weightCount = maxSymbol;
+        for (int symbol = 0; symbol < weightCount; symbol++) {
+            final int bits = numbersOfBits[symbol];
+            weights[symbol] = bits == 0 ? 0 : (byte) (tableLog + 1 - bits);
+        }
+        weights[weightCount] = 0;
+
+        final int compressedSize = compressWeights(outputBase, outputAddress + 1, outputSize - 1, weightCount);
+        if (compressedSize > 1 && compressedSize < weightCount / 2) {
+            outputBase.put(outputAddress, (byte) compressedSize);
+            return 1 + compressedSize;
+        }
+
+        if (weightCount > MAX_DIRECT_WEIGHTS) {
+            return 0;
+        }
+
+        outputBase.put(outputAddress, (byte) (127 + weightCount));
+        for (int i = 0; i < weightCount; i += 2) {
+            outputBase.put(outputAddress + 1 + i / 2, (byte) ((weights[i] << 4) | weights[i + 1]));
+        }
+        return 1 + (weightCount + 1) / 2;
+    }
+
+    private int compressWeights(final ByteBuffer outputBase, final int outputAddress, final int outputSize, final int weightCount) {
+        if (weightCount <= 2) {
+            return 0;
+        }
+
+        Histogram.count(weights, weightCount, weightCounts);
+        final int maxWeight = Histogram.findMaxSymbol(weightCounts, MAX_TABLE_LOG);
+        final int largestCount = Histogram.findLargestCount(weightCounts, maxWeight);
+        if (largestCount == weightCount || largestCount == 1) {
+            // a single weight or no repetitions: the direct representation is as good
+            return 0;
+        }
+
+        final int weightTableLog = FiniteStateEntropy.optimalTableLog(MAX_WEIGHT_TABLE_LOG, weightCount, maxWeight);
+        FiniteStateEntropy.normalizeCounts(normalizedWeightCounts, weightTableLog, weightCounts, weightCount, maxWeight);
+
+        final int headerSize = FiniteStateEntropy.writeNormalizedCounts(outputBase, outputAddress, normalizedWeightCounts, maxWeight, weightTableLog);
+
+        weightTable.initialize(normalizedWeightCounts, maxWeight, weightTableLog);
+        final int streamSize = FiniteStateEntropy.compress(outputBase, outputAddress + headerSize, outputSize - headerSize, weights, weightCount, weightTable);
+        if (streamSize == 0) {
+            return 0;
+        }
+        return headerSize + streamSize;
+    }
+
+    /**
+     * @return size of the stream, or 0 if it does not fit
+     */
+    int compressSingleStream(final ByteBuffer outputBase, final int outputAddress, final int outputSize,
+                             final byte[] input, final int inputOffset, final int inputSize) {
+        final BitOutputStream stream = new BitOutputStream(outputBase, outputAddress, outputSize);
+
+        // the decoder reads the stream backwards, so the input is encoded from the end, 4 codes of at most 11 bits per flush
+        int index = inputOffset + (inputSize & ~3);
+        switch (inputSize & 3) {
+            case 3:
+                encode(stream, input[index + 2]);
+            case 2:
+                encode(stream, input[index + 1]);
+            case 1:
+                encode(stream, input[index]);
+                stream.flush();
+        }
+
+        while (index > inputOffset) {
+            encode(stream, input[index - 1]);
+            encode(stream, input[index - 2]);
+            encode(stream, input[index - 3]);
+            encode(stream, input[index - 4]);
+            stream.flush();
+            index -= 4;
+        }
+
+        return stream.close();
+    }
+
+    /**
+     * Splits the input into 4 segments as {@link Huffman#decode4Streams} does.
+     *
+     * @return size of the jump table and the streams, or 0 if they do not fit
+     */
+    int compress4Streams(final ByteBuffer outputBase, final int outputAddress, final int outputSize,
+                         final byte[] input, final int inputOffset, final int inputSize) {
+        final int outputLimit = outputAddress + outputSize;
+        if (outputSize < JUMP_TABLE_SIZE + 4) {
+            return 0;
+        }
+
+        final int segmentSize = (inputSize + 3) / 4;
+        int output = outputAddress + JUMP_TABLE_SIZE;
+        for (int segment = 0; segment < 4; segment++) {
+            final int segmentOffset = segment * segmentSize;
+            final int size = compressSingleStream(outputBase, output, outputLimit - output,
+                    input, inputOffset + segmentOffset, Math.min(segmentSize, inputSize - segmentOffset));
+            if (size == 0) {
+                return 0;
+            }
+            if (segment < 3) {
+                outputBase.putShort(outputAddress + segment * SIZE_OF_SHORT, (short) size);
+            }
+            output += size;
+        }
+
+        return output - outputAddress;
+    }
+
+    private void encode(final BitOutputStream stream, final byte symbol) {
+        stream.addBitsFast(codes[symbol & 0xFF], numbersOfBits[symbol & 0xFF]);
+    }
+}
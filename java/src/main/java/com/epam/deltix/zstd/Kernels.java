@@ -0,0 +1,100 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.ByteBufferWrap;
+
+/**
+ * Loops of the codecs which may run on registers wider than a long: the rounds over the 32 byte stripes of
+ * {@link XxHash64} and the long copies of literals and matches.
+ * <p>
+ * {@link #KERNELS} is picked once: {@link ScalarKernels} unless the system property {@value #PROPERTY} is set to
+ * {@code vector}, which selects {@code VectorKernels} on Java 17+ (from the multi-release jar) if the incubating vector
+ * module is added with {@code --add-modules jdk.incubator.vector}. The vector copies are faster on long literals and
+ * matches, but the rounds of a stripe are a chain of 64 bit multiplies, which have a higher latency on vectors,
+ * so {@code KernelsBenchmark} decides per platform.
+ */
+abstract class Kernels {
+    static final String PROPERTY = "com.epam.deltix.zstd.kernels";
+
+    static final Kernels KERNELS = create(System.getProperty(PROPERTY, ""));
+
+    /**
+     * @return number of bytes {@link #copy} moves at once, which is also the minimal distance between the source and
+     * the destination of an overlapping copy; {@link Integer#MAX_VALUE} if it copies nothing
+     */
+    abstract int copyWidth();
+
+    /**
+     * Copies the whole chunks of {@link #copyWidth} bytes of {@code [srcIndex, srcIndex + length)} to {@code dstIndex}
+     * front to back and leaves the rest to the caller.
+     *
+     * @return number of copied bytes
+     */
+    abstract int copy(ByteBuffer src, int srcIndex, ByteBuffer dst, int dstIndex, int length);
+
+    /**
+     * Runs the rounds of the accumulators of {@code hash} over the whole 32 byte stripes of {@code [address, address + length)}.
+     *
+     * @return number of hashed bytes
+     */
+    abstract int xxHashRounds(XxHash64 hash, ByteBuffer base, int address, int length);
+
+    /**
+     * Runs the rounds of fresh accumulators over the whole 32 byte stripes of {@code [address, address + length)}.
+     *
+     * @return the merged accumulators
+     */
+    abstract long xxHashBody(long seed, ByteBuffer base, int address, int length);
+
+    static Kernels create(final String name) {
+        final Kernels kernels = "vector".equals(name) ? createVectorKernels() : null;
+        return kernels == null ? new ScalarKernels() : kernels;
+    }
+
+    private static Kernels createVectorKernels() {
+        if (ByteOrder.nativeOrder() != ByteOrder.LITTLE_ENDIAN) {
+            return null;
+        }
+        try {
+            // only in META-INF/versions/17 of the jar and only linkable if the vector module is added
+            final Kernels kernels = (Kernels) Class.forName(Kernels.class.getPackage().getName() + ".VectorKernels").getDeclaredConstructor().newInstance();
+            return kernels.matches(new ScalarKernels()) ? kernels : null;
+        } catch (final ReflectiveOperationException | LinkageError | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks the results against {@code reference}, the incubating API may change between releases.
+     */
+    private boolean matches(final Kernels reference) {
+        final byte[] data = new byte[200];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31 + 7);
+        }
+        final ByteBuffer base = ByteBufferWrap(data);
+        if (xxHashBody(1, base, 3, 160) != reference.xxHashBody(1, base, 3, 160)) {
+            return false;
+        }
+
+        final byte[] copy = Arrays.copyOf(data, data.length);
+        final int copied = copy(base, 5, ByteBufferWrap(copy), 90, 100);
+        return copied == 100 - 100 % copyWidth() && Arrays.equals(Arrays.copyOfRange(copy, 90, 90 + copied), Arrays.copyOfRange(data, 5, 5 + copied));
+    }
+}
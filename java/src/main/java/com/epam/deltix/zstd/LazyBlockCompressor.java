@@ -0,0 +1,231 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.nio.ByteBuffer;
+
+import static com.epam.deltix.zstd.MatchFinder.SEARCH_STRENGTH;
+import static com.epam.deltix.zstd.MatchFinder.count;
+import static com.epam.deltix.zstd.MatchFinder.hash;
+import static com.epam.deltix.zstd.MatchFinder.hashLength;
+import static com.epam.deltix.zstd.SequenceStore.REPEAT_OFFSET_1;
+import static com.epam.deltix.zstd.SequenceStore.REPEAT_OFFSET_BIAS;
+import static com.epam.deltix.zstd.Util.highestBit;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_INT;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_LONG;
+
+/**
+ * The "greedy", "lazy" and "lazy2" strategies: the hash table holds the last position of each hashed prefix and
+ * the chain table links every position to the previous one with the same hash, up to 2^searchLog of them are searched.
+ * A lazy strategy looks for a better match at the next 1 or 2 positions before it takes the one found.
+ */
+class LazyBlockCompressor implements BlockCompressor {
+    private static final int MIN_MATCH_LENGTH = 4;
+
+    private final int depth;
+
+    /**
+     * @param depth number of positions after a match that may have a better one: 0 for greedy, 1 for lazy, 2 for lazy2
+     */
+    LazyBlockCompressor(final int depth) {
+        this.depth = depth;
+    }
+
+    @Override
+    public int compressBlock(final ByteBuffer inputBase, final int inputAddress, final int inputSize, final SequenceStore output,
+                             final BlockCompressionState state, final RepeatedOffsets offsets, final CompressionParameters parameters) {
+        final int prefixStart = state.baseAddress + state.windowBaseOffset;
+
+        final int inputEnd = inputAddress + inputSize;
+        // hashing reads a long
+        final int inputLimit = inputEnd - SIZE_OF_LONG;
+
+        int input = inputAddress;
+        int anchor = input;
+
+        int offset1 = offsets.getOffset0();
+        int offset2 = offsets.getOffset1();
+
+        // the first byte of the window has no history to match
+        if (input == prefixStart) {
+            input++;
+        }
+
+        while (input < inputLimit) {
+            // offsets are the format's offset values, so that the cost of an offset is the number of its extra bits
+            int matchLength = 0;
+            int offset = REPEAT_OFFSET_1;
+            int start = input + 1;
+
+            if (input + 1 - offset1 >= prefixStart && inputBase.getInt(input + 1 - offset1) == inputBase.getInt(input + 1)) {
+                // repeated offset after one literal
+                matchLength = count(inputBase, input + 1 + SIZE_OF_INT, inputEnd, input + 1 + SIZE_OF_INT - offset1) + SIZE_OF_INT;
+            }
+
+            if (depth > 0 || matchLength == 0) {
+                final long match = findBestMatch(inputBase, input, inputEnd, state, parameters);
+                if ((int) match > matchLength) {
+                    matchLength = (int) match;
+                    offset = (int) (match >>> 32);
+                    start = input;
+                }
+
+                if (matchLength < MIN_MATCH_LENGTH) {
+                    input += ((input - anchor) >> SEARCH_STRENGTH) + 1;
+                    continue;
+                }
+
+                while (input < inputLimit && depth > 0) {
+                    input++;
+                    if (betterRepeatedMatch(inputBase, input, inputEnd, prefixStart, offset1, offset, matchLength, 3, 1)) {
+                        matchLength = count(inputBase, input + SIZE_OF_INT, inputEnd, input + SIZE_OF_INT - offset1) + SIZE_OF_INT;
+                        offset = REPEAT_OFFSET_1;
+                        start = input;
+                    }
+
+                    long next = findBestMatch(inputBase, input, inputEnd, state, parameters);
+                    if ((int) next >= MIN_MATCH_LENGTH && gain((int) next, (int) (next >>> 32)) > gain(matchLength, offset) + 4) {
+                        matchLength = (int) next;
+                        offset = (int) (next >>> 32);
+                        start = input;
+                        continue;
+                    }
+
+                    if (depth == 2 && input < inputLimit) {
+                        input++;
+                        if (betterRepeatedMatch(inputBase, input, inputEnd, prefixStart, offset1, offset, matchLength, 4, 1)) {
+                            matchLength = count(inputBase, input + SIZE_OF_INT, inputEnd, input + SIZE_OF_INT - offset1) + SIZE_OF_INT;
+                            offset = REPEAT_OFFSET_1;
+                            start = input;
+                        }
+
+                        next = findBestMatch(inputBase, input, inputEnd, state, parameters);
+                        if ((int) next >= MIN_MATCH_LENGTH && gain((int) next, (int) (next >>> 32)) > gain(matchLength, offset) + 7) {
+                            matchLength = (int) next;
+                            offset = (int) (next >>> 32);
+                            start = input;
+                            continue;
+                        }
+                    }
+                    break;
+                }
+
+                if (offset != REPEAT_OFFSET_1) {
+                    // extend the match backwards over the pending literals
+                    final int distance = offset - REPEAT_OFFSET_BIAS;
+                    while (start > anchor && start - distance > prefixStart && inputBase.get(start - 1) == inputBase.get(start - distance - 1)) {
+                        start--;
+                        matchLength++;
+                    }
+
+                    offset2 = offset1;
+                    offset1 = distance;
+                }
+            }
+
+            output.storeSequence(inputBase, anchor, start - anchor, offset, matchLength);
+            input = start + matchLength;
+            anchor = input;
+
+            // the second repeated offset right after the match, which swaps the two
+            while (input <= inputLimit && input - offset2 >= prefixStart && inputBase.getInt(input) == inputBase.getInt(input - offset2)) {
+                final int repeatLength = count(inputBase, input + SIZE_OF_INT, inputEnd, input + SIZE_OF_INT - offset2) + SIZE_OF_INT;
+
+                final int temp = offset2;
+                offset2 = offset1;
+                offset1 = temp;
+
+                output.storeSequence(inputBase, anchor, 0, REPEAT_OFFSET_1, repeatLength);
+                input += repeatLength;
+                anchor = input;
+            }
+        }
+
+        offsets.saveOffsets(offset1, offset2);
+
+        return inputEnd - anchor;
+    }
+
+    /**
+     * @return whether the repeated offset at {@code input} is worth more than the current match, which is not a repeated one
+     */
+    private static boolean betterRepeatedMatch(final ByteBuffer inputBase, final int input, final int inputEnd, final int prefixStart, final int offset1,
+                                               final int offset, final int matchLength, final int weight, final int bonus) {
+        if (offset == REPEAT_OFFSET_1 || input - offset1 < prefixStart || inputBase.getInt(input) != inputBase.getInt(input - offset1)) {
+            return false;
+        }
+        final int repeatLength = count(inputBase, input + SIZE_OF_INT, inputEnd, input + SIZE_OF_INT - offset1) + SIZE_OF_INT;
+        return repeatLength * weight > matchLength * weight - highestBit(offset) + bonus;
+    }
+
+    /**
+     * @return estimated worth of a match: 4 per byte minus the extra bits of the offset
+     */
+    private static int gain(final int matchLength, final int offset) {
+        return matchLength * 4 - highestBit(offset);
+    }
+
+    /**
+     * Adds the positions up to {@code input} to the hash chains and searches the chain of {@code input}.
+     *
+     * @return the longest match of at least 4 bytes, as the offset value in the high int and the length in the low int,
+     * or 0 if there is none
+     */
+    private static long findBestMatch(final ByteBuffer inputBase, final int input, final int inputEnd,
+                                      final BlockCompressionState state, final CompressionParameters parameters) {
+        final int[] hashTable = state.hashTable;
+        final int[] chainTable = state.chainTable;
+        final int hashLog = parameters.getHashLog();
+        final int hashLength = hashLength(parameters.getSearchLength());
+        final int chainMask = (1 << parameters.getChainLog()) - 1;
+        final int baseAddress = state.baseAddress;
+
+        final int current = input - baseAddress;
+        for (int index = state.nextToUpdate; index < current; index++) {
+            final int hash = hash(inputBase, baseAddress + index, hashLog, hashLength);
+            chainTable[index & chainMask] = hashTable[hash];
+            hashTable[hash] = index;
+        }
+        state.nextToUpdate = current;
+
+        // older links of the chain were overwritten by newer positions
+        final int minChain = Math.max(current - chainMask - 1, 0);
+
+        int bestLength = MIN_MATCH_LENGTH - 1;
+        int bestOffset = 0;
+        int matchIndex = hashTable[hash(inputBase, input, hashLog, hashLength)];
+        for (int attempts = 1 << parameters.getSearchLog(); attempts > 0 && matchIndex > state.windowBaseOffset; attempts--) {
+            final int matchAddress = baseAddress + matchIndex;
+            if (inputBase.get(matchAddress + bestLength) == inputBase.get(input + bestLength)) {
+                final int length = count(inputBase, input, inputEnd, matchAddress);
+                if (length > bestLength) {
+                    bestLength = length;
+                    bestOffset = current - matchIndex + REPEAT_OFFSET_BIAS;
+                    if (input + length == inputEnd) {
+                        break;
+                    }
+                }
+            }
+            if (matchIndex <= minChain) {
+                break;
+            }
+            matchIndex = chainTable[matchIndex & chainMask];
+        }
+
+        if (bestOffset == 0) {
+            return 0;
+        }
+        return (long) bestOffset << 32 | bestLength;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * Releases file mappings without waiting for the garbage collector, which matters on Windows where a mapped file can
+ * be neither truncated nor deleted. Uses {@code Unsafe.invokeCleaner} on Java 9+ and the cleaner of the buffer on
+ * Java 8; if neither is accessible the mapping is left to the garbage collector.
+ */
+final class MappedBuffers {
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+    private static final Method CLEANER;
+    private static final Method CLEAN;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        Method cleaner = null;
+        Method clean = null;
+        try {
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+        } catch (final ReflectiveOperationException | RuntimeException e) {
+            invokeCleaner = null;
+            try {
+                cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+                clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            } catch (final ReflectiveOperationException | RuntimeException ignored) {
+                cleaner = null;
+            }
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+        CLEANER = cleaner;
+        CLEAN = clean;
+    }
+
+    private MappedBuffers() {
+    }
+
+    /**
+     * Unmaps {@code buffer}, which must be the buffer returned by {@code FileChannel.map} and must not be accessed
+     * afterwards, neither through views.
+     */
+    static void unmap(final ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            return;
+        }
+        try {
+            if (INVOKE_CLEANER != null) {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+            } else if (CLEANER != null) {
+                final Object cleaner = CLEANER.invoke(buffer);
+                if (cleaner != null) {
+                    CLEAN.invoke(cleaner);
+                }
+            }
+        } catch (final ReflectiveOperationException | RuntimeException e) {
+            // left to the garbage collector
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.nio.ByteBuffer;
+
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_INT;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_LONG;
+
+/**
+ * Hashing and match measuring shared by the {@link BlockCompressor} implementations.
+ */
+final class MatchFinder {
+    // the input is scanned faster the longer there is no match: by 1 more byte per 2^8 bytes
+    static final int SEARCH_STRENGTH = 8;
+
+    private static final int PRIME_4_BYTES = 0x9E3779B1;
+    private static final long PRIME_5_BYTES = 0xCF1BBCDCBBL;
+    private static final long PRIME_6_BYTES = 0xCF1BBCDCBF9BL;
+    private static final long PRIME_7_BYTES = 0xCF1BBCDCBFA563L;
+    private static final long PRIME_8_BYTES = 0xCF1BBCDCB7A56463L;
+
+    private MatchFinder() {
+    }
+
+    /**
+     * @return hash of {@code length} (4 to 8) bytes at {@code address}, {@code bits} wide
+     */
+    static int hash(final ByteBuffer inputBase, final int address, final int bits, final int length) {
+        switch (length) {
+            case 4:
+                return (inputBase.getInt(address) * PRIME_4_BYTES) >>> (Integer.SIZE - bits);
+            case 5:
+                return (int) (((inputBase.getLong(address) << (Long.SIZE - 40)) * PRIME_5_BYTES) >>> (Long.SIZE - bits));
+            case 6:
+                return (int) (((inputBase.getLong(address) << (Long.SIZE - 48)) * PRIME_6_BYTES) >>> (Long.SIZE - bits));
+            case 7:
+                return (int) (((inputBase.getLong(address) << (Long.SIZE - 56)) * PRIME_7_BYTES) >>> (Long.SIZE - bits));
+            case 8:
+                return (int) ((inputBase.getLong(address) * PRIME_8_BYTES) >>> (Long.SIZE - bits));
+            default:
+                throw new IllegalArgumentException("Unsupported hash length: " + length);
+        }
+    }
+
+    /**
+     * @return the hashed length for the minimum match length of the parameters
+     */
+    static int hashLength(final int searchLength) {
+        return Math.min(Math.max(searchLength, 4), 7);
+    }
+
+    /**
+     * @return number of equal bytes at {@code address} and {@code matchAddress}, not going past {@code inputLimit}
+     */
+    static int count(final ByteBuffer inputBase, final int address, final int inputLimit, final int matchAddress) {
+        int input = address;
+        int match = matchAddress;
+
+        while (input <= inputLimit - SIZE_OF_LONG) {
+            final long difference = inputBase.getLong(match) ^ inputBase.getLong(input);
+            if (difference != 0) {
+                return input - address + (Long.numberOfTrailingZeros(difference) >>> 3);
+            }
+            input += SIZE_OF_LONG;
+            match += SIZE_OF_LONG;
+        }
+
+        if (input <= inputLimit - SIZE_OF_INT && inputBase.getInt(match) == inputBase.getInt(input)) {
+            input += SIZE_OF_INT;
+            match += SIZE_OF_INT;
+        }
+        while (input < inputLimit && inputBase.get(match) == inputBase.get(input)) {
+            input++;
+            match++;
+        }
+
+        return input - address;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Little-endian loads and stores at absolute indexes of byte buffers for the hot loops of the codecs. Every implementation
+ * has the bounds and read-only checks of the absolute {@link ByteBuffer} accessors, but the fastest one available
+ * also skips the byte order handling of the buffer.
+ * <p>
+ * {@link #MEMORY} is picked once: {@code VarHandleMemory} on Java 9+ (from the multi-release jar), {@link UnsafeMemory}
+ * on Java 8 and {@link ByteBufferMemory} if neither is available. The system property {@value #PROPERTY} set to
+ * {@code varhandle}, {@code unsafe} or {@code buffer} selects one explicitly, for example to compare them.
+ * <p>
+ * The choice matters for heap buffers on Java 8, whose accessors assemble longs byte by byte: there
+ * {@link UnsafeMemory} reads and copies them several times faster. Java 8 direct buffers and every buffer on Java 17
+ * are about as fast with any of the implementations.
+ */
+abstract class Memory {
+    static final String PROPERTY = "com.epam.deltix.zstd.memory";
+
+    static final Memory MEMORY = create(System.getProperty(PROPERTY, ""));
+
+    abstract short getShort(ByteBuffer buffer, int index);
+
+    abstract int getInt(ByteBuffer buffer, int index);
+
+    abstract long getLong(ByteBuffer buffer, int index);
+
+    abstract void putShort(ByteBuffer buffer, int index, short value);
+
+    abstract void putInt(ByteBuffer buffer, int index, int value);
+
+    abstract void putLong(ByteBuffer buffer, int index, long value);
+
+    static Memory create(final String name) {
+        Memory memory = null;
+        switch (name) {
+            case "buffer":
+                return new ByteBufferMemory();
+            case "unsafe":
+                memory = UnsafeMemory.create();
+                break;
+            case "varhandle":
+                memory = createVarHandleMemory();
+                break;
+            default:
+                memory = createVarHandleMemory();
+                if (memory == null) {
+                    memory = UnsafeMemory.create();
+                }
+        }
+        return memory == null ? new ByteBufferMemory() : memory;
+    }
+
+    private static Memory createVarHandleMemory() {
+        try {
+            // only in META-INF/versions/9 of the jar, so it is not even visible on Java 8
+            return (Memory) Class.forName(Memory.class.getPackage().getName() + ".VarHandleMemory").getDeclaredConstructor().newInstance();
+        } catch (final ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
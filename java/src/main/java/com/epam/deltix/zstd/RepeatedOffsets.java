@@ -0,0 +1,44 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+/**
+ * The two most recent offsets as the decoder sees them. Offsets found in a block become visible only when
+ * the block is written compressed, a raw or RLE block leaves the decoder's offsets as they were.
+ */
+class RepeatedOffsets {
+    private int offset0 = 1;
+    private int offset1 = 4;
+
+    private int tempOffset0;
+    private int tempOffset1;
+
+    int getOffset0() {
+        return offset0;
+    }
+
+    int getOffset1() {
+        return offset1;
+    }
+
+    void saveOffsets(final int offset0, final int offset1) {
+        tempOffset0 = offset0;
+        tempOffset1 = offset1;
+    }
+
+    void commit() {
+        offset0 = tempOffset0;
+        offset1 = tempOffset1;
+    }
+}
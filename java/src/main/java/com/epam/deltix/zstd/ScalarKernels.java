@@ -0,0 +1,83 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.nio.ByteBuffer;
+
+import static com.epam.deltix.zstd.Memory.MEMORY;
+import static com.epam.deltix.zstd.XxHash64.PRIME64_1;
+import static com.epam.deltix.zstd.XxHash64.PRIME64_2;
+import static com.epam.deltix.zstd.XxHash64.merge;
+import static com.epam.deltix.zstd.XxHash64.mix;
+
+/**
+ * Default {@link Kernels}: the rounds long by long, the copies are left to the long loops of the callers.
+ */
+final class ScalarKernels extends Kernels {
+    @Override
+    int copyWidth() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    int copy(final ByteBuffer src, final int srcIndex, final ByteBuffer dst, final int dstIndex, final int length) {
+        return 0;
+    }
+
+    @Override
+    int xxHashRounds(final XxHash64 hash, final ByteBuffer base, int address, final int length) {
+        long v1 = hash.v1;
+        long v2 = hash.v2;
+        long v3 = hash.v3;
+        long v4 = hash.v4;
+
+        int remaining = length;
+        while (remaining >= 32) {
+            v1 = mix(v1, MEMORY.getLong(base, address));
+            v2 = mix(v2, MEMORY.getLong(base, address + 8));
+            v3 = mix(v3, MEMORY.getLong(base, address + 16));
+            v4 = mix(v4, MEMORY.getLong(base, address + 24));
+
+            address += 32;
+            remaining -= 32;
+        }
+
+        hash.v1 = v1;
+        hash.v2 = v2;
+        hash.v3 = v3;
+        hash.v4 = v4;
+        return length - remaining;
+    }
+
+    @Override
+    long xxHashBody(final long seed, final ByteBuffer base, int address, final int length) {
+        long v1 = seed + PRIME64_1 + PRIME64_2;
+        long v2 = seed + PRIME64_2;
+        long v3 = seed;
+        long v4 = seed - PRIME64_1;
+
+        int remaining = length;
+        while (remaining >= 32) {
+            v1 = mix(v1, MEMORY.getLong(base, address));
+            v2 = mix(v2, MEMORY.getLong(base, address + 8));
+            v3 = mix(v3, MEMORY.getLong(base, address + 16));
+            v4 = mix(v4, MEMORY.getLong(base, address + 24));
+
+            address += 32;
+            remaining -= 32;
+        }
+
+        return merge(v1, v2, v3, v4);
+    }
+}
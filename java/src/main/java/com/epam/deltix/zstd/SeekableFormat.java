@@ -0,0 +1,37 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+/**
+ * Constants of the seekable format: independent frames followed by a skippable frame with the seek table.
+ * <p>
+ * The seek table holds an entry per frame (compressed size, decompressed size and optionally the low 32 bits of
+ * the XxHash64 of the decompressed data) and ends with a footer: the number of frames, the descriptor and the magic.
+ */
+final class SeekableFormat {
+    static final int SEEK_TABLE_MAGIC_NUMBER = 0x184D2A5E;
+    static final int SEEKABLE_MAGIC_NUMBER = 0x8F92EAB1;
+
+    static final int CHECKSUM_FLAG = 0x80;
+    static final int RESERVED_BITS = 0x7C;
+
+    static final int FOOTER_SIZE = 9;
+    static final int ENTRY_SIZE = 8;
+    static final int ENTRY_WITH_CHECKSUM_SIZE = 12;
+
+    static final int MAX_FRAMES = 0x8000000;
+
+    private SeekableFormat() {
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.nio.ByteBuffer;
+
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.LITERALS_LENGTH_BITS;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.LITERALS_LENGTH_FSE_LOG;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.LONG_NUMBER_OF_SEQUENCES;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.MATCH_LENGTH_BITS;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.MATCH_LENGTH_FSE_LOG;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.MAX_LITERALS_LENGTH_SYMBOL;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.MAX_MATCH_LENGTH_SYMBOL;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.MAX_OFFSET_CODE_SYMBOL;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.OFFSET_CODES_FSE_LOG;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SET_BASIC;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SET_COMPRESSED;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SET_RLE;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_SHORT;
+
+/**
+ * Writes the sequences section of a compressed block: the number of sequences, the mode and the table of each
+ * of the literals length, offset and match length codes, and the bit stream read by the decoder backwards.
+ */
+class SequenceEncoder {
+    private static final int DEFAULT_LITERALS_LENGTH_LOG = 6;
+    private static final int DEFAULT_MATCH_LENGTH_LOG = 6;
+    private static final int DEFAULT_OFFSET_CODES_LOG = 5;
+
+    // the predefined distributions stop at offset code 28
+    private static final int DEFAULT_MAX_OFFSET_CODE_SYMBOL = 28;
+
+    private static final short[] DEFAULT_LITERALS_LENGTH_COUNTS = {
+            4, 3, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 1, 1, 1,
+            2, 2, 2, 2, 2, 2, 2, 2, 2, 3, 2, 1, 1, 1, 1, 1,
+            -1, -1, -1, -1};
+
+    private static final short[] DEFAULT_MATCH_LENGTH_COUNTS = {
+            1, 4, 3, 2, 2, 2, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1,
+            1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+            1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, -1, -1,
+            -1, -1, -1, -1, -1};
+
+    private static final short[] DEFAULT_OFFSET_CODES_COUNTS = {
+            1, 1, 1, 1, 1, 1, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1,
+            1, 1, 1, 1, 1, 1, 1, 1, -1, -1, -1, -1, -1};
+
+    private static final FseCompressionTable DEFAULT_LITERALS_LENGTH_TABLE = defaultTable(DEFAULT_LITERALS_LENGTH_COUNTS, DEFAULT_LITERALS_LENGTH_LOG);
+    private static final FseCompressionTable DEFAULT_MATCH_LENGTH_TABLE = defaultTable(DEFAULT_MATCH_LENGTH_COUNTS, DEFAULT_MATCH_LENGTH_LOG);
+    private static final FseCompressionTable DEFAULT_OFFSET_CODES_TABLE = defaultTable(DEFAULT_OFFSET_CODES_COUNTS, DEFAULT_OFFSET_CODES_LOG);
+
+    // the largest table description: 53 counts of 10 bits, the table log and the spare byte of the last short write
+    static final int MAX_TABLES_SIZE = 3 * ((MAX_MATCH_LENGTH_SYMBOL + 1) * (MATCH_LENGTH_FSE_LOG + 1) / 8 + 3);
+
+    private final FseCompressionTable literalsLengthTable = new FseCompressionTable(LITERALS_LENGTH_FSE_LOG, MAX_LITERALS_LENGTH_SYMBOL);
+    private final FseCompressionTable offsetCodesTable = new FseCompressionTable(OFFSET_CODES_FSE_LOG, MAX_OFFSET_CODE_SYMBOL);
+    private final FseCompressionTable matchLengthTable = new FseCompressionTable(MATCH_LENGTH_FSE_LOG, MAX_MATCH_LENGTH_SYMBOL);
+
+    private final int[] counts = new int[FseTableReader.FSE_MAX_SYMBOL_VALUE + 1];
+    private final short[] normalizedCounts = new short[MAX_MATCH_LENGTH_SYMBOL + 1];
+    private int maxSymbol;
+    private int largestCount;
+
+    private static FseCompressionTable defaultTable(final short[] normalizedCounts, final int tableLog) {
+        final FseCompressionTable table = new FseCompressionTable(tableLog, normalizedCounts.length - 1);
+        table.initialize(normalizedCounts, normalizedCounts.length - 1, tableLog);
+        return table;
+    }
+
+    /**
+     * The output must have room for the header and {@link #MAX_TABLES_SIZE} bytes of tables.
+     *
+     * @return size of the sequences section, or 0 if the bit stream does not fit
+     */
+    int compressSequences(final ByteBuffer outputBase, final int outputAddress, final int outputSize,
+                          final SequenceStore sequences, final CompressionParameters.Strategy strategy) {
+        final int outputLimit = outputAddress + outputSize;
+        int output = outputAddress;
+
+        final int sequenceCount = sequences.sequenceCount;
+        if (sequenceCount < 0x7F) {
+            outputBase.put(output++, (byte) sequenceCount);
+        } else if (sequenceCount < LONG_NUMBER_OF_SEQUENCES) {
+            outputBase.put(output++, (byte) ((sequenceCount >>> 8) | 0x80));
+            outputBase.put(output++, (byte) sequenceCount);
+        } else {
+            outputBase.put(output++, (byte) 0xFF);
+            outputBase.putShort(output, (short) (sequenceCount - LONG_NUMBER_OF_SEQUENCES));
+            output += SIZE_OF_SHORT;
+        }
+
+        if (sequenceCount == 0) {
+            return output - outputAddress;
+        }
+
+        final int modesAddress = output++;
+
+        count(sequences.literalsLengthCodes, sequenceCount, MAX_LITERALS_LENGTH_SYMBOL);
+        final int literalsLengthMode = selectMode(sequenceCount, DEFAULT_LITERALS_LENGTH_LOG, true, strategy);
+        output += writeTable(literalsLengthMode, this.literalsLengthTable, outputBase, output, sequences.literalsLengthCodes, sequenceCount, LITERALS_LENGTH_FSE_LOG);
+        final FseCompressionTable literalsLengthTable = literalsLengthMode == SET_BASIC ? DEFAULT_LITERALS_LENGTH_TABLE : this.literalsLengthTable;
+
+        // the predefined distribution does not cover the longest offsets
+        count(sequences.offsetCodes, sequenceCount, MAX_OFFSET_CODE_SYMBOL);
+        final int offsetCodesMode = selectMode(sequenceCount, DEFAULT_OFFSET_CODES_LOG, maxSymbol <= DEFAULT_MAX_OFFSET_CODE_SYMBOL, strategy);
+        output += writeTable(offsetCodesMode, this.offsetCodesTable, outputBase, output, sequences.offsetCodes, sequenceCount, OFFSET_CODES_FSE_LOG);
+        final FseCompressionTable offsetCodesTable = offsetCodesMode == SET_BASIC ? DEFAULT_OFFSET_CODES_TABLE : this.offsetCodesTable;
+
+        count(sequences.matchLengthCodes, sequenceCount, MAX_MATCH_LENGTH_SYMBOL);
+        final int matchLengthMode = selectMode(sequenceCount, DEFAULT_MATCH_LENGTH_LOG, true, strategy);
+        output += writeTable(matchLengthMode, this.matchLengthTable, outputBase, output, sequences.matchLengthCodes, sequenceCount, MATCH_LENGTH_FSE_LOG);
+        final FseCompressionTable matchLengthTable = matchLengthMode == SET_BASIC ? DEFAULT_MATCH_LENGTH_TABLE : this.matchLengthTable;
+
+        outputBase.put(modesAddress, (byte) ((literalsLengthMode << 6) | (offsetCodesMode << 4) | (matchLengthMode << 2)));
+
+        final int streamSize = encodeSequences(outputBase, output, outputLimit - output, literalsLengthTable, offsetCodesTable, matchLengthTable, sequences);
+        if (streamSize == 0) {
+            return 0;
+        }
+        return output + streamSize - outputAddress;
+    }
+
+    private void count(final byte[] codes, final int sequenceCount, final int maxSymbol) {
+        Histogram.count(codes, sequenceCount, counts);
+        this.maxSymbol = Histogram.findMaxSymbol(counts, maxSymbol);
+        largestCount = Histogram.findLargestCount(counts, this.maxSymbol);
+    }
+
+    /**
+     * Chooses the mode of the codes counted last, the heuristic of the reference implementation for its fast strategies.
+     */
+    private int selectMode(final int sequenceCount, final int defaultLog, final boolean isDefaultAllowed, final CompressionParameters.Strategy strategy) {
+        if (largestCount == sequenceCount) {
+            // a single symbol: RLE takes a byte, while the predefined table takes 5-6 bits per sequence
+            return isDefaultAllowed && sequenceCount <= 2 ? SET_BASIC : SET_RLE;
+        }
+
+        if (isDefaultAllowed) {
+            // a table description does not pay off for few sequences or for a flat distribution
+            final long minSequenceCount = ((1L << defaultLog) * strategy.getDefaultTableFactor()) >> 3;
+            if (sequenceCount < minSequenceCount || largestCount < (sequenceCount >> (defaultLog - 1))) {
+                return SET_BASIC;
+            }
+        }
+
+        return SET_COMPRESSED;
+    }
+
+    /**
+     * Writes the RLE symbol or the description of the table of the codes counted last and prepares {@code table} for them.
+     *
+     * @return number of written bytes
+     */
+    private int writeTable(final int mode, final FseCompressionTable table, final ByteBuffer outputBase, final int outputAddress,
+                           final byte[] codes, int sequenceCount, final int maxTableLog) {
+        switch (mode) {
+            case SET_RLE:
+                outputBase.put(outputAddress, codes[0]);
+                table.initializeRle(codes[0]);
+                return 1;
+            case SET_COMPRESSED:
+                final int tableLog = FiniteStateEntropy.optimalTableLog(maxTableLog, sequenceCount, maxSymbol);
+
+                // the last symbol is only the initial state, it takes no bits of the stream
+                if (counts[codes[sequenceCount - 1]] > 1) {
+                    counts[codes[sequenceCount - 1]]--;
+                    sequenceCount--;
+                }
+
+                FiniteStateEntropy.normalizeCounts(normalizedCounts, tableLog, counts, sequenceCount, maxSymbol);
+                table.initialize(normalizedCounts, maxSymbol, tableLog);
+                return FiniteStateEntropy.writeNormalizedCounts(outputBase, outputAddress, normalizedCounts, maxSymbol, tableLog);
+            default:
+                return 0;
+        }
+    }
+
+    private static int encodeSequences(final ByteBuffer outputBase, final int outputAddress, final int outputSize,
+                                       final FseCompressionTable literalsLengthTable, final FseCompressionTable offsetCodesTable, final FseCompressionTable matchLengthTable,
+                                       final SequenceStore sequences) {
+        final byte[] literalsLengthCodes = sequences.literalsLengthCodes;
+        final byte[] offsetCodes = sequences.offsetCodes;
+        final byte[] matchLengthCodes = sequences.matchLengthCodes;
+        final int[] literalsLengths = sequences.literalsLengths;
+        final int[] offsets = sequences.offsets;
+        final int[] matchLengths = sequences.matchLengths;
+
+        final BitOutputStream stream = new BitOutputStream(outputBase, outputAddress, outputSize);
+
+        // the decoder goes forward, so the sequences are written from the last one, which sets the initial states
+        final int last = sequences.sequenceCount - 1;
+        int literalsLengthState = literalsLengthTable.begin(literalsLengthCodes[last]);
+        int offsetCodesState = offsetCodesTable.begin(offsetCodes[last]);
+        int matchLengthState = matchLengthTable.begin(matchLengthCodes[last]);
+
+        stream.addBits(literalsLengths[last], LITERALS_LENGTH_BITS[literalsLengthCodes[last]]);
+        stream.addBits(matchLengths[last], MATCH_LENGTH_BITS[matchLengthCodes[last]]);
+        stream.addBits(offsets[last], offsetCodes[last]);
+        stream.flush();
+
+        for (int n = last - 1; n >= 0; n--) {
+            final int literalsLengthCode = literalsLengthCodes[n];
+            final int offsetCode = offsetCodes[n];
+            final int matchLengthCode = matchLengthCodes[n];
+
+            final int literalsLengthBits = LITERALS_LENGTH_BITS[literalsLengthCode];
+            final int offsetBits = offsetCode;
+            final int matchLengthBits = MATCH_LENGTH_BITS[matchLengthCode];
+
+            // at most 7 pending bits and 26 bits of states
+            offsetCodesState = offsetCodesTable.encode(stream, offsetCodesState, offsetCode);
+            matchLengthState = matchLengthTable.encode(stream, matchLengthState, matchLengthCode);
+            literalsLengthState = literalsLengthTable.encode(stream, literalsLengthState, literalsLengthCode);
+
+            final int totalBits = literalsLengthBits + matchLengthBits + offsetBits;
+            if (totalBits >= 64 - 7 - (LITERALS_LENGTH_FSE_LOG + MATCH_LENGTH_FSE_LOG + OFFSET_CODES_FSE_LOG)) {
+                stream.flush();
+            }
+            stream.addBits(literalsLengths[n], literalsLengthBits);
+            stream.addBits(matchLengths[n], matchLengthBits);
+            if (totalBits > 56) {
+                stream.flush();
+            }
+            stream.addBits(offsets[n], offsetBits);
+            stream.flush();
+        }
+
+        matchLengthTable.finish(stream, matchLengthState);
+        offsetCodesTable.finish(stream, offsetCodesState);
+        literalsLengthTable.finish(stream, literalsLengthState);
+
+        return stream.close();
+    }
+}
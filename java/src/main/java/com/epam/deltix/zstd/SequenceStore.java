@@ -0,0 +1,112 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.nio.ByteBuffer;
+
+import static com.epam.deltix.zstd.Util.copyMemory;
+import static com.epam.deltix.zstd.Util.highestBit;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.ByteBufferWrap;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.MAX_BLOCK_SIZE;
+
+/**
+ * Literals and sequences of one block found by a {@link BlockCompressor}.
+ * <p>
+ * Offsets are stored as the format's offset values: 1 to 3 for the repeated offsets, the offset plus 3 otherwise.
+ * Match lengths are stored without the minimum match length, so that the extra bits of both are their low bits.
+ */
+class SequenceStore {
+    static final int MIN_MATCH = 3;
+    static final int REPEAT_OFFSET_1 = 1;
+    static final int REPEAT_OFFSET_BIAS = 3;
+
+    private static final int MAX_SEQUENCES = MAX_BLOCK_SIZE / MIN_MATCH;
+
+    private static final int MAX_LITERALS_LENGTH_DIRECT_CODE = 63;
+    private static final int MAX_MATCH_LENGTH_DIRECT_CODE = 127;
+
+    private static final byte[] LITERALS_LENGTH_CODE = {
+            0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15,
+            16, 16, 17, 17, 18, 18, 19, 19, 20, 20, 20, 20, 21, 21, 21, 21,
+            22, 22, 22, 22, 22, 22, 22, 22, 23, 23, 23, 23, 23, 23, 23, 23,
+            24, 24, 24, 24, 24, 24, 24, 24, 24, 24, 24, 24, 24, 24, 24, 24};
+
+    private static final byte[] MATCH_LENGTH_CODE = {
+            0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15,
+            16, 17, 18, 19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31,
+            32, 32, 33, 33, 34, 34, 35, 35, 36, 36, 36, 36, 37, 37, 37, 37,
+            38, 38, 38, 38, 38, 38, 38, 38, 39, 39, 39, 39, 39, 39, 39, 39,
+            40, 40, 40, 40, 40, 40, 40, 40, 40, 40, 40, 40, 40, 40, 40, 40,
+            41, 41, 41, 41, 41, 41, 41, 41, 41, 41, 41, 41, 41, 41, 41, 41,
+            42, 42, 42, 42, 42, 42, 42, 42, 42, 42, 42, 42, 42, 42, 42, 42,
+            42, 42, 42, 42, 42, 42, 42, 42, 42, 42, 42, 42, 42, 42, 42, 42};
+
+    final byte[] literals = new byte[MAX_BLOCK_SIZE];
+    final ByteBuffer literalsBase = ByteBufferWrap(literals);
+    int literalsSize;
+
+    final int[] literalsLengths = new int[MAX_SEQUENCES];
+    final int[] offsets = new int[MAX_SEQUENCES];
+    final int[] matchLengths = new int[MAX_SEQUENCES];
+    int sequenceCount;
+
+    final byte[] literalsLengthCodes = new byte[MAX_SEQUENCES];
+    final byte[] offsetCodes = new byte[MAX_SEQUENCES];
+    final byte[] matchLengthCodes = new byte[MAX_SEQUENCES];
+
+    void reset() {
+        literalsSize = 0;
+        sequenceCount = 0;
+    }
+
+    /**
+     * @param offsetValue {@link #REPEAT_OFFSET_1} to 3 for a repeated offset, otherwise the offset plus {@link #REPEAT_OFFSET_BIAS}
+     * @param matchLength full length of the match, at least {@link #MIN_MATCH}
+     */
+    void storeSequence(final ByteBuffer inputBase, final int literalsAddress, final int literalsLength, final int offsetValue, final int matchLength) {
+        appendLiterals(inputBase, literalsAddress, literalsLength);
+
+        literalsLengths[sequenceCount] = literalsLength;
+        offsets[sequenceCount] = offsetValue;
+        matchLengths[sequenceCount] = matchLength - MIN_MATCH;
+        sequenceCount++;
+    }
+
+    void appendLiterals(final ByteBuffer inputBase, final int inputAddress, final int inputSize) {
+        copyMemory(inputBase, inputAddress, literalsBase, literalsSize, inputSize);
+        literalsSize += inputSize;
+    }
+
+    void generateCodes() {
+        for (int i = 0; i < sequenceCount; i++) {
+            literalsLengthCodes[i] = literalsLengthToCode(literalsLengths[i]);
+            offsetCodes[i] = (byte) highestBit(offsets[i]);
+            matchLengthCodes[i] = matchLengthToCode(matchLengths[i]);
+        }
+    }
+
+    private static byte literalsLengthToCode(final int literalsLength) {
+        if (literalsLength > MAX_LITERALS_LENGTH_DIRECT_CODE) {
+            return (byte) (highestBit(literalsLength) + 19);
+        }
+        return LITERALS_LENGTH_CODE[literalsLength];
+    }
+
+    private static byte matchLengthToCode(final int matchLengthBase) {
+        if (matchLengthBase > MAX_MATCH_LENGTH_DIRECT_CODE) {
+            return (byte) (highestBit(matchLengthBase) + 36);
+        }
+        return MATCH_LENGTH_CODE[matchLengthBase];
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Receives skippable frames (magic numbers {@code 0x184D2A50..0x184D2A5F}), which carry user metadata
+ * such as seek tables and are otherwise ignored by the decoder.
+ */
+public interface SkippableFrameListener {
+    /**
+     * The content must not be used after the call returns: it may be a view of a memory mapping which is released
+     * afterwards, or of a buffer which is reused for the next frame. A listener which keeps it has to copy it.
+     *
+     * @param magicVariant low 4 bits of the frame magic number
+     * @param content      read-only little-endian view of the frame content, valid only during the call
+     */
+    void onSkippableFrame(int magicVariant, ByteBuffer content);
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
+
+/**
+ * {@link Memory} on top of {@code sun.misc.Unsafe}: reads the backing array or the native address of a buffer directly,
+ * which avoids the byte by byte assembly of multi-byte values by heap buffers on Java 8.
+ * Only used on little-endian platforms.
+ */
+final class UnsafeMemory extends Memory {
+    private static final Unsafe UNSAFE;
+    private static final long ARRAY_BASE_OFFSET;
+    // fields of ByteBuffer and Buffer: the backing array, its offset, the native address of direct buffers
+    private static final long HEAP_BUFFER_ARRAY;
+    private static final long HEAP_BUFFER_OFFSET;
+    private static final long BUFFER_ADDRESS;
+
+    static {
+        Unsafe unsafe = null;
+        long arrayBaseOffset = 0;
+        long heapBufferArray = 0;
+        long heapBufferOffset = 0;
+        long bufferAddress = 0;
+        if (ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN) {
+            try {
+                final Field theUnsafe = Unsafe.class.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                final Unsafe candidate = (Unsafe) theUnsafe.get(null);
+                arrayBaseOffset = candidate.arrayBaseOffset(byte[].class);
+                heapBufferArray = candidate.objectFieldOffset(ByteBuffer.class.getDeclaredField("hb"));
+                heapBufferOffset = candidate.objectFieldOffset(ByteBuffer.class.getDeclaredField("offset"));
+                bufferAddress = candidate.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+                unsafe = candidate;
+            } catch (final ReflectiveOperationException | RuntimeException e) {
+                // not available: the fields moved or access is denied
+            }
+        }
+        UNSAFE = unsafe;
+        ARRAY_BASE_OFFSET = arrayBaseOffset;
+        HEAP_BUFFER_ARRAY = heapBufferArray;
+        HEAP_BUFFER_OFFSET = heapBufferOffset;
+        BUFFER_ADDRESS = bufferAddress;
+    }
+
+    private UnsafeMemory() {
+    }
+
+    /**
+     * @return the instance, or {@code null} if {@code Unsafe} or the buffer internals are not accessible
+     */
+    static UnsafeMemory create() {
+        return UNSAFE == null ? null : new UnsafeMemory();
+    }
+
+    @Override
+    short getShort(final ByteBuffer buffer, final int index) {
+        final Object array = UNSAFE.getObject(buffer, HEAP_BUFFER_ARRAY);
+        return UNSAFE.getShort(array, address(buffer, array, index, 2));
+    }
+
+    @Override
+    int getInt(final ByteBuffer buffer, final int index) {
+        final Object array = UNSAFE.getObject(buffer, HEAP_BUFFER_ARRAY);
+        return UNSAFE.getInt(array, address(buffer, array, index, 4));
+    }
+
+    @Override
+    long getLong(final ByteBuffer buffer, final int index) {
+        final Object array = UNSAFE.getObject(buffer, HEAP_BUFFER_ARRAY);
+        return UNSAFE.getLong(array, address(buffer, array, index, 8));
+    }
+
+    @Override
+    void putShort(final ByteBuffer buffer, final int index, final short value) {
+        final Object array = UNSAFE.getObject(buffer, HEAP_BUFFER_ARRAY);
+        UNSAFE.putShort(array, writableAddress(buffer, array, index, 2), value);
+    }
+
+    @Override
+    void putInt(final ByteBuffer buffer, final int index, final int value) {
+        final Object array = UNSAFE.getObject(buffer, HEAP_BUFFER_ARRAY);
+        UNSAFE.putInt(array, writableAddress(buffer, array, index, 4), value);
+    }
+
+    @Override
+    void putLong(final ByteBuffer buffer, final int index, final long value) {
+        final Object array = UNSAFE.getObject(buffer, HEAP_BUFFER_ARRAY);
+        UNSAFE.putLong(array, writableAddress(buffer, array, index, 8), value);
+    }
+
+    /**
+     * @return offset of the value in the backing array, or its native address for a direct buffer
+     */
+    private static long address(final ByteBuffer buffer, final Object array, final int index, final int size) {
+        if (index < 0 || size > buffer.limit() - index) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (array == null) {
+            return UNSAFE.getLong(buffer, BUFFER_ADDRESS) + index;
+        }
+        return ARRAY_BASE_OFFSET + UNSAFE.getInt(buffer, HEAP_BUFFER_OFFSET) + index;
+    }
+
+    private static long writableAddress(final ByteBuffer buffer, final Object array, final int index, final int size) {
+        if (buffer.isReadOnly()) {
+            throw new ReadOnlyBufferException();
+        }
+        return address(buffer, array, index, size);
+    }
+}
@@ -13,6 +13,14 @@
  */
 package com.epam.deltix.zstd;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import static com.epam.deltix.zstd.Memory.MEMORY;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_LONG;
+
 class Util {
     private Util() {
     }
@@ -38,4 +46,49 @@ class Util {
     public static RuntimeException fail(final long offset, final String reason) {
         throw new RuntimeException(reason + ": offset=" + offset);
     }
+
+    /**
+     * Copies non-overlapping ranges between heap or direct buffers, addresses are absolute buffer indexes.
+     */
+    public static void copyMemory(final ByteBuffer inputBase, int inputAddress, final ByteBuffer outputBase, int outputAddress, final int length) {
+        if (inputBase.hasArray() && outputBase.hasArray()) {
+            System.arraycopy(inputBase.array(), inputBase.arrayOffset() + inputAddress, outputBase.array(), outputBase.arrayOffset() + outputAddress, length);
+            return;
+        }
+
+        final int outputLimit = outputAddress + length;
+        while (outputAddress <= outputLimit - SIZE_OF_LONG) {
+            MEMORY.putLong(outputBase, outputAddress, MEMORY.getLong(inputBase, inputAddress));
+            outputAddress += SIZE_OF_LONG;
+            inputAddress += SIZE_OF_LONG;
+        }
+        while (outputAddress < outputLimit) {
+            outputBase.put(outputAddress++, inputBase.get(inputAddress++));
+        }
+    }
+
+    /**
+     * Codecs work with absolute indexes, so a view with another byte order shares both the data and the indexes.
+     */
+    public static ByteBuffer littleEndian(final ByteBuffer buffer) {
+        return buffer.order() == ByteOrder.LITTLE_ENDIAN ? buffer : buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Waits for the task and rethrows its unchecked failure as is.
+     */
+    public static <T> T await(final Future<T> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
 }
@@ -16,15 +16,29 @@ package com.epam.deltix.zstd;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
-
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static com.epam.deltix.zstd.Kernels.KERNELS;
+import static com.epam.deltix.zstd.Memory.MEMORY;
 import static com.epam.deltix.zstd.Preconditions.checkPositionIndexes;
+import static com.epam.deltix.zstd.Util.copyMemory;
+import static com.epam.deltix.zstd.Util.littleEndian;
 import static com.epam.deltix.zstd.ZstdFrameDecompressor.ByteBufferWrap;
 import static java.lang.Long.rotateLeft;
 import static java.lang.Math.min;
 
+/**
+ * XXH64 hash, the content checksum of the frames. The static methods hash one message, an instance hashes a message
+ * fed in parts and may be {@link #reset} for the next one: once warmed up, it hashes arrays, heap and direct buffers,
+ * streams and channels without allocation and without copying the data, except for the parts shorter than a stripe.
+ */
 public final class XxHash64 {
-    private static final long PRIME64_1 = 0x9E3779B185EBCA87L;
-    private static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+    static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+    static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
     private static final long PRIME64_3 = 0x165667B19E3779F9L;
     private static final long PRIME64_4 = 0x85EBCA77C2b2AE63L;
     private static final long PRIME64_5 = 0x27D4EB2F165667C5L;
@@ -33,6 +47,11 @@ public final class XxHash64 {
 
     private static final byte SIZE_OF_LONG = 8;
 
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    // files are read up to this size and mapped from it on, the mappings cost more than reading a few pages
+    private static final int MIN_MAPPING_SIZE = 256 * 1024;
+    private static final int MAX_MAPPING_SIZE = 1 << 30;
+
     private final long seed;
 
     private static final int BUFFER_ADDRESS = 0;
@@ -41,10 +60,19 @@ public final class XxHash64 {
 
     private long bodyLength;
 
-    private long v1;
-    private long v2;
-    private long v3;
-    private long v4;
+    // reused by the updates from streams and channels
+    private byte[] readArray;
+    private ByteBuffer readBase;
+    private ByteBuffer readBuffer;
+
+    // little-endian views of the last array and of the last buffer of another byte order, held weakly
+    private final ZstdDecompressor.Views views = new ZstdDecompressor.Views();
+
+    // accumulators of the stripes, advanced by the kernels
+    long v1;
+    long v2;
+    long v3;
+    long v4;
 
     public XxHash64() {
         this(DEFAULT_SEED);
@@ -52,10 +80,20 @@ public final class XxHash64 {
 
     public XxHash64(final long seed) {
         this.seed = seed;
-        this.v1 = seed + PRIME64_1 + PRIME64_2;
-        this.v2 = seed + PRIME64_2;
-        this.v3 = seed;
-        this.v4 = seed - PRIME64_1;
+        reset();
+    }
+
+    /**
+     * Discards the data hashed so far, so that the instance can be reused with the same seed.
+     */
+    public XxHash64 reset() {
+        v1 = seed + PRIME64_1 + PRIME64_2;
+        v2 = seed + PRIME64_2;
+        v3 = seed;
+        v4 = seed - PRIME64_1;
+        bodyLength = 0;
+        bufferSize = 0;
+        return this;
     }
 
     public XxHash64 update(final byte[] data) {
@@ -64,7 +102,7 @@ public final class XxHash64 {
 
     public XxHash64 update(final byte[] data, final int offset, final int length) {
         checkPositionIndexes(offset, offset + length, data.length);
-        updateHash(ByteBufferWrap(data), offset, length);
+        updateHash(views.of(data), offset, length);
         return this;
     }
 
@@ -74,7 +112,74 @@ public final class XxHash64 {
 
     public XxHash64 update(final ByteBuffer dataBase, final int dataAddress, final int dataSize, final int offset, final int length) {
         checkPositionIndexes(0, offset + length, dataSize);
-        updateHash(dataBase, dataAddress + offset, length);
+        updateHash(views.of(dataBase), dataAddress + offset, length);
+        return this;
+    }
+
+    /**
+     * Hashes the bytes between the position and the limit of {@code data}, which may be heap or direct and of any
+     * byte order, and moves the position to the limit.
+     */
+    public XxHash64 update(final ByteBuffer data) {
+        updateHash(views.of(data), data.position(), data.remaining());
+        data.position(data.limit());
+        return this;
+    }
+
+    /**
+     * Hashes the rest of {@code in} through a buffer reused by the following calls. Does not close the stream.
+     */
+    public XxHash64 update(final InputStream in) throws IOException {
+        if (readArray == null) {
+            readArray = new byte[READ_BUFFER_SIZE];
+            readBase = ByteBufferWrap(readArray);
+        }
+        int length;
+        while ((length = in.read(readArray)) != -1) {
+            updateHash(readBase, 0, length);
+        }
+        return this;
+    }
+
+    /**
+     * Hashes the rest of the blocking {@code channel} through a direct buffer reused by the following calls, or straight from memory
+     * mappings if it is a large {@link FileChannel}, whose position is moved to its size. Does not close the channel.
+     */
+    public XxHash64 update(final ReadableByteChannel channel) throws IOException {
+        if (channel instanceof FileChannel) {
+            final FileChannel file = (FileChannel) channel;
+            final long position = file.position();
+            final long size = file.size() - position;
+            if (size >= MIN_MAPPING_SIZE) {
+                update(file, position, size);
+                file.position(position + size);
+                return this;
+            }
+        }
+
+        if (readBuffer == null) {
+            readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        readBuffer.clear();
+        while (channel.read(readBuffer) != -1) {
+            updateHash(readBuffer, 0, readBuffer.position());
+            readBuffer.clear();
+        }
+        return this;
+    }
+
+    /**
+     * Hashes {@code size} bytes of {@code file} starting at {@code position} from read-only memory mappings of up to 1 GB.
+     * Does not change the position of the channel.
+     */
+    public XxHash64 update(final FileChannel file, long position, long size) throws IOException {
+        while (size > 0) {
+            final int mappingSize = (int) min(size, MAX_MAPPING_SIZE);
+            final ByteBuffer mapping = file.map(FileChannel.MapMode.READ_ONLY, position, mappingSize).order(ByteOrder.LITTLE_ENDIAN);
+            updateHash(mapping, 0, mappingSize);
+            position += mappingSize;
+            size -= mappingSize;
+        }
         return this;
     }
 
@@ -92,21 +197,14 @@ public final class XxHash64 {
     }
 
     private long computeBody() {
-        long hash = rotateLeft(v1, 1) + rotateLeft(v2, 7) + rotateLeft(v3, 12) + rotateLeft(v4, 18);
-
-        hash = update(hash, v1);
-        hash = update(hash, v2);
-        hash = update(hash, v3);
-        hash = update(hash, v4);
-
-        return hash;
+        return merge(v1, v2, v3, v4);
     }
 
     private void updateHash(final ByteBuffer base, int address, int length) {
         if (bufferSize > 0) {
             final int available = min(32 - bufferSize, length);
 
-            System.arraycopy(base.array(), address, buffer, BUFFER_ADDRESS + bufferSize, available);
+            copyMemory(base, address, buffer, BUFFER_ADDRESS + bufferSize, available);
 
             bufferSize += available;
             address += available;
@@ -125,24 +223,13 @@ public final class XxHash64 {
         }
 
         if (length > 0) {
-            System.arraycopy(base.array(), address, buffer.array(), BUFFER_ADDRESS, length);
+            copyMemory(base, address, buffer, BUFFER_ADDRESS, length);
             bufferSize = length;
         }
     }
 
-    private int updateBody(final ByteBuffer base, int address, final int length) {
-        int remaining = length;
-        while (remaining >= 32) {
-            v1 = mix(v1, base.getLong(address));
-            v2 = mix(v2, base.getLong(address + 8));
-            v3 = mix(v3, base.getLong(address + 16));
-            v4 = mix(v4, base.getLong(address + 24));
-
-            address += 32;
-            remaining -= 32;
-        }
-
-        final int index = length - remaining;
+    private int updateBody(final ByteBuffer base, final int address, final int length) {
+        final int index = KERNELS.xxHashRounds(this, base, address, length);
         bodyLength += index;
         return index;
     }
@@ -160,18 +247,33 @@ public final class XxHash64 {
         return hash(DEFAULT_SEED, in);
     }
 
+    /**
+     * Hashes the rest of {@code in}. Allocates a read buffer, {@link #update(InputStream)} of a reused instance does not.
+     */
     public static long hash(final long seed, final InputStream in)
             throws IOException {
-        final XxHash64 hash = new XxHash64(seed);
-        final byte[] buffer = new byte[8192];
-        while (true) {
-            final int length = in.read(buffer);
-            if (length == -1) {
-                break;
-            }
-            hash.update(buffer, 0, length);
+        return new XxHash64(seed).update(in).hash();
+    }
+
+    /**
+     * Hashes the bytes between the position and the limit of {@code data}, which may be heap or direct and of any
+     * byte order, without moving the position.
+     */
+    public static long hash(final ByteBuffer data) {
+        return hash(DEFAULT_SEED, data);
+    }
+
+    public static long hash(final long seed, final ByteBuffer data) {
+        return hash(seed, littleEndian(data), data.position(), data.remaining());
+    }
+
+    /**
+     * Hashes the whole file, straight from memory mappings if it is large.
+     */
+    public static long hash(final Path file) throws IOException {
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new XxHash64().update(channel).hash();
         }
-        return hash.hash();
     }
 
     public static long hash(final ByteBuffer dataBase, final int dataAddress, final int dataSize) {
@@ -189,12 +291,13 @@ public final class XxHash64 {
     public static long hash(final long seed, final ByteBuffer dataBase, final int dataAddress, final int dataSize, final int offset, final int length) {
         checkPositionIndexes(0, offset + length, dataSize);
 
-        final ByteBuffer base = dataBase;
+        // the kernels read little-endian words whatever the order of the buffer is
+        final ByteBuffer base = littleEndian(dataBase);
         final int address = dataAddress + offset;
 
         long hash;
         if (length >= 32) {
-            hash = updateBody(seed, base, address, length);
+            hash = KERNELS.xxHashBody(seed, base, address, length);
         } else {
             hash = seed + PRIME64_5;
         }
@@ -202,7 +305,7 @@ public final class XxHash64 {
         hash += length;
 
         // round to the closest 32 byte boundary
-        // this is the point up to which updateBody() processed
+        // this is the point up to which xxHashBody() processed
         final int index = length & 0xFFFFFFE0;
 
         return updateTail(hash, base, address, index, length);
@@ -210,12 +313,12 @@ public final class XxHash64 {
 
     private static long updateTail(long hash, final ByteBuffer base, final int address, int index, final int length) {
         while (index <= length - 8) {
-            hash = updateTail(hash, base.getLong(address + index));
+            hash = updateTail(hash, MEMORY.getLong(base, address + index));
             index += 8;
         }
 
         if (index <= length - 4) {
-            hash = updateTail(hash, base.getInt(address + index));
+            hash = updateTail(hash, MEMORY.getInt(base, address + index));
             index += 4;
         }
 
@@ -229,23 +332,7 @@ public final class XxHash64 {
         return hash;
     }
 
-    private static long updateBody(final long seed, final ByteBuffer base, int address, final int length) {
-        long v1 = seed + PRIME64_1 + PRIME64_2;
-        long v2 = seed + PRIME64_2;
-        long v3 = seed;
-        long v4 = seed - PRIME64_1;
-
-        int remaining = length;
-        while (remaining >= 32) {
-            v1 = mix(v1, base.getLong(address));
-            v2 = mix(v2, base.getLong(address + 8));
-            v3 = mix(v3, base.getLong(address + 16));
-            v4 = mix(v4, base.getLong(address + 24));
-
-            address += 32;
-            remaining -= 32;
-        }
-
+    static long merge(final long v1, final long v2, final long v3, final long v4) {
         long hash = rotateLeft(v1, 1) + rotateLeft(v2, 7) + rotateLeft(v3, 12) + rotateLeft(v4, 18);
 
         hash = update(hash, v1);
@@ -256,7 +343,7 @@ public final class XxHash64 {
         return hash;
     }
 
-    private static long mix(final long current, final long value) {
+    static long mix(final long current, final long value) {
         return rotateLeft(current + value * PRIME64_2, 31) * PRIME64_1;
     }
 
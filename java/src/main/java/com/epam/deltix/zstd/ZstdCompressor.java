@@ -0,0 +1,85 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.nio.ByteBuffer;
+
+import static com.epam.deltix.zstd.Preconditions.checkArgument;
+import static com.epam.deltix.zstd.Preconditions.checkPositionIndexes;
+import static com.epam.deltix.zstd.Util.littleEndian;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.ByteBufferWrap;
+
+/**
+ * Compresses the input into a single frame with the content size and the checksum.
+ * Levels 1 and 2 use the "fast" strategy, levels 3 and 4 the "double fast" one, levels 5 to 12 search hash chains
+ * with the "greedy", "lazy" and "lazy2" strategies, trading speed for ratio. Not thread safe.
+ */
+public class ZstdCompressor {
+    public static final int MIN_COMPRESSION_LEVEL = CompressionParameters.MIN_COMPRESSION_LEVEL;
+    public static final int MAX_COMPRESSION_LEVEL = CompressionParameters.MAX_COMPRESSION_LEVEL;
+    public static final int DEFAULT_COMPRESSION_LEVEL = 3;
+
+    private final ZstdFrameCompressor compressor = new ZstdFrameCompressor();
+    private final int compressionLevel;
+
+    public ZstdCompressor() {
+        this(DEFAULT_COMPRESSION_LEVEL);
+    }
+
+    public ZstdCompressor(final int compressionLevel) {
+        checkArgument(compressionLevel >= MIN_COMPRESSION_LEVEL && compressionLevel <= MAX_COMPRESSION_LEVEL,
+                "Compression level must be between " + MIN_COMPRESSION_LEVEL + " and " + MAX_COMPRESSION_LEVEL + ": " + compressionLevel);
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * @return output size that is enough to compress any input of {@code uncompressedSize} bytes
+     */
+    public static int maxCompressedLength(final int uncompressedSize) {
+        return ZstdFrameCompressor.maxCompressedLength(uncompressedSize);
+    }
+
+    /**
+     * @return size of the compressed frame
+     * @throws RuntimeException if the output is too small, which never happens with {@link #maxCompressedLength} bytes
+     */
+    public int compress(final byte[] input, final int inputOffset, final int inputLength,
+                        final byte[] output, final int outputOffset, final int maxOutputLength) {
+        checkPositionIndexes(inputOffset, inputOffset + inputLength, input.length);
+        checkPositionIndexes(outputOffset, outputOffset + maxOutputLength, output.length);
+
+        // Hide ByteBuffer interface because it must be forced to LITTLE_ENDIAN
+        return compressor.compress(
+                ByteBufferWrap(input), inputOffset, inputOffset + inputLength,
+                ByteBufferWrap(output), outputOffset, outputOffset + maxOutputLength, compressionLevel);
+    }
+
+    /**
+     * Compresses the bytes between the position and the limit of {@code input} into {@code output}
+     * starting at its position. Both buffers may be heap or direct and of any byte order.
+     * On return the position of {@code input} is at its limit and the position of {@code output} is advanced
+     * by the size of the frame.
+     *
+     * @return size of the compressed frame
+     */
+    public int compress(final ByteBuffer input, final ByteBuffer output) {
+        final int written = compressor.compress(
+                littleEndian(input), input.position(), input.limit(),
+                littleEndian(output), output.position(), output.limit(), compressionLevel);
+
+        input.position(input.limit());
+        output.position(output.position() + written);
+        return written;
+    }
+}
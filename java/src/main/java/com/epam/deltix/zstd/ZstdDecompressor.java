@@ -13,22 +13,296 @@
  */
 package com.epam.deltix.zstd;
 
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static com.epam.deltix.zstd.Util.littleEndian;
 import static com.epam.deltix.zstd.ZstdFrameDecompressor.ByteBufferWrap;
 
+/**
+ * Decompresses frames into a caller provided buffer. Not thread-safe, but may be reused: once warmed up, calls with the
+ * same input and output arrays or buffers as the previous call do not allocate.
+ */
 public class ZstdDecompressor {
     private final ZstdFrameDecompressor decompressor = new ZstdFrameDecompressor();
 
+    private final Views inputs = new Views();
+    private final Views outputs = new Views();
+
+    public ZstdDecompressor() {
+    }
+
+    /**
+     * Creates a decompressor for frames compressed with {@code dictionary}. Frames that declare another dictionary id fail.
+     */
+    public ZstdDecompressor(final ZstdDictionary dictionary) {
+        decompressor.setDictionary(dictionary);
+    }
+
+    /**
+     * Creates a decompressor which resolves the dictionary ids of frames in {@code registry}.
+     */
+    public ZstdDecompressor(final ZstdDictionaryRegistry registry) {
+        decompressor.setDictionaryRegistry(registry);
+    }
 
     public int decompress(final byte[] input, final int inputOffset, final int inputLength,
                           final byte[] output, final int outputOffset, final int maxOutputLength) {
 
+        return decompress(input, inputOffset, inputLength, output, outputOffset, maxOutputLength, ChecksumPolicy.VERIFY);
+    }
+
+    /**
+     * Same as {@link #decompress(byte[], int, int, byte[], int, int)}, with the given treatment of the frame checksums.
+     */
+    public int decompress(final byte[] input, final int inputOffset, final int inputLength,
+                          final byte[] output, final int outputOffset, final int maxOutputLength, final ChecksumPolicy checksumPolicy) {
+
         // Hide ByteBuffer interface because it must be forced to LITTLE_ENDIAN
         return decompressor.decompress(
-                ByteBufferWrap(input), inputOffset, inputOffset + inputLength,
-                ByteBufferWrap(output), outputOffset, outputOffset + maxOutputLength);
+                inputBase(input), inputOffset, inputOffset + inputLength,
+                outputBase(output), outputOffset, outputOffset + maxOutputLength, checksumPolicy);
+    }
+
+    /**
+     * Decompresses all frames between the position and the limit of {@code input} into {@code output}
+     * starting at its position. Both buffers may be heap or direct and of any byte order.
+     * On return the position of {@code input} is at its limit and the position of {@code output} is advanced
+     * by the number of decompressed bytes.
+     *
+     * @return number of decompressed bytes
+     */
+    public int decompress(final ByteBuffer input, final ByteBuffer output) {
+        return decompress(input, output, ChecksumPolicy.VERIFY);
+    }
+
+    /**
+     * Same as {@link #decompress(ByteBuffer, ByteBuffer)}, with the given treatment of the frame checksums.
+     */
+    public int decompress(final ByteBuffer input, final ByteBuffer output, final ChecksumPolicy checksumPolicy) {
+        final int written = decompressor.decompress(
+                inputBase(input), input.position(), input.limit(),
+                outputBase(output), output.position(), output.limit(), checksumPolicy);
+
+        input.position(input.limit());
+        output.position(output.position() + written);
+        return written;
+    }
+
+    /**
+     * Decompresses all frames of the input into segments taken from {@code pool}, for frames which do not declare
+     * their content size: the output grows by a segment at a time, so no bound is guessed and nothing is decoded twice.
+     * The result is read as {@link ZstdSegmentedOutput#asByteBuffers() buffers} or
+     * {@link ZstdSegmentedOutput#toByteArray() copied} into an array of its exact size, then closed to give the segments
+     * back to the pool.
+     */
+    public ZstdSegmentedOutput decompress(final byte[] input, final int inputOffset, final int inputLength, final ZstdSegmentPool pool) {
+        return decompress(input, inputOffset, inputLength, pool, ChecksumPolicy.VERIFY);
+    }
+
+    /**
+     * Same as {@link #decompress(byte[], int, int, ZstdSegmentPool)}, with the given treatment of the frame checksums.
+     * {@link ChecksumPolicy#DEFERRED} is not supported, because the output is not contiguous.
+     */
+    public ZstdSegmentedOutput decompress(final byte[] input, final int inputOffset, final int inputLength,
+                                          final ZstdSegmentPool pool, final ChecksumPolicy checksumPolicy) {
+        return decompress(inputBase(input), inputOffset, inputOffset + inputLength, pool, checksumPolicy);
+    }
+
+    /**
+     * Decompresses all frames between the position and the limit of {@code input} into segments taken from
+     * {@code pool}, see {@link #decompress(byte[], int, int, ZstdSegmentPool)}. On return the position of
+     * {@code input} is at its limit.
+     */
+    public ZstdSegmentedOutput decompress(final ByteBuffer input, final ZstdSegmentPool pool) {
+        return decompress(input, pool, ChecksumPolicy.VERIFY);
+    }
+
+    /**
+     * Same as {@link #decompress(ByteBuffer, ZstdSegmentPool)}, with the given treatment of the frame checksums.
+     */
+    public ZstdSegmentedOutput decompress(final ByteBuffer input, final ZstdSegmentPool pool, final ChecksumPolicy checksumPolicy) {
+        final ZstdSegmentedOutput output = decompress(inputBase(input), input.position(), input.limit(), pool, checksumPolicy);
+        input.position(input.limit());
+        return output;
+    }
+
+    private ZstdSegmentedOutput decompress(final ByteBuffer inputBase, final int inputAddress, final int inputLimit,
+                                           final ZstdSegmentPool pool, final ChecksumPolicy checksumPolicy) {
+        Preconditions.checkArgument(checksumPolicy != ChecksumPolicy.DEFERRED, "Deferred checksums need contiguous output");
+
+        final ZstdSegmentedOutput output = new ZstdSegmentedOutput(pool);
+        boolean done = false;
+        try {
+            decompressor.decompress(inputBase, inputAddress, inputLimit, output, checksumPolicy);
+            done = true;
+            return output;
+        } finally {
+            if (!done) {
+                output.close();
+            }
+        }
+    }
+
+    private ByteBuffer inputBase(final byte[] input) {
+        return inputs.of(input);
+    }
+
+    private ByteBuffer outputBase(final byte[] output) {
+        return outputs.of(output);
+    }
+
+    private ByteBuffer inputBase(final ByteBuffer input) {
+        return inputs.of(input);
+    }
+
+    private ByteBuffer outputBase(final ByteBuffer output) {
+        return outputs.of(output);
+    }
+
+    /**
+     * Little-endian views of the last array and buffer, reused while the caller passes the same ones. They are held
+     * weakly, so that a long-lived decompressor does not keep the data of the caller alive between calls; a view
+     * cleared by the garbage collector is made again. {@link XxHash64} keeps its views the same way.
+     */
+    static final class Views {
+        private WeakReference<ByteBuffer> array = new WeakReference<>(null);
+        private WeakReference<ByteBuffer> buffer = new WeakReference<>(null);
+        private WeakReference<ByteBuffer> view = new WeakReference<>(null);
+
+        ByteBuffer of(final byte[] data) {
+            ByteBuffer base = array.get();
+            if (base == null || base.array() != data) {
+                base = ByteBufferWrap(data);
+                array = new WeakReference<>(base);
+            }
+            return base;
+        }
+
+        ByteBuffer of(final ByteBuffer data) {
+            if (data.order() == ByteOrder.LITTLE_ENDIAN) {
+                return data;
+            }
+            ByteBuffer base = view.get();
+            if (base == null || buffer.get() != data) {
+                base = littleEndian(data);
+                buffer = new WeakReference<>(data);
+                view = new WeakReference<>(base);
+            }
+            // the limit of the caller may have moved since the view was made
+            base.limit(data.limit());
+            return base;
+        }
+    }
+
+    /**
+     * Hands over the checksums of the frames decoded with {@link ChecksumPolicy#DEFERRED} since the previous call,
+     * so that another thread can verify them while this one decodes further input.
+     */
+    public DeferredChecksums takeDeferredChecksums() {
+        return decompressor.takeDeferredChecksums();
+    }
+
+    /**
+     * Accounts the literals buffer and the entropy tables of this decompressor in {@code memoryBudget}, {@code null}
+     * for no limit. Frames which need more memory than the budget has left fail.
+     */
+    public void setMemoryBudget(final ZstdMemoryBudget memoryBudget) {
+        decompressor.setMemoryBudget(memoryBudget);
+    }
+
+    /**
+     * Drops the literals buffer and the entropy tables between frames, for example while a session is idle.
+     * The next frame creates them again. A decompressor which is dropped without this call returns its memory to
+     * the budget only after it is garbage collected.
+     */
+    public void releaseMemory() {
+        decompressor.releaseMemory();
+    }
+
+    /**
+     * @return number of bytes kept for the literals buffer and the entropy tables
+     */
+    public long getMemorySize() {
+        return decompressor.getMemorySize();
+    }
+
+    /**
+     * Sets the largest window, {@code 1 << maxWindowLog} bytes, of the frames decompressed into
+     * {@link ZstdSegmentedOutput segments}, which keep the window in a buffer of their own; frames with larger windows
+     * fail with "Window size too large" before it is allocated. The default of 27 (128 MB) is the default limit of
+     * the reference streaming decoder, it may be raised up to 31. Decompression into an array or a buffer allocates
+     * no window and accepts any window of the format, as the reference one-shot decoder does.
+     */
+    public void setMaxWindowLog(final int maxWindowLog) {
+        decompressor.setMaxWindowLog(maxWindowLog);
+    }
+
+    /**
+     * Sets the listener notified about skippable frames met by {@link #decompress}, {@code null} to ignore them.
+     */
+    public void setSkippableFrameListener(final SkippableFrameListener listener) {
+        decompressor.setSkippableFrameListener(listener);
     }
 
     public static long getDecompressedSize(final byte[] input, final int offset, final int length) {
         return ZstdFrameDecompressor.getDecompressedSize(ByteBufferWrap(input), offset, offset + length);
     }
+
+    /**
+     * @return decompressed size of the frames between the position and the limit of {@code input}, or -1 if unknown
+     */
+    public static long getDecompressedSize(final ByteBuffer input) {
+        return ZstdFrameDecompressor.getDecompressedSize(littleEndian(input), input.position(), input.limit());
+    }
+
+    /**
+     * Walks the block headers of the frame at {@code offset}, skippable or not, without decoding the blocks.
+     *
+     * @return size of the frame including the magic number and the checksum
+     */
+    public static int findFrameCompressedSize(final byte[] input, final int offset, final int length) {
+        return ZstdFrameDecompressor.getFrameCompressedSize(ByteBufferWrap(input), offset, offset + length);
+    }
+
+    /**
+     * @return size of the frame at the position of {@code input}, see {@link #findFrameCompressedSize(byte[], int, int)}
+     */
+    public static int findFrameCompressedSize(final ByteBuffer input) {
+        return ZstdFrameDecompressor.getFrameCompressedSize(littleEndian(input), input.position(), input.limit());
+    }
+
+    /**
+     * Walks the block headers of all frames of the input, so it also bounds frames which do not declare their
+     * content size: raw and RLE blocks count with their size, compressed blocks with the largest block
+     * the window allows.
+     *
+     * @return upper bound of the decompressed size of the input, exact if all frames declare their content size
+     */
+    public static long getDecompressedSizeBound(final byte[] input, final int offset, final int length) {
+        return ZstdFrameInfo.getDecompressedSizeBound(ByteBufferWrap(input), offset, offset + length);
+    }
+
+    /**
+     * @return upper bound of the decompressed size of the frames between the position and the limit of {@code input},
+     * see {@link #getDecompressedSizeBound(byte[], int, int)}
+     */
+    public static long getDecompressedSizeBound(final ByteBuffer input) {
+        return ZstdFrameInfo.getDecompressedSizeBound(littleEndian(input), input.position(), input.limit());
+    }
+
+    /**
+     * Reports all skippable frames of the input without decompressing the frames around them.
+     */
+    public static void readSkippableFrames(final byte[] input, final int offset, final int length, final SkippableFrameListener listener) {
+        ZstdFrameDecompressor.readSkippableFrames(ByteBufferWrap(input), offset, offset + length, listener);
+    }
+
+    /**
+     * Reports all skippable frames between the position and the limit of {@code input}.
+     */
+    public static void readSkippableFrames(final ByteBuffer input, final SkippableFrameListener listener) {
+        ZstdFrameDecompressor.readSkippableFrames(littleEndian(input), input.position(), input.limit(), listener);
+    }
 }
@@ -0,0 +1,301 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.epam.deltix.zstd.Util.littleEndian;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.ByteBufferWrap;
+
+/**
+ * Thread-safe decompressor: each call borrows a decoder context from a bounded pool and returns it when done,
+ * so any number of threads, platform or virtual, share at most {@code maxContexts} contexts instead of keeping one
+ * per thread.
+ * <p>
+ * Idle contexts are kept in a lock-free queue and created on demand. A call which finds all of them in use waits
+ * for one to be returned, parked in {@code java.util.concurrent} style, which does not pin a virtual thread.
+ * The statistics are exposed through {@link ZstdDecompressorPoolMXBean}, see {@link #registerMBean}.
+ * <p>
+ * {@link #releaseMemory} drops the idle contexts, {@link #close} drops all of them as they are returned and fails
+ * the later calls, both return the memory of the dropped contexts to the {@link ZstdMemoryBudget} of the pool.
+ */
+public class ZstdDecompressorPool implements ZstdDecompressorPoolMXBean, Closeable {
+    private final int maxContexts;
+    private final ZstdDictionary dictionary;
+    private final ZstdDictionaryRegistry dictionaryRegistry;
+    private volatile ZstdMemoryBudget memoryBudget;
+    private volatile boolean closed;
+
+    private final Queue<ZstdFrameDecompressor> decompressors = new ConcurrentLinkedQueue<>();
+    // one permit per context which may be borrowed, idle or not created yet
+    private final Semaphore permits;
+
+    private final AtomicInteger contexts = new AtomicInteger();
+    private final AtomicInteger activeContexts = new AtomicInteger();
+    private final AtomicInteger peakActiveContexts = new AtomicInteger();
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong returnCount = new AtomicLong();
+    private final AtomicLong waitCount = new AtomicLong();
+    private final AtomicLong waitTimeNanos = new AtomicLong();
+    private final AtomicLong maxWaitTimeNanos = new AtomicLong();
+
+    public ZstdDecompressorPool(final int maxContexts) {
+        this(maxContexts, null, null);
+    }
+
+    /**
+     * Creates a pool for frames compressed with {@code dictionary}. Frames that declare another dictionary id fail.
+     */
+    public ZstdDecompressorPool(final int maxContexts, final ZstdDictionary dictionary) {
+        this(maxContexts, dictionary, null);
+    }
+
+    /**
+     * Creates a pool which resolves the dictionary ids of frames in {@code registry}.
+     */
+    public ZstdDecompressorPool(final int maxContexts, final ZstdDictionaryRegistry registry) {
+        this(maxContexts, null, registry);
+    }
+
+    private ZstdDecompressorPool(final int maxContexts, final ZstdDictionary dictionary, final ZstdDictionaryRegistry registry) {
+        Preconditions.checkArgument(maxContexts > 0, "maxContexts must be positive");
+        this.maxContexts = maxContexts;
+        this.dictionary = dictionary;
+        this.dictionaryRegistry = registry;
+        this.permits = new Semaphore(maxContexts);
+    }
+
+    public int decompress(final byte[] input, final int inputOffset, final int inputLength,
+                          final byte[] output, final int outputOffset, final int maxOutputLength) throws InterruptedException {
+        return decompress(input, inputOffset, inputLength, output, outputOffset, maxOutputLength, ChecksumPolicy.VERIFY);
+    }
+
+    /**
+     * Same as {@link #decompress(byte[], int, int, byte[], int, int)}, with the given treatment of the frame checksums.
+     * {@link ChecksumPolicy#DEFERRED} is not supported, the contexts are shared.
+     */
+    public int decompress(final byte[] input, final int inputOffset, final int inputLength,
+                          final byte[] output, final int outputOffset, final int maxOutputLength, final ChecksumPolicy checksumPolicy) throws InterruptedException {
+        return decompress(
+                ByteBufferWrap(input), inputOffset, inputOffset + inputLength,
+                ByteBufferWrap(output), outputOffset, outputOffset + maxOutputLength, checksumPolicy);
+    }
+
+    /**
+     * Decompresses all frames between the position and the limit of {@code input} into {@code output}
+     * starting at its position. Both buffers may be heap or direct and of any byte order.
+     * On return the position of {@code input} is at its limit and the position of {@code output} is advanced
+     * by the number of decompressed bytes.
+     *
+     * @return number of decompressed bytes
+     */
+    public int decompress(final ByteBuffer input, final ByteBuffer output) throws InterruptedException {
+        return decompress(input, output, ChecksumPolicy.VERIFY);
+    }
+
+    /**
+     * Same as {@link #decompress(ByteBuffer, ByteBuffer)}, with the given treatment of the frame checksums.
+     * {@link ChecksumPolicy#DEFERRED} is not supported, the contexts are shared.
+     */
+    public int decompress(final ByteBuffer input, final ByteBuffer output, final ChecksumPolicy checksumPolicy) throws InterruptedException {
+        final int written = decompress(
+                littleEndian(input), input.position(), input.limit(),
+                littleEndian(output), output.position(), output.limit(), checksumPolicy);
+
+        input.position(input.limit());
+        output.position(output.position() + written);
+        return written;
+    }
+
+    private int decompress(final ByteBuffer inputBase, final int inputAddress, final int inputLimit,
+                           final ByteBuffer outputBase, final int outputAddress, final int outputLimit,
+                           final ChecksumPolicy checksumPolicy) throws InterruptedException {
+        Preconditions.checkArgument(checksumPolicy != ChecksumPolicy.DEFERRED, "DEFERRED checksums need a ZstdDecompressor per thread");
+        ensureOpen();
+
+        final ZstdFrameDecompressor decompressor = borrow();
+        try {
+            return decompressor.decompress(inputBase, inputAddress, inputLimit, outputBase, outputAddress, outputLimit, checksumPolicy);
+        } finally {
+            release(decompressor);
+        }
+    }
+
+    private ZstdFrameDecompressor borrow() throws InterruptedException {
+        if (!permits.tryAcquire()) {
+            final long start = System.nanoTime();
+            permits.acquire();
+            final long waitTime = System.nanoTime() - start;
+
+            waitCount.incrementAndGet();
+            waitTimeNanos.addAndGet(waitTime);
+            updateMax(maxWaitTimeNanos, waitTime);
+        }
+        borrowCount.incrementAndGet();
+        updateMax(peakActiveContexts, activeContexts.incrementAndGet());
+
+        // a permit guarantees either an idle context or room for a new one
+        final ZstdFrameDecompressor decompressor = decompressors.poll();
+        return decompressor != null ? decompressor : newDecompressor();
+    }
+
+    private void release(final ZstdFrameDecompressor decompressor) {
+        if (closed) {
+            drop(decompressor);
+        } else {
+            decompressors.offer(decompressor);
+            if (closed) {
+                // closed meanwhile, the context may be missed by close
+                releaseMemory();
+            }
+        }
+        activeContexts.decrementAndGet();
+        returnCount.incrementAndGet();
+        permits.release();
+    }
+
+    private void drop(final ZstdFrameDecompressor decompressor) {
+        decompressor.releaseMemory();
+        contexts.decrementAndGet();
+    }
+
+    private ZstdFrameDecompressor newDecompressor() {
+        contexts.incrementAndGet();
+        final ZstdFrameDecompressor decompressor = new ZstdFrameDecompressor();
+        decompressor.setDictionary(dictionary);
+        decompressor.setDictionaryRegistry(dictionaryRegistry);
+        decompressor.setMemoryBudget(memoryBudget);
+        return decompressor;
+    }
+
+    /**
+     * Accounts the literals buffers and the entropy tables of the contexts in {@code memoryBudget}, {@code null}
+     * for no limit. Must be set while the pool has no contexts: before the first decompression, or after
+     * {@link #releaseMemory} with no calls in progress.
+     *
+     * @throws IllegalStateException if the pool keeps contexts
+     */
+    public void setMemoryBudget(final ZstdMemoryBudget memoryBudget) {
+        if (contexts.get() != 0) {
+            throw new IllegalStateException("Memory budget must be set before the pool creates contexts: " + contexts.get());
+        }
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Drops the idle contexts and returns their memory to the budget, the contexts in use are kept.
+     * The next calls create contexts again when needed.
+     */
+    public void releaseMemory() {
+        ZstdFrameDecompressor decompressor;
+        while ((decompressor = decompressors.poll()) != null) {
+            drop(decompressor);
+        }
+    }
+
+    /**
+     * Drops the idle contexts and the contexts in use once they are returned. Later calls fail.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        releaseMemory();
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Pool is closed");
+        }
+    }
+
+    private static void updateMax(final AtomicInteger max, final int value) {
+        int current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry with the value of the winner
+        }
+    }
+
+    private static void updateMax(final AtomicLong max, final long value) {
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry with the value of the winner
+        }
+    }
+
+    /**
+     * Registers the statistics of the pool in the platform MBean server as
+     * {@code com.epam.deltix.zstd:type=ZstdDecompressorPool,name=<name>}.
+     *
+     * @return the name to unregister the MBean with
+     */
+    public ObjectName registerMBean(final String name) throws JMException {
+        final ObjectName objectName = new ObjectName("com.epam.deltix.zstd:type=ZstdDecompressorPool,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    @Override
+    public int getMaxContexts() {
+        return maxContexts;
+    }
+
+    @Override
+    public int getContexts() {
+        return contexts.get();
+    }
+
+    @Override
+    public int getActiveContexts() {
+        return activeContexts.get();
+    }
+
+    @Override
+    public int getPeakActiveContexts() {
+        return peakActiveContexts.get();
+    }
+
+    @Override
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    @Override
+    public long getReturnCount() {
+        return returnCount.get();
+    }
+
+    @Override
+    public long getWaitCount() {
+        return waitCount.get();
+    }
+
+    @Override
+    public long getWaitTimeNanos() {
+        return waitTimeNanos.get();
+    }
+
+    @Override
+    public long getMaxWaitTimeNanos() {
+        return maxWaitTimeNanos.get();
+    }
+}
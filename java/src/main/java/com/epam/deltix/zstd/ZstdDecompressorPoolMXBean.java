@@ -0,0 +1,59 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+/**
+ * Statistics of a {@link ZstdDecompressorPool}, to size it under load. The counters are totals since the pool
+ * was created.
+ */
+public interface ZstdDecompressorPoolMXBean {
+    /**
+     * @return maximal number of decoder contexts
+     */
+    int getMaxContexts();
+
+    /**
+     * @return number of decoder contexts kept, idle or in use
+     */
+    int getContexts();
+
+    /**
+     * @return number of decoder contexts in use now
+     */
+    int getActiveContexts();
+
+    /**
+     * @return highest number of decoder contexts in use at once
+     */
+    int getPeakActiveContexts();
+
+    long getBorrowCount();
+
+    long getReturnCount();
+
+    /**
+     * @return number of borrows which waited for a context, because all of them were in use
+     */
+    long getWaitCount();
+
+    /**
+     * @return total time spent by borrows waiting for a context, in nanoseconds
+     */
+    long getWaitTimeNanos();
+
+    /**
+     * @return longest time a borrow waited for a context, in nanoseconds
+     */
+    long getMaxWaitTimeNanos();
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static com.epam.deltix.zstd.Util.verify;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.ByteBufferWrap;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_INT;
+
+/**
+ * Dictionary prepared for decompression: the entropy tables, repeat offsets and content are parsed once
+ * and shared by all frames and decompressors that use it. Instances are immutable and thread-safe.
+ * <p>
+ * Both formats are accepted: a dictionary starting with the magic number {@code 0xEC30A437} followed by
+ * its id, entropy tables and repeat offsets, and raw content, which has id 0 and the default decoder state.
+ */
+public final class ZstdDictionary {
+    private static final int MAGIC_NUMBER = 0xEC30A437;
+    private static final int MIN_CONTENT_SIZE = 8;
+
+    private final long dictionaryId;
+
+    // null for raw content dictionaries
+    final Huffman huffman;
+    final FiniteStateEntropy.Table literalsLengthTable;
+    final FiniteStateEntropy.Table offsetCodesTable;
+    final FiniteStateEntropy.Table matchLengthTable;
+    final int[] previousOffsets;
+
+    // content starts at 0
+    final ByteBuffer contentBase;
+    final int contentLimit;
+
+    public ZstdDictionary(final byte[] dictionary) {
+        this(dictionary, 0, dictionary.length);
+    }
+
+    public ZstdDictionary(final byte[] dictionary, final int offset, final int length) {
+        Preconditions.checkPositionIndexes(offset, offset + length, dictionary.length);
+        final ByteBuffer inputBase = ByteBufferWrap(dictionary);
+        final int inputLimit = offset + length;
+        int input = offset;
+
+        if (length < SIZE_OF_INT || inputBase.getInt(input) != MAGIC_NUMBER) {
+            verify(length >= MIN_CONTENT_SIZE, input, "Dictionary is too small");
+
+            dictionaryId = 0;
+            huffman = null;
+            literalsLengthTable = null;
+            offsetCodesTable = null;
+            matchLengthTable = null;
+            previousOffsets = null;
+        } else {
+            input += SIZE_OF_INT;
+            verify(inputLimit - input >= SIZE_OF_INT, input, "Dictionary is corrupted");
+            dictionaryId = inputBase.getInt(input) & 0xFFFF_FFFFL;
+            input += SIZE_OF_INT;
+
+            huffman = new Huffman();
+            input += huffman.readTable(inputBase, input, inputLimit - input);
+
+            final FseTableReader reader = new FseTableReader();
+
+            offsetCodesTable = new FiniteStateEntropy.Table(ZstdFrameDecompressor.OFFSET_CODES_FSE_LOG);
+            input += reader.readFseTable(offsetCodesTable, inputBase, input, inputLimit,
+                    ZstdFrameDecompressor.MAX_OFFSET_CODE_SYMBOL, ZstdFrameDecompressor.OFFSET_CODES_FSE_LOG);
+
+            matchLengthTable = new FiniteStateEntropy.Table(ZstdFrameDecompressor.MATCH_LENGTH_FSE_LOG);
+            input += reader.readFseTable(matchLengthTable, inputBase, input, inputLimit,
+                    ZstdFrameDecompressor.MAX_MATCH_LENGTH_SYMBOL, ZstdFrameDecompressor.MATCH_LENGTH_FSE_LOG);
+
+            literalsLengthTable = new FiniteStateEntropy.Table(ZstdFrameDecompressor.LITERALS_LENGTH_FSE_LOG);
+            input += reader.readFseTable(literalsLengthTable, inputBase, input, inputLimit,
+                    ZstdFrameDecompressor.MAX_LITERALS_LENGTH_SYMBOL, ZstdFrameDecompressor.LITERALS_LENGTH_FSE_LOG);
+
+            verify(inputLimit - input >= 3 * SIZE_OF_INT, input, "Dictionary is corrupted");
+            previousOffsets = new int[3];
+            for (int i = 0; i < previousOffsets.length; i++) {
+                previousOffsets[i] = inputBase.getInt(input);
+                input += SIZE_OF_INT;
+            }
+
+            // content is the only history of the first block, so the offsets must point into it
+            for (final int previousOffset : previousOffsets) {
+                verify(previousOffset > 0 && previousOffset <= inputLimit - input, input, "Dictionary is corrupted");
+            }
+        }
+
+        final byte[] content = Arrays.copyOfRange(dictionary, input, inputLimit);
+        contentBase = ByteBufferWrap(content);
+        contentLimit = content.length;
+    }
+
+    /**
+     * @return id of the dictionary, or 0 for raw content
+     */
+    public long getDictionaryId() {
+        return dictionaryId;
+    }
+
+    /**
+     * @return size of the content the frames refer to
+     */
+    public int getContentSize() {
+        return contentLimit;
+    }
+
+    /**
+     * @return approximate number of heap bytes held by the dictionary
+     */
+    long getMemorySize() {
+        if (huffman == null) {
+            return contentLimit;
+        }
+        return contentLimit + huffman.memorySize() +
+                literalsLengthTable.memorySize() + offsetCodesTable.memorySize() + matchLengthTable.memorySize();
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe set of prepared dictionaries, which decompressors use to resolve the dictionary id of a frame.
+ * <p>
+ * Lookups of registered dictionaries do not lock. Missing dictionaries are requested from the {@link Loader} once,
+ * concurrent lookups of the same id wait for that load. When the dictionaries take more memory than the limit,
+ * the least recently used ones are evicted. Recency is tracked approximately: a lookup marks the dictionary with
+ * the current epoch, which advances after every added dictionary.
+ */
+public class ZstdDictionaryRegistry {
+    /**
+     * Provides dictionaries which are not registered yet.
+     */
+    public interface Loader {
+        /**
+         * @return the dictionary with the given id, or {@code null} if it is unknown; a dictionary with another id
+         * fails the lookup
+         */
+        ZstdDictionary load(long dictionaryId);
+    }
+
+    private final ConcurrentMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final long maxMemorySize;
+    private final Loader loader;
+
+    private final AtomicLong epoch = new AtomicLong();
+    private final AtomicLong memorySize = new AtomicLong();
+    private final Object evictionLock = new Object();
+
+    /**
+     * @param maxMemorySize number of bytes the dictionaries may take before the least recently used ones are evicted
+     */
+    public ZstdDictionaryRegistry(final long maxMemorySize) {
+        this(maxMemorySize, null);
+    }
+
+    /**
+     * @param maxMemorySize number of bytes the dictionaries may take before the least recently used ones are evicted
+     * @param loader        called for ids which are not registered, may be {@code null}
+     */
+    public ZstdDictionaryRegistry(final long maxMemorySize, final Loader loader) {
+        if (maxMemorySize < 0) {
+            throw new IllegalArgumentException("maxMemorySize must not be negative");
+        }
+        this.maxMemorySize = maxMemorySize;
+        this.loader = loader;
+    }
+
+    /**
+     * Registers the dictionary under its id, replacing the previous one.
+     */
+    public void put(final ZstdDictionary dictionary) {
+        final long dictionaryId = dictionary.getDictionaryId();
+        if (dictionaryId == 0) {
+            throw new IllegalArgumentException("Dictionary without id can not be resolved by frames");
+        }
+
+        final Entry entry = new Entry(dictionary);
+        final Entry previous = entries.put(dictionaryId, entry);
+        if (previous != null) {
+            release(previous);
+        }
+        added(dictionaryId, entry);
+    }
+
+    /**
+     * @return the dictionary with the given id, loaded if needed, or {@code null} if it is neither registered nor loaded
+     */
+    public ZstdDictionary get(final long dictionaryId) {
+        Entry entry = entries.get(dictionaryId);
+        if (entry == null) {
+            if (loader == null) {
+                return null;
+            }
+
+            final Entry loading = new Entry(dictionaryId);
+            entry = entries.putIfAbsent(dictionaryId, loading);
+            if (entry == null) {
+                entry = loading;
+                load(dictionaryId, loading);
+            }
+        }
+
+        final long now = epoch.get();
+        if (entry.lastAccess != now) {
+            entry.lastAccess = now;
+        }
+        return entry.get();
+    }
+
+    /**
+     * Removes the dictionary, frames that refer to it will trigger the loader again.
+     */
+    public void remove(final long dictionaryId) {
+        final Entry entry = entries.remove(dictionaryId);
+        if (entry != null) {
+            release(entry);
+        }
+    }
+
+    /**
+     * @return number of registered dictionaries
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return approximate number of heap bytes taken by the registered dictionaries
+     */
+    public long getMemorySize() {
+        return memorySize.get();
+    }
+
+    private void load(final long dictionaryId, final Entry entry) {
+        entry.task.run();
+        try {
+            if (entry.get() == null) {
+                entries.remove(dictionaryId, entry);
+                return;
+            }
+        } catch (final RuntimeException | Error e) {
+            // do not keep the failure, the next lookup tries again
+            entries.remove(dictionaryId, entry);
+            throw e;
+        }
+        added(dictionaryId, entry);
+    }
+
+    private void added(final long dictionaryId, final Entry entry) {
+        entry.lastAccess = epoch.getAndIncrement();
+        if (!entry.account()) {
+            // replaced or removed while loading
+            return;
+        }
+        memorySize.addAndGet(entry.memorySize);
+
+        if (memorySize.get() > maxMemorySize) {
+            evict(dictionaryId);
+        }
+    }
+
+    private void evict(final long keepId) {
+        synchronized (evictionLock) {
+            while (memorySize.get() > maxMemorySize) {
+                Map.Entry<Long, Entry> oldest = null;
+                for (final Iterator<Map.Entry<Long, Entry>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+                    final Map.Entry<Long, Entry> candidate = it.next();
+                    if (candidate.getKey() != keepId && candidate.getValue().memorySize > 0 &&
+                            (oldest == null || candidate.getValue().lastAccess < oldest.getValue().lastAccess)) {
+                        oldest = candidate;
+                    }
+                }
+                if (oldest == null) {
+                    return;
+                }
+                if (entries.remove(oldest.getKey(), oldest.getValue())) {
+                    release(oldest.getValue());
+                }
+            }
+        }
+    }
+
+    private void release(final Entry entry) {
+        if (entry.release()) {
+            memorySize.addAndGet(-entry.memorySize);
+        }
+    }
+
+    private final class Entry {
+        final FutureTask<ZstdDictionary> task;
+        volatile long lastAccess;
+
+        // set once the dictionary is accounted in the memory size, 0 while loading
+        volatile long memorySize;
+        private boolean released;
+
+        Entry(final ZstdDictionary dictionary) {
+            task = new FutureTask<>(new Callable<ZstdDictionary>() {
+                @Override
+                public ZstdDictionary call() {
+                    return dictionary;
+                }
+            });
+            task.run();
+        }
+
+        Entry(final long dictionaryId) {
+            task = new FutureTask<>(new Callable<ZstdDictionary>() {
+                @Override
+                public ZstdDictionary call() {
+                    final ZstdDictionary dictionary = loader.load(dictionaryId);
+                    // a misconfigured loader must not make frames decode with another dictionary
+                    if (dictionary != null && dictionary.getDictionaryId() != dictionaryId) {
+                        throw new IllegalStateException("Loader returned dictionary " + dictionary.getDictionaryId() + " for id " + dictionaryId);
+                    }
+                    return dictionary;
+                }
+            });
+        }
+
+        ZstdDictionary get() {
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    try {
+                        return task.get();
+                    } catch (final InterruptedException e) {
+                        interrupted = true;
+                    } catch (final ExecutionException e) {
+                        final Throwable cause = e.getCause();
+                        if (cause instanceof RuntimeException) {
+                            throw (RuntimeException) cause;
+                        }
+                        if (cause instanceof Error) {
+                            throw (Error) cause;
+                        }
+                        throw new RuntimeException(cause);
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        synchronized boolean account() {
+            if (released) {
+                return false;
+            }
+            memorySize = get().getMemorySize();
+            return true;
+        }
+
+        synchronized boolean release() {
+            if (released) {
+                return false;
+            }
+            released = true;
+            return memorySize > 0;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static com.epam.deltix.zstd.Util.verify;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_INT;
+
+/**
+ * Decompresses files through memory mappings, so the page cache serves as the input buffer.
+ * <p>
+ * The input is mapped in chunks of up to 1 GB. Runs of complete frames are decoded with one call straight into
+ * a mapped region of the output file, sized by the content sizes of the frames or, for frames without one, by the
+ * bound their block headers give; the file is truncated to the decompressed data at the end. Mappings are released
+ * as soon as they are decoded, so the files are not locked afterwards. The listener of skippable frames gets their content
+ * copied to the heap, never a view of a mapping.
+ * <p>
+ * Two cases fall back to {@link ZstdInputStream} and plain channel writes: a frame which content may exceed
+ * an output mapping is decoded from the mapped input, and a frame which does not fit into an input mapping at all
+ * is streamed together with the rest of the input from the channel.
+ */
+public class ZstdFileDecompressor {
+    private static final int MAX_MAPPING_SIZE = 1 << 30;
+
+    private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0).order(ByteOrder.LITTLE_ENDIAN);
+
+    private final ZstdFrameDecompressor decompressor = new ZstdFrameDecompressor();
+    private final int maxMappingSize;
+    private final byte[] buffer = new byte[64 * 1024];
+
+    private SkippableFrameListener skippableFrameListener;
+    private int maxWindowLog = ZstdFrameDecompressor.DEFAULT_MAX_WINDOW_LOG;
+
+    public ZstdFileDecompressor() {
+        this(MAX_MAPPING_SIZE);
+    }
+
+    ZstdFileDecompressor(final int maxMappingSize) {
+        this.maxMappingSize = maxMappingSize;
+    }
+
+    /**
+     * Sets the listener notified about skippable frames, {@code null} to ignore them.
+     */
+    public void setSkippableFrameListener(final SkippableFrameListener listener) {
+        this.skippableFrameListener = listener;
+        decompressor.setSkippableFrameListener(listener == null ? null : new CopyingListener(listener));
+    }
+
+    /**
+     * Sets the largest window, {@code 1 << maxWindowLog} bytes, of the frames decoded by the {@link ZstdInputStream}
+     * fallback, 27 by default. Frames decoded into mapped output allocate no window and accept any window.
+     */
+    public void setMaxWindowLog(final int maxWindowLog) {
+        this.maxWindowLog = ZstdFrameDecompressor.checkMaxWindowLog(maxWindowLog);
+    }
+
+    /**
+     * Decompresses the {@code input} file into the {@code output} file, which is created or truncated.
+     *
+     * @return number of decompressed bytes
+     */
+    public long decompress(final Path input, final Path output) throws IOException {
+        try (final FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             final FileChannel out = FileChannel.open(output, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                     StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            return decompress(in, out);
+        }
+    }
+
+    /**
+     * Decompresses all frames from the position to the end of {@code input} into {@code output} starting at its position.
+     * The output channel must be opened for both reading and writing, as required for a writable mapping.
+     * On return the position of {@code input} is at its end and the position of {@code output} is advanced
+     * by the number of decompressed bytes.
+     *
+     * @return number of decompressed bytes
+     */
+    public long decompress(final FileChannel input, final FileChannel output) throws IOException {
+        final long inputSize = input.size();
+        long inputPosition = input.position();
+        final long outputStart = output.position();
+        final long outputSize = output.size();
+        long outputPosition = outputStart;
+
+        while (inputPosition < inputSize) {
+            final int mappingSize = (int) Math.min(inputSize - inputPosition, maxMappingSize);
+            final ByteBuffer inputBase = input.map(FileChannel.MapMode.READ_ONLY, inputPosition, mappingSize).order(ByteOrder.LITTLE_ENDIAN);
+            try {
+                int inputAddress = 0;
+                while (inputAddress < mappingSize) {
+                    // collect the frames which can be decoded into one output mapping
+                    int runLimit = inputAddress;
+                    long runSize = 0;
+                    boolean exactSize = true;
+                    int frameSize;
+                    while ((frameSize = ZstdFrameDecompressor.findFrameCompressedSize(inputBase, runLimit, mappingSize)) != -1) {
+                        final long contentSize = getContentSize(inputBase, runLimit, mappingSize);
+                        final long size = contentSize != -1 ? contentSize : ZstdFrameInfo.getDecompressedSizeBound(inputBase, runLimit, runLimit + frameSize);
+                        if (size > maxMappingSize - runSize) {
+                            break;
+                        }
+                        runSize += size;
+                        runLimit += frameSize;
+                        exactSize &= contentSize != -1;
+                    }
+
+                    if (runLimit > inputAddress) {
+                        outputPosition += decodeMapped(inputBase, inputAddress, runLimit, output, outputPosition, (int) runSize, exactSize);
+                        inputAddress = runLimit;
+                    }
+                    else if (frameSize != -1) {
+                        // complete frame which content may be larger than a mapping
+                        final InputStream in = new ByteBufferInputStream(inputBase, inputAddress, inputAddress + frameSize);
+                        outputPosition += decodeStream(in, output, outputPosition);
+                        inputAddress += frameSize;
+                    }
+                    else if (inputAddress > 0) {
+                        // map again starting at the incomplete frame
+                        break;
+                    }
+                    else {
+                        // the frame is larger than a mapping or truncated, the stream decoder reports the latter
+                        input.position(inputPosition);
+                        outputPosition += decodeStream(Channels.newInputStream(input), output, outputPosition);
+                        return finish(input, inputSize, output, outputSize, outputPosition, outputStart);
+                    }
+                }
+                inputPosition += inputAddress;
+            } finally {
+                MappedBuffers.unmap(inputBase);
+            }
+        }
+
+        return finish(input, inputSize, output, outputSize, outputPosition, outputStart);
+    }
+
+    private static long finish(final FileChannel input, final long inputSize, final FileChannel output,
+                               final long outputSize, final long outputPosition, final long outputStart) throws IOException {
+        input.position(inputSize);
+        // mappings sized by bounds may have extended the file past the decompressed data
+        final long outputEnd = Math.max(outputSize, outputPosition);
+        if (output.size() > outputEnd) {
+            output.truncate(outputEnd);
+        }
+        output.position(outputPosition);
+        return outputPosition - outputStart;
+    }
+
+    private static long getContentSize(final ByteBuffer inputBase, final int inputAddress, final int inputLimit) {
+        if (ZstdFrameDecompressor.isSkippableFrame(inputBase, inputAddress, inputLimit)) {
+            return 0;
+        }
+        return ZstdFrameDecompressor.readFrameHeader(inputBase, inputAddress + SIZE_OF_INT, inputLimit).contentSize;
+    }
+
+    /**
+     * @param exactSize whether {@code outputSize} is the sum of the content sizes of the frames rather than a bound
+     */
+    private int decodeMapped(final ByteBuffer inputBase, final int inputAddress, final int inputLimit,
+                             final FileChannel output, final long outputPosition, final int outputSize, final boolean exactSize) throws IOException {
+        final ByteBuffer outputBase = outputSize == 0 ? EMPTY_BUFFER :
+                output.map(FileChannel.MapMode.READ_WRITE, outputPosition, outputSize).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            final int written = decompressor.decompress(inputBase, inputAddress, inputLimit, outputBase, 0, outputSize);
+            verify(written == outputSize || !exactSize, inputAddress, "Decompressed size does not match the frame content size");
+            return written;
+        } finally {
+            MappedBuffers.unmap(outputBase);
+        }
+    }
+
+    /**
+     * Passes the content of skippable frames in a heap buffer rather than in the input mapping, which is unmapped
+     * once decoded: a listener which keeps the buffer against the contract must not crash the JVM.
+     */
+    private static final class CopyingListener implements SkippableFrameListener {
+        private final SkippableFrameListener listener;
+        private byte[] buffer = new byte[0];
+
+        CopyingListener(final SkippableFrameListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void onSkippableFrame(final int magicVariant, final ByteBuffer content) {
+            final int size = content.remaining();
+            if (buffer.length < size) {
+                buffer = new byte[size];
+            }
+            content.get(buffer, 0, size);
+            listener.onSkippableFrame(magicVariant, ByteBuffer.wrap(buffer, 0, size).slice().asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN));
+        }
+    }
+
+    private long decodeStream(final InputStream input, final FileChannel output, long outputPosition) throws IOException {
+        final long outputStart = outputPosition;
+
+        final ZstdInputStream in = new ZstdInputStream(input);
+        in.setSkippableFrameListener(skippableFrameListener);
+        in.setMaxWindowLog(maxWindowLog);
+
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            final ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+            while (chunk.hasRemaining()) {
+                outputPosition += output.write(chunk, outputPosition);
+            }
+        }
+        return outputPosition - outputStart;
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.nio.ByteBuffer;
+
+import static com.epam.deltix.zstd.Util.copyMemory;
+import static com.epam.deltix.zstd.Util.verify;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.ByteBufferWrap;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.COMPRESSED_BLOCK;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.COMPRESSED_LITERALS_BLOCK;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.MAGIC_NUMBER;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.MAX_BLOCK_SIZE;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.MIN_BLOCK_SIZE;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.MIN_WINDOW_LOG;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.RAW_BLOCK;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.RAW_LITERALS_BLOCK;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.RLE_BLOCK;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.RLE_LITERALS_BLOCK;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_BLOCK_HEADER;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_INT;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_SHORT;
+
+class ZstdFrameCompressor {
+    private static final int SINGLE_SEGMENT_FLAG = 0b100000;
+    private static final int CHECKSUM_FLAG = 0b100;
+
+    private static final int MAX_LITERALS_HEADER_SIZE = 5;
+    private static final int MAX_SEQUENCES_HEADER_SIZE = 4;
+
+    // shorter literals are stored raw, as the Huffman table description alone would not pay off
+    private static final int MIN_COMPRESSED_LITERALS_SIZE = 64;
+
+    // a block compressed into fewer bytes may consist of one repeated byte
+    private static final int MAX_RLE_CANDIDATE_SIZE = 25;
+
+    private static final int MAX_SYMBOL = 255;
+
+    // a compressed block is built here first, as it is kept only if it is smaller than the raw block
+    private final byte[] block = new byte[MAX_BLOCK_SIZE + MAX_LITERALS_HEADER_SIZE + MAX_SEQUENCES_HEADER_SIZE + SequenceEncoder.MAX_TABLES_SIZE];
+    private final ByteBuffer blockBase = ByteBufferWrap(block);
+
+    private final SequenceStore sequences = new SequenceStore();
+    private final SequenceEncoder sequenceEncoder = new SequenceEncoder();
+    private final HuffmanCompressor huffman = new HuffmanCompressor();
+    private final int[] counts = new int[MAX_SYMBOL + 1];
+
+    private BlockCompressionState state;
+
+    /**
+     * Upper bound of the frame size for {@code inputSize} bytes: incompressible input is stored in raw blocks.
+     */
+    static int maxCompressedLength(final int inputSize) {
+        int result = inputSize + (inputSize >>> 8);
+        if (inputSize < MAX_BLOCK_SIZE) {
+            result += (MAX_BLOCK_SIZE - inputSize) >>> 11;
+        }
+        return result;
+    }
+
+    /**
+     * Compresses the input into one frame with the content size and the checksum.
+     *
+     * @return size of the frame
+     */
+    int compress(final ByteBuffer inputBase, final int inputAddress, final int inputLimit,
+                 final ByteBuffer outputBase, final int outputAddress, final int outputLimit, final int compressionLevel) {
+        final int inputSize = inputLimit - inputAddress;
+        final CompressionParameters parameters = CompressionParameters.compute(compressionLevel, inputSize);
+
+        if (state == null || !state.fits(parameters)) {
+            state = new BlockCompressionState(parameters);
+        }
+        state.reset(inputAddress, parameters);
+
+        final RepeatedOffsets offsets = new RepeatedOffsets();
+        final int windowSize = 1 << parameters.getWindowLog();
+        final int blockSize = Math.min(MAX_BLOCK_SIZE, windowSize);
+
+        int output = outputAddress;
+        output += writeFrameHeader(outputBase, output, outputLimit, inputSize, parameters.getWindowLog());
+
+        int input = inputAddress;
+        do {
+            final int size = Math.min(blockSize, inputLimit - input);
+            state.enforceMaxDistance(input + size, windowSize);
+            output += writeBlock(inputBase, input, size, input + size == inputLimit, outputBase, output, outputLimit, offsets, parameters);
+            input += size;
+        }
+        while (input < inputLimit);
+
+        verify(output + SIZE_OF_INT <= outputLimit, output, "Output buffer too small");
+        outputBase.putInt(output, (int) XxHash64.hash(0, inputBase, inputAddress, inputSize));
+        output += SIZE_OF_INT;
+
+        return output - outputAddress;
+    }
+
+    private static int writeFrameHeader(final ByteBuffer outputBase, final int outputAddress, final int outputLimit,
+                                        final int inputSize, final int windowLog) {
+        // magic, descriptor, window and 4 bytes of the content size at most
+        verify(outputAddress + SIZE_OF_INT + 2 + SIZE_OF_INT <= outputLimit, outputAddress, "Output buffer too small");
+
+        int output = outputAddress;
+        outputBase.putInt(output, MAGIC_NUMBER);
+        output += SIZE_OF_INT;
+
+        // a frame that fits into the window is decoded without a window descriptor
+        final boolean singleSegment = inputSize <= 1 << windowLog;
+
+        int contentSizeDescriptor;
+        if (singleSegment && inputSize < 256) {
+            contentSizeDescriptor = 0;
+        } else if (inputSize < 0x10000 + 256) {
+            contentSizeDescriptor = 1;
+        } else {
+            contentSizeDescriptor = 2;
+        }
+
+        outputBase.put(output++, (byte) ((contentSizeDescriptor << 6) | (singleSegment ? SINGLE_SEGMENT_FLAG : 0) | CHECKSUM_FLAG));
+        if (!singleSegment) {
+            outputBase.put(output++, (byte) ((windowLog - MIN_WINDOW_LOG) << 3));
+        }
+
+        switch (contentSizeDescriptor) {
+            case 0:
+                outputBase.put(output++, (byte) inputSize);
+                break;
+            case 1:
+                outputBase.putShort(output, (short) (inputSize - 256));
+                output += SIZE_OF_SHORT;
+                break;
+            case 2:
+                outputBase.putInt(output, inputSize);
+                output += SIZE_OF_INT;
+                break;
+        }
+
+        return output - outputAddress;
+    }
+
+    /**
+     * Writes the smallest of a compressed, an RLE and a raw block.
+     *
+     * @return size of the block including its header
+     */
+    private int writeBlock(final ByteBuffer inputBase, final int inputAddress, final int inputSize, final boolean last,
+                           final ByteBuffer outputBase, final int outputAddress, final int outputLimit,
+                           final RepeatedOffsets offsets, final CompressionParameters parameters) {
+        int compressedSize = 0;
+        if (inputSize >= MIN_BLOCK_SIZE + SIZE_OF_BLOCK_HEADER + 1) {
+            compressedSize = compressBlock(inputBase, inputAddress, inputSize, offsets, parameters);
+        }
+
+        if (compressedSize > 0 && compressedSize <= inputSize - minGain(inputSize)) {
+            if (compressedSize < MAX_RLE_CANDIDATE_SIZE && isRle(inputBase, inputAddress, inputSize)) {
+                verify(outputAddress + SIZE_OF_BLOCK_HEADER + 1 <= outputLimit, outputAddress, "Output buffer too small");
+                writeBlockHeader(outputBase, outputAddress, last, RLE_BLOCK, inputSize);
+                outputBase.put(outputAddress + SIZE_OF_BLOCK_HEADER, inputBase.get(inputAddress));
+                return SIZE_OF_BLOCK_HEADER + 1;
+            }
+
+            verify(outputAddress + SIZE_OF_BLOCK_HEADER + compressedSize <= outputLimit, outputAddress, "Output buffer too small");
+            writeBlockHeader(outputBase, outputAddress, last, COMPRESSED_BLOCK, compressedSize);
+            copyMemory(blockBase, 0, outputBase, outputAddress + SIZE_OF_BLOCK_HEADER, compressedSize);
+            offsets.commit();
+            return SIZE_OF_BLOCK_HEADER + compressedSize;
+        }
+
+        verify(outputAddress + SIZE_OF_BLOCK_HEADER + inputSize <= outputLimit, outputAddress, "Output buffer too small");
+        writeBlockHeader(outputBase, outputAddress, last, RAW_BLOCK, inputSize);
+        copyMemory(inputBase, inputAddress, outputBase, outputAddress + SIZE_OF_BLOCK_HEADER, inputSize);
+        return SIZE_OF_BLOCK_HEADER + inputSize;
+    }
+
+    private static void writeBlockHeader(final ByteBuffer outputBase, final int outputAddress, final boolean last, final int type, final int size) {
+        final int header = (last ? 1 : 0) | (type << 1) | (size << 3);
+        outputBase.putShort(outputAddress, (short) header);
+        outputBase.put(outputAddress + SIZE_OF_SHORT, (byte) (header >>> 16));
+    }
+
+    private static int minGain(final int inputSize) {
+        return (inputSize >>> 6) + 2;
+    }
+
+    private static boolean isRle(final ByteBuffer inputBase, final int inputAddress, final int inputSize) {
+        final byte value = inputBase.get(inputAddress);
+        for (int i = 1; i < inputSize; i++) {
+            if (inputBase.get(inputAddress + i) != value) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compresses the block into {@link #block}.
+     *
+     * @return size of the compressed block, or 0 if the sequences do not fit
+     */
+    private int compressBlock(final ByteBuffer inputBase, final int inputAddress, final int inputSize,
+                              final RepeatedOffsets offsets, final CompressionParameters parameters) {
+        sequences.reset();
+        final int lastLiteralsSize = parameters.getStrategy().getCompressor()
+                .compressBlock(inputBase, inputAddress, inputSize, sequences, state, offsets, parameters);
+        sequences.appendLiterals(inputBase, inputAddress + inputSize - lastLiteralsSize, lastLiteralsSize);
+        sequences.generateCodes();
+
+        final int literalsSize = compressLiterals(blockBase, 0);
+        final int sequencesSize = sequenceEncoder.compressSequences(blockBase, literalsSize, block.length - literalsSize,
+                sequences, parameters.getStrategy());
+        if (sequencesSize == 0) {
+            return 0;
+        }
+        return literalsSize + sequencesSize;
+    }
+
+    /**
+     * Writes the literals section with Huffman coded literals if they take less space than raw ones.
+     * The output must have room for the raw literals and their header.
+     *
+     * @return size of the literals section
+     */
+    private int compressLiterals(final ByteBuffer outputBase, final int outputAddress) {
+        final byte[] literals = sequences.literals;
+        final int literalsSize = sequences.literalsSize;
+        if (literalsSize < MIN_COMPRESSED_LITERALS_SIZE) {
+            return writeRawLiterals(outputBase, outputAddress, sequences.literalsBase, literalsSize);
+        }
+
+        Histogram.count(literals, literalsSize, counts);
+        final int maxSymbol = Histogram.findMaxSymbol(counts, MAX_SYMBOL);
+        final int largestCount = Histogram.findLargestCount(counts, maxSymbol);
+        if (largestCount == literalsSize) {
+            return writeRleLiterals(outputBase, outputAddress, literals[0], literalsSize);
+        }
+        // nearly uniform distribution
+        if (largestCount <= (literalsSize >>> 7) + 4) {
+            return writeRawLiterals(outputBase, outputAddress, sequences.literalsBase, literalsSize);
+        }
+
+        huffman.initialize(counts, maxSymbol);
+
+        final int headerSize = literalsSize < 1024 ? 3 : literalsSize < 16 * 1024 ? 4 : 5;
+        final int outputLimit = outputAddress + literalsSize;
+        int output = outputAddress + headerSize;
+
+        final int tableSize = huffman.writeTable(outputBase, output, outputLimit - output);
+        if (tableSize == 0) {
+            return writeRawLiterals(outputBase, outputAddress, sequences.literalsBase, literalsSize);
+        }
+        output += tableSize;
+
+        // the decoder expects 4 streams unless the sizes fit the shortest header
+        final boolean singleStream = literalsSize < 256;
+        final int streamsSize = singleStream ?
+                huffman.compressSingleStream(outputBase, output, outputLimit - output, literals, 0, literalsSize) :
+                huffman.compress4Streams(outputBase, output, outputLimit - output, literals, 0, literalsSize);
+        if (streamsSize == 0) {
+            return writeRawLiterals(outputBase, outputAddress, sequences.literalsBase, literalsSize);
+        }
+
+        final int compressedSize = tableSize + streamsSize;
+        if (headerSize + compressedSize >= literalsSize - minGain(literalsSize)) {
+            return writeRawLiterals(outputBase, outputAddress, sequences.literalsBase, literalsSize);
+        }
+
+        final long header = COMPRESSED_LITERALS_BLOCK | (long) literalsSize << 4;
+        switch (headerSize) {
+            case 3:
+                final int header3 = (int) header | (singleStream ? 0 : 1 << 2) | compressedSize << 14;
+                outputBase.putShort(outputAddress, (short) header3);
+                outputBase.put(outputAddress + SIZE_OF_SHORT, (byte) (header3 >>> 16));
+                break;
+            case 4:
+                outputBase.putInt(outputAddress, (int) header | 2 << 2 | compressedSize << 18);
+                break;
+            default:
+                final long header5 = header | 3 << 2 | (long) compressedSize << 22;
+                outputBase.putInt(outputAddress, (int) header5);
+                outputBase.put(outputAddress + SIZE_OF_INT, (byte) (header5 >>> 32));
+                break;
+        }
+
+        return headerSize + compressedSize;
+    }
+
+    private static int writeRawLiterals(final ByteBuffer outputBase, final int outputAddress, final ByteBuffer literalsBase, final int literalsSize) {
+        final int headerSize = writeLiteralsHeader(outputBase, outputAddress, RAW_LITERALS_BLOCK, literalsSize);
+        copyMemory(literalsBase, 0, outputBase, outputAddress + headerSize, literalsSize);
+        return headerSize + literalsSize;
+    }
+
+    private static int writeRleLiterals(final ByteBuffer outputBase, final int outputAddress, final byte value, final int literalsSize) {
+        final int headerSize = writeLiteralsHeader(outputBase, outputAddress, RLE_LITERALS_BLOCK, literalsSize);
+        outputBase.put(outputAddress + headerSize, value);
+        return headerSize + 1;
+    }
+
+    private static int writeLiteralsHeader(final ByteBuffer outputBase, final int outputAddress, final int type, final int literalsSize) {
+        if (literalsSize < 32) {
+            outputBase.put(outputAddress, (byte) (type | literalsSize << 3));
+            return 1;
+        }
+        if (literalsSize < 4096) {
+            outputBase.putShort(outputAddress, (short) (type | 1 << 2 | literalsSize << 4));
+            return 2;
+        }
+        final int header = type | 3 << 2 | literalsSize << 4;
+        outputBase.putShort(outputAddress, (short) header);
+        outputBase.put(outputAddress + SIZE_OF_SHORT, (byte) (header >>> 16));
+        return 3;
+    }
+}
@@ -18,56 +18,65 @@ import java.nio.ByteOrder;
 import java.util.Arrays;
 
 import static com.epam.deltix.zstd.BitStream.peekBits;
+import static com.epam.deltix.zstd.Kernels.KERNELS;
+import static com.epam.deltix.zstd.Memory.MEMORY;
 import static com.epam.deltix.zstd.Util.*;
 
 class ZstdFrameDecompressor {
     private static final int[] DEC_32_TABLE = {4, 1, 2, 1, 4, 4, 4, 4};
     private static final int[] DEC_64_TABLE = {0, 0, 0, -1, 0, 1, 2, 3};
 
-    private static final int MAGIC_NUMBER = 0xFD2FB528;
+    static final int MAGIC_NUMBER = 0xFD2FB528;
     private static final int V07_MAGIC_NUMBER = 0xFD2FB527;
 
+    // skippable frames use 16 magic numbers, the low 4 bits are free for the user
+    private static final int SKIPPABLE_MAGIC_NUMBER = 0x184D2A50;
+    private static final int SKIPPABLE_MAGIC_MASK = 0xFFFFFFF0;
+    static final int SKIPPABLE_HEADER_SIZE = 8;
+
     private static final int MIN_SEQUENCES_SIZE = 1;
-    private static final int MIN_BLOCK_SIZE = 1 // block type tag
+    static final int MIN_BLOCK_SIZE = 1 // block type tag
             + 1 // min size of raw or rle length header
             + MIN_SEQUENCES_SIZE;
 
-    private static final int MAX_BLOCK_SIZE = 128 * 1024;
+    static final int MAX_BLOCK_SIZE = 128 * 1024;
 
-    private static final int MIN_WINDOW_LOG = 10;
-    private static final int MAX_WINDOW_SIZE = 1 << 23;
+    static final int MIN_WINDOW_LOG = 10;
+    static final int MAX_WINDOW_LOG = 31;
+    // as the reference decoder, larger windows are decoded only when the caller allows them
+    static final int DEFAULT_MAX_WINDOW_LOG = 27;
 
     public static final int SIZE_OF_BYTE = 1;
     public static final int SIZE_OF_SHORT = 2;
     public static final int SIZE_OF_INT = 4;
     public static final int SIZE_OF_LONG = 8;
 
-    private static final long SIZE_OF_BLOCK_HEADER = 3;
+    static final int SIZE_OF_BLOCK_HEADER = 3;
 
     // block types
-    private static final int RAW_BLOCK = 0;
-    private static final int RLE_BLOCK = 1;
-    private static final int COMPRESSED_BLOCK = 2;
+    static final int RAW_BLOCK = 0;
+    static final int RLE_BLOCK = 1;
+    static final int COMPRESSED_BLOCK = 2;
 
     // literal block types
-    private static final int RAW_LITERALS_BLOCK = 0;
-    private static final int RLE_LITERALS_BLOCK = 1;
-    private static final int COMPRESSED_LITERALS_BLOCK = 2;
+    static final int RAW_LITERALS_BLOCK = 0;
+    static final int RLE_LITERALS_BLOCK = 1;
+    static final int COMPRESSED_LITERALS_BLOCK = 2;
     private static final int REPEAT_STATS_LITERALS_BLOCK = 3;
 
-    private static final int LONG_NUMBER_OF_SEQUENCES = 0x7F00;
+    static final int LONG_NUMBER_OF_SEQUENCES = 0x7F00;
 
-    private static final int MAX_LITERALS_LENGTH_SYMBOL = 35;
-    private static final int MAX_MATCH_LENGTH_SYMBOL = 52;
-    private static final int MAX_OFFSET_CODE_SYMBOL = 28;
+    static final int MAX_LITERALS_LENGTH_SYMBOL = 35;
+    static final int MAX_MATCH_LENGTH_SYMBOL = 52;
+    static final int MAX_OFFSET_CODE_SYMBOL = 31;
 
-    private static final int LITERALS_LENGTH_FSE_LOG = 9;
-    private static final int MATCH_LENGTH_FSE_LOG = 9;
-    private static final int OFFSET_CODES_FSE_LOG = 8;
+    static final int LITERALS_LENGTH_FSE_LOG = 9;
+    static final int MATCH_LENGTH_FSE_LOG = 9;
+    static final int OFFSET_CODES_FSE_LOG = 8;
 
-    private static final int SET_BASIC = 0;
-    private static final int SET_RLE = 1;
-    private static final int SET_COMPRESSED = 2;
+    static final int SET_BASIC = 0;
+    static final int SET_RLE = 1;
+    static final int SET_COMPRESSED = 2;
     private static final int SET_REPEAT = 3;
 
     private static final int[] LITERALS_LENGTH_BASE = {
@@ -85,14 +94,14 @@ class ZstdFrameDecompressor {
             0, 1, 1, 5, 0xD, 0x1D, 0x3D, 0x7D,
             0xFD, 0x1FD, 0x3FD, 0x7FD, 0xFFD, 0x1FFD, 0x3FFD, 0x7FFD,
             0xFFFD, 0x1FFFD, 0x3FFFD, 0x7FFFD, 0xFFFFD, 0x1FFFFD, 0x3FFFFD, 0x7FFFFD,
-            0xFFFFFD, 0x1FFFFFD, 0x3FFFFFD, 0x7FFFFFD, 0xFFFFFFD};
+            0xFFFFFD, 0x1FFFFFD, 0x3FFFFFD, 0x7FFFFFD, 0xFFFFFFD, 0x1FFFFFFD, 0x3FFFFFFD, 0x7FFFFFFD};
 
-    private static final int[] LITERALS_LENGTH_BITS = {
+    static final int[] LITERALS_LENGTH_BITS = {
             0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
             1, 1, 1, 1, 2, 2, 3, 3, 4, 6, 7, 8, 9, 10, 11, 12,
             13, 14, 15, 16};
 
-    private static final int[] MATCH_LENGTH_BITS = {
+    static final int[] MATCH_LENGTH_BITS = {
             0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
             0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
             1, 1, 1, 1, 2, 2, 3, 3, 4, 4, 5, 7, 8, 9, 10, 11,
@@ -134,7 +143,17 @@ class ZstdFrameDecompressor {
                     6, 4, 5, 5, 5, 5, 5, 6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 4, 4, 5, 5, 5, 5, 6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 4, 4, 4, 5, 5, 5, 5, 6, 6, 6,
                     6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 6});
 
-    private final byte[] literals = new byte[MAX_BLOCK_SIZE + SIZE_OF_LONG]; // extra space to allow for long-at-a-time copy
+    private static final int MIN_LITERALS_SIZE = 1024;
+    private static final int MAX_WINDOW_BUFFER_SIZE = Integer.MAX_VALUE - 8;
+
+    // created on demand and grown up to the largest block of the frame, with extra space for long-at-a-time copy
+    private byte[] literals;
+    private ByteBuffer literalsBuffer;
+    private int blockSizeLimit = MAX_BLOCK_SIZE;
+
+    // created on demand for the largest window of the frames decoded into segments
+    private byte[] window;
+    private ByteBuffer windowBuffer;
 
     // current buffer containing literals
     private ByteBuffer literalsBase;
@@ -143,16 +162,221 @@ class ZstdFrameDecompressor {
 
     private final int[] previousOffsets = new int[3];
 
-    private final FiniteStateEntropy.Table literalsLengthTable = new FiniteStateEntropy.Table(LITERALS_LENGTH_FSE_LOG);
-    private final FiniteStateEntropy.Table offsetCodesTable = new FiniteStateEntropy.Table(OFFSET_CODES_FSE_LOG);
-    private final FiniteStateEntropy.Table matchLengthTable = new FiniteStateEntropy.Table(MATCH_LENGTH_FSE_LOG);
+    // created on demand and grown with the logs of the tables read, RLE needs a single entry
+    private FiniteStateEntropy.Table literalsLengthTable;
+    private FiniteStateEntropy.Table offsetCodesTable;
+    private FiniteStateEntropy.Table matchLengthTable;
 
     private FiniteStateEntropy.Table currentLiteralsLengthTable;
     private FiniteStateEntropy.Table currentOffsetCodesTable;
     private FiniteStateEntropy.Table currentMatchLengthTable;
 
-    private final Huffman huffman = new Huffman();
-    private final FseTableReader fse = new FseTableReader();
+    private Huffman huffman;
+    private Huffman currentHuffman;
+    private FseTableReader fse;
+    private final BitStream.Initializer initializer = new BitStream.Initializer();
+    private final BitStream.Loader loader = new BitStream.Loader();
+    private final FrameHeader frameHeader = new FrameHeader();
+
+    // history that precedes the current output prefix: the previous lap of a window buffer
+    private ByteBuffer extDictBase;
+    private int extDictAddress;
+    private int extDictLimit;
+
+    // start of the contiguous output history
+    private int prefixAddress;
+
+    private ZstdDictionary dictionary;
+    private ZstdDictionaryRegistry dictionaryRegistry;
+
+    private SkippableFrameListener skippableFrameListener;
+    private int maxWindowLog = DEFAULT_MAX_WINDOW_LOG;
+
+    private final XxHash64 checksum = new XxHash64();
+    private DeferredChecksums deferredChecksums;
+
+    private ZstdMemoryBudget memoryBudget;
+    private long literalsMemorySize;
+    private long tablesMemorySize;
+    private long windowMemorySize;
+    private ZstdMemoryBudget.Reservation reservation;
+    private int huffmanMemorySize;
+
+    void setDictionary(final ZstdDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    void setDictionaryRegistry(final ZstdDictionaryRegistry dictionaryRegistry) {
+        this.dictionaryRegistry = dictionaryRegistry;
+    }
+
+    void setSkippableFrameListener(final SkippableFrameListener skippableFrameListener) {
+        this.skippableFrameListener = skippableFrameListener;
+    }
+
+    /**
+     * Frames which window, or content of a single segment frame, is larger than {@code 1 << maxWindowLog} fail
+     * before a window buffer is allocated for them, see {@link #verifyWindowSize}. Decoding straight into the output
+     * allocates no window, so it accepts any window of the format.
+     */
+    void setMaxWindowLog(final int maxWindowLog) {
+        this.maxWindowLog = checkMaxWindowLog(maxWindowLog);
+    }
+
+    static int checkMaxWindowLog(final int maxWindowLog) {
+        Preconditions.checkArgument(maxWindowLog >= MIN_WINDOW_LOG && maxWindowLog <= MAX_WINDOW_LOG,
+                "Max window log must be between " + MIN_WINDOW_LOG + " and " + MAX_WINDOW_LOG + ": " + maxWindowLog);
+        return maxWindowLog;
+    }
+
+    /**
+     * Releases the memory kept so far and accounts the memory taken from now on in {@code memoryBudget},
+     * {@code null} for no limit.
+     */
+    void setMemoryBudget(final ZstdMemoryBudget memoryBudget) {
+        releaseMemory();
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * @return number of bytes kept for literals and entropy tables, which are created again when needed
+     */
+    long getMemorySize() {
+        return literalsMemorySize + tablesMemorySize + windowMemorySize;
+    }
+
+    /**
+     * Drops the literals buffer and the entropy tables, which are created again by the next frame that needs them.
+     * Must not be called in the middle of a frame.
+     */
+    void releaseMemory() {
+        if (reservation != null) {
+            memoryBudget.release(reservation);
+            reservation = null;
+        }
+        literalsMemorySize = 0;
+        tablesMemorySize = 0;
+        windowMemorySize = 0;
+
+        literals = null;
+        literalsBuffer = null;
+        literalsBase = null;
+        literalsLengthTable = null;
+        offsetCodesTable = null;
+        matchLengthTable = null;
+        huffman = null;
+        fse = null;
+        window = null;
+        windowBuffer = null;
+        reset();
+        setHistory(null, 0, 0, 0);
+    }
+
+    private ByteBuffer literalsBuffer(final int size, final int inputAddress) {
+        if (literals == null || literals.length < size + SIZE_OF_LONG) {
+            // grow in powers of two up to the largest block the frame may have, to reallocate a few times at most
+            int length = Math.max(Integer.highestOneBit(Math.max(size, MIN_LITERALS_SIZE) - 1) << 1, size);
+            length = Math.max(Math.min(length, blockSizeLimit), size) + SIZE_OF_LONG;
+
+            reserveLiterals(length - (literals == null ? 0 : literals.length), inputAddress);
+            literals = new byte[length];
+            literalsBuffer = ByteBufferWrap(literals);
+        }
+        return literalsBuffer;
+    }
+
+    private ByteBuffer windowBuffer(final int size, final int inputAddress) {
+        if (window == null || window.length < size) {
+            final int memorySize = size - (window == null ? 0 : window.length);
+            if (memoryBudget != null) {
+                attachMemory();
+                verify(memoryBudget.reserveWindow(reservation, memorySize), inputAddress, "Memory budget exceeded");
+            }
+            windowMemorySize += memorySize;
+
+            // the previous window is dropped before the new one is allocated
+            window = null;
+            windowBuffer = null;
+            window = new byte[size];
+            windowBuffer = ByteBufferWrap(window);
+        }
+        return windowBuffer;
+    }
+
+    private FiniteStateEntropy.Table table(final FiniteStateEntropy.Table table, final int log2Size, final int inputAddress) {
+        if (table != null && table.fits(log2Size)) {
+            return table;
+        }
+        reserveTables(FiniteStateEntropy.Table.memorySize(log2Size) - (table == null ? 0 : table.memorySize()), inputAddress);
+        return new FiniteStateEntropy.Table(log2Size);
+    }
+
+    private FseTableReader fse(final int inputAddress) {
+        if (fse == null) {
+            reserveTables(FseTableReader.MEMORY_SIZE, inputAddress);
+            fse = new FseTableReader();
+        }
+        return fse;
+    }
+
+    private int readHuffmanTable(final ByteBuffer inputBase, final int inputAddress, final int size) {
+        if (huffman == null) {
+            huffman = new Huffman();
+            huffmanMemorySize = 0;
+        }
+
+        // the table grows with its log, which is known once the weights are read, so it is accounted afterwards
+        final int tableSize;
+        boolean withinBudget = true;
+        try {
+            tableSize = huffman.readTable(inputBase, inputAddress, size);
+        } finally {
+            final int memorySize = huffman.memorySize();
+            if (memorySize != huffmanMemorySize) {
+                tablesMemorySize += memorySize - huffmanMemorySize;
+                if (memoryBudget != null) {
+                    attachMemory();
+                    withinBudget = memoryBudget.addTables(reservation, memorySize - huffmanMemorySize);
+                }
+                huffmanMemorySize = memorySize;
+            }
+        }
+        verify(withinBudget, inputAddress, "Memory budget exceeded");
+
+        currentHuffman = huffman;
+        return tableSize;
+    }
+
+    private void reserveLiterals(final int size, final int inputAddress) {
+        if (memoryBudget != null) {
+            attachMemory();
+            verify(memoryBudget.reserveLiterals(reservation, size), inputAddress, "Memory budget exceeded");
+        }
+        literalsMemorySize += size;
+    }
+
+    private void reserveTables(final int size, final int inputAddress) {
+        if (memoryBudget != null) {
+            attachMemory();
+            verify(memoryBudget.reserveTables(reservation, size), inputAddress, "Memory budget exceeded");
+        }
+        tablesMemorySize += size;
+    }
+
+    private void attachMemory() {
+        if (reservation == null) {
+            reservation = memoryBudget.attach(this);
+        }
+    }
+
+    /**
+     * @return checksums recorded with {@link ChecksumPolicy#DEFERRED} since the previous call, or an empty set
+     */
+    DeferredChecksums takeDeferredChecksums() {
+        final DeferredChecksums result = deferredChecksums == null ? new DeferredChecksums() : deferredChecksums;
+        deferredChecksums = null;
+        return result;
+    }
 
     public int decompress(
             final ByteBuffer inputBase,
@@ -161,70 +385,270 @@ class ZstdFrameDecompressor {
             final ByteBuffer outputBase,
             final int outputAddress,
             final int outputLimit) {
-        if (outputAddress == outputLimit) {
-            return 0;
+        return decompress(inputBase, inputAddress, inputLimit, outputBase, outputAddress, outputLimit, ChecksumPolicy.VERIFY);
+    }
+
+    public int decompress(
+            final ByteBuffer inputBase,
+            final int inputAddress,
+            final int inputLimit,
+            final ByteBuffer outputBase,
+            final int outputAddress,
+            final int outputLimit,
+            final ChecksumPolicy checksumPolicy) {
+        int input = inputAddress;
+        int output = outputAddress;
+
+        while (input < inputLimit) {
+            if (isSkippableFrame(inputBase, input, inputLimit)) {
+                input += skipFrame(inputBase, input, inputLimit, skippableFrameListener);
+                continue;
+            }
+
+            final int outputStart = output;
+            input += verifyMagic(inputBase, input, inputLimit);
+
+            final FrameHeader frameHeader = readFrameHeader(inputBase, input, inputLimit, this.frameHeader);
+            beginFrame(frameHeader, input, output);
+            input += frameHeader.headerSize;
+
+            final boolean verifyChecksum = frameHeader.hasChecksum && checksumPolicy == ChecksumPolicy.VERIFY;
+            if (verifyChecksum) {
+                checksum.reset();
+            }
+
+            boolean lastBlock;
+            do {
+                verify(input + SIZE_OF_BLOCK_HEADER <= inputLimit, input, "Not enough input bytes");
+
+                // read block header
+                final int header = getBlockHeader(inputBase, input);
+                input += SIZE_OF_BLOCK_HEADER;
+
+                lastBlock = (header & 1) != 0;
+                final int blockType = (header >>> 1) & 0b11;
+                final int blockSize = (header >>> 3) & 0x1F_FFFF; // 21 bits
+
+                final int decodedSize = decodeBlock(blockType, blockSize, inputBase, input, inputLimit, outputBase, output, outputLimit);
+                if (verifyChecksum) {
+                    // the block is still in the cache
+                    checksum.update(outputBase, output, decodedSize);
+                }
+                output += decodedSize;
+                input += getBlockInputSize(blockType, blockSize);
+            }
+            while (!lastBlock);
+
+            if (frameHeader.hasChecksum) {
+                verify(input + SIZE_OF_INT <= inputLimit, input, "Not enough input bytes");
+
+                final int expected = inputBase.getInt(input);
+                if (verifyChecksum) {
+                    final int actual = (int) checksum.hash();
+                    if (expected != actual) {
+                        throw new RuntimeException(String.format("Bad checksum. Expected: %s, actual: %s: offset=%d", Integer.toHexString(expected), Integer.toHexString(actual), input));
+                    }
+                } else if (checksumPolicy == ChecksumPolicy.DEFERRED) {
+                    if (deferredChecksums == null) {
+                        deferredChecksums = new DeferredChecksums();
+                    }
+                    deferredChecksums.add(outputBase, outputStart, output - outputStart, expected);
+                }
+                input += SIZE_OF_INT;
+            }
         }
 
-        reset();
+        return (int) (output - outputAddress);
+    }
 
+    /**
+     * Decompresses all frames of the input into {@code output}, which grows by a segment at a time. Blocks are decoded
+     * into a window buffer, which is kept for the next call, and copied to the segments, so frames need not declare
+     * their content size. A wrapped window buffer keeps its previous lap as the external history, as in
+     * {@link ZstdInputStream}.
+     */
+    void decompress(final ByteBuffer inputBase, final int inputAddress, final int inputLimit,
+                    final ZstdSegmentedOutput output, final ChecksumPolicy checksumPolicy) {
         int input = inputAddress;
-        int output = outputAddress;
 
-        input += verifyMagic(inputBase, inputAddress, inputLimit);
+        while (input < inputLimit) {
+            if (isSkippableFrame(inputBase, input, inputLimit)) {
+                input += skipFrame(inputBase, input, inputLimit, skippableFrameListener);
+                continue;
+            }
 
-        final FrameHeader frameHeader = readFrameHeader(inputBase, input, inputLimit);
-        input += frameHeader.headerSize;
+            input += verifyMagic(inputBase, input, inputLimit);
 
-        boolean lastBlock;
-        do {
-            verify(input + SIZE_OF_BLOCK_HEADER <= inputLimit, input, "Not enough input bytes");
+            final FrameHeader frameHeader = readFrameHeader(inputBase, input, inputLimit, this.frameHeader);
+            beginFrame(frameHeader, input, 0);
 
-            // read block header
-            final int header = inputBase.getInt(input) & 0xFF_FFFF;
-            input += SIZE_OF_BLOCK_HEADER;
+            final long frameWindowSize = frameHeader.windowSize != -1 ? frameHeader.windowSize : frameHeader.contentSize;
+            verifyWindowSize(frameWindowSize, input);
+            final int blockMaximumSize = (int) Math.min(frameWindowSize, MAX_BLOCK_SIZE);
+            verify(frameWindowSize <= MAX_WINDOW_BUFFER_SIZE - 2 * (blockMaximumSize + SIZE_OF_LONG), input, "Window size too large");
 
-            lastBlock = (header & 1) != 0;
-            final int blockType = (header >>> 1) & 0b11;
-            final int blockSize = (header >>> 3) & 0x1F_FFFF; // 21 bits
+            final ByteBuffer windowBase = windowBuffer((int) frameWindowSize + 2 * (blockMaximumSize + SIZE_OF_LONG), input);
+            input += frameHeader.headerSize;
 
-            final int decodedSize;
-            switch (blockType) {
-                case RAW_BLOCK:
-                    verify(inputAddress + blockSize <= inputLimit, input, "Not enough input bytes");
-                    decodedSize = decodeRawBlock(inputBase, input, blockSize, outputBase, output, outputLimit);
-                    input += blockSize;
-                    break;
-                case RLE_BLOCK:
-                    verify(inputAddress + 1 <= inputLimit, input, "Not enough input bytes");
-                    decodedSize = decodeRleBlock(blockSize, inputBase, input, outputBase, output, outputLimit);
-                    input += 1;
-                    break;
-                case COMPRESSED_BLOCK:
-                    verify(inputAddress + blockSize <= inputLimit, input, "Not enough input bytes");
-                    decodedSize = decodeCompressedBlock(inputBase, input, blockSize, outputBase, output, outputLimit, frameHeader.windowSize);
-                    input += blockSize;
-                    break;
-                default:
-                    throw fail(input, "Invalid block type");
+            final boolean verifyChecksum = frameHeader.hasChecksum && checksumPolicy == ChecksumPolicy.VERIFY;
+            if (verifyChecksum) {
+                checksum.reset();
             }
 
-            output += decodedSize;
+            // start of the current lap and the position of the next block in the window buffer
+            int prefixAddress = 0;
+            int writeAddress = 0;
+
+            boolean lastBlock;
+            do {
+                verify(input + SIZE_OF_BLOCK_HEADER <= inputLimit, input, "Not enough input bytes");
+
+                final int header = getBlockHeader(inputBase, input);
+                input += SIZE_OF_BLOCK_HEADER;
+
+                lastBlock = (header & 1) != 0;
+                final int blockType = (header >>> 1) & 0b11;
+                final int blockSize = (header >>> 3) & 0x1F_FFFF; // 21 bits
+                verify(blockSize <= blockMaximumSize, input, "Block exceeds maximum size");
+
+                if (windowBase.capacity() - writeAddress < blockMaximumSize + SIZE_OF_LONG) {
+                    // wrap around: the previous lap holds at least windowSize bytes which are not overwritten by this lap
+                    setHistory(windowBase, prefixAddress, writeAddress, 0);
+                    prefixAddress = 0;
+                    writeAddress = 0;
+                }
+
+                final int decodedSize = decodeBlock(blockType, blockSize, inputBase, input, inputLimit,
+                        windowBase, writeAddress, writeAddress + blockMaximumSize + SIZE_OF_LONG);
+                verify(decodedSize <= blockMaximumSize, input, "Block exceeds maximum size");
+                if (verifyChecksum) {
+                    checksum.update(windowBase, writeAddress, decodedSize);
+                }
+                output.write(window, writeAddress, decodedSize);
+                writeAddress += decodedSize;
+                input += getBlockInputSize(blockType, blockSize);
+            }
+            while (!lastBlock);
+
+            if (frameHeader.hasChecksum) {
+                verify(input + SIZE_OF_INT <= inputLimit, input, "Not enough input bytes");
+
+                final int expected = inputBase.getInt(input);
+                if (verifyChecksum) {
+                    final int actual = (int) checksum.hash();
+                    if (expected != actual) {
+                        throw new RuntimeException(String.format("Bad checksum. Expected: %s, actual: %s: offset=%d", Integer.toHexString(expected), Integer.toHexString(actual), input));
+                    }
+                }
+                input += SIZE_OF_INT;
+            }
         }
-        while (!lastBlock);
+    }
+
+    static int getBlockHeader(final ByteBuffer inputBase, final int inputAddress) {
+        return (inputBase.getShort(inputAddress) & 0xFFFF) | ((inputBase.get(inputAddress + 2) & 0xFF) << 16);
+    }
 
-        if (frameHeader.hasChecksum) {
-            final long hash = XxHash64.hash(0, outputBase, outputAddress, (int) (outputLimit - outputAddress));
+    /**
+     * Decodes a single block, which header is already parsed, into {@code [outputAddress, outputLimit)}.
+     * Matches may refer to the output prefix and to the external history set by {@link #setHistory}.
+     *
+     * @return number of decoded bytes
+     */
+    int decodeBlock(final int blockType, final int blockSize,
+                    final ByteBuffer inputBase, final int inputAddress, final int inputLimit,
+                    final ByteBuffer outputBase, final int outputAddress, final int outputLimit) {
+        switch (blockType) {
+            case RAW_BLOCK:
+                verify(inputAddress + blockSize <= inputLimit, inputAddress, "Not enough input bytes");
+                return decodeRawBlock(inputBase, inputAddress, blockSize, outputBase, outputAddress, outputLimit);
+            case RLE_BLOCK:
+                verify(inputAddress + 1 <= inputLimit, inputAddress, "Not enough input bytes");
+                return decodeRleBlock(blockSize, inputBase, inputAddress, outputBase, outputAddress, outputLimit);
+            case COMPRESSED_BLOCK:
+                verify(inputAddress + blockSize <= inputLimit, inputAddress, "Not enough input bytes");
+                return decodeCompressedBlock(inputBase, inputAddress, blockSize, outputBase, outputAddress, outputLimit);
+            default:
+                throw fail(inputAddress, "Invalid block type");
+        }
+    }
 
-            final int checksum = inputBase.getInt(input);
-            if (checksum != (int) hash) {
-                throw new RuntimeException(String.format("Bad checksum. Expected: %s, actual: %s: offset=%d", Integer.toHexString(checksum), Integer.toHexString((int) hash), input));
+    /**
+     * @return number of input bytes the block occupies after its header
+     */
+    static int getBlockInputSize(final int blockType, final int blockSize) {
+        return blockType == RLE_BLOCK ? 1 : blockSize;
+    }
+
+    /**
+     * Sets the history available to matches of the following blocks: the contiguous output starting at
+     * {@code prefixAddress} and, before it, the external segment {@code [extDictAddress, extDictLimit)}.
+     */
+    void setHistory(final ByteBuffer extDictBase, final int extDictAddress, final int extDictLimit, final int prefixAddress) {
+        this.extDictBase = extDictBase;
+        this.extDictAddress = extDictAddress;
+        this.extDictLimit = extDictLimit;
+        this.prefixAddress = prefixAddress;
+    }
+
+    /**
+     * Moves the history along with the output, which is addressed {@code shift} bytes lower from now on.
+     * The dictionary content is dropped once the prefix would start before the output.
+     */
+    void shiftHistory(final int shift) {
+        prefixAddress -= shift;
+        if (prefixAddress < 0) {
+            setHistory(null, 0, 0, 0);
+        }
+    }
+
+    /**
+     * Starts a frame which output begins at {@code outputAddress}: the repeat offsets, the entropy tables and the history
+     * are reset to the state defined by the dictionary of the frame, or to the defaults if it has none.
+     */
+    void beginFrame(final FrameHeader frameHeader, final int inputAddress, final int outputAddress) {
+        // blocks are no larger than the window, which is the content of a single segment frame
+        final long windowSize = frameHeader.windowSize != -1 ? frameHeader.windowSize : frameHeader.contentSize;
+        blockSizeLimit = windowSize >= 0 && windowSize < MAX_BLOCK_SIZE ? (int) windowSize : MAX_BLOCK_SIZE;
+
+        final ZstdDictionary dictionary = getDictionary(frameHeader, inputAddress);
+        if (dictionary == null) {
+            reset();
+            setHistory(null, 0, 0, outputAddress);
+        } else {
+            reset(dictionary);
+            setHistory(dictionary.contentBase, 0, dictionary.contentLimit, outputAddress);
+        }
+    }
+
+    /**
+     * Fails if a window buffer of {@code windowSize} bytes is larger than {@link #setMaxWindowLog allowed}, before
+     * the decoders which keep the window of a frame in their own buffer allocate it.
+     */
+    void verifyWindowSize(final long windowSize, final int inputAddress) {
+        verify(windowSize <= 1L << maxWindowLog, inputAddress, "Window size too large");
+    }
+
+    private ZstdDictionary getDictionary(final FrameHeader frameHeader, final int inputAddress) {
+        // id 0 means that the frame does not restrict the dictionary
+        if (frameHeader.dictionaryId <= 0 || dictionary != null && dictionary.getDictionaryId() == frameHeader.dictionaryId) {
+            return dictionary;
+        }
+
+        if (dictionaryRegistry != null) {
+            final ZstdDictionary resolved = dictionaryRegistry.get(frameHeader.dictionaryId);
+            if (resolved != null) {
+                return resolved;
             }
         }
 
-        return (int) (output - outputAddress);
+        if (dictionary != null) {
+            throw fail(inputAddress, "Wrong dictionary: expected " + frameHeader.dictionaryId + ", actual " + dictionary.getDictionaryId());
+        }
+        throw fail(inputAddress, "Dictionary not available: " + frameHeader.dictionaryId);
     }
 
-    private void reset() {
+    void reset() {
         previousOffsets[0] = 1;
         previousOffsets[1] = 4;
         previousOffsets[2] = 8;
@@ -232,13 +656,29 @@ class ZstdFrameDecompressor {
         currentLiteralsLengthTable = null;
         currentOffsetCodesTable = null;
         currentMatchLengthTable = null;
+        currentHuffman = null;
+    }
+
+    private void reset(final ZstdDictionary dictionary) {
+        if (dictionary.previousOffsets == null) {
+            reset();
+            return;
+        }
+
+        System.arraycopy(dictionary.previousOffsets, 0, previousOffsets, 0, previousOffsets.length);
+
+        // the tables of the dictionary are only read, a block with new tables builds them in the own tables
+        currentLiteralsLengthTable = dictionary.literalsLengthTable;
+        currentOffsetCodesTable = dictionary.offsetCodesTable;
+        currentMatchLengthTable = dictionary.matchLengthTable;
+        currentHuffman = dictionary.huffman;
     }
 
     private static int decodeRawBlock(final ByteBuffer inputBase, final int inputAddress, final int blockSize,
                                       final ByteBuffer outputBase, final int outputAddress, final long outputLimit) {
         verify(outputAddress + blockSize <= outputLimit, inputAddress, "Output buffer too small");
 
-        System.arraycopy(inputBase.array(), inputAddress, outputBase.array(), outputAddress, blockSize);
+        copyMemory(inputBase, inputAddress, outputBase, outputAddress, blockSize);
         return blockSize;
     }
 
@@ -261,7 +701,7 @@ class ZstdFrameDecompressor {
                     | (value << 56);
 
             do {
-                outputBase.putLong(output, packed);
+                MEMORY.putLong(outputBase, output, packed);
                 output += SIZE_OF_LONG;
                 remaining -= SIZE_OF_LONG;
             }
@@ -277,7 +717,7 @@ class ZstdFrameDecompressor {
     }
 
     private int decodeCompressedBlock(final ByteBuffer inputBase, final int inputAddress, final int blockSize,
-                                      final ByteBuffer outputBase, final int outputAddress, final int outputLimit, final int windowSize) {
+                                      final ByteBuffer outputBase, final int outputAddress, final int outputLimit) {
         final int inputLimit = inputAddress + blockSize;
         int input = inputAddress;
 
@@ -297,7 +737,7 @@ class ZstdFrameDecompressor {
                 break;
             }
             case REPEAT_STATS_LITERALS_BLOCK:
-                verify(huffman.isLoaded(), input, "Dictionary is corrupted");
+                verify(currentHuffman != null, input, "Dictionary is corrupted");
             case COMPRESSED_LITERALS_BLOCK: {
                 input += decodeCompressedLiterals(inputBase, input, blockSize, literalsBlockType);
                 break;
@@ -306,12 +746,15 @@ class ZstdFrameDecompressor {
                 throw fail(input, "Invalid literals block encoding type");
         }
 
-        verify(windowSize <= MAX_WINDOW_SIZE, input, "Window size too large (not yet supported)");
-
-        return decompressSequences(
-                inputBase, input, inputAddress + blockSize,
-                outputBase, outputAddress, outputLimit,
-                literalsBase, literalsAddress, literalsLimit);
+        try {
+            return decompressSequences(
+                    inputBase, input, inputAddress + blockSize,
+                    outputBase, outputAddress, outputLimit,
+                    literalsBase, literalsAddress, literalsLimit);
+        } finally {
+            // raw literals are read in place, the input of the caller is not kept after the block
+            literalsBase = null;
+        }
     }
 
     private int decompressSequences(
@@ -353,8 +796,7 @@ class ZstdFrameDecompressor {
             input = computeMatchLengthTable(matchLengthType, inputBase, input, inputLimit);
 
             // decompress sequences
-            final BitStream.Initializer initializer = new BitStream.Initializer(inputBase, input, inputLimit);
-            initializer.initialize();
+            initializer.initialize(inputBase, input, inputLimit);
             int bitsConsumed = initializer.getBitsConsumed();
             long bits = initializer.getBits();
             int currentAddress = initializer.getCurrentAddress();
@@ -389,7 +831,7 @@ class ZstdFrameDecompressor {
             while (sequenceCount > 0) {
                 sequenceCount--;
 
-                final BitStream.Loader loader = new BitStream.Loader(inputBase, input, currentAddress, bits, bitsConsumed);
+                loader.reset(inputBase, input, currentAddress, bits, bitsConsumed);
                 loader.load();
                 bitsConsumed = loader.getBitsConsumed();
                 bits = loader.getBits();
@@ -442,6 +884,9 @@ class ZstdFrameDecompressor {
                         offset = previousOffsets[0];
                     }
                 } else {
+                    // offset code 31 overflows only for offsets beyond any int addressed buffer
+                    verify(offset > 0, input, "Input is corrupted");
+
                     previousOffsets[2] = previousOffsets[1];
                     previousOffsets[1] = previousOffsets[0];
                     previousOffsets[0] = offset;
@@ -453,22 +898,24 @@ class ZstdFrameDecompressor {
                     bitsConsumed += matchLengthBits;
                 }
 
+                // a refill leaves at least 57 bits: enough for the offset (<= 31 bits) and the match length (<= 16 bits),
+                // but not always for the literals length and the state updates that follow
+                final int totalBits = literalsLengthBits + matchLengthBits + offsetBits;
+                if (totalBits > 64 - 7 - (LITERALS_LENGTH_FSE_LOG + MATCH_LENGTH_FSE_LOG + OFFSET_CODES_FSE_LOG)) {
+                    loader.reset(inputBase, input, currentAddress, bits, bitsConsumed);
+                    loader.load();
+
+                    bitsConsumed = loader.getBitsConsumed();
+                    bits = loader.getBits();
+                    currentAddress = loader.getCurrentAddress();
+                }
+
                 int literalsLength = LITERALS_LENGTH_BASE[literalsLengthCode];
                 if (literalsLengthCode > 15) {
                     literalsLength += peekBits(bitsConsumed, bits, literalsLengthBits);
                     bitsConsumed += literalsLengthBits;
                 }
 
-                final int totalBits = literalsLengthBits + matchLengthBits + offsetBits;
-                if (totalBits > 64 - 7 - (LITERALS_LENGTH_FSE_LOG + MATCH_LENGTH_FSE_LOG + OFFSET_CODES_FSE_LOG)) {
-                    final BitStream.Loader loader1 = new BitStream.Loader(inputBase, input, currentAddress, bits, bitsConsumed);
-                    loader1.load();
-
-                    bitsConsumed = loader1.getBitsConsumed();
-                    bits = loader1.getBits();
-                    currentAddress = loader1.getCurrentAddress();
-                }
-
                 int numberOfBits;
 
                 numberOfBits = literalsLengthNumbersOfBits[literalsLengthState];
@@ -491,7 +938,9 @@ class ZstdFrameDecompressor {
 
                 final int matchAddress = literalOutputLimit - offset;
 
-                if (literalOutputLimit > fastOutputLimit) {
+                if (matchAddress < prefixAddress) {
+                    executeExtDictSequence(outputBase, output, literalOutputLimit, matchOutputLimit, fastOutputLimit, literalsInput, offset, input);
+                } else if (literalOutputLimit > fastOutputLimit) {
                     executeLastSequence(outputBase, output, literalOutputLimit, matchOutputLimit, fastOutputLimit, literalsInput, matchAddress);
                 } else {
                     // copy literals. literalOutputLimit <= fastOutputLimit, so we can copy
@@ -512,12 +961,12 @@ class ZstdFrameDecompressor {
 
     private static int copyLastLiteral(final ByteBuffer outputBase, final ByteBuffer literalsBase, final int literalsLimit, int output, final int literalsInput) {
         final int lastLiteralsSize = literalsLimit - literalsInput;
-        System.arraycopy(literalsBase.array(), literalsInput, outputBase.array(), output, lastLiteralsSize);
+        copyMemory(literalsBase, literalsInput, outputBase, output, lastLiteralsSize);
         output += lastLiteralsSize;
         return output;
     }
 
-    private static void copyMatch(final ByteBuffer outputBase, final int fastOutputLimit, int output, final int offset, final int matchOutputLimit, int matchAddress) {
+    static void copyMatch(final ByteBuffer outputBase, final int fastOutputLimit, int output, final int offset, final int matchOutputLimit, int matchAddress) {
         matchAddress = copyMatchHead(outputBase, output, offset, matchAddress);
         output += SIZE_OF_LONG;
 
@@ -525,15 +974,22 @@ class ZstdFrameDecompressor {
     }
 
     private static void copyMatchTail(final ByteBuffer outputBase, final int fastOutputLimit, int output, final int matchOutputLimit, int matchAddress) {
+        if (output - matchAddress >= KERNELS.copyWidth()) {
+            // the chunks do not overlap, so wide copies see the same bytes as the long ones
+            final int copied = KERNELS.copy(outputBase, matchAddress, outputBase, output, Math.min(matchOutputLimit, fastOutputLimit) - output);
+            matchAddress += copied;
+            output += copied;
+        }
+
         if (matchOutputLimit <= fastOutputLimit) {
             while (output < matchOutputLimit) {
-                outputBase.putLong(output, outputBase.getLong(matchAddress));
+                MEMORY.putLong(outputBase, output, MEMORY.getLong(outputBase, matchAddress));
                 matchAddress += SIZE_OF_LONG;
                 output += SIZE_OF_LONG;
             }
         } else {
             while (output < fastOutputLimit) {
-                outputBase.putLong(output, outputBase.getLong(matchAddress));
+                MEMORY.putLong(outputBase, output, MEMORY.getLong(outputBase, matchAddress));
                 matchAddress += SIZE_OF_LONG;
                 output += SIZE_OF_LONG;
             }
@@ -557,23 +1013,25 @@ class ZstdFrameDecompressor {
             outputBase.put(output + 3, outputBase.get(matchAddress + 3));
             matchAddress += increment32;
 
-            outputBase.putInt(output + 4, outputBase.getInt(matchAddress));
+            MEMORY.putInt(outputBase, output + 4, MEMORY.getInt(outputBase, matchAddress));
             matchAddress -= decrement64;
         } else {
-            outputBase.putLong(output, outputBase.getLong(matchAddress));
+            MEMORY.putLong(outputBase, output, MEMORY.getLong(outputBase, matchAddress));
             matchAddress += SIZE_OF_LONG;
         }
         return matchAddress;
     }
 
-    private static int copyLiterals(final ByteBuffer outputBase, final ByteBuffer literalsBase, int output, final int literalsInput, final int literalOutputLimit) {
+    static int copyLiterals(final ByteBuffer outputBase, final ByteBuffer literalsBase, int output, final int literalsInput, final int literalOutputLimit) {
         int literalInput = literalsInput;
-        do {
-            outputBase.putLong(output, literalsBase.getLong(literalInput));
+        final int copied = KERNELS.copy(literalsBase, literalInput, outputBase, output, literalOutputLimit - output);
+        literalInput += copied;
+        output += copied;
+        while (output < literalOutputLimit) {
+            MEMORY.putLong(outputBase, output, MEMORY.getLong(literalsBase, literalInput));
             output += SIZE_OF_LONG;
             literalInput += SIZE_OF_LONG;
         }
-        while (output < literalOutputLimit);
         output = literalOutputLimit; // correction in case we over-copied
         return output;
     }
@@ -586,6 +1044,7 @@ class ZstdFrameDecompressor {
                 final byte value = inputBase.get(input++);
                 verify(value <= MAX_MATCH_LENGTH_SYMBOL, input, "Value exceeds expected maximum value");
 
+                matchLengthTable = table(matchLengthTable, 0, input);
                 FseTableReader.buildRleTable(matchLengthTable, value);
                 currentMatchLengthTable = matchLengthTable;
                 break;
@@ -596,7 +1055,8 @@ class ZstdFrameDecompressor {
                 verify(currentMatchLengthTable != null, input, "Expected match length table to be present");
                 break;
             case SET_COMPRESSED:
-                input += fse.readFseTable(matchLengthTable, inputBase, input, inputLimit, MAX_MATCH_LENGTH_SYMBOL, MATCH_LENGTH_FSE_LOG);
+                matchLengthTable = table(matchLengthTable, FseTableReader.peekTableLog(inputBase, input, inputLimit, MATCH_LENGTH_FSE_LOG), input);
+                input += fse(input).readFseTable(matchLengthTable, inputBase, input, inputLimit, MAX_MATCH_LENGTH_SYMBOL, MATCH_LENGTH_FSE_LOG);
                 currentMatchLengthTable = matchLengthTable;
                 break;
             default:
@@ -613,6 +1073,7 @@ class ZstdFrameDecompressor {
                 final byte value = inputBase.get(input++);
                 verify(value <= MAX_OFFSET_CODE_SYMBOL, input, "Value exceeds expected maximum value");
 
+                offsetCodesTable = table(offsetCodesTable, 0, input);
                 FseTableReader.buildRleTable(offsetCodesTable, value);
                 currentOffsetCodesTable = offsetCodesTable;
                 break;
@@ -623,7 +1084,8 @@ class ZstdFrameDecompressor {
                 verify(currentOffsetCodesTable != null, input, "Expected match length table to be present");
                 break;
             case SET_COMPRESSED:
-                input += fse.readFseTable(offsetCodesTable, inputBase, input, inputLimit, MAX_OFFSET_CODE_SYMBOL, OFFSET_CODES_FSE_LOG);
+                offsetCodesTable = table(offsetCodesTable, FseTableReader.peekTableLog(inputBase, input, inputLimit, OFFSET_CODES_FSE_LOG), input);
+                input += fse(input).readFseTable(offsetCodesTable, inputBase, input, inputLimit, MAX_OFFSET_CODE_SYMBOL, OFFSET_CODES_FSE_LOG);
                 currentOffsetCodesTable = offsetCodesTable;
                 break;
             default:
@@ -640,6 +1102,7 @@ class ZstdFrameDecompressor {
                 final byte value = inputBase.get(input++);
                 verify(value <= MAX_LITERALS_LENGTH_SYMBOL, input, "Value exceeds expected maximum value");
 
+                literalsLengthTable = table(literalsLengthTable, 0, input);
                 FseTableReader.buildRleTable(literalsLengthTable, value);
                 currentLiteralsLengthTable = literalsLengthTable;
                 break;
@@ -650,7 +1113,8 @@ class ZstdFrameDecompressor {
                 verify(currentLiteralsLengthTable != null, input, "Expected match length table to be present");
                 break;
             case SET_COMPRESSED:
-                input += fse.readFseTable(literalsLengthTable, inputBase, input, inputLimit, MAX_LITERALS_LENGTH_SYMBOL, LITERALS_LENGTH_FSE_LOG);
+                literalsLengthTable = table(literalsLengthTable, FseTableReader.peekTableLog(inputBase, input, inputLimit, LITERALS_LENGTH_FSE_LOG), input);
+                input += fse(input).readFseTable(literalsLengthTable, inputBase, input, inputLimit, MAX_LITERALS_LENGTH_SYMBOL, LITERALS_LENGTH_FSE_LOG);
                 currentLiteralsLengthTable = literalsLengthTable;
                 break;
             default:
@@ -665,7 +1129,7 @@ class ZstdFrameDecompressor {
         if (output < fastOutputLimit) {
             // wild copy
             do {
-                outputBase.putLong(output, literalsBase.getLong(literalInput));
+                MEMORY.putLong(outputBase, output, MEMORY.getLong(literalsBase, literalInput));
                 output += SIZE_OF_LONG;
                 literalInput += SIZE_OF_LONG;
             }
@@ -689,6 +1153,37 @@ class ZstdFrameDecompressor {
         }
     }
 
+    private void executeExtDictSequence(final ByteBuffer outputBase, int output,
+                                        final int literalOutputLimit, final int matchOutputLimit, final int fastOutputLimit,
+                                        int literalInput, final int offset, final int inputAddress) {
+        // copy literals
+        if (literalOutputLimit <= fastOutputLimit) {
+            output = copyLiterals(outputBase, literalsBase, output, literalInput, literalOutputLimit);
+        } else {
+            while (output < literalOutputLimit) {
+                outputBase.put(output, literalsBase.get(literalInput));
+                output++;
+                literalInput++;
+            }
+        }
+
+        // copy the part of the match that lies in the external history
+        final int extDictOffset = offset - (literalOutputLimit - prefixAddress);
+        verify(extDictOffset <= extDictLimit - extDictAddress, inputAddress, "Input is corrupted");
+
+        final int extDictLength = Math.min(extDictOffset, matchOutputLimit - output);
+        copyMemory(extDictBase, extDictLimit - extDictOffset, outputBase, output, extDictLength);
+        output += extDictLength;
+
+        // the rest of the match starts at the beginning of the prefix
+        int matchAddress = prefixAddress;
+        while (output < matchOutputLimit) {
+            outputBase.put(output, outputBase.get(matchAddress));
+            output++;
+            matchAddress++;
+        }
+    }
+
     private int decodeCompressedLiterals(final ByteBuffer inputBase, final int inputAddress, final int blockSize, final int literalsBlockType) {
         int input = inputAddress;
         verify(blockSize >= 5, input, "Not enough input bytes");
@@ -739,17 +1234,17 @@ class ZstdFrameDecompressor {
 
         final int inputLimit = input + compressedSize;
         if (literalsBlockType != REPEAT_STATS_LITERALS_BLOCK) {
-            input += huffman.readTable(inputBase, input, compressedSize);
+            input += readHuffmanTable(inputBase, input, compressedSize);
         }
 
-        literalsBase = ByteBufferWrap(literals);
+        literalsBase = literalsBuffer(uncompressedSize, input);
         literalsAddress = 0;
         literalsLimit = uncompressedSize;
 
         if (singleStream) {
-            huffman.decodeSingleStream(inputBase, input, inputLimit, literalsBase, literalsAddress, literalsLimit);
+            currentHuffman.decodeSingleStream(inputBase, input, inputLimit, literalsBase, literalsAddress, literalsLimit, initializer, loader);
         } else {
-            huffman.decode4Streams(inputBase, input, inputLimit, literalsBase, literalsAddress, literalsLimit);
+            currentHuffman.decode4Streams(inputBase, input, inputLimit, literalsBase, literalsAddress, literalsLimit, initializer, loader);
         }
 
         return headerSize + compressedSize;
@@ -783,9 +1278,9 @@ class ZstdFrameDecompressor {
         verify(outputSize <= MAX_BLOCK_SIZE, input, "Output exceeds maximum block size");
 
         final byte value = inputBase.get(input++);
+        literalsBase = literalsBuffer(outputSize, input);
         Arrays.fill(literals, 0, outputSize + SIZE_OF_LONG, value);
 
-        literalsBase = ByteBufferWrap(literals);
         literalsAddress = 0;
         literalsLimit = outputSize;
 
@@ -824,11 +1319,11 @@ class ZstdFrameDecompressor {
         // Set literals pointer to [input, literalSize], but only if we can copy 8 bytes at a time during sequence decoding
         // Otherwise, copy literals into buffer that's big enough to guarantee that
         if (literalSize > (inputLimit - input) - SIZE_OF_LONG) {
-            literalsBase = ByteBufferWrap(literals);
+            literalsBase = literalsBuffer(literalSize, input);
             literalsAddress = 0;
             literalsLimit = literalSize;
 
-            System.arraycopy(inputBase.array(), input, literalsBase.array(), literalsAddress, literalSize);
+            copyMemory(inputBase, input, literalsBase, literalsAddress, literalSize);
             Arrays.fill(literals, literalSize, literalSize + SIZE_OF_LONG, (byte) 0);
         } else {
             literalsBase = inputBase;
@@ -840,7 +1335,14 @@ class ZstdFrameDecompressor {
         return (int) (input - inputAddress);
     }
 
-    private static FrameHeader readFrameHeader(final ByteBuffer inputBase, final int inputAddress, final int inputLimit) {
+    static FrameHeader readFrameHeader(final ByteBuffer inputBase, final int inputAddress, final int inputLimit) {
+        return readFrameHeader(inputBase, inputAddress, inputLimit, new FrameHeader());
+    }
+
+    /**
+     * Same as {@link #readFrameHeader(ByteBuffer, int, int)}, but fills the given header instead of a new one.
+     */
+    static FrameHeader readFrameHeader(final ByteBuffer inputBase, final int inputAddress, final int inputLimit, final FrameHeader frameHeader) {
         int input = inputAddress;
         verify(input < inputLimit, input, "Not enough input bytes");
 
@@ -849,21 +1351,21 @@ class ZstdFrameDecompressor {
         final int dictionaryDescriptor = frameHeaderDescriptor & 0b11;
         final int contentSizeDescriptor = frameHeaderDescriptor >>> 6;
 
-        final int headerSize = 1 +
-                (singleSegment ? 0 : 1) +
-                (dictionaryDescriptor == 0 ? 0 : (1 << (dictionaryDescriptor - 1))) +
-                (contentSizeDescriptor == 0 ? (singleSegment ? 1 : 0) : (1 << contentSizeDescriptor));
+        final int headerSize = getFrameHeaderSize(frameHeaderDescriptor);
 
         verify(headerSize <= inputLimit - inputAddress, input, "Not enough input bytes");
 
         // decode window size
-        int windowSize = -1;
+        long windowSize = -1;
         if (!singleSegment) {
             final int windowDescriptor = inputBase.get(input++) & 0xFF;
             final int exponent = windowDescriptor >>> 3;
             final int mantissa = windowDescriptor & 0b111;
 
-            final int base = 1 << (MIN_WINDOW_LOG + exponent);
+            final int windowLog = MIN_WINDOW_LOG + exponent;
+            verify(windowLog <= MAX_WINDOW_LOG, input, "Window size too large");
+
+            final long base = 1L << windowLog;
             windowSize = base + (base / 8) * mantissa;
         }
 
@@ -883,7 +1385,6 @@ class ZstdFrameDecompressor {
                 input += SIZE_OF_INT;
                 break;
         }
-        verify(dictionaryId == -1, input, "Custom dictionaries not supported");
 
         // decode content size
         long contentSize = -1;
@@ -911,7 +1412,7 @@ class ZstdFrameDecompressor {
 
         final boolean hasChecksum = (frameHeaderDescriptor & 0b100) != 0;
 
-        return new FrameHeader(
+        return frameHeader.set(
                 input - inputAddress,
                 windowSize,
                 contentSize,
@@ -919,13 +1420,170 @@ class ZstdFrameDecompressor {
                 hasChecksum);
     }
 
+    /**
+     * @return size of the frame header including the descriptor byte, but not the magic number
+     */
+    static int getFrameHeaderSize(final int frameHeaderDescriptor) {
+        final boolean singleSegment = (frameHeaderDescriptor & 0b100000) != 0;
+        final int dictionaryDescriptor = frameHeaderDescriptor & 0b11;
+        final int contentSizeDescriptor = frameHeaderDescriptor >>> 6;
+
+        return 1 +
+                (singleSegment ? 0 : 1) +
+                (dictionaryDescriptor == 0 ? 0 : (1 << (dictionaryDescriptor - 1))) +
+                (contentSizeDescriptor == 0 ? (singleSegment ? 1 : 0) : (1 << contentSizeDescriptor));
+    }
+
+    /**
+     * @return sum of the content sizes of all frames in the input, or -1 if any of them does not declare it
+     */
     public static long getDecompressedSize(final ByteBuffer inputBase, final int inputAddress, final int inputLimit) {
+        long decompressedSize = 0;
+
+        int input = inputAddress;
+        while (input < inputLimit) {
+            if (isSkippableFrame(inputBase, input, inputLimit)) {
+                input += getSkippableFrameSize(inputBase, input, inputLimit);
+                continue;
+            }
+
+            final long contentSize = readFrameHeader(inputBase, input + verifyMagic(inputBase, input, inputLimit), inputLimit).contentSize;
+            if (contentSize == -1) {
+                return -1;
+            }
+            decompressedSize += contentSize;
+            input += getFrameCompressedSize(inputBase, input, inputLimit);
+        }
+
+        return decompressedSize;
+    }
+
+    /**
+     * Finds the end of the frame by walking its block headers, without decoding the blocks.
+     *
+     * @return size of the frame including the magic number and the checksum
+     */
+    static int getFrameCompressedSize(final ByteBuffer inputBase, final int inputAddress, final int inputLimit) {
+        final int frameSize = findFrameCompressedSize(inputBase, inputAddress, inputLimit);
+        verify(frameSize != -1, inputAddress, "Not enough input bytes");
+        return frameSize;
+    }
+
+    /**
+     * Same as {@link #getFrameCompressedSize}, but reports a frame that continues past {@code inputLimit}
+     * instead of failing, so that the caller can retry with more input.
+     *
+     * @return size of the frame, or -1 if the input ends before the frame does
+     */
+    static int findFrameCompressedSize(final ByteBuffer inputBase, final int inputAddress, final int inputLimit) {
+        if (inputLimit - inputAddress < SIZE_OF_INT) {
+            return -1;
+        }
+
+        if (isSkippableFrame(inputBase, inputAddress, inputLimit)) {
+            if (inputLimit - inputAddress < SKIPPABLE_HEADER_SIZE) {
+                return -1;
+            }
+            final long frameSize = SKIPPABLE_HEADER_SIZE + (inputBase.getInt(inputAddress + SIZE_OF_INT) & 0xFFFF_FFFFL);
+            return frameSize <= inputLimit - inputAddress ? (int) frameSize : -1;
+        }
+
         int input = inputAddress;
         input += verifyMagic(inputBase, input, inputLimit);
-        return readFrameHeader(inputBase, input, inputLimit).contentSize;
+        if (input == inputLimit) {
+            return -1;
+        }
+
+        final int frameHeaderDescriptor = inputBase.get(input) & 0xFF;
+        final boolean hasChecksum = (frameHeaderDescriptor & 0b100) != 0;
+        input += getFrameHeaderSize(frameHeaderDescriptor);
+
+        // sizes are compared with the remaining input, so that the addresses never overflow
+        boolean lastBlock;
+        do {
+            if (SIZE_OF_BLOCK_HEADER > inputLimit - input) {
+                return -1;
+            }
+
+            final int header = getBlockHeader(inputBase, input);
+            input += SIZE_OF_BLOCK_HEADER;
+
+            lastBlock = (header & 1) != 0;
+            final int blockType = (header >>> 1) & 0b11;
+            final int blockSize = (header >>> 3) & 0x1F_FFFF; // 21 bits
+            verify(blockType <= COMPRESSED_BLOCK, input, "Invalid block type");
+
+            final int blockInputSize = getBlockInputSize(blockType, blockSize);
+            if (blockInputSize > inputLimit - input) {
+                return -1;
+            }
+            input += blockInputSize;
+        }
+        while (!lastBlock);
+
+        if (hasChecksum) {
+            if (SIZE_OF_INT > inputLimit - input) {
+                return -1;
+            }
+            input += SIZE_OF_INT;
+        }
+
+        return input - inputAddress;
+    }
+
+    /**
+     * Walks all frames of the input and reports the skippable ones, data frames are stepped over by their block headers.
+     */
+    static void readSkippableFrames(final ByteBuffer inputBase, final int inputAddress, final int inputLimit, final SkippableFrameListener listener) {
+        int input = inputAddress;
+        while (input < inputLimit) {
+            if (isSkippableFrame(inputBase, input, inputLimit)) {
+                input += skipFrame(inputBase, input, inputLimit, listener);
+            } else {
+                input += getFrameCompressedSize(inputBase, input, inputLimit);
+            }
+        }
+    }
+
+    static boolean isSkippableFrame(final ByteBuffer inputBase, final int inputAddress, final int inputLimit) {
+        verify(inputLimit - inputAddress >= SIZE_OF_INT, inputAddress, "Not enough input bytes");
+        return isSkippableMagic(inputBase.getInt(inputAddress));
+    }
+
+    static boolean isSkippableMagic(final int magic) {
+        return (magic & SKIPPABLE_MAGIC_MASK) == SKIPPABLE_MAGIC_NUMBER;
+    }
+
+    static int getSkippableMagicVariant(final int magic) {
+        return magic & ~SKIPPABLE_MAGIC_MASK;
+    }
+
+    /**
+     * @return size of the skippable frame including its header
+     */
+    static int getSkippableFrameSize(final ByteBuffer inputBase, final int inputAddress, final int inputLimit) {
+        verify(inputLimit - inputAddress >= SKIPPABLE_HEADER_SIZE, inputAddress, "Not enough input bytes");
+
+        final long contentSize = inputBase.getInt(inputAddress + SIZE_OF_INT) & 0xFFFF_FFFFL;
+        verify(contentSize <= inputLimit - inputAddress - SKIPPABLE_HEADER_SIZE, inputAddress, "Not enough input bytes");
+
+        return SKIPPABLE_HEADER_SIZE + (int) contentSize;
+    }
+
+    static int skipFrame(final ByteBuffer inputBase, final int inputAddress, final int inputLimit, final SkippableFrameListener listener) {
+        final int frameSize = getSkippableFrameSize(inputBase, inputAddress, inputLimit);
+
+        if (listener != null) {
+            final ByteBuffer content = inputBase.asReadOnlyBuffer();
+            content.limit(inputAddress + frameSize);
+            content.position(inputAddress + SKIPPABLE_HEADER_SIZE);
+            listener.onSkippableFrame(getSkippableMagicVariant(inputBase.getInt(inputAddress)), content.slice().order(ByteOrder.LITTLE_ENDIAN));
+        }
+
+        return frameSize;
     }
 
-    private static int verifyMagic(final ByteBuffer inputBase, final int inputAddress, final int inputLimit) {
+    static int verifyMagic(final ByteBuffer inputBase, final int inputAddress, final int inputLimit) {
         verify(inputLimit - inputAddress >= 4, inputAddress, "Not enough input bytes");
 
         final int magic = inputBase.getInt(inputAddress);
@@ -0,0 +1,307 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.epam.deltix.zstd.Util.littleEndian;
+import static com.epam.deltix.zstd.Util.verify;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.ByteBufferWrap;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.COMPRESSED_BLOCK;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.MAX_BLOCK_SIZE;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_BLOCK_HEADER;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_INT;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SKIPPABLE_HEADER_SIZE;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.getBlockHeader;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.getBlockInputSize;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.getSkippableFrameSize;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.isSkippableFrame;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.readFrameHeader;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.verifyMagic;
+
+/**
+ * Parameters of a single frame, read without decoding it: {@link #readHeader} needs only the frame header,
+ * {@link #readBlockHeaders} also walks the block headers, which needs the whole frame but does not touch
+ * the content of the blocks. Walking the block headers gives the exact size of the frame and a bound of its
+ * decompressed size when the header does not declare it, {@link #readFrames} does so for all frames of the input.
+ * <p>
+ * A skippable frame is reported with {@link #isSkippable}, the size of its user data as the content size
+ * and no blocks.
+ */
+public final class ZstdFrameInfo {
+    /**
+     * Types of the blocks of a frame.
+     */
+    public enum BlockType {
+        /**
+         * Stored as is.
+         */
+        RAW,
+        /**
+         * A single byte repeated.
+         */
+        RLE,
+        /**
+         * Literals and sequences, the only type which needs entropy decoding.
+         */
+        COMPRESSED
+    }
+
+    private static final BlockType[] BLOCK_TYPES = BlockType.values();
+
+    private final boolean skippable;
+    private final int headerSize;
+    private final long windowSize;
+    private final long contentSize;
+    private final long dictionaryId;
+    private final boolean hasChecksum;
+    private final int[] blockCounts;
+    private final int frameSize;
+    private final long decompressedSizeBound;
+
+    private ZstdFrameInfo(final boolean skippable, final int headerSize, final long windowSize, final long contentSize,
+                          final long dictionaryId, final boolean hasChecksum, final int[] blockCounts,
+                          final int frameSize, final long decompressedSizeBound) {
+        this.skippable = skippable;
+        this.headerSize = headerSize;
+        this.windowSize = windowSize;
+        this.contentSize = contentSize;
+        this.dictionaryId = dictionaryId;
+        this.hasChecksum = hasChecksum;
+        this.blockCounts = blockCounts;
+        this.frameSize = frameSize;
+        this.decompressedSizeBound = decompressedSizeBound;
+    }
+
+    /**
+     * Reads the header of the frame at {@code offset}, the input may end right after it.
+     */
+    public static ZstdFrameInfo readHeader(final byte[] input, final int offset, final int length) {
+        return read(ByteBufferWrap(input), offset, offset + length, false);
+    }
+
+    /**
+     * Reads the header of the frame at the position of {@code input}, which is not moved.
+     */
+    public static ZstdFrameInfo readHeader(final ByteBuffer input) {
+        return read(littleEndian(input), input.position(), input.limit(), false);
+    }
+
+    /**
+     * Reads the header and the block headers of the frame at {@code offset}, the input must contain the whole frame.
+     */
+    public static ZstdFrameInfo readBlockHeaders(final byte[] input, final int offset, final int length) {
+        return read(ByteBufferWrap(input), offset, offset + length, true);
+    }
+
+    /**
+     * Reads the header and the block headers of the frame at the position of {@code input}, which is not moved.
+     */
+    public static ZstdFrameInfo readBlockHeaders(final ByteBuffer input) {
+        return read(littleEndian(input), input.position(), input.limit(), true);
+    }
+
+    /**
+     * Reads the header and the block headers of every frame between {@code offset} and {@code offset + length},
+     * which must end with a complete frame.
+     */
+    public static List<ZstdFrameInfo> readFrames(final byte[] input, final int offset, final int length) {
+        return readFrames(ByteBufferWrap(input), offset, offset + length);
+    }
+
+    /**
+     * Reads the header and the block headers of every frame between the position and the limit of {@code input},
+     * which is not moved.
+     */
+    public static List<ZstdFrameInfo> readFrames(final ByteBuffer input) {
+        return readFrames(littleEndian(input), input.position(), input.limit());
+    }
+
+    static List<ZstdFrameInfo> readFrames(final ByteBuffer inputBase, final int inputAddress, final int inputLimit) {
+        final List<ZstdFrameInfo> frames = new ArrayList<>();
+        int input = inputAddress;
+        while (input < inputLimit) {
+            final ZstdFrameInfo frame = read(inputBase, input, inputLimit, true);
+            frames.add(frame);
+            input += frame.frameSize;
+        }
+        return frames;
+    }
+
+    /**
+     * @return sum of the decompressed size bounds of all frames in the input
+     */
+    static long getDecompressedSizeBound(final ByteBuffer inputBase, final int inputAddress, final int inputLimit) {
+        long bound = 0;
+        int input = inputAddress;
+        while (input < inputLimit) {
+            final ZstdFrameInfo frame = read(inputBase, input, inputLimit, true);
+            bound += frame.decompressedSizeBound;
+            input += frame.frameSize;
+        }
+        return bound;
+    }
+
+    static ZstdFrameInfo read(final ByteBuffer inputBase, final int inputAddress, final int inputLimit, final boolean blocks) {
+        if (isSkippableFrame(inputBase, inputAddress, inputLimit)) {
+            verify(inputLimit - inputAddress >= SKIPPABLE_HEADER_SIZE, inputAddress, "Not enough input bytes");
+            final long contentSize = inputBase.getInt(inputAddress + SIZE_OF_INT) & 0xFFFF_FFFFL;
+            if (blocks) {
+                final int frameSize = getSkippableFrameSize(inputBase, inputAddress, inputLimit);
+                return new ZstdFrameInfo(true, SKIPPABLE_HEADER_SIZE, 0, contentSize, 0, false, new int[BLOCK_TYPES.length], frameSize, 0);
+            }
+            return new ZstdFrameInfo(true, SKIPPABLE_HEADER_SIZE, 0, contentSize, 0, false, null, -1, 0);
+        }
+
+        int input = inputAddress + verifyMagic(inputBase, inputAddress, inputLimit);
+        final FrameHeader frameHeader = readFrameHeader(inputBase, input, inputLimit);
+        input += frameHeader.headerSize;
+
+        // a single segment frame is decoded with a window of its content
+        final long windowSize = frameHeader.windowSize != -1 ? frameHeader.windowSize : frameHeader.contentSize;
+
+        int[] blockCounts = null;
+        int frameSize = -1;
+        long decompressedSizeBound = frameHeader.contentSize;
+        if (blocks) {
+            blockCounts = new int[BLOCK_TYPES.length];
+            // raw and RLE blocks decode to their size, compressed ones to a block of the window at most
+            long storedSize = 0;
+
+            // sizes are compared with the remaining input, so that the addresses never overflow
+            boolean lastBlock;
+            do {
+                verify(SIZE_OF_BLOCK_HEADER <= inputLimit - input, input, "Not enough input bytes");
+                final int header = getBlockHeader(inputBase, input);
+                input += SIZE_OF_BLOCK_HEADER;
+
+                lastBlock = (header & 1) != 0;
+                final int blockType = (header >>> 1) & 0b11;
+                final int blockSize = (header >>> 3) & 0x1F_FFFF; // 21 bits
+                verify(blockType <= COMPRESSED_BLOCK, input, "Invalid block type");
+
+                final int blockInputSize = getBlockInputSize(blockType, blockSize);
+                verify(blockInputSize <= inputLimit - input, input, "Not enough input bytes");
+                input += blockInputSize;
+                blockCounts[blockType]++;
+                if (blockType != COMPRESSED_BLOCK) {
+                    storedSize += blockSize;
+                }
+            }
+            while (!lastBlock);
+
+            if (frameHeader.hasChecksum) {
+                verify(SIZE_OF_INT <= inputLimit - input, input, "Not enough input bytes");
+                input += SIZE_OF_INT;
+            }
+            frameSize = input - inputAddress;
+
+            if (decompressedSizeBound == -1) {
+                decompressedSizeBound = storedSize + blockCounts[COMPRESSED_BLOCK] * Math.min(windowSize, MAX_BLOCK_SIZE);
+            }
+        }
+
+        return new ZstdFrameInfo(false, SIZE_OF_INT + (int) frameHeader.headerSize, windowSize, frameHeader.contentSize,
+                Math.max(frameHeader.dictionaryId, 0), frameHeader.hasChecksum, blockCounts, frameSize, decompressedSizeBound);
+    }
+
+    public boolean isSkippable() {
+        return skippable;
+    }
+
+    /**
+     * @return size of the frame header including the magic number
+     */
+    public int getHeaderSize() {
+        return headerSize;
+    }
+
+    /**
+     * @return number of bytes of history the frame refers to, which the decoder keeps
+     */
+    public long getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * @return decompressed size of the frame, or -1 if the header does not declare it
+     */
+    public long getContentSize() {
+        return contentSize;
+    }
+
+    /**
+     * @return id of the dictionary the frame is compressed with, or 0 if it does not declare one
+     */
+    public long getDictionaryId() {
+        return dictionaryId;
+    }
+
+    public boolean hasChecksum() {
+        return hasChecksum;
+    }
+
+    /**
+     * @return number of blocks, or -1 if only the header was read
+     */
+    public int getBlockCount() {
+        if (blockCounts == null) {
+            return -1;
+        }
+        int blockCount = 0;
+        for (final int count : blockCounts) {
+            blockCount += count;
+        }
+        return blockCount;
+    }
+
+    /**
+     * @return number of blocks of the given type, or -1 if only the header was read
+     */
+    public int getBlockCount(final BlockType blockType) {
+        return blockCounts == null ? -1 : blockCounts[blockType.ordinal()];
+    }
+
+    /**
+     * @return size of the frame including the magic number and the checksum, or -1 if only the header was read
+     */
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    /**
+     * @return the content size if the header declares it, otherwise the largest size the blocks may decode to,
+     * or -1 if only the header was read; 0 for a skippable frame
+     */
+    public long getDecompressedSizeBound() {
+        return decompressedSizeBound;
+    }
+
+    @Override
+    public String toString() {
+        return "ZstdFrameInfo{" +
+                "skippable=" + skippable +
+                ", headerSize=" + headerSize +
+                ", windowSize=" + windowSize +
+                ", contentSize=" + contentSize +
+                ", dictionaryId=" + dictionaryId +
+                ", hasChecksum=" + hasChecksum +
+                ", blockCount=" + getBlockCount() +
+                ", frameSize=" + frameSize +
+                ", decompressedSizeBound=" + decompressedSizeBound +
+                '}';
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static com.epam.deltix.zstd.Preconditions.checkPositionIndexes;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.ByteBufferWrap;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.MAX_BLOCK_SIZE;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_BLOCK_HEADER;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_INT;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_LONG;
+
+/**
+ * Decodes a stream of concatenated frames block by block, skippable frames are passed to the listener or skipped.
+ * <p>
+ * Only the window of the current frame is kept in memory: decoded blocks are written into a circular buffer of
+ * {@code windowSize + 2 * (blockSize + 8)} bytes. When the buffer wraps, the previous lap becomes the external
+ * history of the decoder, so no bytes are moved to keep the window contiguous.
+ * <p>
+ * Corrupted input fails with an {@link IOException}, as a truncated input or a checksum mismatch does.
+ */
+public class ZstdInputStream extends InputStream {
+    private static final int MAX_FRAME_HEADER_SIZE = 14;
+
+    private static final int MAX_BUFFER_SIZE = Integer.MAX_VALUE - 8;
+
+    private final InputStream in;
+    private final ZstdFrameDecompressor decompressor = new ZstdFrameDecompressor();
+
+    private final ByteBuffer headerBase = ByteBufferWrap(new byte[MAX_FRAME_HEADER_SIZE + SIZE_OF_LONG]);
+    private ByteBuffer inputBase;
+    private ByteBuffer windowBase;
+
+    // state of the current frame
+    private boolean frameOpen;
+    private boolean lastBlock;
+    private FrameHeader frameHeader;
+    private int blockMaximumSize;
+    private final XxHash64 checksum = new XxHash64();
+
+    // start of the current lap and the position of the next block in the window buffer
+    private int prefixAddress;
+    private int writeAddress;
+
+    // decoded bytes not consumed yet
+    private int outputAddress;
+    private int outputLimit;
+
+    private SkippableFrameListener skippableFrameListener;
+    private byte[] skippableBuffer;
+
+    private boolean closed;
+    private int maxWindowLog = ZstdFrameDecompressor.DEFAULT_MAX_WINDOW_LOG;
+
+    public ZstdInputStream(final InputStream in) {
+        this(in, (ZstdDictionary) null);
+    }
+
+    /**
+     * Creates a stream which resolves the dictionary ids of frames in {@code registry}.
+     */
+    public ZstdInputStream(final InputStream in, final ZstdDictionaryRegistry registry) {
+        this(in, (ZstdDictionary) null);
+        decompressor.setDictionaryRegistry(registry);
+    }
+
+    /**
+     * Creates a stream of frames compressed with {@code dictionary}. Frames that declare another dictionary id fail.
+     */
+    public ZstdInputStream(final InputStream in, final ZstdDictionary dictionary) {
+        if (in == null) {
+            throw new NullPointerException("in");
+        }
+        this.in = in;
+        decompressor.setDictionary(dictionary);
+    }
+
+    /**
+     * Sets the listener notified about skippable frames, {@code null} to skip them without reading their content.
+     */
+    public void setSkippableFrameListener(final SkippableFrameListener listener) {
+        this.skippableFrameListener = listener;
+    }
+
+    /**
+     * Sets the largest window, {@code 1 << maxWindowLog} bytes, this stream allocates for a frame; frames with larger
+     * windows fail with "Window size too large". The default of 27 (128 MB) is the default limit of the reference
+     * streaming decoder, frames produced with a larger window, such as with {@code --long=28} and over, need it
+     * raised, up to 31.
+     */
+    public void setMaxWindowLog(final int maxWindowLog) {
+        this.maxWindowLog = ZstdFrameDecompressor.checkMaxWindowLog(maxWindowLog);
+    }
+
+    @Override
+    public int read() throws IOException {
+        ensureOpen();
+        while (outputAddress == outputLimit) {
+            if (!decodeNext()) {
+                return -1;
+            }
+        }
+        return windowBase.get(outputAddress++) & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+        ensureOpen();
+        checkPositionIndexes(offset, offset + length, buffer.length);
+        if (length == 0) {
+            return 0;
+        }
+
+        while (outputAddress == outputLimit) {
+            if (!decodeNext()) {
+                return -1;
+            }
+        }
+
+        final int size = Math.min(length, outputLimit - outputAddress);
+        System.arraycopy(windowBase.array(), outputAddress, buffer, offset, size);
+        outputAddress += size;
+        return size;
+    }
+
+    @Override
+    public int available() throws IOException {
+        ensureOpen();
+        return outputLimit - outputAddress;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            in.close();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    /**
+     * Decodes the next block, or starts or finishes a frame.
+     *
+     * @return false if the end of the input stream is reached at a frame boundary
+     */
+    private boolean decodeNext() throws IOException {
+        if (!frameOpen) {
+            return openFrame();
+        }
+
+        if (lastBlock) {
+            closeFrame();
+            return true;
+        }
+
+        readFully(headerBase.array(), 0, SIZE_OF_BLOCK_HEADER);
+        final int header = ZstdFrameDecompressor.getBlockHeader(headerBase, 0);
+
+        lastBlock = (header & 1) != 0;
+        final int blockType = (header >>> 1) & 0b11;
+        final int blockSize = (header >>> 3) & 0x1F_FFFF; // 21 bits
+        verifyInput(blockSize <= blockMaximumSize, "Block exceeds maximum size");
+
+        final int inputSize = ZstdFrameDecompressor.getBlockInputSize(blockType, blockSize);
+        readFully(inputBase.array(), 0, inputSize);
+
+        if (windowBase.capacity() - writeAddress < blockMaximumSize + SIZE_OF_LONG) {
+            // wrap around: the previous lap holds at least windowSize bytes which are not overwritten by this lap
+            decompressor.setHistory(windowBase, prefixAddress, writeAddress, 0);
+            prefixAddress = 0;
+            writeAddress = 0;
+        }
+
+        final int decodedSize;
+        try {
+            decodedSize = decompressor.decodeBlock(blockType, blockSize,
+                    inputBase, 0, inputSize,
+                    windowBase, writeAddress, writeAddress + blockMaximumSize + SIZE_OF_LONG);
+        } catch (final RuntimeException e) {
+            throw corrupted(e);
+        }
+        verifyInput(decodedSize <= blockMaximumSize, "Block exceeds maximum size");
+
+        if (frameHeader.hasChecksum) {
+            checksum.update(windowBase, writeAddress, decodedSize);
+        }
+
+        outputAddress = writeAddress;
+        outputLimit = writeAddress + decodedSize;
+        writeAddress = outputLimit;
+        return true;
+    }
+
+    private boolean openFrame() throws IOException {
+        final byte[] header = headerBase.array();
+
+        final int read = readUpTo(header, 0, SIZE_OF_INT);
+        if (read == 0) {
+            return false;
+        }
+        if (read < SIZE_OF_INT) {
+            throw new EOFException("Not enough input bytes");
+        }
+
+        final int magic = headerBase.getInt(0);
+        if (ZstdFrameDecompressor.isSkippableMagic(magic)) {
+            skipFrame(magic);
+            return true;
+        }
+        try {
+            ZstdFrameDecompressor.verifyMagic(headerBase, 0, SIZE_OF_INT);
+
+            readFully(header, 0, 1);
+            final int headerSize = ZstdFrameDecompressor.getFrameHeaderSize(header[0] & 0xFF);
+            readFully(header, 1, headerSize - 1);
+
+            frameHeader = ZstdFrameDecompressor.readFrameHeader(headerBase, 0, headerSize);
+            decompressor.beginFrame(frameHeader, 0, 0);
+        } catch (final RuntimeException e) {
+            throw corrupted(e);
+        }
+
+        final long frameWindowSize = frameHeader.windowSize != -1 ? frameHeader.windowSize : frameHeader.contentSize;
+        verifyInput(frameWindowSize >= 0, "Window size is not specified");
+        verifyInput(frameWindowSize <= 1L << maxWindowLog, "Window size too large");
+
+        blockMaximumSize = (int) Math.min(frameWindowSize, MAX_BLOCK_SIZE);
+        verifyInput(frameWindowSize <= MAX_BUFFER_SIZE - 2 * (blockMaximumSize + SIZE_OF_LONG), "Window size too large");
+
+        final int windowCapacity = (int) frameWindowSize + 2 * (blockMaximumSize + SIZE_OF_LONG);
+        if (windowBase == null || windowBase.capacity() < windowCapacity) {
+            windowBase = ByteBufferWrap(new byte[windowCapacity]);
+        }
+        if (inputBase == null || inputBase.capacity() < blockMaximumSize + SIZE_OF_LONG) {
+            inputBase = ByteBufferWrap(new byte[blockMaximumSize + SIZE_OF_LONG]);
+        }
+
+        prefixAddress = 0;
+        writeAddress = 0;
+
+        checksum.reset();
+        lastBlock = false;
+        frameOpen = true;
+        return true;
+    }
+
+    private void skipFrame(final int magic) throws IOException {
+        readFully(headerBase.array(), 0, SIZE_OF_INT);
+        final long contentSize = headerBase.getInt(0) & 0xFFFF_FFFFL;
+
+        if (skippableFrameListener == null) {
+            skipFully(contentSize);
+            return;
+        }
+
+        verifyInput(contentSize <= MAX_BUFFER_SIZE, "Skippable frame too large");
+        if (skippableBuffer == null || skippableBuffer.length < contentSize) {
+            skippableBuffer = new byte[(int) contentSize];
+        }
+        readFully(skippableBuffer, 0, (int) contentSize);
+
+        final ByteBuffer content = ByteBuffer.wrap(skippableBuffer, 0, (int) contentSize).slice().asReadOnlyBuffer();
+        skippableFrameListener.onSkippableFrame(ZstdFrameDecompressor.getSkippableMagicVariant(magic), content.order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    private void skipFully(long length) throws IOException {
+        while (length > 0) {
+            final long skipped = in.skip(length);
+            if (skipped > 0) {
+                length -= skipped;
+            } else if (in.read() >= 0) {
+                length--;
+            } else {
+                throw new EOFException("Not enough input bytes");
+            }
+        }
+    }
+
+    private void closeFrame() throws IOException {
+        if (frameHeader.hasChecksum) {
+            readFully(headerBase.array(), 0, SIZE_OF_INT);
+
+            final int expected = headerBase.getInt(0);
+            final int actual = (int) checksum.hash();
+            if (expected != actual) {
+                throw new IOException(String.format("Bad checksum. Expected: %s, actual: %s", Integer.toHexString(expected), Integer.toHexString(actual)));
+            }
+        }
+        frameOpen = false;
+    }
+
+    private static void verifyInput(final boolean condition, final String reason) throws IOException {
+        if (!condition) {
+            throw new IOException(reason);
+        }
+    }
+
+    /**
+     * @return the failure of the decoder on corrupted input as the stream reports its other input failures
+     */
+    private static IOException corrupted(final RuntimeException e) {
+        return new IOException(e.getMessage(), e);
+    }
+
+    private void readFully(final byte[] buffer, final int offset, final int length) throws IOException {
+        if (readUpTo(buffer, offset, length) < length) {
+            throw new EOFException("Not enough input bytes");
+        }
+    }
+
+    /**
+     * @return number of bytes read, less than {@code length} only if the end of the input stream is reached
+     */
+    private int readUpTo(final byte[] buffer, final int offset, final int length) throws IOException {
+        int total = 0;
+        while (total < length) {
+            final int read = in.read(buffer, offset + total, length - total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe limit on the memory which decoder contexts keep for literals, entropy tables and window buffers, shared by any number
+ * of {@link ZstdDecompressor}s and {@link ZstdDecompressorPool}s.
+ * <p>
+ * A context takes memory on demand: the literals buffer grows with the largest block it has decoded, bounded by
+ * the window of the frame, and the tables are created with the first block which needs them, sized by their logs.
+ * A context which would exceed the budget fails the frame instead of growing. Only a Huffman table is accounted after
+ * it grows, by 8 KB at most, since its size is known once it is read. The memory of a context stays reserved until
+ * it is released, see {@link ZstdDecompressor#releaseMemory} and {@link ZstdDecompressorPool#releaseMemory}, or until
+ * the context is garbage collected: the budget returns the memory of collected contexts the next time it is used.
+ * The getters and {@link #toString} report the memory in use.
+ */
+public class ZstdMemoryBudget {
+    private final long maxMemorySize;
+
+    private final AtomicLong memorySize = new AtomicLong();
+    private final AtomicLong peakMemorySize = new AtomicLong();
+    private final AtomicLong literalsMemorySize = new AtomicLong();
+    private final AtomicLong tablesMemorySize = new AtomicLong();
+    private final AtomicLong windowMemorySize = new AtomicLong();
+    private final AtomicInteger contexts = new AtomicInteger();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    // reservations of the contexts which keep memory, collected contexts are enqueued to return theirs
+    private final Set<Reservation> reservations = Collections.newSetFromMap(new ConcurrentHashMap<Reservation, Boolean>());
+    private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+
+    /**
+     * @param maxMemorySize number of bytes all contexts may keep together
+     */
+    public ZstdMemoryBudget(final long maxMemorySize) {
+        if (maxMemorySize < 0) {
+            throw new IllegalArgumentException("maxMemorySize must not be negative");
+        }
+        this.maxMemorySize = maxMemorySize;
+    }
+
+    /**
+     * @return {@code false} if the literals buffers would exceed the budget by {@code size} more bytes
+     */
+    boolean reserveLiterals(final Reservation reservation, final long size) {
+        if (!reserve(literalsMemorySize, size)) {
+            return false;
+        }
+        reservation.literalsSize += size;
+        return true;
+    }
+
+    /**
+     * @return {@code false} if the entropy tables would exceed the budget by {@code size} more bytes
+     */
+    boolean reserveTables(final Reservation reservation, final long size) {
+        if (!reserve(tablesMemorySize, size)) {
+            return false;
+        }
+        reservation.tablesSize += size;
+        return true;
+    }
+
+    /**
+     * @return {@code false} if the window buffers would exceed the budget by {@code size} more bytes
+     */
+    boolean reserveWindow(final Reservation reservation, final long size) {
+        if (!reserve(windowMemorySize, size)) {
+            return false;
+        }
+        reservation.windowSize += size;
+        return true;
+    }
+
+    /**
+     * Accounts {@code size} more bytes of entropy tables which are already taken, since the size of a Huffman table
+     * is known only once it is read.
+     *
+     * @return {@code false} if the memory exceeds the budget now
+     */
+    boolean addTables(final Reservation reservation, final long size) {
+        reservation.tablesSize += size;
+        tablesMemorySize.addAndGet(size);
+        final long current = memorySize.addAndGet(size);
+        updatePeak(current);
+        if (current > maxMemorySize) {
+            rejectedCount.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    private boolean reserve(final AtomicLong kindSize, final long size) {
+        releaseCollected();
+        long current;
+        do {
+            current = memorySize.get();
+            if (current + size > maxMemorySize) {
+                rejectedCount.incrementAndGet();
+                return false;
+            }
+        }
+        while (!memorySize.compareAndSet(current, current + size));
+
+        kindSize.addAndGet(size);
+        updatePeak(current + size);
+        return true;
+    }
+
+    private void updatePeak(final long value) {
+        long peak;
+        while (value > (peak = peakMemorySize.get()) && !peakMemorySize.compareAndSet(peak, value)) {
+            // retry with the value of the winner
+        }
+    }
+
+    /**
+     * Counts a context which keeps memory from now on.
+     *
+     * @param owner the context, its memory is returned once it is garbage collected
+     * @return the reservation which accounts the memory of the context
+     */
+    Reservation attach(final Object owner) {
+        releaseCollected();
+        final Reservation reservation = new Reservation(owner, collected);
+        reservations.add(reservation);
+        contexts.incrementAndGet();
+        return reservation;
+    }
+
+    /**
+     * Returns all memory of a context, once: either explicitly or after the context is collected.
+     */
+    void release(final Reservation reservation) {
+        if (reservations.remove(reservation)) {
+            reservation.clear();
+            literalsMemorySize.addAndGet(-reservation.literalsSize);
+            tablesMemorySize.addAndGet(-reservation.tablesSize);
+            windowMemorySize.addAndGet(-reservation.windowSize);
+            memorySize.addAndGet(-(reservation.literalsSize + reservation.tablesSize + reservation.windowSize));
+            contexts.decrementAndGet();
+        }
+    }
+
+    private void releaseCollected() {
+        Reference<?> reference;
+        while ((reference = collected.poll()) != null) {
+            release((Reservation) reference);
+        }
+    }
+
+    public long getMaxMemorySize() {
+        return maxMemorySize;
+    }
+
+    /**
+     * @return number of bytes kept by all contexts
+     */
+    public long getMemorySize() {
+        releaseCollected();
+        return memorySize.get();
+    }
+
+    /**
+     * @return largest number of bytes kept by all contexts at once
+     */
+    public long getPeakMemorySize() {
+        return peakMemorySize.get();
+    }
+
+    /**
+     * @return number of bytes kept in literals buffers
+     */
+    public long getLiteralsMemorySize() {
+        return literalsMemorySize.get();
+    }
+
+    /**
+     * @return number of bytes kept in Huffman and FSE tables
+     */
+    public long getTablesMemorySize() {
+        return tablesMemorySize.get();
+    }
+
+    /**
+     * @return number of bytes kept in window buffers of frames decoded into segments
+     */
+    public long getWindowMemorySize() {
+        return windowMemorySize.get();
+    }
+
+    /**
+     * @return number of contexts which keep memory
+     */
+    public int getContexts() {
+        releaseCollected();
+        return contexts.get();
+    }
+
+    /**
+     * @return number of times a context failed to grow within the budget
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    @Override
+    public String toString() {
+        releaseCollected();
+        return "ZstdMemoryBudget{" +
+                "memorySize=" + memorySize.get() +
+                ", maxMemorySize=" + maxMemorySize +
+                ", peakMemorySize=" + peakMemorySize.get() +
+                ", literalsMemorySize=" + literalsMemorySize.get() +
+                ", tablesMemorySize=" + tablesMemorySize.get() +
+                ", windowMemorySize=" + windowMemorySize.get() +
+                ", contexts=" + contexts.get() +
+                ", rejectedCount=" + rejectedCount.get() +
+                '}';
+    }
+
+    /**
+     * Memory kept by one context, updated by the thread which uses the context.
+     */
+    static final class Reservation extends PhantomReference<Object> {
+        private long literalsSize;
+        private long tablesSize;
+        private long windowSize;
+
+        private Reservation(final Object owner, final ReferenceQueue<Object> queue) {
+            super(owner, queue);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static com.epam.deltix.zstd.Preconditions.checkArgument;
+import static com.epam.deltix.zstd.Preconditions.checkPositionIndexes;
+import static com.epam.deltix.zstd.Util.await;
+import static com.epam.deltix.zstd.Util.verify;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.ByteBufferWrap;
+
+/**
+ * Cuts the input into chunks and compresses each of them into its own frame on a {@link ForkJoinPool}.
+ * The frames are written in the order of the chunks, so the output is a regular stream of concatenated frames.
+ * <p>
+ * At most twice the parallelism of the pool chunks are compressed or wait to be written at a time,
+ * which bounds the memory of {@link #compress(InputStream, OutputStream)} regardless of the input size.
+ * The compressor may be used by several threads at once.
+ */
+public class ZstdParallelCompressor {
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private final ForkJoinPool pool;
+    private final int compressionLevel;
+    private final int chunkSize;
+    private final int maxPendingChunks;
+
+    // frame compressors are not thread safe, the tasks take them from here and return them
+    private final Queue<ZstdFrameCompressor> compressors = new ConcurrentLinkedQueue<>();
+
+    public ZstdParallelCompressor(final ForkJoinPool pool) {
+        this(pool, ZstdCompressor.DEFAULT_COMPRESSION_LEVEL, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param chunkSize size of the input of each frame, smaller chunks balance better but compress worse
+     */
+    public ZstdParallelCompressor(final ForkJoinPool pool, final int compressionLevel, final int chunkSize) {
+        if (pool == null) {
+            throw new NullPointerException("pool");
+        }
+        checkArgument(compressionLevel >= ZstdCompressor.MIN_COMPRESSION_LEVEL && compressionLevel <= ZstdCompressor.MAX_COMPRESSION_LEVEL,
+                "Compression level must be between " + ZstdCompressor.MIN_COMPRESSION_LEVEL + " and " + ZstdCompressor.MAX_COMPRESSION_LEVEL + ": " + compressionLevel);
+        checkArgument(chunkSize > 0, "Chunk size must be positive: " + chunkSize);
+        this.pool = pool;
+        this.compressionLevel = compressionLevel;
+        this.chunkSize = chunkSize;
+        this.maxPendingChunks = 2 * pool.getParallelism();
+    }
+
+    /**
+     * @return output size that is enough to compress any input of {@code uncompressedSize} bytes
+     */
+    public int maxCompressedLength(final int uncompressedSize) {
+        final int chunks = uncompressedSize / chunkSize;
+        return chunks * ZstdFrameCompressor.maxCompressedLength(chunkSize) +
+                ZstdFrameCompressor.maxCompressedLength(uncompressedSize - chunks * chunkSize);
+    }
+
+    /**
+     * @return size of the compressed frames
+     * @throws RuntimeException if the output is too small, which never happens with {@link #maxCompressedLength} bytes
+     */
+    public int compress(final byte[] input, final int inputOffset, final int inputLength,
+                        final byte[] output, final int outputOffset, final int maxOutputLength) throws InterruptedException {
+        checkPositionIndexes(inputOffset, inputOffset + inputLength, input.length);
+        checkPositionIndexes(outputOffset, outputOffset + maxOutputLength, output.length);
+
+        final ArrayDeque<Future<Frame>> pending = new ArrayDeque<>();
+        final int outputLimit = outputOffset + maxOutputLength;
+        int outputPosition = outputOffset;
+        try {
+            int offset = inputOffset;
+            do {
+                final int size = Math.min(chunkSize, inputOffset + inputLength - offset);
+                if (pending.size() == maxPendingChunks) {
+                    outputPosition = append(await(pending.poll()), output, outputPosition, outputLimit);
+                }
+                pending.add(pool.submit(new CompressTask(input, offset, size)));
+                offset += size;
+            }
+            while (offset < inputOffset + inputLength);
+
+            while (!pending.isEmpty()) {
+                outputPosition = append(await(pending.poll()), output, outputPosition, outputLimit);
+            }
+        } finally {
+            cancel(pending);
+        }
+        return outputPosition - outputOffset;
+    }
+
+    /**
+     * Compresses the rest of {@code input} into {@code output}, neither of the streams is closed.
+     *
+     * @return size of the compressed frames
+     */
+    public long compress(final InputStream input, final OutputStream output) throws IOException {
+        final ArrayDeque<Future<Frame>> pending = new ArrayDeque<>();
+        long written = 0;
+        try {
+            boolean first = true;
+            while (true) {
+                final byte[] chunk = new byte[chunkSize];
+                final int size = readFully(input, chunk);
+                // an empty input still makes an empty frame
+                if (size == 0 && !first) {
+                    break;
+                }
+                first = false;
+
+                if (pending.size() == maxPendingChunks) {
+                    written += write(await(pending.poll()), output);
+                }
+                pending.add(pool.submit(new CompressTask(chunk, 0, size)));
+
+                if (size < chunkSize) {
+                    break;
+                }
+            }
+
+            while (!pending.isEmpty()) {
+                written += write(await(pending.poll()), output);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Compression interrupted");
+        } finally {
+            cancel(pending);
+        }
+        return written;
+    }
+
+    private static void cancel(final Queue<Future<Frame>> pending) {
+        for (final Future<Frame> future : pending) {
+            future.cancel(false);
+        }
+    }
+
+    private static int readFully(final InputStream input, final byte[] buffer) throws IOException {
+        int size = 0;
+        while (size < buffer.length) {
+            final int read = input.read(buffer, size, buffer.length - size);
+            if (read < 0) {
+                break;
+            }
+            size += read;
+        }
+        return size;
+    }
+
+    private static int append(final Frame frame, final byte[] output, final int outputPosition, final int outputLimit) {
+        verify(outputPosition + frame.size <= outputLimit, outputPosition, "Output buffer too small");
+        System.arraycopy(frame.data, 0, output, outputPosition, frame.size);
+        return outputPosition + frame.size;
+    }
+
+    private static int write(final Frame frame, final OutputStream output) throws IOException {
+        output.write(frame.data, 0, frame.size);
+        return frame.size;
+    }
+
+    private static final class Frame {
+        final byte[] data;
+        final int size;
+
+        Frame(final byte[] data, final int size) {
+            this.data = data;
+            this.size = size;
+        }
+    }
+
+    private final class CompressTask implements Callable<Frame> {
+        private final byte[] input;
+        private final int inputOffset;
+        private final int inputLength;
+
+        CompressTask(final byte[] input, final int inputOffset, final int inputLength) {
+            this.input = input;
+            this.inputOffset = inputOffset;
+            this.inputLength = inputLength;
+        }
+
+        @Override
+        public Frame call() {
+            ZstdFrameCompressor compressor = compressors.poll();
+            if (compressor == null) {
+                compressor = new ZstdFrameCompressor();
+            }
+            try {
+                final byte[] output = new byte[ZstdFrameCompressor.maxCompressedLength(inputLength)];
+                final int size = compressor.compress(ByteBufferWrap(input), inputOffset, inputOffset + inputLength,
+                        ByteBufferWrap(output), 0, output.length, compressionLevel);
+                return new Frame(output, size);
+            } finally {
+                compressors.add(compressor);
+            }
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.epam.deltix.zstd.Util.await;
+import static com.epam.deltix.zstd.Util.littleEndian;
+import static com.epam.deltix.zstd.Util.verify;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.ByteBufferWrap;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.getFrameCompressedSize;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.isSkippableFrame;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.readFrameHeader;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.verifyMagic;
+
+/**
+ * Decompresses concatenated frames on a {@link ForkJoinPool}.
+ * <p>
+ * The frame boundaries are found from the block headers first. When every frame declares its content size,
+ * the output offset of each frame is known up front, and runs of consecutive frames of at least 1 MB of content
+ * are decoded in parallel, each straight into its slice of the output. Otherwise the input is decoded serially.
+ * Frames are independent of each other, so the result is the same as the one of {@link ZstdDecompressor}.
+ * The decompressor may be used by several threads at once.
+ */
+public class ZstdParallelDecompressor {
+    private static final int MIN_TASK_SIZE = 1024 * 1024;
+
+    private final ForkJoinPool pool;
+    private final ZstdDictionaryRegistry dictionaryRegistry;
+
+    // decoder contexts are not thread safe, the tasks take them from here and return them; the workers and one calling
+    // thread use at most parallelism + 1 at a time, the contexts of a burst of concurrent callers beyond that are dropped
+    private final Queue<ZstdFrameDecompressor> decompressors = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleDecompressors = new AtomicInteger();
+    private final int maxIdleDecompressors;
+
+    public ZstdParallelDecompressor(final ForkJoinPool pool) {
+        this(pool, null);
+    }
+
+    /**
+     * Creates a decompressor which resolves the dictionary ids of frames in {@code registry}.
+     */
+    public ZstdParallelDecompressor(final ForkJoinPool pool, final ZstdDictionaryRegistry registry) {
+        if (pool == null) {
+            throw new NullPointerException("pool");
+        }
+        this.pool = pool;
+        this.dictionaryRegistry = registry;
+        this.maxIdleDecompressors = pool.getParallelism() + 1;
+    }
+
+    public int decompress(final byte[] input, final int inputOffset, final int inputLength,
+                          final byte[] output, final int outputOffset, final int maxOutputLength) throws InterruptedException {
+        return decompress(
+                ByteBufferWrap(input), inputOffset, inputOffset + inputLength,
+                ByteBufferWrap(output), outputOffset, outputOffset + maxOutputLength);
+    }
+
+    /**
+     * Decompresses all frames between the position and the limit of {@code input} into {@code output}
+     * starting at its position. Both buffers may be heap or direct and of any byte order.
+     * On return the position of {@code input} is at its limit and the position of {@code output} is advanced
+     * by the number of decompressed bytes.
+     *
+     * @return number of decompressed bytes
+     */
+    public int decompress(final ByteBuffer input, final ByteBuffer output) throws InterruptedException {
+        final int written = decompress(
+                littleEndian(input), input.position(), input.limit(),
+                littleEndian(output), output.position(), output.limit());
+
+        input.position(input.limit());
+        output.position(output.position() + written);
+        return written;
+    }
+
+    private int decompress(final ByteBuffer inputBase, final int inputAddress, final int inputLimit,
+                           final ByteBuffer outputBase, final int outputAddress, final int outputLimit) throws InterruptedException {
+        final List<Segment> segments = split(inputBase, inputAddress, inputLimit, outputAddress);
+        if (segments == null) {
+            return new DecompressTask(inputBase, inputAddress, inputLimit, outputBase, outputAddress, outputLimit).call();
+        }
+
+        final Segment last = segments.get(segments.size() - 1);
+        verify(last.outputLimit <= outputLimit, outputAddress, "Output buffer too small");
+
+        final List<Future<Integer>> tasks = new ArrayList<>(segments.size());
+        try {
+            // the calling thread decodes the first segment instead of waiting
+            for (int i = 1; i < segments.size(); i++) {
+                tasks.add(pool.submit(newTask(segments.get(i), inputBase, outputBase)));
+            }
+            verifySize(segments.get(0), newTask(segments.get(0), inputBase, outputBase).call());
+            for (int i = 0; i < tasks.size(); i++) {
+                verifySize(segments.get(i + 1), await(tasks.get(i)));
+            }
+        } finally {
+            for (final Future<Integer> task : tasks) {
+                task.cancel(false);
+            }
+        }
+        return last.outputLimit - outputAddress;
+    }
+
+    /**
+     * @return runs of whole frames with their output ranges, or {@code null} if a frame does not declare its content size
+     */
+    private static List<Segment> split(final ByteBuffer inputBase, final int inputAddress, final int inputLimit, final int outputAddress) {
+        final List<Segment> segments = new ArrayList<>();
+
+        Segment segment = new Segment(inputAddress, outputAddress);
+        int input = inputAddress;
+        while (input < inputLimit) {
+            if (!isSkippableFrame(inputBase, input, inputLimit)) {
+                final long contentSize = readFrameHeader(inputBase, input + verifyMagic(inputBase, input, inputLimit), inputLimit).contentSize;
+                if (contentSize == -1) {
+                    return null;
+                }
+                verify(contentSize <= Integer.MAX_VALUE - segment.outputLimit, input, "Output buffer too small");
+                segment.outputLimit += contentSize;
+            }
+            input += getFrameCompressedSize(inputBase, input, inputLimit);
+            segment.inputLimit = input;
+
+            if (segment.outputLimit - segment.outputAddress >= MIN_TASK_SIZE && input < inputLimit) {
+                segments.add(segment);
+                segment = new Segment(input, segment.outputLimit);
+            }
+        }
+        segments.add(segment);
+        return segments;
+    }
+
+    int getIdleDecompressors() {
+        return idleDecompressors.get();
+    }
+
+    private ZstdFrameDecompressor takeDecompressor() {
+        final ZstdFrameDecompressor decompressor = decompressors.poll();
+        if (decompressor == null) {
+            final ZstdFrameDecompressor created = new ZstdFrameDecompressor();
+            created.setDictionaryRegistry(dictionaryRegistry);
+            return created;
+        }
+        idleDecompressors.decrementAndGet();
+        return decompressor;
+    }
+
+    private void giveDecompressor(final ZstdFrameDecompressor decompressor) {
+        // the count may exceed the limit for a moment, which only keeps a few more contexts
+        if (idleDecompressors.get() < maxIdleDecompressors) {
+            idleDecompressors.incrementAndGet();
+            decompressors.offer(decompressor);
+        }
+    }
+
+    private static void verifySize(final Segment segment, final int decodedSize) {
+        verify(decodedSize == segment.outputLimit - segment.outputAddress, segment.inputAddress, "Content size mismatch");
+    }
+
+    private DecompressTask newTask(final Segment segment, final ByteBuffer inputBase, final ByteBuffer outputBase) {
+        // buffers keep a position and a limit, so that every task has its own view
+        return new DecompressTask(
+                inputBase.duplicate().order(ByteOrder.LITTLE_ENDIAN), segment.inputAddress, segment.inputLimit,
+                outputBase.duplicate().order(ByteOrder.LITTLE_ENDIAN), segment.outputAddress, segment.outputLimit);
+    }
+
+    private static final class Segment {
+        final int inputAddress;
+        int inputLimit;
+        final int outputAddress;
+        int outputLimit;
+
+        Segment(final int inputAddress, final int outputAddress) {
+            this.inputAddress = inputAddress;
+            this.inputLimit = inputAddress;
+            this.outputAddress = outputAddress;
+            this.outputLimit = outputAddress;
+        }
+    }
+
+    private final class DecompressTask implements Callable<Integer> {
+        private final ByteBuffer inputBase;
+        private final int inputAddress;
+        private final int inputLimit;
+        private final ByteBuffer outputBase;
+        private final int outputAddress;
+        private final int outputLimit;
+
+        DecompressTask(final ByteBuffer inputBase, final int inputAddress, final int inputLimit,
+                       final ByteBuffer outputBase, final int outputAddress, final int outputLimit) {
+            this.inputBase = inputBase;
+            this.inputAddress = inputAddress;
+            this.inputLimit = inputLimit;
+            this.outputBase = outputBase;
+            this.outputAddress = outputAddress;
+            this.outputLimit = outputLimit;
+        }
+
+        @Override
+        public Integer call() {
+            final ZstdFrameDecompressor decompressor = takeDecompressor();
+            try {
+                return decompressor.decompress(inputBase, inputAddress, inputLimit, outputBase, outputAddress, outputLimit);
+            } finally {
+                giveDecompressor(decompressor);
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static com.epam.deltix.zstd.Preconditions.checkArgument;
+import static com.epam.deltix.zstd.Preconditions.checkPositionIndexes;
+import static com.epam.deltix.zstd.SeekableFormat.CHECKSUM_FLAG;
+import static com.epam.deltix.zstd.SeekableFormat.ENTRY_WITH_CHECKSUM_SIZE;
+import static com.epam.deltix.zstd.SeekableFormat.FOOTER_SIZE;
+import static com.epam.deltix.zstd.SeekableFormat.MAX_FRAMES;
+import static com.epam.deltix.zstd.SeekableFormat.SEEKABLE_MAGIC_NUMBER;
+import static com.epam.deltix.zstd.SeekableFormat.SEEK_TABLE_MAGIC_NUMBER;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.ByteBufferWrap;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_INT;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SKIPPABLE_HEADER_SIZE;
+
+/**
+ * Writes the seekable format: the data is cut into frames of {@code frameSize} bytes, and {@link #close} appends
+ * the seek table with the checksums of the frames. Any zstd decoder reads the output as regular frames,
+ * {@link ZstdSeekableReader} decodes only the frames of a requested range.
+ */
+public class ZstdSeekableOutputStream extends OutputStream {
+    public static final int DEFAULT_FRAME_SIZE = 1024 * 1024;
+
+    private final OutputStream out;
+    private final ZstdCompressor compressor;
+
+    private final byte[] buffer;
+    private final ByteBuffer bufferBase;
+    private int bufferSize;
+    private final byte[] frame;
+
+    // seek table entries, written with the checksums
+    private ByteBuffer seekTable = ByteBufferWrap(new byte[64 * ENTRY_WITH_CHECKSUM_SIZE]);
+    private int frameCount;
+
+    private boolean closed;
+
+    public ZstdSeekableOutputStream(final OutputStream out) {
+        this(out, ZstdCompressor.DEFAULT_COMPRESSION_LEVEL, DEFAULT_FRAME_SIZE);
+    }
+
+    /**
+     * @param frameSize decompressed size of every frame but the last one, smaller frames make reads of short ranges
+     * cheaper but compress worse
+     */
+    public ZstdSeekableOutputStream(final OutputStream out, final int compressionLevel, final int frameSize) {
+        if (out == null) {
+            throw new NullPointerException("out");
+        }
+        checkArgument(frameSize > 0, "Frame size must be positive: " + frameSize);
+        this.out = out;
+        this.compressor = new ZstdCompressor(compressionLevel);
+        this.buffer = new byte[frameSize];
+        this.bufferBase = ByteBufferWrap(buffer);
+        this.frame = new byte[ZstdCompressor.maxCompressedLength(frameSize)];
+    }
+
+    @Override
+    public void write(final int value) throws IOException {
+        ensureOpen();
+        buffer[bufferSize++] = (byte) value;
+        if (bufferSize == buffer.length) {
+            endFrame();
+        }
+    }
+
+    @Override
+    public void write(final byte[] data, int offset, int length) throws IOException {
+        ensureOpen();
+        checkPositionIndexes(offset, offset + length, data.length);
+        while (length > 0) {
+            final int size = Math.min(length, buffer.length - bufferSize);
+            System.arraycopy(data, offset, buffer, bufferSize, size);
+            bufferSize += size;
+            offset += size;
+            length -= size;
+            if (bufferSize == buffer.length) {
+                endFrame();
+            }
+        }
+    }
+
+    /**
+     * Writes the buffered data as a frame, so that it starts a new one. Does nothing if no data is buffered.
+     */
+    public void endFrame() throws IOException {
+        ensureOpen();
+        if (bufferSize == 0) {
+            return;
+        }
+        if (frameCount == MAX_FRAMES) {
+            throw new IOException("Too many frames for the seek table: " + frameCount);
+        }
+
+        final int frameSize = compressor.compress(buffer, 0, bufferSize, frame, 0, frame.length);
+        out.write(frame, 0, frameSize);
+
+        final int entry = frameCount * ENTRY_WITH_CHECKSUM_SIZE;
+        if (entry + ENTRY_WITH_CHECKSUM_SIZE > seekTable.capacity()) {
+            seekTable = ByteBufferWrap(Arrays.copyOf(seekTable.array(), seekTable.capacity() * 2));
+        }
+        seekTable.putInt(entry, frameSize);
+        seekTable.putInt(entry + SIZE_OF_INT, bufferSize);
+        seekTable.putInt(entry + 2 * SIZE_OF_INT, (int) XxHash64.hash(bufferBase, 0, bufferSize));
+        frameCount++;
+
+        bufferSize = 0;
+    }
+
+    /**
+     * Passes the frames written so far to the underlying stream, the buffered data stays for the current frame.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        out.flush();
+    }
+
+    /**
+     * Writes the last frame and the seek table, then closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            endFrame();
+
+            final int entriesSize = frameCount * ENTRY_WITH_CHECKSUM_SIZE;
+            final ByteBuffer header = ByteBufferWrap(new byte[SKIPPABLE_HEADER_SIZE]);
+            header.putInt(0, SEEK_TABLE_MAGIC_NUMBER);
+            header.putInt(SIZE_OF_INT, entriesSize + FOOTER_SIZE);
+            out.write(header.array());
+            out.write(seekTable.array(), 0, entriesSize);
+
+            final ByteBuffer footer = ByteBufferWrap(new byte[FOOTER_SIZE]);
+            footer.putInt(0, frameCount);
+            footer.put(SIZE_OF_INT, (byte) CHECKSUM_FLAG);
+            footer.putInt(SIZE_OF_INT + 1, SEEKABLE_MAGIC_NUMBER);
+            out.write(footer.array());
+        } finally {
+            closed = true;
+            out.close();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Arrays;
+
+import static com.epam.deltix.zstd.Preconditions.checkArgument;
+import static com.epam.deltix.zstd.Preconditions.checkPositionIndexes;
+import static com.epam.deltix.zstd.SeekableFormat.CHECKSUM_FLAG;
+import static com.epam.deltix.zstd.SeekableFormat.ENTRY_SIZE;
+import static com.epam.deltix.zstd.SeekableFormat.ENTRY_WITH_CHECKSUM_SIZE;
+import static com.epam.deltix.zstd.SeekableFormat.FOOTER_SIZE;
+import static com.epam.deltix.zstd.SeekableFormat.MAX_FRAMES;
+import static com.epam.deltix.zstd.SeekableFormat.RESERVED_BITS;
+import static com.epam.deltix.zstd.SeekableFormat.SEEKABLE_MAGIC_NUMBER;
+import static com.epam.deltix.zstd.SeekableFormat.SEEK_TABLE_MAGIC_NUMBER;
+import static com.epam.deltix.zstd.Util.verify;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.ByteBufferWrap;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_INT;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SKIPPABLE_HEADER_SIZE;
+
+/**
+ * Reads ranges of the decompressed data of the seekable format. The seek table is loaded once, a read finds
+ * the first frame of the range by binary search and decodes only the frames that cover the range.
+ * The last decoded frame is kept, so that sequential short reads decode every frame once.
+ * <p>
+ * Not thread safe: reads move the position of the channel.
+ */
+public class ZstdSeekableReader implements Closeable {
+    private final SeekableByteChannel channel;
+    private final ZstdFrameDecompressor decompressor = new ZstdFrameDecompressor();
+
+    // frame i spans [compressedOffsets[i], compressedOffsets[i + 1]) in the file and
+    // [decompressedOffsets[i], decompressedOffsets[i + 1]) in the data
+    private final long[] compressedOffsets;
+    private final long[] decompressedOffsets;
+    private final int[] checksums;
+
+    private byte[] compressedFrame = new byte[0];
+    private byte[] frame = new byte[0];
+    private int frameIndex = -1;
+
+    public ZstdSeekableReader(final SeekableByteChannel channel) throws IOException {
+        if (channel == null) {
+            throw new NullPointerException("channel");
+        }
+        this.channel = channel;
+
+        final long fileSize = channel.size();
+        verify(fileSize >= SKIPPABLE_HEADER_SIZE + FOOTER_SIZE, fileSize, "Not a seekable frame stream");
+
+        final ByteBuffer footer = read(fileSize - FOOTER_SIZE, FOOTER_SIZE);
+        verify(footer.getInt(SIZE_OF_INT + 1) == SEEKABLE_MAGIC_NUMBER, fileSize - FOOTER_SIZE, "Invalid seekable magic number");
+        final int frameCount = footer.getInt(0);
+        final int descriptor = footer.get(SIZE_OF_INT) & 0xFF;
+        verify((descriptor & RESERVED_BITS) == 0, fileSize - FOOTER_SIZE + SIZE_OF_INT, "Reserved bits of the seek table descriptor are set");
+        verify(frameCount >= 0 && frameCount <= MAX_FRAMES, fileSize - FOOTER_SIZE, "Too many frames in the seek table");
+
+        final boolean hasChecksums = (descriptor & CHECKSUM_FLAG) != 0;
+        final int entrySize = hasChecksums ? ENTRY_WITH_CHECKSUM_SIZE : ENTRY_SIZE;
+        final int tableSize = frameCount * entrySize + FOOTER_SIZE;
+        final long tableAddress = fileSize - tableSize - SKIPPABLE_HEADER_SIZE;
+        verify(tableAddress >= 0, fileSize - FOOTER_SIZE, "Seek table is larger than the input");
+
+        final ByteBuffer table = read(tableAddress, SKIPPABLE_HEADER_SIZE + tableSize - FOOTER_SIZE);
+        verify(table.getInt(0) == SEEK_TABLE_MAGIC_NUMBER, tableAddress, "Invalid seek table magic number");
+        verify(table.getInt(SIZE_OF_INT) == tableSize, tableAddress, "Seek table size mismatch");
+
+        compressedOffsets = new long[frameCount + 1];
+        decompressedOffsets = new long[frameCount + 1];
+        checksums = hasChecksums ? new int[frameCount] : null;
+        for (int i = 0; i < frameCount; i++) {
+            final int entry = SKIPPABLE_HEADER_SIZE + i * entrySize;
+            compressedOffsets[i + 1] = compressedOffsets[i] + (table.getInt(entry) & 0xFFFF_FFFFL);
+            final int decompressedSize = table.getInt(entry + SIZE_OF_INT);
+            verify(decompressedSize >= 0, tableAddress + entry, "Frame is too large");
+            decompressedOffsets[i + 1] = decompressedOffsets[i] + decompressedSize;
+            if (hasChecksums) {
+                checksums[i] = table.getInt(entry + 2 * SIZE_OF_INT);
+            }
+        }
+        verify(compressedOffsets[frameCount] <= tableAddress, tableAddress, "Frames overlap the seek table");
+    }
+
+    public int getFrameCount() {
+        return compressedOffsets.length - 1;
+    }
+
+    public long getDecompressedSize() {
+        return decompressedOffsets[decompressedOffsets.length - 1];
+    }
+
+    /**
+     * Decodes the data at {@code [offset, offset + length)} into {@code output}.
+     *
+     * @return number of bytes read, less than {@code length} only at the end of the data
+     */
+    public int read(final long offset, final byte[] output, final int outputOffset, final int length) throws IOException {
+        checkArgument(offset >= 0, "Offset must not be negative: " + offset);
+        checkPositionIndexes(outputOffset, outputOffset + length, output.length);
+
+        final long end = Math.min(offset + length, getDecompressedSize());
+        long position = offset;
+        while (position < end) {
+            final int index = findFrame(position);
+            decodeFrame(index);
+
+            final int frameOffset = (int) (position - decompressedOffsets[index]);
+            final int size = (int) Math.min(end - position, decompressedOffsets[index + 1] - position);
+            System.arraycopy(frame, frameOffset, output, outputOffset + (int) (position - offset), size);
+            position += size;
+        }
+        return (int) Math.max(end - offset, 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * @return index of the frame that contains the byte at {@code position} of the data
+     */
+    private int findFrame(final long position) {
+        final int index = Arrays.binarySearch(decompressedOffsets, position);
+        if (index < 0) {
+            return -index - 2;
+        }
+        // skip empty frames, which start where the next one does
+        int result = index;
+        while (decompressedOffsets[result + 1] == position) {
+            result++;
+        }
+        return result;
+    }
+
+    private void decodeFrame(final int index) throws IOException {
+        if (index == frameIndex) {
+            return;
+        }
+        frameIndex = -1;
+
+        final long compressedSize = compressedOffsets[index + 1] - compressedOffsets[index];
+        verify(compressedSize <= Integer.MAX_VALUE, compressedOffsets[index], "Frame is too large");
+        final int decompressedSize = (int) (decompressedOffsets[index + 1] - decompressedOffsets[index]);
+
+        if (compressedFrame.length < compressedSize) {
+            compressedFrame = new byte[(int) compressedSize];
+        }
+        if (frame.length < decompressedSize) {
+            frame = new byte[decompressedSize];
+        }
+
+        readFully(compressedOffsets[index], ByteBuffer.wrap(compressedFrame, 0, (int) compressedSize));
+        final ByteBuffer frameBase = ByteBufferWrap(frame);
+        final int size = decompressor.decompress(ByteBufferWrap(compressedFrame), 0, (int) compressedSize, frameBase, 0, decompressedSize);
+        verify(size == decompressedSize, compressedOffsets[index], "Frame size does not match the seek table");
+        if (checksums != null) {
+            verify((int) XxHash64.hash(frameBase, 0, size) == checksums[index], compressedOffsets[index], "Bad seek table checksum");
+        }
+
+        frameIndex = index;
+    }
+
+    private ByteBuffer read(final long position, final int size) throws IOException {
+        final ByteBuffer buffer = ByteBufferWrap(new byte[size]);
+        readFully(position, buffer);
+        return buffer;
+    }
+
+    private void readFully(final long position, final ByteBuffer buffer) throws IOException {
+        channel.position(position);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Unexpected end of input: offset=" + channel.position());
+            }
+        }
+    }
+}
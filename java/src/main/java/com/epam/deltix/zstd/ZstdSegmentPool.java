@@ -0,0 +1,79 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread-safe pool of fixed-size byte arrays which hold the output of {@link ZstdDecompressor#decompress(byte[], int, int, ZstdSegmentPool)}.
+ * <p>
+ * The default segment size of 256 KB stays below half of the smallest G1 region, so that segments are never
+ * allocated as humongous objects. Segments returned by {@link ZstdSegmentedOutput#close} are kept for reuse up to
+ * {@code maxIdleSegments}, the rest is left to the garbage collector.
+ */
+public class ZstdSegmentPool {
+    public static final int DEFAULT_SEGMENT_SIZE = 256 * 1024;
+    public static final int DEFAULT_MAX_IDLE_SEGMENTS = 256;
+
+    private final int segmentSize;
+    private final int maxIdleSegments;
+
+    private final Queue<byte[]> segments = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleSegments = new AtomicInteger();
+
+    public ZstdSegmentPool() {
+        this(DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_IDLE_SEGMENTS);
+    }
+
+    /**
+     * @param segmentSize     size of each segment
+     * @param maxIdleSegments number of returned segments kept for reuse
+     */
+    public ZstdSegmentPool(final int segmentSize, final int maxIdleSegments) {
+        Preconditions.checkArgument(segmentSize > 0, "segmentSize must be positive");
+        Preconditions.checkArgument(maxIdleSegments >= 0, "maxIdleSegments must not be negative");
+        this.segmentSize = segmentSize;
+        this.maxIdleSegments = maxIdleSegments;
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * @return number of segments kept for reuse
+     */
+    public int getIdleSegments() {
+        return idleSegments.get();
+    }
+
+    byte[] take() {
+        final byte[] segment = segments.poll();
+        if (segment == null) {
+            return new byte[segmentSize];
+        }
+        idleSegments.decrementAndGet();
+        return segment;
+    }
+
+    void give(final byte[] segment) {
+        // the count may exceed the limit for a moment, which only keeps a few more segments
+        if (idleSegments.get() < maxIdleSegments) {
+            idleSegments.incrementAndGet();
+            segments.offer(segment);
+        }
+    }
+}
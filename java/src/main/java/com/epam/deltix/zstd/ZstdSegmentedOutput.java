@@ -0,0 +1,123 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Decompressed data held in a chain of segments taken from a {@link ZstdSegmentPool}: all segments but the last
+ * are full. The data is read through {@link #asByteBuffers}, for example by a gathering channel write, or copied
+ * once into an exactly sized array. {@link #close} returns the segments to the pool, after which the buffers
+ * must not be used.
+ */
+public class ZstdSegmentedOutput implements Closeable {
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private final ZstdSegmentPool pool;
+    private final int segmentSize;
+
+    private byte[][] segments = new byte[4][];
+    private int segmentCount;
+    // number of bytes in the last segment
+    private int position;
+    private long size;
+
+    ZstdSegmentedOutput(final ZstdSegmentPool pool) {
+        this.pool = pool;
+        this.segmentSize = pool.getSegmentSize();
+        this.position = segmentSize;
+    }
+
+    void write(final byte[] source, int offset, int length) {
+        size += length;
+        while (length > 0) {
+            if (position == segmentSize) {
+                if (segmentCount == segments.length) {
+                    segments = Arrays.copyOf(segments, 2 * segmentCount);
+                }
+                segments[segmentCount++] = pool.take();
+                position = 0;
+            }
+
+            final int chunk = Math.min(length, segmentSize - position);
+            System.arraycopy(source, offset, segments[segmentCount - 1], position, chunk);
+            position += chunk;
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    /**
+     * @return number of decompressed bytes
+     */
+    public long size() {
+        return size;
+    }
+
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * @return the segments as buffers positioned at their data, together a composite view of the output
+     */
+    public ByteBuffer[] asByteBuffers() {
+        final ByteBuffer[] buffers = new ByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            buffers[i] = ByteBuffer.wrap(segments[i], 0, i == segmentCount - 1 ? position : segmentSize).slice();
+        }
+        return buffers;
+    }
+
+    /**
+     * Copies the output into {@code output} starting at {@code offset}, which must have room for {@link #size} bytes.
+     */
+    public void copyTo(final byte[] output, final int offset) {
+        Preconditions.checkPositionIndex(offset, output.length);
+        Preconditions.checkArgument(size <= output.length - offset, "Output buffer too small");
+
+        int current = offset;
+        for (int i = 0; i < segmentCount; i++) {
+            final int length = i == segmentCount - 1 ? position : segmentSize;
+            System.arraycopy(segments[i], 0, output, current, length);
+            current += length;
+        }
+    }
+
+    /**
+     * @return the output copied into an array of its size
+     */
+    public byte[] toByteArray() {
+        Preconditions.checkArgument(size <= MAX_ARRAY_SIZE, "Output too large for an array: " + size);
+        final byte[] result = new byte[(int) size];
+        copyTo(result, 0);
+        return result;
+    }
+
+    /**
+     * Returns the segments to the pool. Repeated calls do nothing.
+     */
+    @Override
+    public void close() {
+        for (int i = 0; i < segmentCount; i++) {
+            pool.give(segments[i]);
+            segments[i] = null;
+        }
+        segmentCount = 0;
+        position = segmentSize;
+        size = 0;
+    }
+}
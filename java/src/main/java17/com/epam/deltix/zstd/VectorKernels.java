@@ -0,0 +1,129 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+
+import static com.epam.deltix.zstd.XxHash64.PRIME64_1;
+import static com.epam.deltix.zstd.XxHash64.PRIME64_2;
+import static com.epam.deltix.zstd.XxHash64.merge;
+
+/**
+ * {@link Kernels} on top of the incubating vector API: a stripe of {@link XxHash64} is one 256 bit vector of the four
+ * accumulators, the copies move 32 bytes at once. Arrays are loaded directly, so only heap buffers take these paths,
+ * the rest goes through {@link ScalarKernels}. Only used on little-endian platforms.
+ */
+final class VectorKernels extends Kernels {
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_256;
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_256;
+    private static final int WIDTH = 32;
+
+    private static final ScalarKernels SCALAR = new ScalarKernels();
+
+    @Override
+    int copyWidth() {
+        return WIDTH;
+    }
+
+    @Override
+    int copy(final ByteBuffer src, final int srcIndex, final ByteBuffer dst, final int dstIndex, final int length) {
+        if (length < WIDTH || !src.hasArray() || !dst.hasArray()) {
+            return 0;
+        }
+
+        final int size = length & -WIDTH;
+        checkIndex(src, srcIndex, size);
+        checkIndex(dst, dstIndex, size);
+
+        final byte[] srcArray = src.array();
+        final byte[] dstArray = dst.array();
+        final int srcOffset = src.arrayOffset() + srcIndex;
+        final int dstOffset = dst.arrayOffset() + dstIndex;
+        for (int index = 0; index < size; index += WIDTH) {
+            ByteVector.fromArray(BYTES, srcArray, srcOffset + index).intoArray(dstArray, dstOffset + index);
+        }
+        return size;
+    }
+
+    @Override
+    int xxHashRounds(final XxHash64 hash, final ByteBuffer base, final int address, final int length) {
+        if (!base.hasArray()) {
+            return SCALAR.xxHashRounds(hash, base, address, length);
+        }
+
+        final int size = length & -WIDTH;
+        checkIndex(base, address, size);
+
+        // the vectors stay in one method, a vector passed to a call which is not inlined is boxed
+        final byte[] array = base.array();
+        final int offset = base.arrayOffset() + address;
+        LongVector accumulators = LongVector.zero(LONGS)
+                .withLane(0, hash.v1)
+                .withLane(1, hash.v2)
+                .withLane(2, hash.v3)
+                .withLane(3, hash.v4);
+        for (int index = 0; index < size; index += WIDTH) {
+            accumulators = round(accumulators, ByteVector.fromArray(BYTES, array, offset + index).reinterpretAsLongs());
+        }
+
+        hash.v1 = accumulators.lane(0);
+        hash.v2 = accumulators.lane(1);
+        hash.v3 = accumulators.lane(2);
+        hash.v4 = accumulators.lane(3);
+        return size;
+    }
+
+    @Override
+    long xxHashBody(final long seed, final ByteBuffer base, final int address, final int length) {
+        if (!base.hasArray()) {
+            return SCALAR.xxHashBody(seed, base, address, length);
+        }
+
+        final int size = length & -WIDTH;
+        checkIndex(base, address, size);
+
+        final byte[] array = base.array();
+        final int offset = base.arrayOffset() + address;
+        LongVector accumulators = LongVector.zero(LONGS)
+                .withLane(0, seed + PRIME64_1 + PRIME64_2)
+                .withLane(1, seed + PRIME64_2)
+                .withLane(2, seed)
+                .withLane(3, seed - PRIME64_1);
+        for (int index = 0; index < size; index += WIDTH) {
+            accumulators = round(accumulators, ByteVector.fromArray(BYTES, array, offset + index).reinterpretAsLongs());
+        }
+
+        return merge(accumulators.lane(0), accumulators.lane(1), accumulators.lane(2), accumulators.lane(3));
+    }
+
+    private static LongVector round(final LongVector accumulators, final LongVector stripe) {
+        return accumulators.add(stripe.mul(PRIME64_2))
+                .lanewise(VectorOperators.ROL, 31)
+                .mul(PRIME64_1);
+    }
+
+    /**
+     * Bounds check of the absolute buffer accessors, the array accesses check only the bounds of the array.
+     */
+    private static void checkIndex(final ByteBuffer buffer, final int index, final int size) {
+        if (index < 0 || size > buffer.limit() - index) {
+            throw new IndexOutOfBoundsException("index=" + index + ", size=" + size + ", limit=" + buffer.limit());
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static com.epam.deltix.zstd.Util.verify;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.MAX_BLOCK_SIZE;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_BLOCK_HEADER;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SIZE_OF_INT;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.SKIPPABLE_HEADER_SIZE;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.getBlockHeader;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.getBlockInputSize;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.isSkippableFrame;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.readFrameHeader;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.skipFrame;
+import static com.epam.deltix.zstd.ZstdFrameDecompressor.verifyMagic;
+
+/**
+ * Decompresses frames between {@link MemorySegment}s, such as native memory of an arena or files mapped with
+ * {@link java.nio.channels.FileChannel#map(java.nio.channels.FileChannel.MapMode, long, long, java.lang.foreign.Arena)},
+ * which may be larger than 2 GB. Available on Java 22+ from the multi-release jar.
+ * <p>
+ * The decoder works on int addressed views of up to 2 GB of each segment and moves them along as the frames go.
+ * The output view always keeps the window of the current frame, so a single frame may be of any size as long as
+ * its window fits into a view. Offsets in error messages are relative to the current view.
+ * <p>
+ * Not thread-safe, but may be reused: once warmed up, calls with the same segments as the previous call
+ * allocate only when a view moves.
+ */
+public class ZstdSegmentDecompressor {
+    private static final int MAX_VIEW_SIZE = Integer.MAX_VALUE - 4 * MAX_BLOCK_SIZE;
+    // magic number, descriptor, window descriptor, dictionary id and content size
+    private static final int MAX_FRAME_HEADER_SIZE = SIZE_OF_INT + 1 + 1 + 4 + 8;
+
+    private final ZstdFrameDecompressor decompressor = new ZstdFrameDecompressor();
+    private final FrameHeader frameHeader = new FrameHeader();
+    private final XxHash64 checksum = new XxHash64();
+    private final int maxViewSize;
+
+    private SkippableFrameListener skippableFrameListener;
+    private DeferredChecksums deferredChecksums;
+
+    // little-endian views of the last segments, reused while the caller passes the same ones
+    private MemorySegment input;
+    private ByteBuffer inputBase;
+    private long inputViewStart;
+    private MemorySegment output;
+    private ByteBuffer outputBase;
+    private long outputViewStart;
+
+    public ZstdSegmentDecompressor() {
+        this(MAX_VIEW_SIZE);
+    }
+
+    /**
+     * Creates a decompressor for frames compressed with {@code dictionary}. Frames that declare another dictionary id fail.
+     */
+    public ZstdSegmentDecompressor(final ZstdDictionary dictionary) {
+        this(MAX_VIEW_SIZE);
+        decompressor.setDictionary(dictionary);
+    }
+
+    /**
+     * Creates a decompressor which resolves the dictionary ids of frames in {@code registry}.
+     */
+    public ZstdSegmentDecompressor(final ZstdDictionaryRegistry registry) {
+        this(MAX_VIEW_SIZE);
+        decompressor.setDictionaryRegistry(registry);
+    }
+
+    ZstdSegmentDecompressor(final int maxViewSize) {
+        this.maxViewSize = maxViewSize;
+    }
+
+    /**
+     * Sets the listener notified about skippable frames, {@code null} to ignore them.
+     */
+    public void setSkippableFrameListener(final SkippableFrameListener listener) {
+        this.skippableFrameListener = listener;
+    }
+
+    /**
+     * Decompresses all frames of {@code input} into {@code output} starting at its beginning.
+     *
+     * @return number of decompressed bytes
+     */
+    public long decompress(final MemorySegment input, final MemorySegment output) {
+        return decompress(input, output, ChecksumPolicy.VERIFY);
+    }
+
+    /**
+     * Same as {@link #decompress(MemorySegment, MemorySegment)}, with the given treatment of the frame checksums.
+     * With {@link ChecksumPolicy#DEFERRED} a frame which does not fit into one view is verified right away.
+     */
+    public long decompress(final MemorySegment input, final MemorySegment output, final ChecksumPolicy checksumPolicy) {
+        Preconditions.checkArgument(!output.isReadOnly(), "output is read-only");
+        setSegments(input, output);
+
+        final long inputSize = input.byteSize();
+        long inputPosition = 0;
+        long outputPosition = 0;
+
+        while (inputPosition < inputSize) {
+            int address = inputAddress(inputPosition, SKIPPABLE_HEADER_SIZE);
+            if (isSkippableFrame(inputBase, address, inputBase.capacity())) {
+                verify(address + SKIPPABLE_HEADER_SIZE <= inputBase.capacity(), address, "Not enough input bytes");
+                final long frameSize = SKIPPABLE_HEADER_SIZE + (inputBase.getInt(address + SIZE_OF_INT) & 0xFFFF_FFFFL);
+                address = inputAddress(inputPosition, (int) Math.min(frameSize, maxViewSize));
+                inputPosition += skipFrame(inputBase, address, inputBase.capacity(), skippableFrameListener);
+                continue;
+            }
+
+            address = inputAddress(inputPosition, MAX_FRAME_HEADER_SIZE);
+            address += verifyMagic(inputBase, address, inputBase.capacity());
+            readFrameHeader(inputBase, address, inputBase.capacity(), frameHeader);
+            inputPosition += SIZE_OF_INT + frameHeader.headerSize;
+
+            final long frameStart = outputPosition;
+            // a single segment frame has no window, all of its content is history
+            final long windowSize = frameHeader.windowSize == -1 ? frameHeader.contentSize : frameHeader.windowSize;
+            decompressor.beginFrame(frameHeader, address, outputAddress(outputPosition, frameStart, MAX_BLOCK_SIZE));
+
+            boolean hashing = frameHeader.hasChecksum && checksumPolicy == ChecksumPolicy.VERIFY;
+            if (hashing) {
+                checksum.reset();
+            }
+
+            boolean lastBlock;
+            do {
+                address = inputAddress(inputPosition, SIZE_OF_BLOCK_HEADER + MAX_BLOCK_SIZE);
+                verify(address + SIZE_OF_BLOCK_HEADER <= inputBase.capacity(), address, "Not enough input bytes");
+
+                final int header = getBlockHeader(inputBase, address);
+                address += SIZE_OF_BLOCK_HEADER;
+
+                lastBlock = (header & 1) != 0;
+                final int blockType = (header >>> 1) & 0b11;
+                final int blockSize = (header >>> 3) & 0x1F_FFFF; // 21 bits
+
+                final long viewStart = outputViewStart;
+                final ByteBuffer viewBase = outputBase;
+                final int outputAddress = outputAddress(outputPosition, Math.max(frameStart, outputPosition - windowSize), MAX_BLOCK_SIZE);
+                if (outputViewStart != viewStart) {
+                    decompressor.shiftHistory((int) (outputViewStart - viewStart));
+                    if (!hashing && frameHeader.hasChecksum && checksumPolicy == ChecksumPolicy.DEFERRED) {
+                        // the frame does not fit into one view, hash the part decoded so far
+                        checksum.reset();
+                        checksum.update(viewBase, (int) (frameStart - viewStart), (int) (outputPosition - frameStart));
+                        hashing = true;
+                    }
+                }
+
+                final int decodedSize = decompressor.decodeBlock(blockType, blockSize,
+                        inputBase, address, inputBase.capacity(), outputBase, outputAddress, outputBase.capacity());
+                if (hashing) {
+                    checksum.update(outputBase, outputAddress, decodedSize);
+                }
+                outputPosition += decodedSize;
+                inputPosition += SIZE_OF_BLOCK_HEADER + getBlockInputSize(blockType, blockSize);
+            }
+            while (!lastBlock);
+
+            if (frameHeader.hasChecksum) {
+                address = inputAddress(inputPosition, SIZE_OF_INT);
+                verify(address + SIZE_OF_INT <= inputBase.capacity(), address, "Not enough input bytes");
+
+                final int expected = inputBase.getInt(address);
+                if (hashing) {
+                    final int actual = (int) checksum.hash();
+                    if (expected != actual) {
+                        throw new RuntimeException(String.format("Bad checksum. Expected: %s, actual: %s: offset=%d", Integer.toHexString(expected), Integer.toHexString(actual), address));
+                    }
+                } else if (checksumPolicy == ChecksumPolicy.DEFERRED) {
+                    if (deferredChecksums == null) {
+                        deferredChecksums = new DeferredChecksums();
+                    }
+                    deferredChecksums.add(outputBase, (int) (frameStart - outputViewStart), (int) (outputPosition - frameStart), expected);
+                }
+                inputPosition += SIZE_OF_INT;
+            }
+        }
+
+        return outputPosition;
+    }
+
+    /**
+     * @return checksums recorded with {@link ChecksumPolicy#DEFERRED} since the previous call, or an empty set
+     */
+    public DeferredChecksums takeDeferredChecksums() {
+        final DeferredChecksums result = deferredChecksums == null ? new DeferredChecksums() : deferredChecksums;
+        deferredChecksums = null;
+        return result;
+    }
+
+    private void setSegments(final MemorySegment input, final MemorySegment output) {
+        if (input != this.input) {
+            this.input = input;
+            inputViewStart = 0;
+            inputBase = view(input, 0);
+        }
+        if (output != this.output) {
+            this.output = output;
+            outputViewStart = 0;
+            outputBase = view(output, 0);
+        }
+    }
+
+    /**
+     * Moves the input view, if needed, so that it holds {@code size} bytes starting at {@code position},
+     * or as many of them as the input has.
+     *
+     * @return address of the position in the view
+     */
+    private int inputAddress(final long position, final int size) {
+        final long viewLimit = inputViewStart + inputBase.capacity();
+        if (position < inputViewStart || position + size > viewLimit && viewLimit < input.byteSize()) {
+            inputViewStart = position;
+            inputBase = view(input, position);
+        }
+        return (int) (position - inputViewStart);
+    }
+
+    /**
+     * Moves the output view, if needed, so that it holds the history starting at {@code historyStart}
+     * and {@code size} bytes starting at {@code position}, or as many of them as the output has.
+     *
+     * @return address of the position in the view
+     */
+    private int outputAddress(final long position, final long historyStart, final int size) {
+        final long viewLimit = outputViewStart + outputBase.capacity();
+        if (historyStart < outputViewStart || position + size > viewLimit && viewLimit < output.byteSize()) {
+            outputViewStart = historyStart;
+            outputBase = view(output, historyStart);
+            verify(position - historyStart <= outputBase.capacity() - Math.min(size, output.byteSize() - position),
+                    (int) (position - historyStart), "Window size too large");
+        }
+        return (int) (position - outputViewStart);
+    }
+
+    private ByteBuffer view(final MemorySegment segment, final long offset) {
+        return segment.asSlice(offset, Math.min(segment.byteSize() - offset, maxViewSize))
+                .asByteBuffer()
+                .order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
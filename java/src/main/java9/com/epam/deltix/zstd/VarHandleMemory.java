@@ -0,0 +1,58 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * {@link Memory} on top of byte buffer view var handles, the supported way to skip the byte order handling on Java 9+.
+ */
+final class VarHandleMemory extends Memory {
+    private static final VarHandle SHORT = MethodHandles.byteBufferViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    @Override
+    short getShort(final ByteBuffer buffer, final int index) {
+        return (short) SHORT.get(buffer, index);
+    }
+
+    @Override
+    int getInt(final ByteBuffer buffer, final int index) {
+        return (int) INT.get(buffer, index);
+    }
+
+    @Override
+    long getLong(final ByteBuffer buffer, final int index) {
+        return (long) LONG.get(buffer, index);
+    }
+
+    @Override
+    void putShort(final ByteBuffer buffer, final int index, final short value) {
+        SHORT.set(buffer, index, value);
+    }
+
+    @Override
+    void putInt(final ByteBuffer buffer, final int index, final int value) {
+        INT.set(buffer, index, value);
+    }
+
+    @Override
+    void putLong(final ByteBuffer buffer, final int index, final long value) {
+        LONG.set(buffer, index, value);
+    }
+}
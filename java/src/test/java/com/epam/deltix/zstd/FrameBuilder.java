@@ -0,0 +1,281 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Assembles frames from raw, RLE and single-match compressed blocks and tracks the expected content.
+ */
+final class FrameBuilder {
+    // 3409 bytes produced by alphabet(), single compressed block with checksum
+    static final byte[] ALPHABET_FRAME = toBytes(
+            0x28, 0xB5, 0x2F, 0xFD, 0x64, 0x51, 0x0C, 0xB5, 0x0E, 0x00, 0x64, 0x03, 0x6F, 0x70, 0x71, 0x72,
+            0x73, 0x74, 0x75, 0x76, 0x77, 0x78, 0x79, 0x7A, 0x61, 0x62, 0x63, 0x64, 0x65, 0x66, 0x67, 0x68,
+            0x69, 0x6A, 0x6B, 0x6C, 0x6D, 0x6E, 0x6F, 0x6E, 0x6F, 0x6E, 0x6F, 0x7A, 0x61, 0x70, 0x6E, 0x6C,
+            0x6A, 0x61, 0x70, 0x66, 0x75, 0x66, 0x6F, 0x70, 0x72, 0x63, 0x64, 0x65, 0x66, 0x6D, 0x6E, 0x64,
+            0x65, 0x74, 0x80, 0xD6, 0xA8, 0xA1, 0xD3, 0xFD, 0x1F, 0x00, 0x40, 0x40, 0x18, 0x73, 0xC6, 0x02,
+            0x32, 0x20, 0x14, 0x8A, 0xC3, 0x38, 0x10, 0xA2, 0x30, 0x0A, 0xE3, 0x30, 0x8C, 0xE3, 0x20, 0x94,
+            0x6C, 0x01, 0x14, 0x85, 0x01, 0x5D, 0x96, 0x4C, 0xFC, 0x55, 0x5A, 0x90, 0x07, 0x9B, 0xE5, 0xB6,
+            0xDC, 0x0B, 0x14, 0xE3, 0x18, 0x13, 0x10, 0x58, 0x65, 0xA3, 0xA1, 0xA2, 0x9E, 0x32, 0xE1, 0x95,
+            0x9F, 0x52, 0xE5, 0xEB, 0x41, 0x54, 0x67, 0x9E, 0x36, 0x41, 0x1B, 0xEE, 0x85, 0xA0, 0xEB, 0x23,
+            0xA6, 0x3C, 0x85, 0xB1, 0x4E, 0x19, 0x6D, 0x2F, 0x1E, 0x0B, 0x1A, 0xE7, 0xF5, 0x07, 0x27, 0x6D,
+            0x7E, 0x92, 0x45, 0x33, 0x40, 0x00, 0xBA, 0x81, 0x6D, 0xC6, 0x0C, 0xE0, 0x1D, 0xB7, 0xEB, 0x3C,
+            0x0D, 0xAB, 0x91, 0x47, 0x19, 0x36, 0x00, 0xCE, 0x58, 0xA3, 0xD4, 0xCE, 0x21, 0x53, 0xC0, 0xED,
+            0x6D, 0x01, 0x17, 0xC6, 0xFA, 0x79, 0x88, 0xE6, 0x29, 0xED, 0xB8, 0x37, 0x1B, 0x34, 0x6D, 0x89,
+            0x26, 0xC2, 0x88, 0x2E, 0x61, 0xBF, 0xDE, 0xBC, 0x75, 0x49, 0x7C, 0x4A, 0x6E, 0xA1, 0x20, 0x5F,
+            0x00, 0xA1, 0x84, 0xCC, 0xC3, 0x7E, 0x43, 0x4B, 0x1B, 0xC0, 0x1B, 0x16, 0x5A, 0x37, 0x16, 0xCB,
+            0xB2, 0x10, 0x45, 0xB9, 0x62, 0x4E, 0x93, 0x51, 0xD9, 0xA4, 0x69, 0xCF, 0x90, 0x93, 0xA4, 0x33,
+            0x53, 0x32, 0xF7, 0x5F, 0xDD, 0x8D, 0xC3, 0xF1, 0x8E, 0xF2, 0x75, 0x00, 0x39, 0x1D, 0xE3, 0x9E,
+            0xC6, 0xD3, 0xE7, 0x94, 0x3F, 0x3D, 0xFC, 0xBE, 0xAA, 0x19, 0x16, 0x2C, 0x66, 0xEF, 0x48, 0x78,
+            0x0C, 0xF4, 0xC9, 0xF4, 0xE9, 0xBE, 0x6E, 0x63, 0x00, 0x14, 0x81, 0x1B, 0x4E, 0xD4, 0x8B, 0xCE,
+            0xFA, 0xF4, 0x33, 0xCE, 0xC4, 0xE3, 0x29, 0xFC, 0x75, 0xD2, 0x1F, 0x1F, 0x4A, 0xA0, 0xA3, 0xFE,
+            0x05, 0xB4, 0x3B, 0xC9, 0x8D, 0x40, 0xCE, 0xE4, 0x57, 0xEE, 0x7E, 0xE8, 0x6B, 0x42, 0x1E, 0x6E,
+            0x92, 0x61, 0x58, 0x25, 0xDB, 0x12, 0x0A, 0x71, 0x29, 0x08, 0xCE, 0x40, 0x79, 0x73, 0xD5, 0x1D,
+            0x8E, 0x73, 0x85, 0x1D, 0x9E, 0x87, 0x22, 0xDD, 0xA6, 0x91, 0x22, 0xC2, 0x1C, 0xE6, 0x51, 0xC6,
+            0x6D, 0xE7, 0x1B, 0xE1, 0x02, 0xB3, 0x16, 0x0E, 0xDE, 0x72, 0x45, 0x1B, 0x1C, 0x73, 0x2A, 0x41,
+            0x1C, 0xF1, 0x1B, 0xD7, 0x4E, 0xB7, 0xE9, 0xB7, 0xE6, 0x60, 0xEB, 0x59, 0xEA, 0x74, 0x20, 0xFA,
+            0x1E, 0xEB, 0x1C, 0xDA, 0xFA, 0x9E, 0x4E, 0xCB, 0xCD, 0x83, 0x43, 0x98, 0x87, 0x25, 0xA8, 0x8D,
+            0x3F, 0xB1, 0xBE, 0x36, 0x23, 0x93, 0x11, 0x14, 0x4C, 0x40, 0x2B, 0xFD, 0xD1, 0x5B, 0x66, 0xBB,
+            0x7E, 0xF0, 0xE4, 0x36, 0x64, 0x54, 0x40, 0xCE, 0x4B, 0x04, 0x7D, 0x08, 0x8D, 0xBC, 0x97, 0xAA,
+            0xED, 0xB4, 0x2D, 0xF6, 0xE9, 0x5F, 0xFA, 0x10, 0x78, 0x8A, 0x68, 0xDB, 0x82, 0x9A, 0x0C, 0x06,
+            0xF9, 0x34, 0x9A, 0xF5, 0x30, 0x47, 0xF3, 0x54, 0x09, 0x8C, 0x53, 0xE0, 0xA9, 0x94, 0x33, 0xFF,
+            0x33, 0xB2, 0xA0, 0xE9);
+
+    private static final int[] MATCH_LENGTH_BASE = {131, 259, 515};
+    private static final int[] MATCH_LENGTH_BITS = {7, 8, 9};
+    private static final int FIRST_MATCH_LENGTH_CODE = 43;
+
+    private final int windowLog;
+    private final boolean checksum;
+    private final boolean withContentSize;
+    private final List<byte[]> blocks = new ArrayList<>();
+    private long dictionaryId;
+    private byte[] content = new byte[1024];
+    private int contentStart;
+    private int contentSize;
+
+    FrameBuilder(final int windowLog, final boolean checksum, final boolean withContentSize) {
+        this.windowLog = windowLog;
+        this.checksum = checksum;
+        this.withContentSize = withContentSize;
+    }
+
+    static byte[] alphabet() {
+        final String alphabet = "abcdefghijklmnopqrstuvwxyz";
+        final String twice = alphabet + alphabet;
+        final StringBuilder builder = new StringBuilder();
+
+        // xorshift128+ seeded with (42, 24)
+        final long[] state = {42, 24};
+        for (int n = 0; n < 256; ++n) {
+            final int i = remainderUnsigned(next(state), alphabet.length());
+            final int l = remainderUnsigned(next(state), alphabet.length());
+            builder.append(twice, i, i + l);
+        }
+        return builder.toString().getBytes();
+    }
+
+    private static int remainderUnsigned(final long value, final int divisor) {
+        return (int) ((((value >>> 1) % divisor) * 2 + (value & 1)) % divisor);
+    }
+
+    private static long next(final long[] state) {
+        long x = state[0];
+        final long y = state[1];
+        state[0] = y;
+        x ^= x << 23;
+        state[1] = x ^ y ^ (x >>> 17) ^ (y >>> 26);
+        return state[1] + y;
+    }
+
+    static byte[] random(final long seed, final int size) {
+        final byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    static byte[] concat(final byte[]... arrays) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (final byte[] array : arrays) {
+            out.write(array, 0, array.length);
+        }
+        return out.toByteArray();
+    }
+
+    static byte[] skippable(final int magicVariant, final byte[] content) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeInt(out, 0x184D2A50 | magicVariant);
+        writeInt(out, content.length);
+        out.write(content, 0, content.length);
+        return out.toByteArray();
+    }
+
+    /**
+     * Declares the dictionary id in the header (unless it is 0) and makes the content available to matches.
+     * Must be called before adding blocks.
+     */
+    FrameBuilder dictionary(final long id, final byte[] dictionaryContent) {
+        dictionaryId = id;
+        for (final byte value : dictionaryContent) {
+            append(value);
+        }
+        contentStart = contentSize;
+        return this;
+    }
+
+    /**
+     * Compressed block with the given payload, which is expected to decode to {@code decoded}.
+     */
+    FrameBuilder compressed(final byte[] payload, final byte[] decoded) {
+        blocks.add(block(ZstdFrameDecompressor.COMPRESSED_BLOCK, payload.length, payload));
+        for (final byte value : decoded) {
+            append(value);
+        }
+        return this;
+    }
+
+    FrameBuilder raw(final byte[] data) {
+        blocks.add(block(ZstdFrameDecompressor.RAW_BLOCK, data.length, data));
+        for (final byte value : data) {
+            append(value);
+        }
+        return this;
+    }
+
+    FrameBuilder rle(final byte value, final int size) {
+        blocks.add(block(ZstdFrameDecompressor.RLE_BLOCK, size, new byte[]{value}));
+        for (int i = 0; i < size; i++) {
+            append(value);
+        }
+        return this;
+    }
+
+    /**
+     * Compressed block with no literals and one sequence copying {@code length} (131..1026) bytes
+     * from {@code offset} bytes back. All tables are RLE, so the bit stream holds only the extra bits.
+     */
+    FrameBuilder match(final int offset, final int length) {
+        int index = MATCH_LENGTH_BASE.length - 1;
+        while (MATCH_LENGTH_BASE[index] > length) {
+            index--;
+        }
+        final int matchLengthCode = FIRST_MATCH_LENGTH_CODE + index;
+        final int matchLengthBits = MATCH_LENGTH_BITS[index];
+        final int matchLengthExtra = length - MATCH_LENGTH_BASE[index];
+
+        final int offsetValue = offset + 3;
+        final int offsetCode = 31 - Integer.numberOfLeadingZeros(offsetValue);
+        final int offsetExtra = offsetValue - (1 << offsetCode);
+
+        // decoder reads offset bits first, so they are the highest below the end mark
+        final long bits = ((((1L << offsetCode) | offsetExtra) << matchLengthBits) | matchLengthExtra);
+        final int bitCount = 1 + offsetCode + matchLengthBits;
+
+        final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        payload.write(0x00); // raw literals, size 0
+        payload.write(1); // one sequence
+        payload.write(0b01_01_01_00); // RLE for literal lengths, offsets and match lengths
+        payload.write(0); // literal length code
+        payload.write(offsetCode);
+        payload.write(matchLengthCode);
+        for (int i = 0; i < (bitCount + 7) / 8; i++) {
+            payload.write((int) (bits >>> (8 * i)));
+        }
+        final byte[] data = payload.toByteArray();
+        blocks.add(block(ZstdFrameDecompressor.COMPRESSED_BLOCK, data.length, data));
+
+        for (int i = 0; i < length; i++) {
+            append(content[contentSize - offset]);
+        }
+        return this;
+    }
+
+    private void append(final byte value) {
+        if (contentSize == content.length) {
+            content = Arrays.copyOf(content, content.length * 2);
+        }
+        content[contentSize++] = value;
+    }
+
+    byte[] content() {
+        return Arrays.copyOfRange(content, contentStart, contentSize);
+    }
+
+    byte[] build() {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeInt(out, 0xFD2FB528);
+
+        int descriptor = checksum ? 0b100 : 0;
+        if (withContentSize) {
+            descriptor |= 3 << 6;
+        }
+        if (dictionaryId != 0) {
+            descriptor |= 3;
+        }
+        out.write(descriptor);
+        out.write((windowLog - 10) << 3);
+        if (dictionaryId != 0) {
+            writeInt(out, (int) dictionaryId);
+        }
+        if (withContentSize) {
+            writeInt(out, contentSize - contentStart);
+            writeInt(out, 0);
+        }
+
+        if (blocks.isEmpty()) {
+            blocks.add(block(ZstdFrameDecompressor.RAW_BLOCK, 0, new byte[0]));
+        }
+        for (int i = 0; i < blocks.size(); i++) {
+            final byte[] block = blocks.get(i);
+            if (i == blocks.size() - 1) {
+                block[0] |= 1;
+            }
+            out.write(block, 0, block.length);
+        }
+        if (checksum) {
+            writeInt(out, (int) XxHash64.hash(ZstdFrameDecompressor.ByteBufferWrap(content), contentStart, contentSize - contentStart));
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] block(final int type, final int size, final byte[] payload) {
+        final byte[] block = new byte[ZstdFrameDecompressor.SIZE_OF_BLOCK_HEADER + payload.length];
+        final int header = (size << 3) | (type << 1);
+        block[0] = (byte) header;
+        block[1] = (byte) (header >>> 8);
+        block[2] = (byte) (header >>> 16);
+        System.arraycopy(payload, 0, block, ZstdFrameDecompressor.SIZE_OF_BLOCK_HEADER, payload.length);
+        return block;
+    }
+
+    static void writeInt(final ByteArrayOutputStream out, final int value) {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+
+    private static byte[] toBytes(final int... values) {
+        final byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TestAllocation {
+    private static final int WARM_UP_ITERATIONS = 20_000;
+    private static final int ITERATIONS = 1000;
+
+    @Test
+    public void testByteArrays() {
+        final byte[] content = FrameBuilder.concat(FrameBuilder.alphabet(), FrameBuilder.random(1, 1000), FrameBuilder.alphabet());
+        final byte[] compressed = compress(content);
+        final byte[] output = new byte[content.length];
+        final ZstdDecompressor decompressor = new ZstdDecompressor();
+
+        assertNoAllocation(new Runnable() {
+            @Override
+            public void run() {
+                decompressor.decompress(compressed, 0, compressed.length, output, 0, output.length);
+            }
+        });
+        assertArrayEquals(content, output);
+    }
+
+    @Test
+    public void testByteBuffers() {
+        final byte[] content = FrameBuilder.concat(FrameBuilder.alphabet(), FrameBuilder.alphabet());
+        final ByteBuffer input = ByteBuffer.allocateDirect(content.length);
+        input.put(compress(content)).flip();
+        // big-endian, as allocated
+        final ByteBuffer output = ByteBuffer.allocate(content.length);
+        final ZstdDecompressor decompressor = new ZstdDecompressor();
+
+        assertNoAllocation(new Runnable() {
+            @Override
+            public void run() {
+                input.rewind();
+                output.clear();
+                decompressor.decompress(input, output);
+            }
+        });
+        assertArrayEquals(content, output.array());
+    }
+
+    @Test
+    public void testSequencesAndHuffmanFrame() {
+        final byte[] output = new byte[FrameBuilder.alphabet().length];
+        final ZstdDecompressor decompressor = new ZstdDecompressor();
+
+        assertNoAllocation(new Runnable() {
+            @Override
+            public void run() {
+                decompressor.decompress(FrameBuilder.ALPHABET_FRAME, 0, FrameBuilder.ALPHABET_FRAME.length, output, 0, output.length);
+            }
+        });
+        assertArrayEquals(FrameBuilder.alphabet(), output);
+    }
+
+    @Test
+    public void testXxHash64() {
+        final byte[] content = FrameBuilder.random(1, 1000);
+        final ByteBuffer direct = ByteBuffer.allocateDirect(content.length);
+        direct.put(content).flip();
+        final ByteArrayInputStream stream = new ByteArrayInputStream(content);
+        final XxHash64 hash = new XxHash64();
+        final long expected = XxHash64.hash(ByteBuffer.wrap(content));
+
+        assertNoAllocation(new Runnable() {
+            @Override
+            public void run() {
+                direct.rewind();
+                stream.reset();
+                hash.reset().update(direct).update(content, 0, 999);
+                try {
+                    hash.update(stream);
+                } catch (final IOException e) {
+                    throw new AssertionError(e);
+                }
+            }
+        });
+        direct.rewind();
+        assertEquals(expected, hash.reset().update(direct).hash());
+    }
+
+    private static void assertNoAllocation(final Runnable decompression) {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean) || !((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            return;
+        }
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        final long threadId = Thread.currentThread().getId();
+
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            decompression.run();
+        }
+
+        // the measurement itself may allocate, so one attempt out of a few is enough
+        long allocated = Long.MAX_VALUE;
+        for (int attempt = 0; attempt < 3 && allocated > 0; attempt++) {
+            final long before = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < ITERATIONS; i++) {
+                decompression.run();
+            }
+            allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        }
+        assertEquals("bytes allocated by " + ITERATIONS + " calls", 0, allocated);
+    }
+
+    private static byte[] compress(final byte[] content) {
+        final byte[] output = new byte[ZstdCompressor.maxCompressedLength(content.length)];
+        return Arrays.copyOf(output, new ZstdCompressor().compress(content, 0, content.length, output, 0, output.length));
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class TestChecksum {
+    private static final byte[] CONTENT = FrameBuilder.concat(FrameBuilder.random(1, 100 * 1024), new byte[300 * 1024]);
+
+    @Test
+    public void testVerify() {
+        final byte[] frame = compress(CONTENT);
+        final byte[] output = new byte[CONTENT.length];
+        assertEquals(CONTENT.length, new ZstdDecompressor().decompress(frame, 0, frame.length, output, 0, output.length, ChecksumPolicy.VERIFY));
+        assertArrayEquals(CONTENT, output);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testVerifyCorrupted() {
+        final byte[] frame = corrupt(compress(CONTENT));
+        new ZstdDecompressor().decompress(frame, 0, frame.length, new byte[CONTENT.length], 0, CONTENT.length);
+    }
+
+    @Test
+    public void testSkip() {
+        final byte[] frame = corrupt(compress(CONTENT));
+        final byte[] output = new byte[CONTENT.length];
+        assertEquals(CONTENT.length, new ZstdDecompressor().decompress(frame, 0, frame.length, output, 0, output.length, ChecksumPolicy.SKIP));
+        assertArrayEquals(CONTENT, output);
+    }
+
+    @Test
+    public void testDeferred() throws Exception {
+        final byte[] frame = compress(CONTENT);
+        final byte[] input = FrameBuilder.concat(frame, corrupt(frame), frame);
+        final ZstdDecompressor decompressor = new ZstdDecompressor();
+        final ByteBuffer output = ByteBuffer.allocateDirect(3 * CONTENT.length);
+
+        assertEquals(0, decompressor.takeDeferredChecksums().getFrameCount());
+
+        final ByteBuffer first = ByteBuffer.wrap(input, 0, frame.length);
+        decompressor.decompress(first, output, ChecksumPolicy.DEFERRED);
+        final DeferredChecksums good = decompressor.takeDeferredChecksums();
+        assertEquals(1, good.getFrameCount());
+
+        final ByteBuffer rest = ByteBuffer.wrap(input, frame.length, 2 * frame.length);
+        decompressor.decompress(rest, output, ChecksumPolicy.DEFERRED);
+        final DeferredChecksums bad = decompressor.takeDeferredChecksums();
+        assertEquals(2, bad.getFrameCount());
+        assertEquals(0, decompressor.takeDeferredChecksums().getFrameCount());
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(verify(good)).get();
+            final Future<Void> result = executor.submit(verify(bad));
+            try {
+                Util.await(result);
+                fail();
+            } catch (final RuntimeException e) {
+                assertEquals(true, e.getMessage().startsWith("Bad checksum"));
+                assertEquals(true, e.getMessage().endsWith("offset=" + CONTENT.length));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testHashReset() {
+        final ByteBuffer buffer = ByteBuffer.wrap(CONTENT).order(ByteOrder.LITTLE_ENDIAN);
+        final XxHash64 hash = new XxHash64();
+        hash.update(buffer, 0, 12345);
+        hash.reset();
+        hash.update(buffer, 0, CONTENT.length);
+        assertEquals(XxHash64.hash(0, buffer, 0, CONTENT.length), hash.hash());
+    }
+
+    private static byte[] compress(final byte[] content) {
+        final byte[] output = new byte[ZstdCompressor.maxCompressedLength(content.length)];
+        return Arrays.copyOf(output, new ZstdCompressor().compress(content, 0, content.length, output, 0, output.length));
+    }
+
+    private static byte[] corrupt(final byte[] frame) {
+        final byte[] result = frame.clone();
+        result[result.length - 1] ^= 1;
+        return result;
+    }
+
+    private static Callable<Void> verify(final DeferredChecksums checksums) {
+        return new Callable<Void>() {
+            @Override
+            public Void call() {
+                checksums.verify();
+                return null;
+            }
+        };
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdException;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestCompress {
+    @Test
+    public void testEmpty() {
+        assertRoundTrip(new byte[0]);
+    }
+
+    @Test
+    public void testShortInputs() {
+        for (int size = 1; size < 300; size += 7) {
+            final byte[] input = new byte[size];
+            for (int i = 0; i < size; i++) {
+                input[i] = (byte) (i % 5);
+            }
+            assertRoundTrip(input);
+        }
+    }
+
+    @Test
+    public void testRepeatedByte() {
+        final byte[] input = new byte[300 * 1024];
+        Arrays.fill(input, (byte) 42);
+
+        for (int level = ZstdCompressor.MIN_COMPRESSION_LEVEL; level <= ZstdCompressor.MAX_COMPRESSION_LEVEL; level++) {
+            // RLE blocks
+            assertTrue(assertRoundTrip(new ZstdCompressor(level), input) < 32);
+        }
+    }
+
+    @Test
+    public void testIncompressible() {
+        final byte[] input = FrameBuilder.random(5, 200 * 1024);
+
+        for (int level = ZstdCompressor.MIN_COMPRESSION_LEVEL; level <= ZstdCompressor.MAX_COMPRESSION_LEVEL; level++) {
+            // raw blocks
+            assertTrue(assertRoundTrip(new ZstdCompressor(level), input) <= ZstdCompressor.maxCompressedLength(input.length));
+        }
+    }
+
+    @Test
+    public void testText() {
+        final byte[] input = text(3 * 1024 * 1024);
+
+        for (int level = ZstdCompressor.MIN_COMPRESSION_LEVEL; level <= ZstdCompressor.MAX_COMPRESSION_LEVEL; level++) {
+            assertTrue(assertRoundTrip(new ZstdCompressor(level), input) < input.length / 4);
+        }
+    }
+
+    @Test
+    public void testMixed() {
+        // matches far apart in a window smaller than the input, literals of a skewed distribution
+        final byte[] text = text(64 * 1024);
+        final byte[] noise = FrameBuilder.random(9, 4 * 1024 * 1024);
+        final byte[] input = new byte[4 * 1024 * 1024];
+        for (int offset = 0; offset < input.length; offset += 1000) {
+            final int size = Math.min(1000, input.length - offset);
+            if ((offset / 1000 & 1) == 0) {
+                System.arraycopy(text, offset % (text.length - 1000), input, offset, size);
+            } else {
+                for (int i = 0; i < size; i++) {
+                    input[offset + i] = (byte) (noise[offset + i] & 3);
+                }
+            }
+        }
+
+        for (int level = ZstdCompressor.MIN_COMPRESSION_LEVEL; level <= ZstdCompressor.MAX_COMPRESSION_LEVEL; level++) {
+            assertRoundTrip(new ZstdCompressor(level), input);
+        }
+    }
+
+    @Test
+    public void testLevels() {
+        final byte[] input = text(1024 * 1024);
+
+        // the hash chain strategies find more matches than the hash table ones
+        final int fast = assertRoundTrip(new ZstdCompressor(1), input);
+        final int greedy = assertRoundTrip(new ZstdCompressor(5), input);
+        final int lazy2 = assertRoundTrip(new ZstdCompressor(ZstdCompressor.MAX_COMPRESSION_LEVEL), input);
+        assertTrue(greedy < fast);
+        assertTrue(lazy2 < greedy);
+    }
+
+    @Test
+    public void testReferenceDecoder() throws InterruptedException {
+        // the frames of every level are read by the reference implementation, which verifies their checksums
+        final byte[] text = text(1024 * 1024);
+        final byte[] noise = FrameBuilder.random(5, 200 * 1024);
+        final byte[] repeated = new byte[300 * 1024];
+        Arrays.fill(repeated, (byte) 42);
+
+        for (int level = ZstdCompressor.MIN_COMPRESSION_LEVEL; level <= ZstdCompressor.MAX_COMPRESSION_LEVEL; level++) {
+            final ZstdCompressor compressor = new ZstdCompressor(level);
+            for (final byte[] input : new byte[][]{new byte[0], Arrays.copyOf(text, 100), text, noise, repeated}) {
+                final byte[] compressed = compress(compressor, input);
+                assertArrayEquals(input, Zstd.decompress(compressed, input.length));
+            }
+        }
+
+        // a corrupted checksum is detected, so it is not ignored above
+        final byte[] compressed = compress(new ZstdCompressor(), text);
+        compressed[compressed.length - 1] ^= 1;
+        try {
+            Zstd.decompress(compressed, text.length);
+            fail();
+        } catch (final ZstdException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("checksum"));
+        }
+
+        // the concatenated frames of the parallel compressor
+        final ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            final ZstdParallelCompressor parallel = new ZstdParallelCompressor(pool, 3, 256 * 1024);
+            final byte[] output = new byte[parallel.maxCompressedLength(text.length)];
+            final int compressedSize = parallel.compress(text, 0, text.length, output, 0, output.length);
+            assertArrayEquals(text, Zstd.decompress(Arrays.copyOf(output, compressedSize), text.length));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testDecompressedSize() {
+        for (final int size : new int[]{0, 255, 256, 0x10000 + 255, 0x10000 + 256, 3 * 1024 * 1024}) {
+            final byte[] input = text(size);
+            final byte[] output = new byte[ZstdCompressor.maxCompressedLength(size)];
+            final int compressedSize = new ZstdCompressor().compress(input, 0, input.length, output, 0, output.length);
+            assertEquals(size, ZstdDecompressor.getDecompressedSize(output, 0, compressedSize));
+        }
+    }
+
+    @Test
+    public void testByteBuffers() {
+        final byte[] input = text(200 * 1024);
+        final ZstdCompressor compressor = new ZstdCompressor();
+        final ZstdDecompressor decompressor = new ZstdDecompressor();
+
+        for (final boolean direct : new boolean[]{false, true}) {
+            for (final ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+                final ByteBuffer source = allocate(input.length + 10, direct, order);
+                source.position(10);
+                source.put(input);
+                source.position(10);
+
+                final ByteBuffer compressed = allocate(ZstdCompressor.maxCompressedLength(input.length) + 3, direct, order);
+                compressed.position(3);
+                final int compressedSize = compressor.compress(source, compressed);
+                assertEquals(source.limit(), source.position());
+                assertEquals(3 + compressedSize, compressed.position());
+
+                compressed.flip();
+                compressed.position(3);
+                final ByteBuffer output = allocate(input.length, direct, order);
+                assertEquals(input.length, decompressor.decompress(compressed, output));
+
+                final byte[] result = new byte[input.length];
+                output.flip();
+                output.get(result);
+                assertArrayEquals(input, result);
+            }
+        }
+    }
+
+    @Test
+    public void testOffsets() {
+        final byte[] input = text(10000);
+        final byte[] padded = FrameBuilder.concat(new byte[7], input);
+        final byte[] output = new byte[ZstdCompressor.maxCompressedLength(input.length) + 5];
+
+        final int compressedSize = new ZstdCompressor().compress(padded, 7, input.length, output, 5, output.length - 5);
+
+        final byte[] result = new byte[input.length];
+        new ZstdDecompressor().decompress(output, 5, compressedSize, result, 0, result.length);
+        assertArrayEquals(input, result);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testOutputTooSmall() {
+        final byte[] input = FrameBuilder.random(5, 1000);
+        new ZstdCompressor().compress(input, 0, input.length, new byte[500], 0, 500);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLevel() {
+        new ZstdCompressor(ZstdCompressor.MAX_COMPRESSION_LEVEL + 1);
+    }
+
+    private static void assertRoundTrip(final byte[] input) {
+        for (int level = ZstdCompressor.MIN_COMPRESSION_LEVEL; level <= ZstdCompressor.MAX_COMPRESSION_LEVEL; level++) {
+            assertRoundTrip(new ZstdCompressor(level), input);
+        }
+    }
+
+    private static int assertRoundTrip(final ZstdCompressor compressor, final byte[] input) {
+        final byte[] compressed = new byte[ZstdCompressor.maxCompressedLength(input.length)];
+        final int compressedSize = compressor.compress(input, 0, input.length, compressed, 0, compressed.length);
+
+        final byte[] output = new byte[input.length];
+        assertEquals(input.length, new ZstdDecompressor().decompress(compressed, 0, compressedSize, output, 0, output.length));
+        assertArrayEquals(input, output);
+        return compressedSize;
+    }
+
+    private static byte[] compress(final ZstdCompressor compressor, final byte[] input) {
+        final byte[] compressed = new byte[ZstdCompressor.maxCompressedLength(input.length)];
+        return Arrays.copyOf(compressed, compressor.compress(input, 0, input.length, compressed, 0, compressed.length));
+    }
+
+    private static byte[] text(final int size) {
+        final byte[] words = "lorem ipsum dolor sit amet consectetur adipiscing elit sed do eiusmod tempor ".getBytes();
+        final byte[] noise = FrameBuilder.random(1, size);
+        final byte[] result = new byte[size];
+        int position = 0;
+        for (int i = 0; position < size; i++) {
+            final int start = (noise[i] & 0xFF) % 60;
+            final int length = Math.min(Math.min(3 + (noise[i] & 0xF), words.length - start), size - position);
+            System.arraycopy(words, start, result, position, length);
+            position += length;
+        }
+        return result;
+    }
+
+    private static ByteBuffer allocate(final int capacity, final boolean direct, final ByteOrder order) {
+        return (direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity)).order(order);
+    }
+}
@@ -1,7 +1,34 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
 package com.epam.deltix.zstd;
 
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
 public class TestDecompress {
     @Test
     public void RunDecompression() {
@@ -18,4 +45,231 @@ public class TestDecompress {
                 compressedData, 0, compressedData.length,
                 decompressedData, 0, decompressedData.length);
     }
+
+    @Test
+    public void testConcatenatedFrames() {
+        final byte[] alphabet = FrameBuilder.alphabet();
+        final FrameBuilder frame = new FrameBuilder(10, true, true)
+                .raw(FrameBuilder.random(1, 300))
+                .match(200, 500)
+                .rle((byte) 7, 10);
+
+        final byte[] input = FrameBuilder.concat(FrameBuilder.ALPHABET_FRAME, frame.build(), FrameBuilder.ALPHABET_FRAME);
+        final byte[] expected = FrameBuilder.concat(alphabet, frame.content(), alphabet);
+
+        assertEquals(expected.length, ZstdDecompressor.getDecompressedSize(input, 0, input.length));
+
+        final byte[] output = new byte[expected.length];
+        final ZstdDecompressor decompressor = new ZstdDecompressor();
+        assertEquals(expected.length, decompressor.decompress(input, 0, input.length, output, 0, output.length));
+        assertArrayEquals(expected, output);
+    }
+
+    @Test
+    public void testUnknownContentSize() {
+        final byte[] input = FrameBuilder.concat(FrameBuilder.ALPHABET_FRAME, new FrameBuilder(10, false, false).rle((byte) 1, 1).build());
+
+        assertEquals(-1, ZstdDecompressor.getDecompressedSize(input, 0, input.length));
+    }
+
+    @Test
+    public void testLargeWindow() throws IOException {
+        // 16 MB window, the offset alone takes 23 bits of the bit container
+        final FrameBuilder frame = new FrameBuilder(24, true, true);
+        for (int i = 0; i < 72; i++) {
+            frame.raw(FrameBuilder.random(i, 128 * 1024));
+        }
+        frame.match(9_000_000, 1000).match(128 * 1024 * 72 + 1000 - 1, 1026);
+
+        final byte[] input = frame.build();
+        final byte[] expected = frame.content();
+
+        final byte[] output = new byte[expected.length];
+        assertEquals(expected.length, new ZstdDecompressor().decompress(input, 0, input.length, output, 0, output.length));
+        assertArrayEquals(expected, output);
+
+        try (final InputStream in = new ZstdInputStream(new ByteArrayInputStream(input))) {
+            final byte[] streamed = new byte[expected.length];
+            int size = 0;
+            int read;
+            while ((read = in.read(streamed, size, streamed.length - size)) > 0) {
+                size += read;
+            }
+            assertEquals(-1, in.read());
+            assertArrayEquals(expected, streamed);
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testWindowBeyondFormatMaximum() {
+        final byte[] input = new FrameBuilder(32, false, true).rle((byte) 1, 1).build();
+        new ZstdDecompressor().decompress(input, 0, input.length, new byte[1], 0, 1);
+    }
+
+    @Test
+    public void testMaxWindowLog() throws IOException {
+        // one-shot decoding allocates no window and accepts any window of the format
+        final FrameBuilder frame = new FrameBuilder(31, true, false).rle((byte) 1, 100);
+        final byte[] input = frame.build();
+        final byte[] output = new byte[100];
+
+        final ZstdDecompressor decompressor = new ZstdDecompressor();
+        assertEquals(100, decompressor.decompress(input, 0, input.length, output, 0, output.length));
+        assertArrayEquals(frame.content(), output);
+
+        // but a header of a few bytes must not make the streaming decoders allocate a 2 GB window
+        try (final ZstdInputStream in = new ZstdInputStream(new ByteArrayInputStream(input))) {
+            in.read();
+            fail();
+        } catch (final IOException e) {
+            assertEquals("Window size too large", e.getMessage());
+        }
+        assertWindowTooLarge(decompressor, input);
+
+        // a lower limit rejects frames of the default one, a higher one accepts them again
+        final FrameBuilder smallFrame = new FrameBuilder(21, true, false).rle((byte) 1, 100);
+        final byte[] smallWindow = smallFrame.build();
+        decompressor.setMaxWindowLog(20);
+        assertWindowTooLarge(decompressor, smallWindow);
+        assertEquals(100, decompressor.decompress(smallWindow, 0, smallWindow.length, output, 0, output.length));
+        decompressor.setMaxWindowLog(21);
+        try (final ZstdSegmentedOutput result = decompressor.decompress(smallWindow, 0, smallWindow.length, new ZstdSegmentPool())) {
+            assertArrayEquals(smallFrame.content(), result.toByteArray());
+        }
+        try (final ZstdInputStream in = new ZstdInputStream(new ByteArrayInputStream(smallWindow))) {
+            in.setMaxWindowLog(21);
+            assertEquals(100, in.read(output));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxWindowLogBeyondFormatMaximum() {
+        new ZstdDecompressor().setMaxWindowLog(32);
+    }
+
+    private static void assertWindowTooLarge(final ZstdDecompressor decompressor, final byte[] input) {
+        try {
+            decompressor.decompress(input, 0, input.length, new ZstdSegmentPool()).close();
+            fail();
+        } catch (final RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Window size too large"));
+        }
+    }
+
+    @Test
+    public void testSkippableFrames() {
+        final byte[] alphabet = FrameBuilder.alphabet();
+        final byte[] input = FrameBuilder.concat(
+                FrameBuilder.skippable(0xE, "head".getBytes()),
+                FrameBuilder.ALPHABET_FRAME,
+                FrameBuilder.skippable(3, new byte[0]),
+                FrameBuilder.ALPHABET_FRAME,
+                FrameBuilder.skippable(0, "tail".getBytes()));
+
+        assertEquals(2 * alphabet.length, ZstdDecompressor.getDecompressedSize(input, 0, input.length));
+
+        final List<String> frames = new ArrayList<>();
+        final SkippableFrameListener listener = new SkippableFrameListener() {
+            @Override
+            public void onSkippableFrame(final int magicVariant, final ByteBuffer content) {
+                final byte[] data = new byte[content.remaining()];
+                content.get(data);
+                frames.add(magicVariant + ":" + new String(data));
+            }
+        };
+
+        ZstdDecompressor.readSkippableFrames(input, 0, input.length, listener);
+        assertEquals(Arrays.asList("14:head", "3:", "0:tail"), frames);
+
+        frames.clear();
+        final byte[] output = new byte[2 * alphabet.length];
+        final ZstdDecompressor decompressor = new ZstdDecompressor();
+        decompressor.setSkippableFrameListener(listener);
+        assertEquals(output.length, decompressor.decompress(input, 0, input.length, output, 0, output.length));
+        assertArrayEquals(FrameBuilder.concat(alphabet, alphabet), output);
+        assertEquals(Arrays.asList("14:head", "3:", "0:tail"), frames);
+    }
+
+    @Test
+    public void testByteBuffers() {
+        final byte[] alphabet = FrameBuilder.alphabet();
+        final FrameBuilder frame = new FrameBuilder(10, true, true)
+                .raw(FrameBuilder.random(1, 300))
+                .match(200, 500);
+        final byte[] compressed = FrameBuilder.concat(FrameBuilder.ALPHABET_FRAME, frame.build());
+        final byte[] expected = FrameBuilder.concat(alphabet, frame.content());
+
+        final ZstdDecompressor decompressor = new ZstdDecompressor();
+        for (final boolean directInput : new boolean[]{false, true}) {
+            for (final boolean directOutput : new boolean[]{false, true}) {
+                for (final ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+                    final ByteBuffer input = allocate(directInput, compressed.length + 20).order(order);
+                    input.position(7);
+                    input.put(compressed);
+                    input.flip();
+                    input.position(7);
+
+                    final ByteBuffer output = allocate(directOutput, expected.length + 30).order(order);
+                    output.position(11);
+                    output.limit(11 + expected.length + 5);
+
+                    assertEquals(expected.length, ZstdDecompressor.getDecompressedSize(input));
+                    assertEquals(expected.length, decompressor.decompress(input, output));
+                    assertEquals(input.limit(), input.position());
+                    assertEquals(11 + expected.length, output.position());
+
+                    final byte[] actual = new byte[expected.length];
+                    output.position(11);
+                    output.get(actual);
+                    assertArrayEquals(expected, actual);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testReusedByteBuffers() {
+        // the limits of the same big-endian buffers grow between calls
+        final byte[] alphabet = FrameBuilder.alphabet();
+        final byte[] compressed = FrameBuilder.concat(FrameBuilder.ALPHABET_FRAME, FrameBuilder.ALPHABET_FRAME);
+        final ByteBuffer input = ByteBuffer.allocateDirect(compressed.length);
+        input.put(compressed);
+        final ByteBuffer output = ByteBuffer.allocateDirect(2 * alphabet.length);
+
+        final ZstdDecompressor decompressor = new ZstdDecompressor();
+        input.flip().limit(FrameBuilder.ALPHABET_FRAME.length);
+        output.limit(alphabet.length);
+        assertEquals(alphabet.length, decompressor.decompress(input, output));
+
+        input.clear();
+        output.clear();
+        assertEquals(2 * alphabet.length, decompressor.decompress(input, output));
+
+        final byte[] actual = new byte[2 * alphabet.length];
+        output.flip();
+        output.get(actual);
+        assertArrayEquals(FrameBuilder.concat(alphabet, alphabet), actual);
+    }
+
+    @Test
+    public void testSlicedByteBuffers() {
+        final byte[] alphabet = FrameBuilder.alphabet();
+
+        final ByteBuffer input = ByteBuffer.allocate(FrameBuilder.ALPHABET_FRAME.length + 3);
+        input.position(3);
+        final ByteBuffer inputSlice = input.slice();
+        inputSlice.put(FrameBuilder.ALPHABET_FRAME);
+        inputSlice.flip();
+
+        final ByteBuffer output = ByteBuffer.allocate(alphabet.length + 5);
+        output.position(5);
+        final ByteBuffer outputSlice = output.slice();
+
+        new ZstdDecompressor().decompress(inputSlice.asReadOnlyBuffer(), outputSlice);
+        assertArrayEquals(alphabet, Arrays.copyOfRange(output.array(), 5, output.capacity()));
+    }
+
+    private static ByteBuffer allocate(final boolean direct, final int capacity) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
 }
@@ -0,0 +1,131 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestDecompressorPool {
+    private static final int THREADS = 8;
+    private static final int CALLS = 200;
+
+    @Test
+    public void testConcurrentCalls() throws Exception {
+        final byte[] content = FrameBuilder.concat(FrameBuilder.alphabet(), FrameBuilder.random(1, 100_000), FrameBuilder.alphabet());
+        final byte[] compressed = compress(content);
+        final ZstdDecompressorPool pool = new ZstdDecompressorPool(2);
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final List<Future<Void>> tasks = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                final boolean buffers = thread % 2 == 0;
+                tasks.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        start.await();
+                        for (int i = 0; i < CALLS; i++) {
+                            if (buffers) {
+                                final ByteBuffer output = ByteBuffer.allocateDirect(content.length);
+                                assertEquals(content.length, pool.decompress(ByteBuffer.wrap(compressed), output));
+                                output.flip();
+                                assertEquals(ByteBuffer.wrap(content), output);
+                            } else {
+                                final byte[] output = new byte[content.length];
+                                assertEquals(content.length, pool.decompress(compressed, 0, compressed.length, output, 0, output.length));
+                                assertArrayEquals(content, output);
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            start.countDown();
+            for (final Future<Void> task : tasks) {
+                Util.await(task);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(THREADS * CALLS, pool.getBorrowCount());
+        assertEquals(THREADS * CALLS, pool.getReturnCount());
+        assertEquals(0, pool.getActiveContexts());
+        assertTrue(pool.getContexts() <= 2);
+        assertTrue(pool.getPeakActiveContexts() <= 2);
+        assertTrue(pool.getMaxWaitTimeNanos() <= pool.getWaitTimeNanos());
+    }
+
+    @Test
+    public void testFailedCallReturnsContext() throws InterruptedException {
+        final ZstdDecompressorPool pool = new ZstdDecompressorPool(1);
+        final byte[] corrupted = Arrays.copyOf(FrameBuilder.ALPHABET_FRAME, FrameBuilder.ALPHABET_FRAME.length - 3);
+        try {
+            pool.decompress(corrupted, 0, corrupted.length, new byte[1000], 0, 1000);
+        } catch (final RuntimeException expected) {
+        }
+
+        // a lost context would block here
+        final byte[] output = new byte[FrameBuilder.alphabet().length];
+        pool.decompress(FrameBuilder.ALPHABET_FRAME, 0, FrameBuilder.ALPHABET_FRAME.length, output, 0, output.length);
+        assertArrayEquals(FrameBuilder.alphabet(), output);
+        assertEquals(2, pool.getReturnCount());
+        assertEquals(1, pool.getContexts());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDeferredChecksums() throws InterruptedException {
+        new ZstdDecompressorPool(1).decompress(FrameBuilder.ALPHABET_FRAME, 0, FrameBuilder.ALPHABET_FRAME.length,
+                new byte[1000], 0, 1000, ChecksumPolicy.DEFERRED);
+    }
+
+    @Test
+    public void testMBean() throws Exception {
+        final ZstdDecompressorPool pool = new ZstdDecompressorPool(3);
+        final byte[] output = new byte[FrameBuilder.alphabet().length];
+        pool.decompress(FrameBuilder.ALPHABET_FRAME, 0, FrameBuilder.ALPHABET_FRAME.length, output, 0, output.length);
+
+        final ObjectName name = pool.registerMBean("test");
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            assertEquals(3, server.getAttribute(name, "MaxContexts"));
+            assertEquals(1L, server.getAttribute(name, "BorrowCount"));
+            assertEquals(1, server.getAttribute(name, "PeakActiveContexts"));
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+
+    private static byte[] compress(final byte[] content) {
+        final byte[] output = new byte[ZstdCompressor.maxCompressedLength(content.length)];
+        return Arrays.copyOf(output, new ZstdCompressor().compress(content, 0, content.length, output, 0, output.length));
+    }
+}
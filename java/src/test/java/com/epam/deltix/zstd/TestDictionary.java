@@ -0,0 +1,256 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TestDictionary {
+    private static final int DICTIONARY_ID = 1234;
+    private static final byte[] DICTIONARY_CONTENT = FrameBuilder.random(7, 64);
+    private static final int[] REPEAT_OFFSETS = {5, 11, 17};
+
+    private static final byte[] LITERALS = {0, 1, 1, 0, 1, 0, 0, 0, 1, 1};
+    private static final int SEQUENCES = 4;
+
+    @Test
+    public void testDictionaryTables() throws IOException {
+        final ZstdDictionary dictionary = new ZstdDictionary(formattedDictionary(DICTIONARY_ID, DICTIONARY_CONTENT));
+        assertEquals(DICTIONARY_ID, dictionary.getDictionaryId());
+        assertEquals(DICTIONARY_CONTENT.length, dictionary.getContentSize());
+
+        // every frame starts from the state of the dictionary
+        final FrameBuilder frame = new FrameBuilder(10, true, true).dictionary(DICTIONARY_ID, DICTIONARY_CONTENT);
+        frame.compressed(repeatTablesBlock(LITERALS), expectedRepeatTablesBlock(LITERALS));
+        final byte[] input = FrameBuilder.concat(frame.build(), frame.build());
+        final byte[] expected = FrameBuilder.concat(frame.content(), frame.content());
+
+        assertArrayEquals(expected, decompress(new ZstdDecompressor(dictionary), input, expected.length));
+        assertArrayEquals(expected, readAll(new ZstdInputStream(new ByteArrayInputStream(input), dictionary)));
+    }
+
+    @Test
+    public void testRawContentDictionary() throws IOException {
+        final byte[] content = FrameBuilder.random(3, 2000);
+        final ZstdDictionary dictionary = new ZstdDictionary(content);
+        assertEquals(0, dictionary.getDictionaryId());
+
+        final FrameBuilder frame = new FrameBuilder(11, true, true)
+                .dictionary(0, content)
+                .match(1500, 500)
+                .raw(FrameBuilder.random(4, 100))
+                .match(2000 + 600, 131);
+        final byte[] input = frame.build();
+        final byte[] expected = frame.content();
+
+        assertArrayEquals(expected, decompress(new ZstdDecompressor(dictionary), input, expected.length));
+        assertArrayEquals(expected, readAll(new ZstdInputStream(new ByteArrayInputStream(input), dictionary)));
+    }
+
+    @Test
+    public void testReferenceFrames() throws IOException {
+        // frames of the reference implementation with a trained and with a raw content dictionary
+        final byte[][] samples = new byte[200][];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = sample(i);
+        }
+        final byte[] trained = new byte[16 * 1024];
+        final byte[] formatted = Arrays.copyOf(trained, (int) Zstd.trainFromBuffer(samples, trained));
+        final byte[] content = FrameBuilder.concat(samples[0], samples[1], samples[2]);
+
+        for (final byte[] dictionaryData : new byte[][]{formatted, content}) {
+            final ZstdDictionary dictionary = new ZstdDictionary(dictionaryData);
+            final ZstdDecompressor decompressor = new ZstdDecompressor(dictionary);
+            for (int level = ZstdCompressor.MIN_COMPRESSION_LEVEL; level <= ZstdCompressor.MAX_COMPRESSION_LEVEL; level++) {
+                try (final ZstdCompressCtx context = new ZstdCompressCtx()) {
+                    context.setLevel(level).setChecksum(true).loadDict(dictionaryData);
+                    final byte[] expected = sample(1000 + level);
+                    final byte[] input = context.compress(expected);
+
+                    assertArrayEquals(expected, decompress(decompressor, input, expected.length));
+                    assertArrayEquals(expected, readAll(new ZstdInputStream(new ByteArrayInputStream(input), dictionary)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSharedDictionary() throws InterruptedException {
+        // contexts on different threads decode Huffman literals with the table of the same dictionary
+        final ZstdDictionary dictionary = new ZstdDictionary(formattedDictionary(DICTIONARY_ID, DICTIONARY_CONTENT));
+        final byte[] literals = FrameBuilder.random(5, 1000);
+        for (int i = 0; i < literals.length; i++) {
+            literals[i] &= 1;
+        }
+        final FrameBuilder frame = new FrameBuilder(10, true, true).dictionary(DICTIONARY_ID, DICTIONARY_CONTENT);
+        frame.compressed(repeatTablesBlock(literals), expectedRepeatTablesBlock(literals));
+        final byte[] input = frame.build();
+        final byte[] expected = frame.content();
+
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        final ZstdDecompressor decompressor = new ZstdDecompressor(dictionary);
+                        for (int i = 0; i < 5000; i++) {
+                            assertArrayEquals(expected, decompress(decompressor, input, expected.length));
+                        }
+                    } catch (final Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(String.valueOf(failure.get()), failure.get());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testMissingDictionary() {
+        final byte[] input = new FrameBuilder(10, false, true).dictionary(DICTIONARY_ID, new byte[0]).rle((byte) 1, 10).build();
+        decompress(new ZstdDecompressor(), input, 10);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testWrongDictionary() {
+        final byte[] input = new FrameBuilder(10, false, true).dictionary(DICTIONARY_ID + 1, new byte[0]).rle((byte) 1, 10).build();
+        decompress(new ZstdDecompressor(new ZstdDictionary(formattedDictionary(DICTIONARY_ID, DICTIONARY_CONTENT))), input, 10);
+    }
+
+    /**
+     * Dictionary with a Huffman table of two 1-bit symbols (0 and 1) and FSE tables of symbol 0 only:
+     * literals length 0, match length 3 and offset code 0, which is a repeat offset.
+     */
+    static byte[] formattedDictionary(final int dictionaryId, final byte[] content) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FrameBuilder.writeInt(out, 0xEC30A437);
+        FrameBuilder.writeInt(out, dictionaryId);
+
+        // one weight in 4 bits, the weight of the last symbol is implied
+        out.write(128);
+        out.write(0x10);
+
+        // table log 5, probability 32 for symbol 0
+        for (int i = 0; i < 3; i++) {
+            out.write(0xF0);
+            out.write(0x03);
+        }
+
+        for (final int offset : REPEAT_OFFSETS) {
+            FrameBuilder.writeInt(out, offset);
+        }
+        out.write(content, 0, content.length);
+        return out.toByteArray();
+    }
+
+    /**
+     * Block that reuses all tables of the dictionary: Huffman coded literals and sequences that take no bits.
+     */
+    private static byte[] repeatTablesBlock(final byte[] literals) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // literals: repeated Huffman table, single stream, first symbol right below the end mark
+        final int streamSize = (literals.length + 1 + 7) / 8;
+        final byte[] stream = new byte[streamSize];
+        stream[literals.length / 8] |= 1 << (literals.length % 8);
+        for (int i = 0; i < literals.length; i++) {
+            final int bit = literals.length - 1 - i;
+            stream[bit / 8] |= literals[i] << (bit % 8);
+        }
+        final int header = 3 | (literals.length << 4) | (streamSize << 14);
+        out.write(header);
+        out.write(header >>> 8);
+        out.write(header >>> 16);
+        out.write(stream, 0, streamSize);
+
+        // sequences: repeated tables, the bit stream holds only the initial states
+        out.write(SEQUENCES);
+        out.write(0b11_11_11_00);
+        out.write(0x00);
+        out.write(0x00);
+        out.write(0x80);
+        return out.toByteArray();
+    }
+
+    private static byte[] expectedRepeatTablesBlock(final byte[] literals) {
+        final ByteArrayOutputStream history = new ByteArrayOutputStream();
+        history.write(DICTIONARY_CONTENT, 0, DICTIONARY_CONTENT.length);
+
+        // repeat offset 1 with no literals swaps the first two repeat offsets
+        final int[] offsets = REPEAT_OFFSETS.clone();
+        for (int i = 0; i < SEQUENCES; i++) {
+            final int offset = offsets[1];
+            offsets[1] = offsets[0];
+            offsets[0] = offset;
+
+            for (int j = 0; j < 3; j++) {
+                final byte[] data = history.toByteArray();
+                history.write(data[data.length - offset]);
+            }
+        }
+        history.write(literals, 0, literals.length);
+
+        final byte[] data = history.toByteArray();
+        final byte[] block = new byte[data.length - DICTIONARY_CONTENT.length];
+        System.arraycopy(data, DICTIONARY_CONTENT.length, block, 0, block.length);
+        return block;
+    }
+
+    private static byte[] sample(final int seed) {
+        // records of the same shape, which is what a dictionary is trained on
+        final StringBuilder sample = new StringBuilder();
+        final byte[] noise = FrameBuilder.random(seed, 16);
+        for (final byte value : noise) {
+            sample.append("{\"id\":").append(value & 0x7F).append(",\"name\":\"record\",\"tags\":[\"alpha\",\"beta\"]}\n");
+        }
+        return sample.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] decompress(final ZstdDecompressor decompressor, final byte[] input, final int size) {
+        final byte[] output = new byte[size];
+        assertEquals(size, decompressor.decompress(input, 0, input.length, output, 0, size));
+        return output;
+    }
+
+    private static byte[] readAll(final InputStream input) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (final InputStream in = input) {
+            final byte[] buffer = new byte[100];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class TestDictionaryRegistry {
+    @Test
+    public void testPutAndRemove() {
+        final ZstdDictionaryRegistry registry = new ZstdDictionaryRegistry(1 << 20);
+        final ZstdDictionary dictionary = dictionary(1);
+
+        registry.put(dictionary);
+        assertSame(dictionary, registry.get(1));
+        assertNull(registry.get(2));
+        assertEquals(dictionary.getMemorySize(), registry.getMemorySize());
+
+        registry.remove(1);
+        assertNull(registry.get(1));
+        assertEquals(0, registry.getMemorySize());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        final long dictionarySize = dictionary(1).getMemorySize();
+        final ZstdDictionaryRegistry registry = new ZstdDictionaryRegistry(2 * dictionarySize);
+
+        registry.put(dictionary(1));
+        registry.put(dictionary(2));
+        assertNotNull(registry.get(1));
+        registry.put(dictionary(3));
+
+        assertEquals(2, registry.size());
+        assertNotNull(registry.get(1));
+        assertNull(registry.get(2));
+        assertNotNull(registry.get(3));
+        assertEquals(2 * dictionarySize, registry.getMemorySize());
+    }
+
+    @Test
+    public void testConcurrentLoad() throws Exception {
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final ZstdDictionaryRegistry registry = new ZstdDictionaryRegistry(1 << 20, new ZstdDictionaryRegistry.Loader() {
+            @Override
+            public ZstdDictionary load(final long dictionaryId) {
+                loads.incrementAndGet();
+                return dictionaryId < 100 ? dictionary((int) dictionaryId) : null;
+            }
+        });
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<ZstdDictionary>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(new Callable<ZstdDictionary>() {
+                    @Override
+                    public ZstdDictionary call() throws Exception {
+                        start.await();
+                        return registry.get(42);
+                    }
+                }));
+            }
+            start.countDown();
+
+            final ZstdDictionary dictionary = results.get(0).get();
+            assertEquals(42, dictionary.getDictionaryId());
+            for (final Future<ZstdDictionary> result : results) {
+                assertSame(dictionary, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, loads.get());
+
+        // unknown ids are not cached
+        assertNull(registry.get(500));
+        assertNull(registry.get(500));
+        assertEquals(3, loads.get());
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    public void testLoadedDictionaryId() {
+        final ZstdDictionaryRegistry registry = new ZstdDictionaryRegistry(1 << 20, new ZstdDictionaryRegistry.Loader() {
+            @Override
+            public ZstdDictionary load(final long dictionaryId) {
+                return dictionary(dictionaryId == 7 ? 8 : (int) dictionaryId);
+            }
+        });
+
+        try {
+            registry.get(7);
+            fail();
+        } catch (final IllegalStateException e) {
+            assertEquals("Loader returned dictionary 8 for id 7", e.getMessage());
+        }
+        assertEquals(0, registry.size());
+        assertEquals(0, registry.getMemorySize());
+        assertEquals(9, registry.get(9).getDictionaryId());
+    }
+
+    @Test
+    public void testDecompressorResolvesFrames() {
+        final byte[] content1 = FrameBuilder.random(1, 1000);
+        final byte[] content2 = FrameBuilder.random(2, 1000);
+        final FrameBuilder frame1 = new FrameBuilder(10, true, true).dictionary(1, content1).match(900, 300);
+        final FrameBuilder frame2 = new FrameBuilder(10, true, true).dictionary(2, content2).match(500, 200);
+        final FrameBuilder plain = new FrameBuilder(10, true, true).rle((byte) 5, 50);
+
+        final ZstdDictionaryRegistry registry = new ZstdDictionaryRegistry(1 << 20);
+        registry.put(new ZstdDictionary(TestDictionary.formattedDictionary(1, content1)));
+        registry.put(new ZstdDictionary(TestDictionary.formattedDictionary(2, content2)));
+
+        final byte[] input = FrameBuilder.concat(frame1.build(), frame2.build(), plain.build(), frame1.build());
+        final byte[] expected = FrameBuilder.concat(frame1.content(), frame2.content(), plain.content(), frame1.content());
+
+        final byte[] output = new byte[expected.length];
+        assertEquals(expected.length, new ZstdDecompressor(registry).decompress(input, 0, input.length, output, 0, output.length));
+        assertArrayEquals(expected, output);
+    }
+
+    private static ZstdDictionary dictionary(final int dictionaryId) {
+        return new ZstdDictionary(TestDictionary.formattedDictionary(dictionaryId, FrameBuilder.random(dictionaryId, 100)));
+    }
+}
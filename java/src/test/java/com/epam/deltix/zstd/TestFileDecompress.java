@@ -0,0 +1,160 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class TestFileDecompress {
+    private Path input;
+    private Path output;
+
+    @Before
+    public void setUp() throws IOException {
+        input = Files.createTempFile("zstd", ".zst");
+        output = Files.createTempFile("zstd", ".out");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(input);
+        Files.deleteIfExists(output);
+    }
+
+    @Test
+    public void testMixedFrames() throws IOException {
+        final byte[] alphabet = FrameBuilder.alphabet();
+        final FrameBuilder unknownSize = new FrameBuilder(13, true, false).raw(FrameBuilder.random(1, 5000)).match(100, 1000);
+        final FrameBuilder knownSize = new FrameBuilder(12, false, true).rle((byte) 'x', 3000);
+
+        final byte[] compressed = FrameBuilder.concat(
+                FrameBuilder.ALPHABET_FRAME,
+                FrameBuilder.skippable(3, FrameBuilder.random(2, 100)),
+                unknownSize.build(),
+                knownSize.build(),
+                FrameBuilder.ALPHABET_FRAME);
+        final byte[] expected = FrameBuilder.concat(alphabet, unknownSize.content(), knownSize.content(), alphabet);
+
+        Files.write(input, compressed);
+        assertEquals(expected.length, new ZstdFileDecompressor().decompress(input, output));
+        assertArrayEquals(expected, Files.readAllBytes(output));
+
+        // small mappings split the input in the middle of frames and leave frames that do not fit at all
+        for (final int mappingSize : new int[]{4096, 1000, 10}) {
+            Files.delete(output);
+            assertEquals(expected.length, new ZstdFileDecompressor(mappingSize).decompress(input, output));
+            assertArrayEquals(expected, Files.readAllBytes(output));
+        }
+    }
+
+    @Test
+    public void testChannelPositions() throws IOException {
+        final byte[] alphabet = FrameBuilder.alphabet();
+        final byte[] prefix = "header".getBytes();
+        Files.write(input, FrameBuilder.concat(prefix, FrameBuilder.ALPHABET_FRAME));
+
+        try (final FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             final FileChannel out = FileChannel.open(output, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            out.write(ByteBuffer.wrap(prefix));
+            in.position(prefix.length);
+
+            assertEquals(alphabet.length, new ZstdFileDecompressor().decompress(in, out));
+            assertEquals(in.size(), in.position());
+            assertEquals(prefix.length + alphabet.length, out.position());
+        }
+        assertArrayEquals(FrameBuilder.concat(prefix, alphabet), Files.readAllBytes(output));
+    }
+
+    @Test
+    public void testUnknownContentSizeMapped() throws IOException {
+        // the output mappings are sized by block header bounds, the file keeps only the decompressed data
+        final FrameBuilder frame = new FrameBuilder(17, true, false)
+                .raw(FrameBuilder.random(1, 5000))
+                .match(100, 131)
+                .rle((byte) 'y', 20);
+        Files.write(input, FrameBuilder.concat(frame.build(), frame.build()));
+        final byte[] expected = FrameBuilder.concat(frame.content(), frame.content());
+
+        assertEquals(expected.length, new ZstdFileDecompressor().decompress(input, output));
+        assertArrayEquals(expected, Files.readAllBytes(output));
+
+        // data of an existing file past the decompressed data is kept
+        final byte[] existing = FrameBuilder.random(2, 2 * expected.length);
+        Files.write(output, existing);
+        try (final FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             final FileChannel out = FileChannel.open(output, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            assertEquals(expected.length, new ZstdFileDecompressor().decompress(in, out));
+            assertEquals(expected.length, out.position());
+        }
+        final byte[] result = Files.readAllBytes(output);
+        assertEquals(existing.length, result.length);
+        assertArrayEquals(expected, Arrays.copyOf(result, expected.length));
+        assertArrayEquals(Arrays.copyOfRange(existing, expected.length, existing.length), Arrays.copyOfRange(result, expected.length, result.length));
+    }
+
+    @Test
+    public void testSkippableFrameKept() throws IOException {
+        // a listener which keeps the content past the call must not touch the released input mapping
+        final byte[] metadata = FrameBuilder.random(3, 100);
+        Files.write(input, FrameBuilder.concat(FrameBuilder.skippable(5, metadata), FrameBuilder.ALPHABET_FRAME));
+        final List<ByteBuffer> kept = new ArrayList<>();
+
+        final ZstdFileDecompressor decompressor = new ZstdFileDecompressor();
+        decompressor.setSkippableFrameListener(new SkippableFrameListener() {
+            @Override
+            public void onSkippableFrame(final int magicVariant, final ByteBuffer content) {
+                kept.add(content);
+            }
+        });
+        assertEquals(FrameBuilder.alphabet().length, decompressor.decompress(input, output));
+
+        assertEquals(1, kept.size());
+        assertFalse(kept.get(0).isDirect());
+        final byte[] content = new byte[kept.get(0).remaining()];
+        kept.get(0).get(content);
+        assertArrayEquals(metadata, content);
+    }
+
+    @Test
+    public void testLargeWindowMapped() throws IOException {
+        // the mapped output holds the window, so any window of the format is accepted
+        final FrameBuilder frame = new FrameBuilder(31, true, true).rle((byte) 'x', 3000);
+        Files.write(input, frame.build());
+        assertEquals(3000, new ZstdFileDecompressor().decompress(input, output));
+        assertArrayEquals(frame.content(), Files.readAllBytes(output));
+    }
+
+    @Test(expected = EOFException.class)
+    public void testTruncatedInput() throws IOException {
+        final byte[] compressed = FrameBuilder.concat(FrameBuilder.ALPHABET_FRAME, FrameBuilder.ALPHABET_FRAME);
+        Files.write(input, Arrays.copyOf(compressed, compressed.length - 10));
+        new ZstdFileDecompressor().decompress(input, output);
+    }
+}
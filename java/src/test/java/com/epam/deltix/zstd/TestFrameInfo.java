@@ -0,0 +1,145 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestFrameInfo {
+    @Test
+    public void testHeaderOnly() {
+        // single segment frame with a 2-byte content size, only the header is passed
+        final ZstdFrameInfo info = ZstdFrameInfo.readHeader(FrameBuilder.ALPHABET_FRAME, 0, 7);
+        assertFalse(info.isSkippable());
+        assertEquals(7, info.getHeaderSize());
+        assertEquals(FrameBuilder.alphabet().length, info.getContentSize());
+        assertEquals(FrameBuilder.alphabet().length, info.getWindowSize());
+        assertEquals(0, info.getDictionaryId());
+        assertTrue(info.hasChecksum());
+        assertEquals(-1, info.getBlockCount());
+        assertEquals(-1, info.getBlockCount(ZstdFrameInfo.BlockType.RAW));
+    }
+
+    @Test
+    public void testBlockHeaders() {
+        final byte[] frame = new FrameBuilder(20, false, true)
+                .dictionary(7, new byte[0])
+                .raw(FrameBuilder.random(1, 300))
+                .rle((byte) 5, 1000)
+                .match(200, 500)
+                .build();
+        final ByteBuffer input = ByteBuffer.allocateDirect(frame.length + 3);
+        input.position(3);
+        input.put(frame);
+        input.position(3);
+
+        final ZstdFrameInfo info = ZstdFrameInfo.readBlockHeaders(input);
+        assertEquals(3, input.position());
+        assertEquals(4 + 1 + 1 + 4 + 8, info.getHeaderSize());
+        assertEquals(1 << 20, info.getWindowSize());
+        assertEquals(1800, info.getContentSize());
+        assertEquals(7, info.getDictionaryId());
+        assertFalse(info.hasChecksum());
+        assertEquals(3, info.getBlockCount());
+        assertEquals(1, info.getBlockCount(ZstdFrameInfo.BlockType.RAW));
+        assertEquals(1, info.getBlockCount(ZstdFrameInfo.BlockType.RLE));
+        assertEquals(1, info.getBlockCount(ZstdFrameInfo.BlockType.COMPRESSED));
+    }
+
+    @Test
+    public void testUnknownContentSize() {
+        final byte[] frame = new FrameBuilder(10, true, false).raw(FrameBuilder.random(1, 300)).build();
+        final ZstdFrameInfo info = ZstdFrameInfo.readBlockHeaders(frame, 0, frame.length);
+        assertEquals(-1, info.getContentSize());
+        assertEquals(1024, info.getWindowSize());
+        assertEquals(1, info.getBlockCount());
+    }
+
+    @Test
+    public void testSkippableFrame() {
+        final byte[] frame = FrameBuilder.skippable(3, FrameBuilder.random(1, 100));
+        final ZstdFrameInfo info = ZstdFrameInfo.readBlockHeaders(frame, 0, frame.length);
+        assertTrue(info.isSkippable());
+        assertEquals(8, info.getHeaderSize());
+        assertEquals(100, info.getContentSize());
+        assertEquals(0, info.getBlockCount());
+    }
+
+    @Test
+    public void testFrameSizes() {
+        final FrameBuilder builder = new FrameBuilder(10, true, false)
+                .raw(FrameBuilder.random(1, 300))
+                .rle((byte) 5, 1000)
+                .match(200, 500);
+        final byte[] unknownSize = builder.build();
+        final byte[] skippable = FrameBuilder.skippable(0, FrameBuilder.random(2, 50));
+        final byte[] input = FrameBuilder.concat(FrameBuilder.ALPHABET_FRAME, skippable, unknownSize);
+
+        final List<ZstdFrameInfo> frames = ZstdFrameInfo.readFrames(input, 0, input.length);
+        assertEquals(3, frames.size());
+        assertEquals(FrameBuilder.ALPHABET_FRAME.length, frames.get(0).getFrameSize());
+        assertEquals(FrameBuilder.alphabet().length, frames.get(0).getDecompressedSizeBound());
+        assertEquals(skippable.length, frames.get(1).getFrameSize());
+        assertEquals(0, frames.get(1).getDecompressedSizeBound());
+        assertEquals(unknownSize.length, frames.get(2).getFrameSize());
+        // raw and RLE blocks exactly, the compressed one as a block of the 1 KB window
+        assertEquals(300 + 1000 + 1024, frames.get(2).getDecompressedSizeBound());
+        assertTrue(frames.get(2).getDecompressedSizeBound() >= builder.content().length);
+
+        assertEquals(FrameBuilder.ALPHABET_FRAME.length, ZstdDecompressor.findFrameCompressedSize(input, 0, input.length));
+        assertEquals(unknownSize.length, ZstdDecompressor.findFrameCompressedSize(ByteBuffer.wrap(unknownSize)));
+        assertEquals(skippable.length, ZstdDecompressor.findFrameCompressedSize(input, FrameBuilder.ALPHABET_FRAME.length, skippable.length));
+        assertEquals(FrameBuilder.alphabet().length + 300 + 1000 + 1024, ZstdDecompressor.getDecompressedSizeBound(input, 0, input.length));
+        assertEquals(-1, ZstdDecompressor.getDecompressedSize(input, 0, input.length));
+
+        // header only
+        assertEquals(-1, ZstdFrameInfo.readHeader(unknownSize, 0, unknownSize.length).getFrameSize());
+        assertEquals(-1, ZstdFrameInfo.readHeader(unknownSize, 0, unknownSize.length).getDecompressedSizeBound());
+    }
+
+    @Test
+    public void testCompressedFrames() {
+        final byte[] content = FrameBuilder.random(3, 1_000_000);
+        final byte[] compressed = new byte[ZstdCompressor.maxCompressedLength(content.length)];
+        final int compressedSize = new ZstdCompressor(1).compress(content, 0, content.length, compressed, 0, compressed.length);
+        final byte[] input = FrameBuilder.concat(Arrays.copyOf(compressed, compressedSize), Arrays.copyOf(compressed, compressedSize));
+
+        final ByteBuffer buffer = ByteBuffer.wrap(input);
+        assertEquals(compressedSize, ZstdDecompressor.findFrameCompressedSize(buffer));
+        assertEquals(2L * content.length, ZstdDecompressor.getDecompressedSizeBound(buffer));
+        assertEquals(0, buffer.position());
+
+        final ZstdFrameInfo info = ZstdFrameInfo.readFrames(buffer).get(1);
+        assertEquals(compressedSize, info.getFrameSize());
+        assertEquals((content.length + ZstdFrameDecompressor.MAX_BLOCK_SIZE - 1) / ZstdFrameDecompressor.MAX_BLOCK_SIZE, info.getBlockCount());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testTruncatedFrame() {
+        ZstdFrameInfo.readBlockHeaders(FrameBuilder.ALPHABET_FRAME, 0, FrameBuilder.ALPHABET_FRAME.length - 1);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testTruncatedHeader() {
+        final byte[] input = Arrays.copyOf(FrameBuilder.ALPHABET_FRAME, 6);
+        ZstdFrameInfo.readHeader(input, 0, input.length);
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestInputStream {
+    @Test
+    public void testCompressedBlock() throws IOException {
+        assertArrayEquals(FrameBuilder.alphabet(), readAll(FrameBuilder.ALPHABET_FRAME, 7));
+    }
+
+    @Test
+    public void testConcatenatedFrames() throws IOException {
+        final byte[] alphabet = FrameBuilder.alphabet();
+        final FrameBuilder frame = new FrameBuilder(10, false, true).rle((byte) 'x', 100);
+
+        final byte[] input = FrameBuilder.concat(FrameBuilder.ALPHABET_FRAME, frame.build(), FrameBuilder.ALPHABET_FRAME);
+        final byte[] expected = FrameBuilder.concat(alphabet, frame.content(), alphabet);
+
+        assertArrayEquals(expected, readAll(input, 4096));
+    }
+
+    @Test
+    public void testSkippableFrames() throws IOException {
+        final byte[] alphabet = FrameBuilder.alphabet();
+        final byte[] input = FrameBuilder.concat(
+                FrameBuilder.skippable(1, FrameBuilder.random(1, 10000)),
+                FrameBuilder.ALPHABET_FRAME,
+                FrameBuilder.skippable(2, "meta".getBytes()));
+
+        assertArrayEquals(alphabet, readAll(input, 4096));
+
+        final StringBuilder metadata = new StringBuilder();
+        try (final ZstdInputStream in = new ZstdInputStream(new ByteArrayInputStream(input))) {
+            in.setSkippableFrameListener(new SkippableFrameListener() {
+                @Override
+                public void onSkippableFrame(final int magicVariant, final ByteBuffer content) {
+                    metadata.append(magicVariant).append(':').append(content.remaining()).append(' ');
+                }
+            });
+            final byte[] output = new byte[alphabet.length];
+            int size = 0;
+            int read;
+            while ((read = in.read(output, size, output.length - size)) > 0) {
+                size += read;
+            }
+            assertEquals(-1, in.read());
+            assertArrayEquals(alphabet, output);
+        }
+        assertEquals("1:10000 2:4 ", metadata.toString());
+    }
+
+    @Test
+    public void testWindowWrapAround() throws IOException {
+        // 1 KB window: the buffer wraps every few blocks and matches reach back into the previous lap
+        final FrameBuilder frame = new FrameBuilder(10, true, false).raw(FrameBuilder.random(-1, 1024));
+        for (int i = 0; i < 64; i++) {
+            frame.raw(FrameBuilder.random(i, 100 + 17 * i % 900));
+            frame.match(1 + 31 * i % 1000, 131 + 13 * i % 890);
+            frame.rle((byte) i, 7 * i % 1000);
+            frame.match(1024, 1024);
+        }
+
+        assertArrayEquals(frame.content(), readAll(frame.build(), 1000));
+        assertArrayEquals(frame.content(), readAll(frame.build(), 1));
+    }
+
+    @Test
+    public void testSingleByteReads() throws IOException {
+        final byte[] expected = FrameBuilder.alphabet();
+        try (final InputStream in = new ZstdInputStream(new ByteArrayInputStream(FrameBuilder.ALPHABET_FRAME))) {
+            for (final byte value : expected) {
+                assertEquals(value & 0xFF, in.read());
+            }
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test(expected = EOFException.class)
+    public void testTruncatedInput() throws IOException {
+        final byte[] input = FrameBuilder.ALPHABET_FRAME;
+        readAll(Arrays.copyOf(input, input.length - 10), 4096);
+    }
+
+    @Test(expected = IOException.class)
+    public void testBadChecksum() throws IOException {
+        final byte[] input = FrameBuilder.ALPHABET_FRAME.clone();
+        input[input.length - 1] ^= 1;
+        readAll(input, 4096);
+    }
+
+    @Test
+    public void testCorruptedInput() {
+        final byte[] badMagic = FrameBuilder.ALPHABET_FRAME.clone();
+        badMagic[0] ^= 1;
+        // repeated Huffman table in the first block of a frame without a dictionary
+        final byte[] badBlock = new FrameBuilder(10, false, true).compressed(new byte[]{0x03, 0, 0, 0}, new byte[0]).build();
+
+        for (final byte[] input : new byte[][]{badMagic, badBlock}) {
+            try {
+                readAll(input, 4096);
+                fail();
+            } catch (final IOException e) {
+                assertTrue(e.getCause() instanceof RuntimeException);
+            }
+        }
+    }
+
+    private static byte[] readAll(final byte[] input, final int chunkSize) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (final InputStream in = new ZstdInputStream(new ByteArrayInputStream(input))) {
+            final byte[] buffer = new byte[chunkSize];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        return out.toByteArray();
+    }
+}
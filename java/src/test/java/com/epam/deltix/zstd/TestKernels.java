@@ -0,0 +1,114 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Both kinds of kernels against the scalar ones, {@code vector} falls back to them unless the vector module is added.
+ */
+public class TestKernels {
+    private static final Kernels SCALAR = Kernels.create("scalar");
+    private static final String[] IMPLEMENTATIONS = {"scalar", "vector"};
+
+    @Test
+    public void testXxHash() {
+        final byte[] data = FrameBuilder.random(1, 1000);
+        for (final String name : IMPLEMENTATIONS) {
+            final Kernels kernels = Kernels.create(name);
+            for (final ByteBuffer base : buffers(data)) {
+                for (final int address : new int[]{0, 1, 13}) {
+                    for (final int length : new int[]{31, 32, 100, 960}) {
+                        assertEquals(name, SCALAR.xxHashBody(7, base, address, length), kernels.xxHashBody(7, base, address, length));
+
+                        final XxHash64 expected = new XxHash64(7);
+                        final XxHash64 actual = new XxHash64(7);
+                        assertEquals(name, SCALAR.xxHashRounds(expected, base, address, length), kernels.xxHashRounds(actual, base, address, length));
+                        assertEquals(name, expected.v1, actual.v1);
+                        assertEquals(name, expected.v2, actual.v2);
+                        assertEquals(name, expected.v3, actual.v3);
+                        assertEquals(name, expected.v4, actual.v4);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCopy() {
+        final byte[] data = FrameBuilder.random(2, 1000);
+        for (final String name : IMPLEMENTATIONS) {
+            final Kernels kernels = Kernels.create(name);
+            for (final ByteBuffer src : buffers(data)) {
+                final ByteBuffer dst = ByteBuffer.allocate(1000).order(ByteOrder.LITTLE_ENDIAN);
+                final int copied = kernels.copy(src, 5, dst, 17, 500);
+                assertEquals(name, 0, copied % Math.min(kernels.copyWidth(), 500));
+                for (int i = 0; i < copied; i++) {
+                    assertEquals(name, src.get(5 + i), dst.get(17 + i));
+                }
+                assertEquals(name, 0, dst.get(17 + copied));
+            }
+        }
+    }
+
+    @Test
+    public void testOverlappingCopy() {
+        for (final String name : IMPLEMENTATIONS) {
+            final Kernels kernels = Kernels.create(name);
+            if (kernels.copyWidth() > 100) {
+                continue;
+            }
+            // a match repeating its first bytes, as in the decoder
+            final ByteBuffer buffer = ByteBuffer.wrap(FrameBuilder.random(3, 1000)).order(ByteOrder.LITTLE_ENDIAN);
+            final int distance = kernels.copyWidth();
+            final int copied = kernels.copy(buffer, 10, buffer, 10 + distance, 500);
+            for (int i = 0; i < copied; i++) {
+                assertEquals(name, buffer.get(10 + i % distance), buffer.get(10 + distance + i));
+            }
+        }
+    }
+
+    @Test
+    public void testBounds() {
+        for (final String name : IMPLEMENTATIONS) {
+            final Kernels kernels = Kernels.create(name);
+            final ByteBuffer buffer = (ByteBuffer) ByteBuffer.allocate(128).order(ByteOrder.LITTLE_ENDIAN).limit(64);
+            kernels.xxHashBody(0, buffer, 0, 64);
+            try {
+                kernels.xxHashBody(0, buffer, 1, 64);
+                fail(name);
+            } catch (final IndexOutOfBoundsException expected) {
+            }
+            try {
+                kernels.xxHashRounds(new XxHash64(), buffer, 32, 64);
+                fail(name);
+            } catch (final IndexOutOfBoundsException expected) {
+            }
+        }
+    }
+
+    private static ByteBuffer[] buffers(final byte[] data) {
+        final ByteBuffer direct = ByteBuffer.allocateDirect(data.length).order(ByteOrder.LITTLE_ENDIAN);
+        direct.put(data).clear();
+        final ByteBuffer slice = ((ByteBuffer) ByteBuffer.allocate(data.length + 3).position(3)).slice().order(ByteOrder.LITTLE_ENDIAN);
+        slice.put(data).clear();
+        return new ByteBuffer[]{ZstdFrameDecompressor.ByteBufferWrap(data), direct, slice};
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class TestMemory {
+    private static final String[] IMPLEMENTATIONS = {"buffer", "unsafe", "varhandle", ""};
+
+    @Test
+    public void testHeapAndDirect() {
+        for (final String name : IMPLEMENTATIONS) {
+            final Memory memory = Memory.create(name);
+            assertAccess(memory, ByteBuffer.allocate(64));
+            assertAccess(memory, ByteBuffer.allocateDirect(64));
+            // non-zero array offset and address
+            assertAccess(memory, ((ByteBuffer) ByteBuffer.allocate(80).position(13)).slice());
+            assertAccess(memory, ((ByteBuffer) ByteBuffer.allocateDirect(80).position(13)).slice());
+        }
+    }
+
+    @Test
+    public void testBounds() {
+        for (final String name : IMPLEMENTATIONS) {
+            final Memory memory = Memory.create(name);
+            final ByteBuffer buffer = (ByteBuffer) ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN).limit(32);
+            memory.getLong(buffer, 24);
+            try {
+                memory.getLong(buffer, 25);
+                fail(name);
+            } catch (final IndexOutOfBoundsException expected) {
+            }
+            try {
+                memory.putInt(buffer, -1, 0);
+                fail(name);
+            } catch (final IndexOutOfBoundsException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void testReadOnly() {
+        for (final String name : IMPLEMENTATIONS) {
+            final Memory memory = Memory.create(name);
+            final ByteBuffer buffer = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN).putLong(0, 42).asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+            assertEquals(42, memory.getLong(buffer, 0));
+            try {
+                memory.putLong(buffer, 0, 1);
+                fail(name);
+            } catch (final ReadOnlyBufferException expected) {
+            }
+        }
+    }
+
+    private static void assertAccess(final Memory memory, final ByteBuffer buffer) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        memory.putLong(buffer, 3, 0x0102030405060708L);
+        assertEquals(0x0102030405060708L, buffer.getLong(3));
+        assertEquals(0x0102030405060708L, memory.getLong(buffer, 3));
+        memory.putInt(buffer, 17, 0x0A0B0C0D);
+        assertEquals(0x0A0B0C0D, buffer.getInt(17));
+        assertEquals(0x0A0B0C0D, memory.getInt(buffer, 17));
+        memory.putShort(buffer, 62, (short) 0xBEEF);
+        assertEquals((short) 0xBEEF, buffer.getShort(62));
+        assertEquals((short) 0xBEEF, memory.getShort(buffer, 62));
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestMemoryBudget {
+    @Test
+    public void testSmallFrames() {
+        // a 1 KB message does not need the buffers of a 128 KB block
+        final byte[] content = text(1000);
+        final byte[] compressed = compress(content);
+        final ZstdDecompressor decompressor = new ZstdDecompressor();
+        assertEquals(0, decompressor.getMemorySize());
+
+        assertDecompress(decompressor, compressed, content);
+        final long memorySize = decompressor.getMemorySize();
+        assertTrue(String.valueOf(memorySize), memorySize > 0 && memorySize < 16 * 1024);
+
+        // the same buffers are reused
+        assertDecompress(decompressor, compressed, content);
+        assertEquals(memorySize, decompressor.getMemorySize());
+    }
+
+    @Test
+    public void testLargeFrame() {
+        // literals of whole blocks
+        final byte[] content = symbols(500_000);
+        final ZstdDecompressor decompressor = new ZstdDecompressor();
+        assertDecompress(decompressor, compress(content), content);
+        assertTrue(decompressor.getMemorySize() > ZstdFrameDecompressor.MAX_BLOCK_SIZE);
+
+        decompressor.releaseMemory();
+        assertEquals(0, decompressor.getMemorySize());
+        assertDecompress(decompressor, compress(text(1000)), text(1000));
+        assertTrue(decompressor.getMemorySize() < 16 * 1024);
+    }
+
+    @Test
+    public void testReport() {
+        final ZstdMemoryBudget budget = new ZstdMemoryBudget(1024 * 1024);
+        final ZstdDecompressor first = new ZstdDecompressor();
+        final ZstdDecompressor second = new ZstdDecompressor();
+        first.setMemoryBudget(budget);
+        second.setMemoryBudget(budget);
+
+        final byte[] small = text(1000);
+        final byte[] large = symbols(200_000);
+        assertDecompress(first, compress(small), small);
+        assertDecompress(second, compress(large), large);
+
+        assertEquals(2, budget.getContexts());
+        assertEquals(first.getMemorySize() + second.getMemorySize(), budget.getMemorySize());
+        assertEquals(budget.getMemorySize(), budget.getLiteralsMemorySize() + budget.getTablesMemorySize() + budget.getWindowMemorySize());
+        assertEquals(budget.getMemorySize(), budget.getPeakMemorySize());
+        assertTrue(budget.toString(), budget.toString().contains("contexts=2"));
+
+        second.releaseMemory();
+        assertEquals(1, budget.getContexts());
+        assertEquals(first.getMemorySize(), budget.getMemorySize());
+
+        first.setMemoryBudget(null);
+        assertEquals(0, budget.getContexts());
+        assertEquals(0, budget.getMemorySize());
+        assertEquals(0, budget.getLiteralsMemorySize());
+        assertEquals(0, budget.getTablesMemorySize());
+    }
+
+    @Test
+    public void testBudgetExceeded() {
+        final byte[] small = text(1000);
+        final byte[] large = symbols(200_000);
+        final ZstdMemoryBudget budget = new ZstdMemoryBudget(64 * 1024);
+        final ZstdDecompressor first = new ZstdDecompressor();
+        final ZstdDecompressor second = new ZstdDecompressor();
+        first.setMemoryBudget(budget);
+        second.setMemoryBudget(budget);
+
+        assertDecompress(first, compress(small), small);
+        try {
+            assertDecompress(second, compress(large), large);
+            fail();
+        } catch (final RuntimeException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().startsWith("Memory budget exceeded"));
+        }
+        assertEquals(1, budget.getRejectedCount());
+        assertTrue(budget.getMemorySize() <= budget.getMaxMemorySize());
+
+        // the memory of a failed frame is kept until released as well
+        second.releaseMemory();
+        assertEquals(first.getMemorySize(), budget.getMemorySize());
+        assertDecompress(second, compress(small), small);
+        assertEquals(2, budget.getContexts());
+    }
+
+    @Test
+    public void testPool() throws InterruptedException {
+        final ZstdMemoryBudget budget = new ZstdMemoryBudget(1024 * 1024);
+        final ZstdDecompressorPool pool = new ZstdDecompressorPool(2);
+        pool.setMemoryBudget(budget);
+
+        final byte[] content = text(10_000);
+        final byte[] compressed = compress(content);
+        final byte[] output = new byte[content.length];
+        assertEquals(content.length, pool.decompress(compressed, 0, compressed.length, output, 0, output.length));
+        assertArrayEquals(content, output);
+        assertEquals(1, budget.getContexts());
+        assertTrue(budget.getMemorySize() > 0);
+    }
+
+    @Test
+    public void testPoolReleaseMemory() throws InterruptedException {
+        final ZstdMemoryBudget budget = new ZstdMemoryBudget(1024 * 1024);
+        final ZstdDecompressorPool pool = new ZstdDecompressorPool(2);
+        pool.setMemoryBudget(budget);
+
+        final byte[] content = text(10_000);
+        final byte[] compressed = compress(content);
+        final byte[] output = new byte[content.length];
+        pool.decompress(compressed, 0, compressed.length, output, 0, output.length);
+        try {
+            pool.setMemoryBudget(new ZstdMemoryBudget(1024 * 1024));
+            fail();
+        } catch (final IllegalStateException expected) {
+            // the contexts keep memory of the first budget
+        }
+
+        pool.releaseMemory();
+        assertEquals(0, pool.getContexts());
+        assertEquals(0, budget.getContexts());
+        assertEquals(0, budget.getMemorySize());
+
+        // without contexts the budget may be replaced
+        final ZstdMemoryBudget other = new ZstdMemoryBudget(1024 * 1024);
+        pool.setMemoryBudget(other);
+        assertEquals(content.length, pool.decompress(compressed, 0, compressed.length, output, 0, output.length));
+        assertArrayEquals(content, output);
+        assertEquals(0, budget.getMemorySize());
+        assertTrue(other.getMemorySize() > 0);
+
+        pool.close();
+        assertEquals(0, other.getMemorySize());
+        try {
+            pool.decompress(compressed, 0, compressed.length, output, 0, output.length);
+            fail();
+        } catch (final IllegalStateException expected) {
+            assertEquals("Pool is closed", expected.getMessage());
+        }
+    }
+
+    @Test
+    public void testCollectedDecompressor() throws InterruptedException {
+        // a decompressor dropped without releaseMemory returns its memory once it is collected
+        final ZstdMemoryBudget budget = new ZstdMemoryBudget(1024 * 1024);
+        final byte[] content = text(10_000);
+        decompressWithBudget(budget, content);
+        assertEquals(1, budget.getContexts());
+
+        for (int i = 0; i < 100 && budget.getContexts() != 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(0, budget.getContexts());
+        assertEquals(0, budget.getMemorySize());
+        assertEquals(0, budget.getLiteralsMemorySize());
+        assertEquals(0, budget.getTablesMemorySize());
+    }
+
+    private static void decompressWithBudget(final ZstdMemoryBudget budget, final byte[] content) {
+        final ZstdDecompressor decompressor = new ZstdDecompressor();
+        decompressor.setMemoryBudget(budget);
+        assertDecompress(decompressor, compress(content), content);
+    }
+
+    private static void assertDecompress(final ZstdDecompressor decompressor, final byte[] compressed, final byte[] expected) {
+        final byte[] output = new byte[expected.length];
+        assertEquals(expected.length, decompressor.decompress(compressed, 0, compressed.length, output, 0, output.length));
+        assertArrayEquals(expected, output);
+    }
+
+    private static byte[] compress(final byte[] content) {
+        final byte[] output = new byte[ZstdCompressor.maxCompressedLength(content.length)];
+        return Arrays.copyOf(output, new ZstdCompressor().compress(content, 0, content.length, output, 0, output.length));
+    }
+
+    private static byte[] symbols(final int size) {
+        final byte[] result = FrameBuilder.random(size, size);
+        for (int i = 0; i < size; i++) {
+            result[i] = (byte) (result[i] & 0x0F);
+        }
+        return result;
+    }
+
+    private static byte[] text(final int size) {
+        final byte[] words = "lorem ipsum dolor sit amet consectetur adipiscing elit sed do eiusmod tempor ".getBytes();
+        final byte[] noise = FrameBuilder.random(1, size);
+        final byte[] result = new byte[size];
+        int position = 0;
+        for (int i = 0; position < size; i++) {
+            final int start = (noise[i] & 0xFF) % 60;
+            final int length = Math.min(Math.min(3 + (noise[i] & 0xF), words.length - start), size - position);
+            System.arraycopy(words, start, result, position, length);
+            position += length;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TestParallelCompress {
+    private static final int CHUNK_SIZE = 100 * 1024;
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testArrays() throws InterruptedException {
+        final ZstdParallelCompressor compressor = new ZstdParallelCompressor(pool, 3, CHUNK_SIZE);
+        for (final int size : new int[]{0, 1, CHUNK_SIZE, CHUNK_SIZE + 1, 37 * CHUNK_SIZE + 5}) {
+            final byte[] input = input(size);
+            final byte[] output = new byte[compressor.maxCompressedLength(size) + 3];
+            final int compressedSize = compressor.compress(input, 0, input.length, output, 3, output.length - 3);
+
+            // one frame per chunk, each with the content size
+            assertEquals(size, ZstdDecompressor.getDecompressedSize(output, 3, compressedSize));
+            assertArrayEquals(input, decompress(output, 3, compressedSize, size));
+        }
+    }
+
+    @Test
+    public void testStreams() throws IOException {
+        final ZstdParallelCompressor compressor = new ZstdParallelCompressor(pool, 1, CHUNK_SIZE);
+        for (final int size : new int[]{0, CHUNK_SIZE, 50 * CHUNK_SIZE + 7}) {
+            final byte[] input = input(size);
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            final long compressedSize = compressor.compress(new ByteArrayInputStream(input), output);
+            assertEquals(output.size(), compressedSize);
+
+            final byte[] compressed = output.toByteArray();
+            assertArrayEquals(input, decompress(compressed, 0, compressed.length, size));
+        }
+    }
+
+    @Test
+    public void testSameAsSequential() throws InterruptedException {
+        // chunks are compressed exactly as separate inputs
+        final byte[] input = input(3 * CHUNK_SIZE);
+        final byte[] output = new byte[new ZstdParallelCompressor(pool, 5, CHUNK_SIZE).maxCompressedLength(input.length)];
+        final int size = new ZstdParallelCompressor(pool, 5, CHUNK_SIZE).compress(input, 0, input.length, output, 0, output.length);
+
+        final ZstdCompressor compressor = new ZstdCompressor(5);
+        final byte[] expected = new byte[output.length];
+        int expectedSize = 0;
+        for (int offset = 0; offset < input.length; offset += CHUNK_SIZE) {
+            expectedSize += compressor.compress(input, offset, CHUNK_SIZE, expected, expectedSize, expected.length - expectedSize);
+        }
+        assertArrayEquals(Arrays.copyOf(expected, expectedSize), Arrays.copyOf(output, size));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testOutputTooSmall() throws InterruptedException {
+        final byte[] input = FrameBuilder.random(3, 4 * CHUNK_SIZE);
+        new ZstdParallelCompressor(pool, 3, CHUNK_SIZE).compress(input, 0, input.length, new byte[CHUNK_SIZE], 0, CHUNK_SIZE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidChunkSize() {
+        new ZstdParallelCompressor(pool, 3, 0);
+    }
+
+    private static byte[] decompress(final byte[] input, final int offset, final int length, final int size) {
+        final byte[] output = new byte[size];
+        assertEquals(size, new ZstdDecompressor().decompress(input, offset, length, output, 0, size));
+        return output;
+    }
+
+    private static byte[] input(final int size) {
+        // compressible, but different in every chunk
+        final byte[] result = FrameBuilder.random(11, size);
+        for (int i = 0; i < size; i++) {
+            result[i] = (byte) ((result[i] & 7) + (i / 1000 & 0x30));
+        }
+        return result;
+    }
+}
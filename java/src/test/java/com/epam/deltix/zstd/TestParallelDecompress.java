@@ -0,0 +1,164 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestParallelDecompress {
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testManyFrames() throws InterruptedException {
+        // frames of 300 KB make segments of 4 frames, skippable frames are passed over
+        final ByteArrayOutputStream input = new ByteArrayOutputStream();
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        final ZstdCompressor compressor = new ZstdCompressor(1);
+        for (int i = 0; i < 23; i++) {
+            final byte[] content = content(i, i == 7 ? 0 : 300 * 1024);
+            final byte[] frame = new byte[ZstdCompressor.maxCompressedLength(content.length)];
+            input.write(frame, 0, compressor.compress(content, 0, content.length, frame, 0, frame.length));
+            expected.write(content, 0, content.length);
+            if (i % 5 == 0) {
+                final byte[] skippable = FrameBuilder.skippable(i % 16, FrameBuilder.random(i, 100));
+                input.write(skippable, 0, skippable.length);
+            }
+        }
+
+        assertDecompress(input.toByteArray(), expected.toByteArray());
+    }
+
+    @Test
+    public void testUnknownContentSize() throws InterruptedException {
+        // decoded serially
+        final FrameBuilder frame = new FrameBuilder(10, true, false)
+                .raw(FrameBuilder.random(1, 300))
+                .match(200, 500);
+        final byte[] input = FrameBuilder.concat(FrameBuilder.ALPHABET_FRAME, frame.build(), FrameBuilder.ALPHABET_FRAME);
+        final byte[] expected = FrameBuilder.concat(FrameBuilder.alphabet(), frame.content(), FrameBuilder.alphabet());
+
+        assertDecompress(input, expected);
+    }
+
+    @Test
+    public void testByteBuffers() throws InterruptedException {
+        final byte[] content = content(1, 3 * 1024 * 1024);
+        final byte[] compressed = new byte[new ZstdParallelCompressor(pool, 1, 256 * 1024).maxCompressedLength(content.length)];
+        final int compressedSize = new ZstdParallelCompressor(pool, 1, 256 * 1024).compress(content, 0, content.length, compressed, 0, compressed.length);
+
+        final ByteBuffer input = ByteBuffer.allocateDirect(compressedSize);
+        input.put(compressed, 0, compressedSize);
+        input.flip();
+        final ByteBuffer output = ByteBuffer.allocateDirect(content.length + 5);
+        output.position(5);
+
+        assertEquals(content.length, new ZstdParallelDecompressor(pool).decompress(input, output));
+        assertEquals(input.limit(), input.position());
+        assertEquals(output.limit(), output.position());
+
+        final byte[] result = new byte[content.length];
+        output.position(5);
+        output.get(result);
+        assertArrayEquals(content, result);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testOutputTooSmall() throws InterruptedException {
+        final byte[] content = content(1, 3 * 1024 * 1024);
+        final byte[] compressed = new byte[ZstdCompressor.maxCompressedLength(content.length)];
+        final int compressedSize = new ZstdCompressor(1).compress(content, 0, content.length, compressed, 0, compressed.length);
+        new ZstdParallelDecompressor(pool).decompress(compressed, 0, compressedSize, new byte[content.length - 1], 0, content.length - 1);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testCorruptedFrame() throws InterruptedException {
+        final byte[] frame = FrameBuilder.ALPHABET_FRAME.clone();
+        // checksum
+        frame[frame.length - 1] ^= 1;
+        final byte[] input = FrameBuilder.concat(frame, frame, frame);
+        final int size = 3 * FrameBuilder.alphabet().length;
+        new ZstdParallelDecompressor(pool).decompress(input, 0, input.length, new byte[size], 0, size);
+    }
+
+    @Test
+    public void testIdleContextsBounded() throws Exception {
+        // a burst of callers needs a context each, afterwards no more than the workers and a caller use are kept
+        final byte[] input = FrameBuilder.concat(FrameBuilder.ALPHABET_FRAME, FrameBuilder.ALPHABET_FRAME, FrameBuilder.ALPHABET_FRAME);
+        final int size = 3 * FrameBuilder.alphabet().length;
+        final ZstdParallelDecompressor decompressor = new ZstdParallelDecompressor(pool);
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService callers = Executors.newFixedThreadPool(16);
+        try {
+            final List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                results.add(callers.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        start.await();
+                        int decoded = 0;
+                        for (int j = 0; j < 100; j++) {
+                            decoded = decompressor.decompress(input, 0, input.length, new byte[size], 0, size);
+                        }
+                        return decoded;
+                    }
+                }));
+            }
+            start.countDown();
+            for (final Future<Integer> result : results) {
+                assertEquals(size, (int) result.get());
+            }
+        } finally {
+            callers.shutdown();
+        }
+        assertTrue(String.valueOf(decompressor.getIdleDecompressors()), decompressor.getIdleDecompressors() <= pool.getParallelism() + 1);
+    }
+
+    private void assertDecompress(final byte[] input, final byte[] expected) throws InterruptedException {
+        final byte[] output = new byte[expected.length + 3];
+        final int size = new ZstdParallelDecompressor(pool).decompress(input, 0, input.length, output, 3, expected.length);
+        assertEquals(expected.length, size);
+
+        final byte[] result = new byte[expected.length];
+        System.arraycopy(output, 3, result, 0, size);
+        assertArrayEquals(expected, result);
+    }
+
+    private static byte[] content(final int seed, final int size) {
+        final byte[] result = FrameBuilder.random(seed, size);
+        for (int i = 0; i < size; i++) {
+            result[i] = (byte) (result[i] & 0x0F);
+        }
+        return result;
+    }
+}
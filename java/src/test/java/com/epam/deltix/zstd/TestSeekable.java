@@ -0,0 +1,163 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TestSeekable {
+    private static final int FRAME_SIZE = 10000;
+
+    @Test
+    public void testRanges() throws IOException {
+        final byte[] data = data(25 * FRAME_SIZE + 123);
+        final Path file = write(data, FRAME_SIZE);
+        try (final ZstdSeekableReader reader = open(file)) {
+            assertEquals(26, reader.getFrameCount());
+            assertEquals(data.length, reader.getDecompressedSize());
+
+            assertRange(reader, data, 0, 10);
+            assertRange(reader, data, FRAME_SIZE - 5, 10);
+            assertRange(reader, data, 7 * FRAME_SIZE, FRAME_SIZE);
+            assertRange(reader, data, 3 * FRAME_SIZE + 17, 5 * FRAME_SIZE);
+            assertRange(reader, data, 0, data.length);
+            assertRange(reader, data, data.length - 1, 1);
+
+            // past the end
+            final byte[] output = new byte[100];
+            assertEquals(23, reader.read(data.length - 23, output, 0, output.length));
+            assertArrayEquals(Arrays.copyOfRange(data, data.length - 23, data.length), Arrays.copyOf(output, 23));
+            assertEquals(0, reader.read(data.length + 10, output, 0, output.length));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testRegularFrames() throws IOException {
+        // the frames and the seek table read as a regular zstd stream
+        final byte[] data = data(5 * FRAME_SIZE);
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (final ZstdSeekableOutputStream out = new ZstdSeekableOutputStream(compressed, 3, FRAME_SIZE)) {
+            out.write(data);
+        }
+
+        final byte[] input = compressed.toByteArray();
+        assertEquals(data.length, ZstdDecompressor.getDecompressedSize(input, 0, input.length));
+        final byte[] output = new byte[data.length];
+        assertEquals(data.length, new ZstdDecompressor().decompress(input, 0, input.length, output, 0, output.length));
+        assertArrayEquals(data, output);
+    }
+
+    @Test
+    public void testEndFrame() throws IOException {
+        final byte[] data = data(3000);
+        final Path file = Files.createTempFile("seekable", ".zst");
+        try {
+            try (final ZstdSeekableOutputStream out = new ZstdSeekableOutputStream(Files.newOutputStream(file), 1, FRAME_SIZE)) {
+                out.write(data, 0, 1000);
+                out.endFrame();
+                out.endFrame();
+                for (int i = 1000; i < data.length; i++) {
+                    out.write(data[i]);
+                }
+            }
+
+            try (final ZstdSeekableReader reader = open(file)) {
+                assertEquals(2, reader.getFrameCount());
+                assertRange(reader, data, 990, 20);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        final Path file = write(new byte[0], FRAME_SIZE);
+        try (final ZstdSeekableReader reader = open(file)) {
+            assertEquals(0, reader.getFrameCount());
+            assertEquals(0, reader.getDecompressedSize());
+            assertEquals(0, reader.read(0, new byte[10], 0, 10));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testNotSeekable() throws IOException {
+        final Path file = Files.createTempFile("seekable", ".zst");
+        try {
+            Files.write(file, FrameBuilder.ALPHABET_FRAME);
+            open(file).close();
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testBadChecksum() throws IOException {
+        final byte[] data = data(3 * FRAME_SIZE);
+        final Path file = write(data, FRAME_SIZE);
+        try {
+            // the checksum of the second frame in the seek table
+            final byte[] content = Files.readAllBytes(file);
+            content[content.length - 9 - 12 - 1] ^= 1;
+            Files.write(file, content);
+
+            try (final ZstdSeekableReader reader = open(file)) {
+                reader.read(FRAME_SIZE, new byte[10], 0, 10);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void assertRange(final ZstdSeekableReader reader, final byte[] data, final int offset, final int length) throws IOException {
+        final byte[] output = new byte[length + 2];
+        assertEquals(length, reader.read(offset, output, 2, length));
+        assertArrayEquals(Arrays.copyOfRange(data, offset, offset + length), Arrays.copyOfRange(output, 2, length + 2));
+    }
+
+    private static Path write(final byte[] data, final int frameSize) throws IOException {
+        final Path file = Files.createTempFile("seekable", ".zst");
+        try (final ZstdSeekableOutputStream out = new ZstdSeekableOutputStream(Files.newOutputStream(file), 3, frameSize)) {
+            out.write(data);
+        }
+        return file;
+    }
+
+    private static ZstdSeekableReader open(final Path file) throws IOException {
+        final SeekableByteChannel channel = Files.newByteChannel(file, StandardOpenOption.READ);
+        return new ZstdSeekableReader(channel);
+    }
+
+    private static byte[] data(final int size) {
+        final byte[] result = FrameBuilder.random(17, size);
+        for (int i = 0; i < size; i++) {
+            result[i] = (byte) ('a' + (result[i] & 0x7) + (i >>> 12 & 1));
+        }
+        return result;
+    }
+}
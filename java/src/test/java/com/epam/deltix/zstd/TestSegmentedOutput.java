@@ -0,0 +1,135 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestSegmentedOutput {
+    @Test
+    public void testUnknownContentSize() {
+        // matches reach back over the wrap of the 1 KB window into the previous lap
+        final FrameBuilder frame = new FrameBuilder(10, true, false)
+                .raw(FrameBuilder.random(1, 1000))
+                .rle((byte) 7, 300);
+        for (int i = 0; i < 10; i++) {
+            frame.match(900 + i, 1000);
+        }
+        final byte[] input = FrameBuilder.concat(FrameBuilder.ALPHABET_FRAME, frame.build(),
+                FrameBuilder.skippable(3, FrameBuilder.random(2, 50)), FrameBuilder.ALPHABET_FRAME);
+        final byte[] expected = FrameBuilder.concat(FrameBuilder.alphabet(), frame.content(), FrameBuilder.alphabet());
+
+        final ZstdSegmentPool pool = new ZstdSegmentPool(1000, 100);
+        final ZstdSegmentedOutput output = new ZstdDecompressor().decompress(input, 0, input.length, pool);
+        assertEquals(expected.length, output.size());
+        assertEquals((expected.length + 999) / 1000, output.getSegmentCount());
+        assertArrayEquals(expected, output.toByteArray());
+        assertArrayEquals(expected, concat(output.asByteBuffers()));
+
+        final byte[] copy = new byte[expected.length + 5];
+        output.copyTo(copy, 5);
+        assertEquals(expected[expected.length - 1], copy[copy.length - 1]);
+
+        final int segmentCount = output.getSegmentCount();
+        output.close();
+        assertEquals(segmentCount, pool.getIdleSegments());
+        output.close();
+        assertEquals(segmentCount, pool.getIdleSegments());
+    }
+
+    @Test
+    public void testLargeFrames() {
+        // windows larger than the segments, the segments of the first output are reused by the second
+        final byte[] content = content(1, 3 * 1024 * 1024 + 17);
+        final byte[] compressed = new byte[ZstdCompressor.maxCompressedLength(content.length)];
+        final int compressedSize = new ZstdCompressor(3).compress(content, 0, content.length, compressed, 0, compressed.length);
+
+        final ZstdSegmentPool pool = new ZstdSegmentPool();
+        final ZstdDecompressor decompressor = new ZstdDecompressor();
+        for (int i = 0; i < 2; i++) {
+            try (ZstdSegmentedOutput output = decompressor.decompress(compressed, 0, compressedSize, pool)) {
+                assertEquals(content.length, output.size());
+                assertArrayEquals(content, output.toByteArray());
+            }
+        }
+        assertEquals(13, pool.getIdleSegments());
+        assertTrue(decompressor.getMemorySize() > ZstdSegmentPool.DEFAULT_SEGMENT_SIZE);
+
+        decompressor.releaseMemory();
+        assertEquals(0, decompressor.getMemorySize());
+    }
+
+    @Test
+    public void testByteBuffer() {
+        final ByteBuffer input = ByteBuffer.allocateDirect(FrameBuilder.ALPHABET_FRAME.length + 3);
+        input.position(3);
+        input.put(FrameBuilder.ALPHABET_FRAME);
+        input.position(3);
+
+        try (ZstdSegmentedOutput output = new ZstdDecompressor().decompress(input, new ZstdSegmentPool(16, 1))) {
+            assertEquals(input.limit(), input.position());
+            assertArrayEquals(FrameBuilder.alphabet(), output.toByteArray());
+        }
+    }
+
+    @Test
+    public void testCorruptedChecksum() {
+        final byte[] frame = FrameBuilder.ALPHABET_FRAME.clone();
+        frame[frame.length - 1] ^= 1;
+
+        final ZstdSegmentPool pool = new ZstdSegmentPool(16, 100);
+        try {
+            new ZstdDecompressor().decompress(frame, 0, frame.length, pool);
+            fail();
+        } catch (final RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Bad checksum"));
+        }
+        // the segments of the failed output are returned
+        assertTrue(pool.getIdleSegments() > 0);
+
+        final ZstdSegmentedOutput output = new ZstdDecompressor().decompress(frame, 0, frame.length, pool, ChecksumPolicy.SKIP);
+        assertArrayEquals(FrameBuilder.alphabet(), output.toByteArray());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDeferredChecksums() {
+        new ZstdDecompressor().decompress(FrameBuilder.ALPHABET_FRAME, 0, FrameBuilder.ALPHABET_FRAME.length,
+                new ZstdSegmentPool(), ChecksumPolicy.DEFERRED);
+    }
+
+    private static byte[] concat(final ByteBuffer[] buffers) {
+        final ByteArrayOutputStream result = new ByteArrayOutputStream();
+        for (final ByteBuffer buffer : buffers) {
+            final byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            result.write(bytes, 0, bytes.length);
+        }
+        return result.toByteArray();
+    }
+
+    private static byte[] content(final int seed, final int size) {
+        final byte[] result = FrameBuilder.random(seed, size);
+        for (int i = 0; i < size; i++) {
+            result[i] = (byte) (result[i] & 0x0F);
+        }
+        return result;
+    }
+}
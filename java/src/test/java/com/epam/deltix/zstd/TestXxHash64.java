@@ -0,0 +1,133 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TestXxHash64 {
+    private static final byte[] CONTENT = FrameBuilder.random(1, 1_000_003);
+    private static final long EXPECTED = new XxHash64().update(CONTENT).hash();
+
+    @Test
+    public void testKnownValues() {
+        assertEquals(0xEF46DB3751D8E999L, XxHash64.hash(ByteBuffer.allocate(0)));
+        assertEquals(0x44BC2CF5AD770999L, XxHash64.hash(ByteBuffer.wrap("abc".getBytes(StandardCharsets.US_ASCII))));
+    }
+
+    @Test
+    public void testBuffers() {
+        final ByteBuffer direct = ByteBuffer.allocateDirect(CONTENT.length + 10);
+        direct.position(7);
+        direct.put(CONTENT).flip().position(7);
+        // big-endian, as allocated
+        assertEquals(EXPECTED, XxHash64.hash(direct));
+        assertEquals(7, direct.position());
+        assertEquals(EXPECTED, XxHash64.hash(direct.duplicate().order(ByteOrder.LITTLE_ENDIAN)));
+        assertEquals(EXPECTED, XxHash64.hash(ByteBuffer.wrap(CONTENT)));
+
+        // in parts which do not end on stripes
+        final XxHash64 hash = new XxHash64();
+        for (int limit = 7 + 1000; limit < direct.capacity() - 3; limit += 1000) {
+            direct.limit(limit);
+            hash.update(direct);
+            assertEquals(limit, direct.position());
+        }
+        direct.limit(7 + CONTENT.length);
+        assertEquals(EXPECTED, hash.update(direct).hash());
+    }
+
+    @Test
+    public void testBigEndianAddressed() {
+        // the same hash with every memory access implementation, see the testMemory tasks of the build
+        for (final ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.allocate(CONTENT.length + 10), ByteBuffer.allocateDirect(CONTENT.length + 10)}) {
+            buffer.position(7);
+            buffer.put(CONTENT);
+            assertEquals(ByteOrder.BIG_ENDIAN, buffer.order());
+
+            assertEquals(EXPECTED, XxHash64.hash(buffer, 7, CONTENT.length));
+            assertEquals(EXPECTED, XxHash64.hash(buffer, 0, CONTENT.length + 7, 7, CONTENT.length));
+            assertEquals(EXPECTED, new XxHash64().update(buffer, 7, CONTENT.length).hash());
+            assertEquals(EXPECTED, new XxHash64().update(buffer, 0, CONTENT.length + 7, 7, CONTENT.length).hash());
+            assertEquals(XxHash64.hash(ByteBuffer.wrap(CONTENT, 0, 31)), XxHash64.hash(buffer, 7, 31));
+        }
+    }
+
+    @Test
+    public void testDataNotRetained() {
+        // the views of the hashed data do not keep it alive along with a long-lived instance
+        final XxHash64 hash = new XxHash64();
+        byte[] array = CONTENT.clone();
+        ByteBuffer buffer = ByteBuffer.allocate(100);
+        hash.update(array, 0, 100).update(buffer, 0, 100);
+        final WeakReference<byte[]> arrayReference = new WeakReference<>(array);
+        final WeakReference<ByteBuffer> bufferReference = new WeakReference<>(buffer);
+        array = null;
+        buffer = null;
+
+        for (int i = 0; i < 100 && (arrayReference.get() != null || bufferReference.get() != null); i++) {
+            System.gc();
+        }
+        assertNull(arrayReference.get());
+        assertNull(bufferReference.get());
+    }
+
+    @Test
+    public void testStreams() throws IOException {
+        final XxHash64 hash = new XxHash64();
+        assertEquals(EXPECTED, hash.update(new ByteArrayInputStream(CONTENT)).hash());
+        assertEquals(EXPECTED, hash.reset().update(Channels.newChannel(new ByteArrayInputStream(CONTENT))).hash());
+        assertEquals(EXPECTED, XxHash64.hash(new ByteArrayInputStream(CONTENT)));
+    }
+
+    @Test
+    public void testFiles() throws IOException {
+        final Path file = Files.createTempFile("xxhash", ".bin");
+        try {
+            Files.write(file, CONTENT);
+            assertEquals(EXPECTED, XxHash64.hash(file));
+
+            final XxHash64 hash = new XxHash64();
+            try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                // the mapped rest of the file
+                channel.position(100);
+                hash.update(CONTENT, 0, 100).update(channel);
+                assertEquals(CONTENT.length, channel.position());
+                assertEquals(EXPECTED, hash.hash());
+
+                // the read rest of the file
+                channel.position(CONTENT.length - 1000);
+                assertEquals(EXPECTED, hash.reset().update(CONTENT, 0, CONTENT.length - 1000).update(channel).hash());
+
+                assertEquals(EXPECTED, hash.reset().update(channel, 0, CONTENT.length).hash());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.epam.deltix.zstd;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TestSegmentDecompress {
+    private static final int VIEW_SIZE = 200_000;
+
+    @Test
+    public void testNativeSegments() {
+        final FrameBuilder large = largeFrame(13, true);
+        final FrameBuilder small = new FrameBuilder(12, true, true).rle((byte) 'x', 3000);
+
+        final byte[] compressed = FrameBuilder.concat(
+                large.build(),
+                FrameBuilder.skippable(3, FrameBuilder.random(2, 100)),
+                small.build(),
+                FrameBuilder.ALPHABET_FRAME);
+        final byte[] expected = FrameBuilder.concat(large.content(), small.content(), FrameBuilder.alphabet());
+
+        for (final ChecksumPolicy checksumPolicy : ChecksumPolicy.values()) {
+            try (final Arena arena = Arena.ofConfined()) {
+                final MemorySegment input = arena.allocate(compressed.length);
+                MemorySegment.copy(compressed, 0, input, ValueLayout.JAVA_BYTE, 0, compressed.length);
+                final MemorySegment output = arena.allocate(expected.length);
+
+                // small views move in the middle of frames
+                final ZstdSegmentDecompressor decompressor = new ZstdSegmentDecompressor(VIEW_SIZE);
+                assertEquals(expected.length, decompressor.decompress(input, output, checksumPolicy));
+                assertArrayEquals(expected, output.toArray(ValueLayout.JAVA_BYTE));
+                decompressor.takeDeferredChecksums().verify();
+
+                output.fill((byte) 0);
+                assertEquals(expected.length, new ZstdSegmentDecompressor().decompress(input, output, checksumPolicy));
+                assertArrayEquals(expected, output.toArray(ValueLayout.JAVA_BYTE));
+            }
+        }
+    }
+
+    @Test
+    public void testMappedFiles() throws IOException {
+        final FrameBuilder frame = largeFrame(13, false);
+        final byte[] expected = frame.content();
+
+        final Path input = Files.createTempFile("zstd", ".zst");
+        final Path output = Files.createTempFile("zstd", ".out");
+        try (final FileChannel in = FileChannel.open(input, StandardOpenOption.READ, StandardOpenOption.WRITE);
+             final FileChannel out = FileChannel.open(output, StandardOpenOption.READ, StandardOpenOption.WRITE);
+             final Arena arena = Arena.ofConfined()) {
+            Files.write(input, frame.build());
+            final MemorySegment inputSegment = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size(), arena);
+            final MemorySegment outputSegment = out.map(FileChannel.MapMode.READ_WRITE, 0, expected.length, arena);
+
+            assertEquals(expected.length, new ZstdSegmentDecompressor(VIEW_SIZE).decompress(inputSegment, outputSegment));
+            outputSegment.force();
+        } finally {
+            Files.deleteIfExists(input);
+        }
+        try {
+            assertArrayEquals(expected, Files.readAllBytes(output));
+        } finally {
+            Files.deleteIfExists(output);
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testWindowLargerThanView() {
+        final FrameBuilder frame = largeFrame(18, false);
+        new ZstdSegmentDecompressor(VIEW_SIZE).decompress(
+                MemorySegment.ofArray(frame.build()), MemorySegment.ofArray(new byte[frame.content().length]));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReadOnlyOutput() {
+        new ZstdSegmentDecompressor().decompress(
+                MemorySegment.ofArray(FrameBuilder.ALPHABET_FRAME), MemorySegment.ofArray(new byte[100]).asReadOnly());
+    }
+
+    /**
+     * About 1 MB of raw blocks, each followed by a match reaching into the previous block.
+     */
+    private static FrameBuilder largeFrame(final int windowLog, final boolean checksum) {
+        final FrameBuilder frame = new FrameBuilder(windowLog, checksum, false);
+        for (int i = 0; i < 10; i++) {
+            frame.raw(FrameBuilder.random(i, 100_000)).match(5000, 1000);
+        }
+        return frame;
+    }
+}